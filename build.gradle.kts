@@ -7,6 +7,7 @@ plugins {
   `maven-publish`
   signing
   id("com.diffplug.spotless") version "6.25.0"
+  id("me.champeau.jmh") version "0.6.8"
 }
 
 ///////////////////////////////////////////////////////////////////////////////
@@ -31,6 +32,8 @@ dependencies {
   testImplementation("org.junit.vintage:junit-vintage-engine")
   testImplementation("org.assertj:assertj-core:3.25.3")
   testImplementation("org.mockito:mockito-core:5.11.0")
+
+  jmhImplementation("org.slf4j:slf4j-simple:1.7.36")
 }
 
 ///////////////////////////////////////////////////////////////////////////////
@@ -55,6 +58,16 @@ java {
   withSourcesJar()
 }
 
+jmh {
+  jmhVersion.set("1.37")
+  profilers.set(listOf("gc"))
+  resultFormat.set("JSON")
+  includeTests.set(true) // benchmarks drive the test-scope SAM simulator
+  if (project.hasProperty("jmhInclude")) {
+    includes.set(listOf(project.property("jmhInclude") as String))
+  }
+}
+
 fun copyLicenseFiles() {
   val metaInfDir = File(layout.buildDirectory.get().asFile, "resources/main/META-INF")
   val licenseFile = File(project.rootDir, "LICENSE")
@@ -0,0 +1,118 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySam;
+import org.eclipse.keypop.card.ApduResponseApi;
+import org.eclipse.keypop.card.CardResponseApi;
+import org.eclipse.keypop.card.CardSelectionResponseApi;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the parsing of the SAM ATR and the matching of a pool of SAMs against a resource
+ * profile.
+ *
+ * <p>The {@code *Regex} benchmarks reproduce the former implementations (regular expression
+ * compiled for each ATR parsing, {@link String#matches(String)} for each profile matching) so that
+ * they can be compared with the current ones. The profile benchmarks match a pool of {@code
+ * nbSams} SAMs, as the card resource service does when it looks for a SAM resource. Run with
+ * {@code ./gradlew jmh -PjmhInclude=AtrParsingBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AtrParsingBenchmark {
+
+  private static final String ATR = "3B3F9600805A4880C120501711223344829000";
+
+  @Param({"32"})
+  public int nbSams;
+
+  private CardSelectionResponseApi selectionResponse;
+  private LegacySamAdapter[] sams;
+  private String powerOnDataRegex;
+  private LegacySamResourceProfileExtensionAdapter profile;
+
+  @Setup
+  public void setUp() {
+    selectionResponse = new BenchmarkCardSelectionResponse(ATR);
+    sams = new LegacySamAdapter[nbSams];
+    for (int i = 0; i < nbSams; i++) {
+      String atr = ATR.replace("11223344", String.format("%08X", 0x11223300 + i));
+      sams[i] = new LegacySamAdapter(new BenchmarkCardSelectionResponse(atr));
+    }
+    powerOnDataRegex = LegacySamUtil.buildPowerOnDataFilter(LegacySam.ProductType.SAM_C1, null);
+    profile = new LegacySamResourceProfileExtensionAdapter(null, powerOnDataRegex);
+  }
+
+  @Benchmark
+  public LegacySamAdapter parseAtr() {
+    return new LegacySamAdapter(selectionResponse);
+  }
+
+  @Benchmark
+  public byte[] parseAtrRegex() {
+    Matcher matcher = Pattern.compile("3B(.{6}|.{10})805A(.{20})829000").matcher(ATR);
+    return matcher.find(0) ? HexUtil.toByteArray(matcher.group(2)) : null;
+  }
+
+  @Benchmark
+  public void matchProfile(Blackhole blackhole) {
+    for (LegacySamAdapter sam : sams) {
+      blackhole.consume(profile.matches(sam));
+    }
+  }
+
+  @Benchmark
+  public void matchProfileRegex(Blackhole blackhole) {
+    for (LegacySamAdapter sam : sams) {
+      blackhole.consume(sam.getPowerOnData().matches(powerOnDataRegex));
+    }
+  }
+
+  private static final class BenchmarkCardSelectionResponse implements CardSelectionResponseApi {
+
+    private final String powerOnData;
+
+    private BenchmarkCardSelectionResponse(String powerOnData) {
+      this.powerOnData = powerOnData;
+    }
+
+    @Override
+    public String getPowerOnData() {
+      return powerOnData;
+    }
+
+    @Override
+    public ApduResponseApi getSelectApplicationResponse() {
+      return null;
+    }
+
+    @Override
+    public boolean hasMatched() {
+      return true;
+    }
+
+    @Override
+    public CardResponseApi getCardResponse() {
+      return null;
+    }
+  }
+}
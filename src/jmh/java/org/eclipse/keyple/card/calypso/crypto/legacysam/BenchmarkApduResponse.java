@@ -0,0 +1,54 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import java.util.Arrays;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.card.ApduResponseApi;
+
+/**
+ * Immutable canned APDU response used by the benchmarks.
+ *
+ * <p>The data out and the status word are computed once at construction so that the measured
+ * allocations are only those of the library.
+ */
+final class BenchmarkApduResponse implements ApduResponseApi {
+
+  private final byte[] apdu;
+  private final byte[] dataOut;
+  private final int statusWord;
+
+  BenchmarkApduResponse(String apduHex) {
+    this(HexUtil.toByteArray(apduHex));
+  }
+
+  BenchmarkApduResponse(byte[] apdu) {
+    this.apdu = apdu;
+    dataOut = Arrays.copyOfRange(apdu, 0, apdu.length - 2);
+    statusWord = ((apdu[apdu.length - 2] & 0xFF) << 8) | (apdu[apdu.length - 1] & 0xFF);
+  }
+
+  @Override
+  public byte[] getApdu() {
+    return apdu;
+  }
+
+  @Override
+  public byte[] getDataOut() {
+    return dataOut;
+  }
+
+  @Override
+  public int getStatusWord() {
+    return statusWord;
+  }
+}
@@ -0,0 +1,160 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySam;
+import org.eclipse.keypop.calypso.crypto.symmetric.SymmetricCryptoException;
+import org.eclipse.keypop.calypso.crypto.symmetric.SymmetricCryptoIOException;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Drives complete card secure sessions through {@link
+ * SymmetricCryptoCardTransactionManagerFactoryAdapter} against a {@link LegacySamSimulator}.
+ *
+ * <p>Each operation is one session: context initialization, digest initialization, {@code
+ * nbCardCommands} card command/response pairs added to the digest, session closing and card MAC
+ * verification. The throughput mode gives the sessions per millisecond, the sample time mode gives
+ * the latency percentiles (p50, p99...) and the auxiliary counters give the number of SAM round
+ * trips (card requests), SAM APDUs and digest APDUs per session, which are the figures to track
+ * across versions and product types.
+ *
+ * <p>{@code samLatencyMicros} is added to each SAM card request to emulate a physical or remote
+ * reader. {@code sessionChallengePrefetch} enables the prefetch of the next session challenge and
+ * {@code cardTransactionManagerReuse} the reuse of the card transaction manager (see the GC
+ * profiler allocation rate).
+ * Run with {@code ./gradlew jmh -PjmhInclude=CardSessionBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class CardSessionBenchmark {
+
+  private static final byte KIF = (byte) 0x30;
+  private static final byte KVC = (byte) 0x79;
+  private static final byte[] CARD_KEY_DIVERSIFIER = HexUtil.toByteArray("0000000012345678");
+  private static final byte[] OPEN_SECURE_SESSION_DATA_OUT =
+      HexUtil.toByteArray("030490980030791D01112233445566778899AABBCCDD");
+  private static final byte[] CARD_COMMAND = HexUtil.toByteArray("00B2014400");
+  private static final byte[] CARD_RESPONSE =
+      HexUtil.toByteArray("00112233445566778899AABBCCDDEEFF00112233445566778899AABBCCDD9000");
+
+  @Param({"SAM_C1", "SAM_S1E1", "SAM_S1DX"})
+  public String productType;
+
+  @Param({"2", "20"})
+  public int nbCardCommands;
+
+  @Param({"0", "1000"})
+  public long samLatencyMicros;
+
+  @Param({"false", "true"})
+  public boolean sessionChallengePrefetch;
+
+  @Param({"false", "true"})
+  public boolean cardTransactionManagerReuse;
+
+  private LegacySamSimulator simulator;
+  private SymmetricCryptoCardTransactionManagerFactoryAdapter factory;
+
+  /** SAM exchange counts of the last iteration, per session. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class SamExchanges {
+
+    /** Number of card requests transmitted to the SAM per session. */
+    public double samRoundTripsPerSession;
+
+    /** Number of APDUs processed by the SAM per session. */
+    public double samApdusPerSession;
+
+    /** Number of digest APDUs (Digest Init/Update/Update Multiple/Close) per session. */
+    public double digestApdusPerSession;
+
+    private long sessions;
+    private long samRoundTrips;
+    private long samApdus;
+    private long digestApdus;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      sessions = 0;
+      samRoundTrips = 0;
+      samApdus = 0;
+      digestApdus = 0;
+      samRoundTripsPerSession = 0;
+      samApdusPerSession = 0;
+      digestApdusPerSession = 0;
+    }
+
+    void add(long sessionRoundTrips, long sessionApdus, long sessionDigestApdus) {
+      sessions++;
+      samRoundTrips += sessionRoundTrips;
+      samApdus += sessionApdus;
+      digestApdus += sessionDigestApdus;
+      samRoundTripsPerSession = (double) samRoundTrips / sessions;
+      samApdusPerSession = (double) samApdus / sessions;
+      digestApdusPerSession = (double) digestApdus / sessions;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    simulator =
+        new LegacySamSimulator(
+                LegacySam.ProductType.valueOf(productType), "11223344", new Random(0))
+            .putKey(KIF, KVC, LegacySamSimulator.KeyAlgorithm.TDES, new byte[16])
+            .setCardRequestLatency(samLatencyMicros, TimeUnit.MICROSECONDS);
+    ContextSettingAdapter contextSetting = new ContextSettingAdapter();
+    if (sessionChallengePrefetch) {
+      contextSetting.enableSessionChallengePrefetch();
+    }
+    if (cardTransactionManagerReuse) {
+      contextSetting.enableCardTransactionManagerReuse();
+    }
+    factory =
+        new SymmetricCryptoCardTransactionManagerFactoryAdapter(
+            simulator, simulator.createLegacySam(), contextSetting);
+  }
+
+  @Benchmark
+  public boolean secureSession(SamExchanges samExchanges)
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    long roundTrips = simulator.getCardRequestCount();
+    long apdus = simulator.getApduCount();
+    SymmetricCryptoCardTransactionManagerAdapter manager =
+        (SymmetricCryptoCardTransactionManagerAdapter)
+            factory.createCardTransactionManager(
+                CARD_KEY_DIVERSIFIER, false, new ArrayList<byte[]>());
+    manager.initTerminalSecureSessionContext();
+    manager.initTerminalSessionMac(OPEN_SECURE_SESSION_DATA_OUT, KIF, KVC);
+    for (int i = 0; i < nbCardCommands; i++) {
+      manager.updateTerminalSessionMac(CARD_COMMAND);
+      manager.updateTerminalSessionMac(CARD_RESPONSE);
+    }
+    manager.finalizeTerminalSessionMac();
+    boolean isCardSessionMacValid =
+        manager.isCardSessionMacValid(simulator.computeCardSessionMac(4));
+    samExchanges.add(
+        simulator.getCardRequestCount() - roundTrips,
+        simulator.getApduCount() - apdus,
+        manager.getSessionDigestApduCount());
+    return isCardSessionMacValid;
+  }
+}
@@ -0,0 +1,204 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import static org.eclipse.keyple.card.calypso.crypto.legacysam.DtoAdapters.*;
+
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.crypto.legacysam.SystemKeyType;
+import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySam;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of building SAM commands and parsing canned responses.
+ *
+ * <p>Each benchmark constructs a command the way the transaction managers do, then feeds it a
+ * pre-built {@link BenchmarkApduResponse} so that only the library code is measured. Run with
+ * {@code ./gradlew jmh} ({@code -prof gc} is enabled by the build script) to get the allocation
+ * rate per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandBenchmark {
+
+  private static final byte KIF = (byte) 0x30;
+  private static final byte KVC = (byte) 0x79;
+
+  private CommandContextDto context;
+  private byte[] diversifier;
+  private byte[] digestInitData;
+  private byte[] digestUpdateMultipleData;
+  private byte[] dataToSign;
+
+  private BenchmarkApduResponse sw9000;
+  private BenchmarkApduResponse sw6988;
+  private BenchmarkApduResponse swUnknown;
+  private BenchmarkApduResponse challengeResponse;
+  private BenchmarkApduResponse macResponse;
+  private BenchmarkApduResponse keyParametersResponse;
+
+  private CommandSelectDiversifier parsedSelectDiversifier;
+  private CommandDigestAuthenticate parsedDigestAuthenticate;
+  private Command[] parsedCommands;
+  private int parsedCommandIndex;
+
+  @Setup
+  public void setUp() {
+    context = new CommandContextDto(new LegacySamAdapter(LegacySam.ProductType.SAM_C1), null, null);
+    diversifier = HexUtil.toByteArray("0000000011223344");
+    digestInitData = HexUtil.toByteArray("030490980030791D01112233445566778899AABBCCDD");
+    digestUpdateMultipleData =
+        HexUtil.toByteArray(
+            "0500B2014400"
+                + "1F"
+                + "00112233445566778899AABBCCDDEEFF00112233445566778899AABBCCDD9000"
+                + "0500B2014C00"
+                + "1F"
+                + "00112233445566778899AABBCCDDEEFF00112233445566778899AABBCCDD9000");
+    dataToSign = HexUtil.toByteArray("00112233445566778899AABBCCDDEEFF");
+
+    sw9000 = new BenchmarkApduResponse("9000");
+    sw6988 = new BenchmarkApduResponse("6988");
+    swUnknown = new BenchmarkApduResponse("6F00");
+    challengeResponse = new BenchmarkApduResponse("C1C2C3C4C5C6C7C89000");
+    macResponse = new BenchmarkApduResponse("A1A2A3A4A5A6A7A89000");
+    keyParametersResponse =
+        new BenchmarkApduResponse(
+            "C1C2C3C4C5C6C7C8C9CACBCCCDCECFD0D1D2D3D4D5D6D7D8D9DADBDCDDDEDFE09000");
+
+    parsedSelectDiversifier = new CommandSelectDiversifier(context, diversifier);
+    parsedDigestAuthenticate = new CommandDigestAuthenticate(context, new byte[8]);
+    parsedCommands =
+        new Command[] {
+          parsedSelectDiversifier,
+          parsedDigestAuthenticate,
+          new CommandDigestUpdate(context, false, digestInitData),
+          new CommandGiveRandom(context, new byte[8]),
+          new CommandSvCheck(context, new byte[3])
+        };
+  }
+
+  @Benchmark
+  public Command getChallenge() throws CommandException {
+    CommandGetChallenge command = new CommandGetChallenge(context, 8);
+    command.parseResponse(challengeResponse);
+    return command;
+  }
+
+  @Benchmark
+  public Command selectDiversifier() throws CommandException {
+    CommandSelectDiversifier command = new CommandSelectDiversifier(context, diversifier);
+    command.parseResponse(sw9000);
+    return command;
+  }
+
+  @Benchmark
+  public Command digestInit() throws CommandException {
+    CommandDigestInit command =
+        new CommandDigestInit(context, false, false, KIF, KVC, digestInitData);
+    command.parseResponse(sw9000);
+    return command;
+  }
+
+  @Benchmark
+  public Command digestUpdateMultiple() throws CommandException {
+    CommandDigestUpdateMultiple command =
+        new CommandDigestUpdateMultiple(context, digestUpdateMultipleData);
+    command.parseResponse(sw9000);
+    return command;
+  }
+
+  @Benchmark
+  public Command digestClose() throws CommandException {
+    CommandDigestClose command = new CommandDigestClose(context, 8);
+    command.parseResponse(macResponse);
+    return command;
+  }
+
+  @Benchmark
+  public Command dataCipherSignatureComputation() throws CommandException {
+    BasicSignatureComputationDataAdapter data = new BasicSignatureComputationDataAdapter();
+    data.setData(dataToSign, KIF, KVC);
+    CommandDataCipher command = new CommandDataCipher(context, data, null);
+    command.parseResponse(macResponse);
+    return command;
+  }
+
+  @Benchmark
+  public Command psoComputeSignature() throws CommandException {
+    TraceableSignatureComputationDataAdapter data = new TraceableSignatureComputationDataAdapter();
+    data.setData(dataToSign, KIF, KVC);
+    CommandPsoComputeSignature command = new CommandPsoComputeSignature(context, data);
+    command.parseResponse(macResponse);
+    return command;
+  }
+
+  @Benchmark
+  public Command readSystemKeyParameters() throws CommandException {
+    CommandReadKeyParameters command =
+        new CommandReadKeyParameters(context, SystemKeyType.RELOADING);
+    command.parseResponse(keyParametersResponse);
+    return command;
+  }
+
+  /** Status word check only, on the successful path. */
+  @Benchmark
+  public void checkStatusSuccessful() throws CommandException {
+    parsedSelectDiversifier.setResponseAndCheckStatus(sw9000);
+  }
+
+  /**
+   * Status word check only, on the successful path, alternating between commands having different
+   * status tables as in a real exchange. The allocation rate ({@code gc.alloc.rate.norm}) must be
+   * 0.
+   */
+  @Benchmark
+  public void checkStatusSuccessfulMixedCommands() throws CommandException {
+    parsedCommands[parsedCommandIndex].setResponseAndCheckStatus(sw9000);
+    parsedCommandIndex = (parsedCommandIndex + 1) % parsedCommands.length;
+  }
+
+  /** Status word check only, for a referenced error status (e.g. an incorrect card MAC). */
+  @Benchmark
+  public void checkStatusReferencedError(Blackhole blackhole) {
+    try {
+      parsedDigestAuthenticate.setResponseAndCheckStatus(sw6988);
+    } catch (CommandException e) {
+      blackhole.consume(e);
+    }
+  }
+
+  /**
+   * Response check of an incorrect card MAC reported as a negative result, as done for the card
+   * session MAC verification. Should cost the same as {@link #checkStatusSuccessful()}.
+   */
+  @Benchmark
+  public boolean checkResultNegative() throws CommandException {
+    return parsedDigestAuthenticate.setResponseAndCheckResult(sw6988);
+  }
+
+  /** Status word check only, for a status word missing from the status table. */
+  @Benchmark
+  public void checkStatusUnknown(Blackhole blackhole) {
+    try {
+      parsedSelectDiversifier.setResponseAndCheckStatus(swUnknown);
+    } catch (CommandException e) {
+      blackhole.consume(e);
+    }
+  }
+}
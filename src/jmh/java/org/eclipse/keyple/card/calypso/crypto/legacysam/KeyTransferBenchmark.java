@@ -0,0 +1,147 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.crypto.legacysam.SystemKeyType;
+import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySam;
+import org.eclipse.keypop.calypso.crypto.legacysam.transaction.SecureWriteTransactionManager;
+import org.eclipse.keypop.reader.ChannelControl;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Transfers work keys from a control SAM to {@code nbTargetSams} target SAMs through {@link
+ * SecureWriteTransactionManagerAdapter}, all SAMs being {@link LegacySamSimulator}s.
+ *
+ * <p>Each operation transfers {@code nbKeys} keys to every target SAM. In the sequential mode, the
+ * target SAMs are processed one after the other. In the concurrent mode, each target SAM is
+ * processed by its own thread, all threads sharing the control SAM: while the control SAM processes
+ * the card request of one target SAM, the other target SAMs execute their commands.
+ * The throughput mode gives the operations per second, to be multiplied by {@code nbTargetSams *
+ * nbKeys} to get the keys per second.
+ *
+ * <p>{@code samLatencyMicros} is added to each SAM card request to emulate physical readers.
+ * Run with {@code ./gradlew jmh -PjmhInclude=KeyTransferBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class KeyTransferBenchmark {
+
+  private static final byte KIF = (byte) 0x30;
+  private static final byte KVC = (byte) 0x79;
+  private static final byte[] KEY_MANAGEMENT_KEY =
+      HexUtil.toByteArray("0F0E0D0C0B0A09080706050403020100");
+  private static final byte[] KEY_VALUE = HexUtil.toByteArray("00112233445566778899AABBCCDDEEFF");
+
+  @Param({"1", "4"})
+  public int nbTargetSams;
+
+  @Param({"4"})
+  public int nbKeys;
+
+  @Param({"0", "1000"})
+  public long samLatencyMicros;
+
+  @Param({"false", "true"})
+  public boolean concurrent;
+
+  private LegacySamSimulator controlSimulator;
+  private LegacySamAdapter controlSam;
+  private final List<LegacySamSimulator> targetSimulators = new ArrayList<>();
+  private final List<LegacySamAdapter> targetSams = new ArrayList<>();
+  private ExecutorService targetSamExecutor;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    controlSimulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, "11223344")
+            .putSystemKey(SystemKeyType.KEY_MANAGEMENT, (byte) 0x01, KEY_MANAGEMENT_KEY)
+            .setCardRequestLatency(samLatencyMicros, TimeUnit.MICROSECONDS);
+    for (int i = 0; i < nbKeys; i++) {
+      controlSimulator.putKey(
+          (byte) (KIF + i), KVC, LegacySamSimulator.KeyAlgorithm.TDES, KEY_VALUE);
+    }
+    controlSam = controlSimulator.createLegacySam();
+    for (int i = 0; i < nbTargetSams; i++) {
+      String serialNumber = String.format("%08X", 0x55667700 + i);
+      LegacySamSimulator targetSimulator =
+          new LegacySamSimulator(LegacySam.ProductType.SAM_C1, serialNumber)
+              .putSystemKey(
+                  SystemKeyType.KEY_MANAGEMENT,
+                  (byte) 0x01,
+                  LegacySamSimulator.diversifyKey(
+                      LegacySamSimulator.KeyAlgorithm.TDES,
+                      KEY_MANAGEMENT_KEY,
+                      HexUtil.toByteArray("00000000" + serialNumber)))
+              .setCardRequestLatency(samLatencyMicros, TimeUnit.MICROSECONDS);
+      targetSimulators.add(targetSimulator);
+      targetSams.add(targetSimulator.createLegacySam());
+    }
+    targetSamExecutor = Executors.newFixedThreadPool(nbTargetSams);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    targetSamExecutor.shutdown();
+  }
+
+  private SecureWriteTransactionManagerAdapter prepareKeyTransfers(int targetSamIndex) {
+    SecureWriteTransactionManagerAdapter manager =
+        new SecureWriteTransactionManagerAdapter(
+            targetSimulators.get(targetSamIndex),
+            targetSams.get(targetSamIndex),
+            controlSimulator,
+            controlSam);
+    for (int i = 0; i < nbKeys; i++) {
+      manager.prepareTransferWorkKey((byte) (KIF + i), KVC, new byte[10], i);
+    }
+    return manager;
+  }
+
+  @Benchmark
+  public void transferWorkKeys() throws InterruptedException, ExecutionException {
+    if (!concurrent) {
+      for (int i = 0; i < nbTargetSams; i++) {
+        prepareKeyTransfers(i).processCommands(ChannelControl.KEEP_OPEN);
+      }
+      return;
+    }
+    List<Future<SecureWriteTransactionManager>> futures = new ArrayList<>(nbTargetSams);
+    for (int i = 0; i < nbTargetSams; i++) {
+      final SecureWriteTransactionManagerAdapter manager = prepareKeyTransfers(i);
+      futures.add(
+          targetSamExecutor.submit(
+              new Callable<SecureWriteTransactionManager>() {
+                @Override
+                public SecureWriteTransactionManager call() {
+                  return manager.processCommands(ChannelControl.KEEP_OPEN);
+                }
+              }));
+    }
+    for (Future<SecureWriteTransactionManager> future : futures) {
+      future.get();
+    }
+  }
+}
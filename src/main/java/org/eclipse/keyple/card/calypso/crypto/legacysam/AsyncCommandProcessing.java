@@ -0,0 +1,51 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.eclipse.keypop.reader.ChannelControl;
+
+/**
+ * Asynchronous processing of the commands prepared with a transaction manager.
+ *
+ * <p>Implemented by the free, secure write and asynchronous transaction executor managers, and
+ * exposed by {@link LegacySamExtensionService}.
+ *
+ * @param <T> The type of the transaction manager.
+ * @since 1.1.0
+ */
+interface AsyncCommandProcessing<T> {
+
+  /**
+   * Processes all previously prepared commands on the provided executor, without blocking the
+   * calling thread.
+   *
+   * <p>The prepared commands are taken over by the returned future when this method is called, so
+   * the processing is the same as the one of {@code processCommands(ChannelControl)}. The exchanges
+   * with the SAM reader remain blocking, but they only hold an executor thread for the duration of
+   * the exchanges, so that a small pool of threads can drive many SAMs.
+   *
+   * <p>The transaction manager and its SAM must not be used until the returned future is
+   * completed.
+   *
+   * @param channelControl Policy for managing the physical channel after the SAM commands have been
+   *     processed.
+   * @param executor The executor on which the commands are processed.
+   * @return A future completed with the current transaction manager, or completed exceptionally
+   *     with the exception that {@code processCommands(ChannelControl)} would have thrown (wrapped
+   *     in a {@link java.util.concurrent.CompletionException}).
+   * @throws IllegalArgumentException If channelControl or executor is null.
+   * @since 1.1.0
+   */
+  CompletableFuture<T> processCommandsAsync(ChannelControl channelControl, Executor executor);
+}
@@ -0,0 +1,51 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import java.util.concurrent.CompletableFuture;
+import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySamSelectionExtension;
+
+/**
+ * Asynchronous variant of {@link
+ * org.eclipse.keypop.calypso.crypto.legacysam.spi.LegacySamDynamicUnlockDataProviderSpi}, providing
+ * the unlock data of a SAM computed from its challenge, typically by a remote key server, without
+ * holding a thread during the computation.
+ *
+ * <p>The provider is set on a selection extension with {@link
+ * LegacySamExtensionService#setAsyncDynamicUnlockDataProvider(LegacySamSelectionExtension,
+ * AsyncDynamicUnlockDataProvider, int)}, with the maximum time to wait for the unlock data.
+ * When the SAMs are selected by {@link LegacySamExtensionService#warmUpSams(java.util.List,
+ * org.eclipse.keypop.reader.ReaderApiFactory, java.util.function.Supplier,
+ * java.util.concurrent.Executor)}, the unlock data of all the SAMs are requested before any of them
+ * is provided, and no executor thread waits for them.
+ *
+ * <p>A provider may be shared by several selections processed in parallel, its implementation must
+ * therefore be thread safe.
+ *
+ * @since 1.1.0
+ */
+public interface AsyncDynamicUnlockDataProvider {
+
+  /**
+   * Requests the unlock data of a SAM.
+   *
+   * <p>The returned future should be completed within the timeout set with the provider, if
+   * needed exceptionally (e.g. on an error of the key server), the selection of the SAM failing
+   * otherwise.
+   *
+   * @param samSerialNumber The SAM serial number (4 bytes).
+   * @param samChallenge The challenge generated by the SAM (8 bytes).
+   * @return A not null future completed with the 8-byte unlock data.
+   * @since 1.1.0
+   */
+  CompletableFuture<byte[]> getUnlockData(byte[] samSerialNumber, byte[] samChallenge);
+}
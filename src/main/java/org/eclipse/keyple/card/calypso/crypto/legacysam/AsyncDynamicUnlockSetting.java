@@ -0,0 +1,65 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySamSelectionExtension;
+import org.eclipse.keypop.reader.CardReader;
+
+/**
+ * Unlocking of a SAM in dynamic mode with an {@link AsyncDynamicUnlockDataProvider}.
+ *
+ * <p>Implemented by the selection extension, and exposed by {@link LegacySamExtensionService}.
+ *
+ * <p>As with a {@code LegacySamDynamicUnlockDataProviderSpi}, a "Get Challenge" command is
+ * executed during the selection and the "Unlock" command is then transmitted with the other
+ * prepared commands. When the SAM is not selected by {@link
+ * LegacySamExtensionService#warmUpSams(java.util.List, org.eclipse.keypop.reader.ReaderApiFactory,
+ * java.util.function.Supplier, java.util.concurrent.Executor)}, the selection waits for the unlock
+ * data on the selecting thread. In both cases, the selection fails with a {@link
+ * java.util.concurrent.TimeoutException} if the unlock data is not provided within the timeout set
+ * with the provider.
+ *
+ * @since 1.1.0
+ */
+interface AsyncDynamicUnlockSetting {
+
+  /**
+   * Sets the asynchronous provider of the unlock data of the SAM, the SAM reader being provided
+   * by the card resource service or by {@code warmUpSams}.
+   *
+   * @param asyncDynamicUnlockDataProvider The provider.
+   * @param unlockDataTimeoutMillis The maximum time to wait for the unlock data, in milliseconds.
+   * @return The current instance.
+   * @throws IllegalArgumentException If the provider is null or if the timeout is less than 1.
+   * @throws IllegalStateException If a setting to unlock the SAM has already been set.
+   * @since 1.1.0
+   */
+  LegacySamSelectionExtension setAsyncDynamicUnlockDataProvider(
+      AsyncDynamicUnlockDataProvider asyncDynamicUnlockDataProvider, int unlockDataTimeoutMillis);
+
+  /**
+   * Sets the asynchronous provider of the unlock data of the SAM and the reader in which the SAM
+   * is inserted.
+   *
+   * @param asyncDynamicUnlockDataProvider The provider.
+   * @param unlockDataTimeoutMillis The maximum time to wait for the unlock data, in milliseconds.
+   * @param targetSamReader The reader used to communicate with the SAM.
+   * @return The current instance.
+   * @throws IllegalArgumentException If an argument is null or if the timeout is less than 1.
+   * @throws IllegalStateException If a setting to unlock the SAM has already been set.
+   * @since 1.1.0
+   */
+  LegacySamSelectionExtension setAsyncDynamicUnlockDataProvider(
+      AsyncDynamicUnlockDataProvider asyncDynamicUnlockDataProvider,
+      int unlockDataTimeoutMillis,
+      CardReader targetSamReader);
+}
@@ -123,9 +123,7 @@ public AsyncTransactionCreatorManager prepareWriteCounterConfiguration(
   @Override
   public String exportCommands() {
     List<Command> commands = getTargetSamCommands();
-    for (Command command : commands) {
-      command.finalizeRequest();
-    }
+    CommandExecutor.finalizeRequests(commands);
     JsonObject jsonObject = new JsonObject();
 
     List<String> cardCommandTypes = new ArrayList<>(commands.size());
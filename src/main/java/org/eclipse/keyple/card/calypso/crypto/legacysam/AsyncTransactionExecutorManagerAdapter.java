@@ -16,6 +16,9 @@
 import com.google.gson.reflect.TypeToken;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import org.eclipse.keyple.core.util.json.JsonUtil;
 import org.eclipse.keypop.calypso.crypto.legacysam.transaction.AsyncTransactionExecutorManager;
 import org.eclipse.keypop.calypso.crypto.legacysam.transaction.ReaderIOException;
@@ -33,7 +36,8 @@
  * @since 0.3.0
  */
 final class AsyncTransactionExecutorManagerAdapter extends CommonTransactionManagerAdapter
-    implements AsyncTransactionExecutorManager {
+    implements AsyncTransactionExecutorManager,
+        AsyncCommandProcessing<AsyncTransactionExecutorManager> {
 
   /**
    * Constructs a new instance with the specified target SAM reader, target SAM and commands to be
@@ -105,4 +109,22 @@ public AsyncTransactionExecutorManager processCommands(ChannelControl channelCon
     processTargetSamCommandsAlreadyFinalized(channelControl);
     return this;
   }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  public CompletableFuture<AsyncTransactionExecutorManager> processCommandsAsync(
+      ChannelControl channelControl, Executor executor) {
+    return processTargetSamCommandsAlreadyFinalizedAsync(channelControl, executor)
+        .thenApply(
+            new Function<Void, AsyncTransactionExecutorManager>() {
+              @Override
+              public AsyncTransactionExecutorManager apply(Void unused) {
+                return AsyncTransactionExecutorManagerAdapter.this;
+              }
+            });
+  }
 }
@@ -45,11 +45,12 @@ private CardTransactionUtil() {}
    * @since 2.0.0
    */
   static List<ApduRequestSpi> getApduRequests(List<Command> commands) {
-    List<ApduRequestSpi> apduRequests = new ArrayList<>();
-    if (commands != null) {
-      for (Command command : commands) {
-        apduRequests.add(command.getApduRequest());
-      }
+    if (commands == null) {
+      return new ArrayList<>(0);
+    }
+    List<ApduRequestSpi> apduRequests = new ArrayList<>(commands.size());
+    for (Command command : commands) {
+      apduRequests.add(command.getApduRequest());
     }
     return apduRequests;
   }
@@ -57,10 +58,12 @@ static List<ApduRequestSpi> getApduRequests(List<Command> commands) {
   /**
    * Transmits a card request, processes and converts any exceptions.
    *
+   * <p>The exchange lock of the SAM is held during the exchange.
+   *
    * @param cardRequest The card request to transmit.
    * @param samReader The SAM reader.
    * @param sam The SAM.
-   * @param transactionAuditData The list of transaction audit data.
+   * @param transactionAuditSink The sink of the transaction audit data of the card transaction.
    * @return The card response.
    * @throws SymmetricCryptoIOException If a communication error occurs.
    * @since 2.0.0
@@ -69,56 +72,95 @@ static CardResponseApi transmitCardRequest(
       CardRequestSpi cardRequest,
       ProxyReaderApi samReader,
       LegacySamAdapter sam,
-      List<byte[]> transactionAuditData)
+      TransactionAuditSinkAdapters.CardTransactionSink transactionAuditSink)
+      throws SymmetricCryptoIOException {
+    // The SAM may also be used as control SAM by transactions processed in other threads
+    synchronized (sam.getExchangeLock()) {
+      return transmitCardRequestLocked(cardRequest, samReader, sam, transactionAuditSink);
+    }
+  }
+
+  private static CardResponseApi transmitCardRequestLocked(
+      CardRequestSpi cardRequest,
+      ProxyReaderApi samReader,
+      LegacySamAdapter sam,
+      TransactionAuditSinkAdapters.CardTransactionSink transactionAuditSink)
       throws SymmetricCryptoIOException {
     CardResponseApi cardResponse;
     try {
       cardResponse = samReader.transmitCardRequest(cardRequest, ChannelControl.KEEP_OPEN);
     } catch (ReaderBrokenCommunicationException e) {
-      saveTransactionAuditData(cardRequest, e.getCardResponse(), transactionAuditData);
+      saveTransactionAuditData(cardRequest, e.getCardResponse(), sam, transactionAuditSink);
+      sam.invalidateChallenge();
+      sam.invalidateSelectedDiversifier();
       throw new SymmetricCryptoIOException(
           MSG_SAM_READER_COMMUNICATION_ERROR + MSG_WHILE_TRANSMITTING_COMMANDS,
           new ReaderCommunicationException(
               MSG_SAM_READER_COMMUNICATION_ERROR
                   + MSG_WHILE_TRANSMITTING_COMMANDS
-                  + getTransactionAuditDataAsString(transactionAuditData, sam),
+                  + getTransactionAuditDataAsString(transactionAuditSink, sam),
               e));
     } catch (CardBrokenCommunicationException e) {
-      saveTransactionAuditData(cardRequest, e.getCardResponse(), transactionAuditData);
+      saveTransactionAuditData(cardRequest, e.getCardResponse(), sam, transactionAuditSink);
+      sam.invalidateChallenge();
+      sam.invalidateSelectedDiversifier();
       throw new SymmetricCryptoIOException(
           MSG_SAM_COMMUNICATION_ERROR + MSG_WHILE_TRANSMITTING_COMMANDS,
           new CardCommunicationException(
               MSG_SAM_COMMUNICATION_ERROR
                   + MSG_WHILE_TRANSMITTING_COMMANDS
-                  + getTransactionAuditDataAsString(transactionAuditData, sam),
+                  + getTransactionAuditDataAsString(transactionAuditSink, sam),
               e));
     } catch (UnexpectedStatusWordException e) {
       cardResponse = e.getCardResponse();
     }
-    saveTransactionAuditData(cardRequest, cardResponse, transactionAuditData);
+    saveTransactionAuditData(cardRequest, cardResponse, sam, transactionAuditSink);
     return cardResponse;
   }
 
   /**
-   * Saves the provided exchanged APDU commands in the list of transaction audit data.
+   * Saves the provided exchanged APDU commands in the sink of transaction audit data.
    *
    * @param cardRequest The card request.
    * @param cardResponse The associated card response.
-   * @param transactionAuditData The audit data list.
+   * @param sam The SAM.
+   * @param transactionAuditSink The sink of the transaction audit data.
    * @since 2.0.0
    */
   private static void saveTransactionAuditData(
-      CardRequestSpi cardRequest, CardResponseApi cardResponse, List<byte[]> transactionAuditData) {
+      CardRequestSpi cardRequest,
+      CardResponseApi cardResponse,
+      LegacySamAdapter sam,
+      TransactionAuditSink transactionAuditSink) {
     if (cardResponse != null) {
       List<ApduRequestSpi> requests = cardRequest.getApduRequests();
       List<ApduResponseApi> responses = cardResponse.getApduResponses();
       for (int i = 0; i < responses.size(); i++) {
-        transactionAuditData.add(requests.get(i).getApdu());
-        transactionAuditData.add(responses.get(i).getApdu());
+        transactionAuditSink.addApduExchange(
+            sam.getSerialNumber(), requests.get(i).getApdu(), responses.get(i).getApdu());
       }
     }
   }
 
+  /**
+   * Returns a string representation of the transaction audit data of a card transaction.
+   *
+   * <p>The string is only built on the error paths, from the APDUs of the card transaction.
+   *
+   * @param transactionAuditSink The sink of the transaction audit data of the card transaction.
+   * @param sam The SAM.
+   * @return An empty string if the transaction audit is disabled.
+   * @since 1.1.0
+   */
+  static String getTransactionAuditDataAsString(
+      TransactionAuditSinkAdapters.CardTransactionSink transactionAuditSink,
+      LegacySamAdapter sam) {
+    if (transactionAuditSink.isDisabled()) {
+      return "";
+    }
+    return getTransactionAuditDataAsString(transactionAuditSink.getApdus(), sam);
+  }
+
   /**
    * Returns a string representation of the transaction audit data.
    *
@@ -127,9 +169,22 @@ private static void saveTransactionAuditData(
    */
   static String getTransactionAuditDataAsString(
       List<byte[]> transactionAuditData, LegacySamAdapter sam) {
+    return getTransactionAuditDataAsString(transactionAuditData, String.valueOf(sam));
+  }
+
+  /**
+   * Returns a string representation of the transaction audit data of a SAM provided as JSON.
+   *
+   * @param transactionAuditData The exchanged APDUs.
+   * @param samJson The JSON representation of the SAM.
+   * @return A not empty string.
+   * @since 1.1.0
+   */
+  static String getTransactionAuditDataAsString(
+      List<byte[]> transactionAuditData, String samJson) {
     return "\nTransaction audit JSON data: {"
         + "\"sam\":"
-        + sam
+        + samJson
         + ",\"apdus\":"
         + JsonUtil.toJson(transactionAuditData)
         + "}";
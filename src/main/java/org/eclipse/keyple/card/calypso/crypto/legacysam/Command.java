@@ -37,26 +37,26 @@
 abstract class Command {
 
   /**
-   * This Map stores expected status that could be by default initialized with sw1=90 and sw2=00
+   * This table stores expected status that could be by default initialized with sw1=90 and sw2=00
    * (Success)
    *
    * @since 0.1.0
    */
-  static final Map<Integer, StatusProperties> STATUS_TABLE;
+  static final StatusTable STATUS_TABLE;
 
   static {
     HashMap<Integer, StatusProperties> m = new HashMap<>();
     m.put(0x6D00, new StatusProperties("Instruction unknown", IllegalParameterException.class));
     m.put(0x6E00, new StatusProperties("Class not supported", IllegalParameterException.class));
     m.put(0x9000, new StatusProperties("Success"));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final CommandRef commandRef;
   private final int le;
-  private String name;
   private ApduRequestAdapter apduRequest;
   private transient ApduResponseApi apduResponse; // NOSONAR
+  private boolean isNegativeResult;
   private final transient CommandContextDto context; // NOSONAR
   private final transient List<Command> controlSamCommands = new ArrayList<>(2); // NOSONAR
 
@@ -70,7 +70,6 @@ abstract class Command {
    */
   Command(CommandRef commandRef, int le, CommandContextDto context) {
     this.commandRef = commandRef;
-    name = commandRef.getName();
     this.le = le;
     this.context = context;
   }
@@ -78,16 +77,15 @@ abstract class Command {
   /**
    * Appends a string to the current name.
    *
-   * <p>The sub name completes the name of the current command. This method must therefore only be
-   * invoked conditionally (log level &gt;= debug).
+   * <p>The sub name completes the name of the current command. The resulting name is only built
+   * when the information of the APDU request is requested (e.g. by the logs of the reader layer).
    *
    * @param subName The string to append.
    * @throws NullPointerException If the request is not set.
    * @since 0.1.0
    */
   final void addSubName(String subName) {
-    name = name + " - " + subName;
-    apduRequest.setInfo(name);
+    apduRequest.addSubInfo(subName);
   }
 
   /**
@@ -108,7 +106,7 @@ final CommandRef getCommandRef() {
    */
   final void setApduRequest(ApduRequestAdapter apduRequest) {
     this.apduRequest = apduRequest;
-    this.apduRequest.setInfo(name);
+    this.apduRequest.setInfo(commandRef.getName());
   }
 
   /**
@@ -151,6 +149,16 @@ final void addControlSamCommand(Command samCommand) {
     controlSamCommands.add(samCommand);
   }
 
+  /**
+   * Gets the control SAM commands added to finalize the request and not processed yet.
+   *
+   * @return A not null list.
+   * @since 1.1.0
+   */
+  final List<Command> getControlSamCommands() {
+    return controlSamCommands;
+  }
+
   /**
    * Finalize the construction of the APDU request if needed.
    *
@@ -158,6 +166,45 @@ final void addControlSamCommand(Command samCommand) {
    */
   abstract void finalizeRequest();
 
+  /**
+   * Indicates whether the control SAM commands needed to finalize the request use a challenge of
+   * the target SAM, in which case the commands preceding this one must have been processed by the
+   * target SAM before {@link #prepareControlSamCommands()} is invoked.
+   *
+   * <p>Only relevant when {@link #isControlSamRequiredToFinalizeRequest()} returns true.
+   *
+   * @return true if a target SAM challenge is required.
+   * @since 1.1.0
+   */
+  boolean isTargetSamChallengeRequiredToFinalizeRequest() {
+    return true;
+  }
+
+  /**
+   * Adds the control SAM commands needed to finalize the request, without processing them, so that
+   * they can be processed along with those of other commands.
+   *
+   * <p>Once the control SAM commands have been processed, the request is finalized with {@link
+   * #finalizeRequestWithControlSamResults()}. By default, nothing is added.
+   *
+   * @since 1.1.0
+   */
+  void prepareControlSamCommands() {
+    /* nothing to do */
+  }
+
+  /**
+   * Finalizes the construction of the APDU request using the results of the control SAM commands
+   * added by {@link #prepareControlSamCommands()}.
+   *
+   * <p>By default, the request is finalized with {@link #finalizeRequest()}.
+   *
+   * @since 1.1.0
+   */
+  void finalizeRequestWithControlSamResults() {
+    finalizeRequest();
+  }
+
   /**
    * Indicates the need for a control SAM to compute the data used to finalize the command.
    *
@@ -186,8 +233,61 @@ final void addControlSamCommand(Command samCommand) {
    * @since 0.1.0
    */
   final void setResponseAndCheckStatus(ApduResponseApi apduResponse) throws CommandException {
+    setResponseAndCheckStatus(apduResponse, false);
+  }
+
+  /**
+   * Sets the response {@link ApduResponseApi} and checks the status word, like {@link
+   * #setResponseAndCheckStatus(ApduResponseApi)} except that a status word reporting an expected
+   * negative result (e.g. an incorrect MAC or signature) is returned as a result instead of being
+   * thrown as an exception.
+   *
+   * @param apduResponse The APDU response.
+   * @return false if the status word reports a negative result.
+   * @throws CommandException if status is not successful or if the length of the response is not
+   *     equal to the LE field in the request.
+   * @since 1.1.0
+   */
+  final boolean setResponseAndCheckResult(ApduResponseApi apduResponse) throws CommandException {
+    setResponseAndCheckStatus(apduResponse, true);
+    return !isNegativeResult;
+  }
+
+  /**
+   * Indicates whether the response reports an expected negative result.
+   *
+   * @return false if the response has not been checked with {@link
+   *     #setResponseAndCheckResult(ApduResponseApi)}.
+   * @since 1.1.0
+   */
+  final boolean isNegativeResult() {
+    return isNegativeResult;
+  }
+
+  private void setResponseAndCheckStatus(
+      ApduResponseApi apduResponse, boolean isNegativeResultAccepted) throws CommandException {
     this.apduResponse = apduResponse;
-    checkStatus();
+    // The "Unlock" command of the selection is built without context
+    LegacySamAdapter targetSam = context != null ? context.getTargetSam() : null;
+    if (targetSam != null
+        && commandRef != CommandRef.GET_CHALLENGE
+        && commandRef != CommandRef.SELECT_DIVERSIFIER) {
+      // Any other command processed by the SAM makes a previously obtained challenge unusable for
+      // a session (only a "Select Diversifier" may be inserted before the "Digest Init").
+      targetSam.invalidateChallenge();
+    }
+    try {
+      checkStatus(isNegativeResultAccepted);
+    } catch (CommandException e) {
+      // The diversifier selected in the SAM is no longer guaranteed after an error
+      if (targetSam != null) {
+        targetSam.invalidateSelectedDiversifier();
+      }
+      throw e;
+    }
+    if (isNegativeResult && targetSam != null) {
+      targetSam.invalidateSelectedDiversifier();
+    }
   }
 
   /**
@@ -196,7 +296,7 @@ final void setResponseAndCheckStatus(ApduResponseApi apduResponse) throws Comman
    * @return A not null reference
    * @since 0.1.0
    */
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 
@@ -213,10 +313,11 @@ private StatusProperties getStatusWordProperties() {
    * the request.<br>
    * If status word is not referenced, then status is considered unsuccessful.
    *
+   * @param isNegativeResultAccepted True if a negative result must not be thrown.
    * @throws CommandException if status is not successful or if the length of the response is not
    *     equal to the LE field in the request.
    */
-  private void checkStatus() throws CommandException {
+  private void checkStatus(boolean isNegativeResultAccepted) throws CommandException {
 
     StatusProperties props = getStatusWordProperties();
     if (props != null && props.isSuccessful()) {
@@ -233,6 +334,12 @@ private void checkStatus() throws CommandException {
     }
     // status word is not referenced, or not successful.
 
+    // expected negative result
+    if (isNegativeResultAccepted && props != null && props.isNegativeResult()) {
+      isNegativeResult = true;
+      return;
+    }
+
     // exception class
     Class<? extends CommandException> exceptionClass =
         props != null ? props.getExceptionClass() : null;
@@ -302,6 +409,8 @@ static class StatusProperties {
 
     private final Class<? extends CommandException> exceptionClass;
 
+    private final boolean negativeResult;
+
     /**
      * Creates a successful status.
      *
@@ -312,6 +421,7 @@ static class StatusProperties {
       this.information = information;
       this.successful = true;
       this.exceptionClass = null;
+      this.negativeResult = false;
     }
 
     /**
@@ -323,9 +433,27 @@ static class StatusProperties {
      * @since 0.1.0
      */
     StatusProperties(String information, Class<? extends CommandException> exceptionClass) {
+      this(information, exceptionClass, false);
+    }
+
+    /**
+     * Creates an error status which reports an expected negative result (e.g. an incorrect MAC or
+     * signature) when the response is checked with {@link
+     * #setResponseAndCheckResult(ApduResponseApi)}.
+     *
+     * @param information the status information.
+     * @param exceptionClass the associated exception class.
+     * @param negativeResult True if the status reports a negative result.
+     * @since 1.1.0
+     */
+    StatusProperties(
+        String information,
+        Class<? extends CommandException> exceptionClass,
+        boolean negativeResult) {
       this.information = information;
       this.successful = exceptionClass == null;
       this.exceptionClass = exceptionClass;
+      this.negativeResult = negativeResult;
     }
 
     /**
@@ -357,5 +485,101 @@ boolean isSuccessful() {
     Class<? extends CommandException> getExceptionClass() {
       return exceptionClass;
     }
+
+    /**
+     * Gets negative result indicator
+     *
+     * @return True if the status reports an expected negative result.
+     * @since 1.1.0
+     */
+    boolean isNegativeResult() {
+      return negativeResult;
+    }
+  }
+
+  /**
+   * Immutable table of the status word properties of a command.
+   *
+   * <p>The status words are stored as primitive keys in an open addressing hash table, so that the
+   * lookup performed for each response neither boxes the status word nor allocates anything.
+   *
+   * @since 1.1.0
+   */
+  static final class StatusTable {
+
+    private final int[] statusWords;
+    private final StatusProperties[] statusProperties;
+    private final int mask;
+
+    /**
+     * Creates a table from the provided map.
+     *
+     * @param statusPropertiesByStatusWord The status properties by status word.
+     * @since 1.1.0
+     */
+    StatusTable(Map<Integer, StatusProperties> statusPropertiesByStatusWord) {
+      // At least half of the slots remain empty to keep the probe sequences short
+      int capacity = 4;
+      while (capacity < 2 * statusPropertiesByStatusWord.size()) {
+        capacity <<= 1;
+      }
+      statusWords = new int[capacity];
+      statusProperties = new StatusProperties[capacity];
+      mask = capacity - 1;
+      for (Map.Entry<Integer, StatusProperties> entry : statusPropertiesByStatusWord.entrySet()) {
+        int i = indexOf(entry.getKey());
+        while (statusProperties[i] != null) {
+          i = (i + 1) & mask;
+        }
+        statusWords[i] = entry.getKey();
+        statusProperties[i] = entry.getValue();
+      }
+    }
+
+    /**
+     * Returns the first slot to probe for the provided status word.
+     *
+     * @param statusWord The status word.
+     * @return The slot index.
+     */
+    private int indexOf(int statusWord) {
+      int h = statusWord * 0x9E3779B9;
+      return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Returns the properties of the provided status word.
+     *
+     * @param statusWord The status word.
+     * @return Null if the status word is not referenced.
+     * @since 1.1.0
+     */
+    StatusProperties get(int statusWord) {
+      int i = indexOf(statusWord);
+      StatusProperties properties;
+      while ((properties = statusProperties[i]) != null) {
+        if (statusWords[i] == statusWord) {
+          return properties;
+        }
+        i = (i + 1) & mask;
+      }
+      return null;
+    }
+
+    /**
+     * Returns a modifiable copy of the table content, to be completed by a specific command.
+     *
+     * @return A new map.
+     * @since 1.1.0
+     */
+    Map<Integer, StatusProperties> toMap() {
+      Map<Integer, StatusProperties> m = new HashMap<>();
+      for (int i = 0; i < statusProperties.length; i++) {
+        if (statusProperties[i] != null) {
+          m.put(statusWords[i], statusProperties[i]);
+        }
+      }
+      return m;
+    }
   }
 }
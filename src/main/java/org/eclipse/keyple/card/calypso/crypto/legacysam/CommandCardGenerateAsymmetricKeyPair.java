@@ -15,7 +15,6 @@
 import static org.eclipse.keyple.card.calypso.crypto.legacysam.DtoAdapters.CommandContextDto;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.keyple.core.util.ApduUtil;
 import org.eclipse.keyple.core.util.HexUtil;
@@ -29,10 +28,10 @@
  */
 final class CommandCardGenerateAsymmetricKeyPair extends Command {
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(0x6700, new StatusProperties("Incorrect Lc", IllegalParameterException.class));
     m.put(
         0x6985,
@@ -43,7 +42,7 @@ final class CommandCardGenerateAsymmetricKeyPair extends Command {
             "Incorrect value in the incoming data (OID unknown)",
             IncorrectInputDataException.class));
     m.put(0x6B00, new StatusProperties("Incorrect P1", IllegalParameterException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final DtoAdapters.KeyPairContainerAdapter keyPairContainer;
@@ -82,7 +81,7 @@ final class CommandCardGenerateAsymmetricKeyPair extends Command {
    * @since 0.6.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 
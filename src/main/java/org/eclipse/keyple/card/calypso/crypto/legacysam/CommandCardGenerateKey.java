@@ -11,7 +11,6 @@
  ************************************************************************************** */
 package org.eclipse.keyple.card.calypso.crypto.legacysam;
 
-import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.keyple.core.util.ApduUtil;
 import org.eclipse.keypop.card.ApduResponseApi;
@@ -23,10 +22,10 @@
  */
 final class CommandCardGenerateKey extends Command {
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(0x6700, new StatusProperties("Incorrect Lc", IllegalParameterException.class));
     m.put(
         0x6985,
@@ -42,7 +41,7 @@ final class CommandCardGenerateKey extends Command {
         new StatusProperties(
             "Record not found: ciphering key or key to cipher not found",
             DataAccessException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private byte[] cipheredData;
@@ -148,7 +147,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CommandException {
    * @since 2.0.1
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
@@ -14,7 +14,6 @@
 import static org.eclipse.keyple.card.calypso.crypto.legacysam.DtoAdapters.*;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.keyple.core.util.ApduUtil;
 import org.eclipse.keypop.calypso.crypto.legacysam.transaction.InvalidSignatureException;
@@ -27,10 +26,10 @@
  */
 final class CommandDataCipher extends Command {
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(0x6700, new StatusProperties("Incorrect Lc", IllegalParameterException.class));
     m.put(
         0x6900,
@@ -51,7 +50,7 @@ final class CommandDataCipher extends Command {
         new StatusProperties(
             "Record not found: ciphering key not found", DataAccessException.class));
     m.put(0x6B00, new StatusProperties("Incorrect P1", IllegalParameterException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final BasicSignatureComputationDataAdapter signatureComputationData;
@@ -114,7 +113,7 @@ final class CommandDataCipher extends Command {
    * @since 0.1.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 
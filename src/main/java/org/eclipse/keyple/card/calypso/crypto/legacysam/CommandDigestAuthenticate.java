@@ -11,7 +11,6 @@
  ************************************************************************************** */
 package org.eclipse.keyple.card.calypso.crypto.legacysam;
 
-import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.keyple.core.util.ApduUtil;
 import org.eclipse.keypop.card.ApduResponseApi;
@@ -23,16 +22,16 @@
  */
 final class CommandDigestAuthenticate extends Command {
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(0x6700, new StatusProperties("Incorrect Lc", IllegalParameterException.class));
     m.put(
         0x6985,
         new StatusProperties("Preconditions not satisfied", AccessForbiddenException.class));
-    m.put(0x6988, new StatusProperties("Incorrect signature", SecurityDataException.class));
-    STATUS_TABLE = m;
+    m.put(0x6988, new StatusProperties("Incorrect signature", SecurityDataException.class, true));
+    STATUS_TABLE = new StatusTable(m);
   }
 
   /**
@@ -90,7 +89,8 @@ boolean isControlSamRequiredToFinalizeRequest() {
    */
   @Override
   void parseResponse(ApduResponseApi apduResponse) throws CommandException {
-    setResponseAndCheckStatus(apduResponse);
+    // An incorrect signature is an expected negative result (see isNegativeResult)
+    setResponseAndCheckResult(apduResponse);
   }
 
   /**
@@ -99,7 +99,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CommandException {
    * @since 2.0.1
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
@@ -11,7 +11,6 @@
  ************************************************************************************** */
 package org.eclipse.keyple.card.calypso.crypto.legacysam;
 
-import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.keyple.core.util.ApduUtil;
 import org.eclipse.keypop.card.ApduResponseApi;
@@ -26,10 +25,10 @@
  */
 final class CommandDigestInternalAuthenticate extends Command {
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(
         0x6985,
         new StatusProperties(
@@ -42,7 +41,7 @@ final class CommandDigestInternalAuthenticate extends Command {
             AccessForbiddenException.class));
     m.put(0x6B00, new StatusProperties("Incorrect P1", IllegalParameterException.class));
 
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private byte[] terminalSignature;
@@ -115,7 +114,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CommandException {
    * @since 2.3.1
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
@@ -11,9 +11,7 @@
  ************************************************************************************** */
 package org.eclipse.keyple.card.calypso.crypto.legacysam;
 
-import java.util.HashMap;
 import java.util.Map;
-import org.eclipse.keyple.core.util.ApduUtil;
 import org.eclipse.keypop.card.ApduResponseApi;
 
 /**
@@ -26,10 +24,10 @@
  */
 final class CommandDigestUpdate extends Command {
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(0x6700, new StatusProperties("Incorrect Lc", IllegalParameterException.class));
     m.put(
         0x6985,
@@ -40,7 +38,7 @@ final class CommandDigestUpdate extends Command {
             "Incorrect value in the incoming data: session in Rev.3.2 mode with encryption/decryption active and not enough data (less than 5 bytes for and odd occurrence or less than 2 bytes for an even occurrence)",
             IncorrectInputDataException.class));
     m.put(0x6B00, new StatusProperties("Incorrect P1 or P2", IllegalParameterException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private byte[] processedData;
@@ -56,6 +54,28 @@ final class CommandDigestUpdate extends Command {
    */
   CommandDigestUpdate(
       DtoAdapters.CommandContextDto context, boolean encryptedSession, byte[] digestData) {
+    this(context, encryptedSession, digestData, 0, digestData != null ? digestData.length : 0);
+  }
+
+  /**
+   * Constructor taking the digest data from a slice of a buffer, which is copied directly into the
+   * APDU.
+   *
+   * @param context The command context.
+   * @param encryptedSession the encrypted session flag, true if encrypted.
+   * @param buffer The buffer containing the bytes from the command sent by the card or the
+   *     response from the command.
+   * @param offset The offset of the digest data in the buffer.
+   * @param length The length of the digest data.
+   * @throws IllegalArgumentException If the digest data is null or has a length &gt; 255
+   * @since 1.1.0
+   */
+  CommandDigestUpdate(
+      DtoAdapters.CommandContextDto context,
+      boolean encryptedSession,
+      byte[] buffer,
+      int offset,
+      int length) {
 
     super(CommandRef.DIGEST_UPDATE, 0, context);
 
@@ -63,15 +83,21 @@ final class CommandDigestUpdate extends Command {
     byte p1 = (byte) 0x00;
     byte p2 = encryptedSession ? (byte) 0x80 : (byte) 0x00;
 
-    if (digestData == null || digestData.length > 255) {
+    if (buffer == null || length > 255) {
       throw new IllegalArgumentException(
           "Digest data is null or too long. Expected 0-255 bytes, got "
-              + (digestData != null ? digestData.length : "null"));
+              + (buffer != null ? length : "null"));
     }
 
-    setApduRequest(
-        new DtoAdapters.ApduRequestAdapter(
-            ApduUtil.build(cla, getCommandRef().getInstructionByte(), p1, p2, digestData, null)));
+    byte[] apdu = new byte[5 + length];
+    apdu[0] = cla;
+    apdu[1] = getCommandRef().getInstructionByte();
+    apdu[2] = p1;
+    apdu[3] = p2;
+    apdu[4] = (byte) length;
+    System.arraycopy(buffer, offset, apdu, 5, length);
+
+    setApduRequest(new DtoAdapters.ApduRequestAdapter(apdu));
   }
 
   /**
@@ -111,7 +137,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CommandException {
    * @since 2.0.1
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 
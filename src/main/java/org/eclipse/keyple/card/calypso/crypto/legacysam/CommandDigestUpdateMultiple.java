@@ -11,9 +11,7 @@
  ************************************************************************************** */
 package org.eclipse.keyple.card.calypso.crypto.legacysam;
 
-import java.util.HashMap;
 import java.util.Map;
-import org.eclipse.keyple.core.util.ApduUtil;
 import org.eclipse.keypop.card.ApduResponseApi;
 
 /**
@@ -23,10 +21,10 @@
  */
 final class CommandDigestUpdateMultiple extends Command {
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(0x6700, new StatusProperties("Incorrect Lc", IllegalParameterException.class));
     m.put(
         0x6985,
@@ -37,7 +35,7 @@ final class CommandDigestUpdateMultiple extends Command {
             "Incorrect value in the incoming data: incorrect structure",
             IncorrectInputDataException.class));
     m.put(0x6B00, new StatusProperties("Incorrect P1", IllegalParameterException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   /**
@@ -48,21 +46,43 @@ final class CommandDigestUpdateMultiple extends Command {
    * @since 2.0.1
    */
   CommandDigestUpdateMultiple(DtoAdapters.CommandContextDto context, byte[] digestData) {
+    this(context, digestData, 0, digestData != null ? digestData.length : 0);
+  }
+
+  /**
+   * Constructor taking the digest data from a slice of a buffer, which is copied directly into the
+   * APDU.
+   *
+   * @param context The command context.
+   * @param buffer The buffer containing the digest data as consecutive [length][apdu] records.
+   * @param offset The offset of the digest data in the buffer.
+   * @param length The length of the digest data.
+   * @throws IllegalArgumentException If the digest data is null or has a length &gt; 255
+   * @since 1.1.0
+   */
+  CommandDigestUpdateMultiple(
+      DtoAdapters.CommandContextDto context, byte[] buffer, int offset, int length) {
     super(CommandRef.DIGEST_UPDATE_MULTIPLE, 0, context);
 
     byte cla = context.getTargetSam().getClassByte();
     byte p1 = (byte) 0x80;
     byte p2 = (byte) 0x00;
 
-    if (digestData == null || digestData.length > 255) {
+    if (buffer == null || length > 255) {
       throw new IllegalArgumentException(
           "Digest data is null or too long. Expected 0-255 bytes, got "
-              + (digestData != null ? digestData.length : "null"));
+              + (buffer != null ? length : "null"));
     }
 
-    setApduRequest(
-        new DtoAdapters.ApduRequestAdapter(
-            ApduUtil.build(cla, getCommandRef().getInstructionByte(), p1, p2, digestData, null)));
+    byte[] apdu = new byte[5 + length];
+    apdu[0] = cla;
+    apdu[1] = getCommandRef().getInstructionByte();
+    apdu[2] = p1;
+    apdu[3] = p2;
+    apdu[4] = (byte) length;
+    System.arraycopy(buffer, offset, apdu, 5, length);
+
+    setApduRequest(new DtoAdapters.ApduRequestAdapter(apdu));
   }
 
   /**
@@ -101,7 +121,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CommandException {
    * @since 2.0.1
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
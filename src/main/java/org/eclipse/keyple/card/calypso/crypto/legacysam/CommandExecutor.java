@@ -12,7 +12,10 @@
 package org.eclipse.keyple.card.calypso.crypto.legacysam;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import org.eclipse.keyple.core.util.HexUtil;
 import org.eclipse.keypop.calypso.crypto.legacysam.transaction.InconsistentDataException;
 import org.eclipse.keypop.card.*;
@@ -40,6 +43,11 @@ private CommandExecutor() {}
    * Requests the execution of all commands provided by the SAM inserted in the supplied card reader
    * and finalizes any commands that require it.
    *
+   * <p>The control SAM commands needed to finalize the requests are grouped in as few control SAM
+   * card requests as possible: the target SAM commands are only transmitted before a command whose
+   * finalization uses a challenge of the target SAM, and the control SAM commands of the
+   * consecutive commands that do not are transmitted together.
+   *
    * @param commands A non-null list of {@link Command}.
    * @param channelControl The channel control.
    * @since 0.3.0
@@ -50,17 +58,152 @@ static void processCommands(
       return;
     }
     List<Command> cardRequestCommands = new ArrayList<>();
+    List<Command> controlSamPendingCommands = new ArrayList<>();
     for (Command command : commands) {
       if (command.isControlSamRequiredToFinalizeRequest()) {
-        executeCommands(cardRequestCommands, samReader, ChannelControl.KEEP_OPEN);
-        cardRequestCommands.clear();
+        if (command.isTargetSamChallengeRequiredToFinalizeRequest()) {
+          // The challenge is obtained by the target SAM commands waiting to be transmitted
+          finalizeRequestsWithControlSam(controlSamPendingCommands);
+          if (!cardRequestCommands.isEmpty()) {
+            executeCommands(cardRequestCommands, samReader, ChannelControl.KEEP_OPEN);
+            cardRequestCommands.clear();
+          }
+        }
+        command.prepareControlSamCommands();
+        controlSamPendingCommands.add(command);
+      } else {
+        command.finalizeRequest();
       }
-      command.finalizeRequest();
       cardRequestCommands.add(command);
     }
+    finalizeRequestsWithControlSam(controlSamPendingCommands);
     executeCommands(cardRequestCommands, samReader, channelControl);
   }
 
+  /**
+   * Finalizes the requests of all provided commands without transmitting them, grouping in a single
+   * control SAM card request the control SAM commands of the consecutive commands whose
+   * finalization does not use a challenge of the target SAM.
+   *
+   * @param commands A non-null list of {@link Command}.
+   * @since 1.1.0
+   */
+  static void finalizeRequests(List<? extends Command> commands) {
+    List<Command> controlSamPendingCommands = new ArrayList<>();
+    for (Command command : commands) {
+      if (command.isControlSamRequiredToFinalizeRequest()
+          && !command.isTargetSamChallengeRequiredToFinalizeRequest()) {
+        command.prepareControlSamCommands();
+        controlSamPendingCommands.add(command);
+      } else {
+        finalizeRequestsWithControlSam(controlSamPendingCommands);
+        command.finalizeRequest();
+      }
+    }
+    finalizeRequestsWithControlSam(controlSamPendingCommands);
+  }
+
+  /**
+   * Processes in a single control SAM card request the control SAM commands prepared by the
+   * provided commands, then finalizes their requests.
+   *
+   * <p>The "Select Diversifier" commands selecting the diversifier already selected in the control
+   * SAM are not transmitted.
+   *
+   * <p>The exchange lock of the control SAM is held from the check of the selected diversifier to
+   * the end of the exchange, the selected diversifier being part of its state. A control SAM can
+   * thus be shared by transactions processed concurrently in several threads: while the control SAM
+   * processes the card request of one transaction, the target SAMs of the others execute their
+   * commands.
+   *
+   * @param commands The commands whose control SAM commands are prepared, cleared on return.
+   */
+  private static void finalizeRequestsWithControlSam(List<Command> commands) {
+    if (commands.isEmpty()) {
+      return;
+    }
+    DtoAdapters.CommandContextDto context = commands.get(0).getContext();
+    LegacySamAdapter controlSam = context.getControlSam();
+    try {
+      synchronized (controlSam.getExchangeLock()) {
+        byte[] selectedDiversifier = controlSam.getSelectedDiversifier();
+        List<Command> controlSamCommands = new ArrayList<>();
+        for (Command command : commands) {
+          for (Command controlSamCommand : command.getControlSamCommands()) {
+            if (controlSamCommand instanceof CommandSelectDiversifier) {
+              byte[] diversifier = ((CommandSelectDiversifier) controlSamCommand).getDiversifier();
+              if (Arrays.equals(diversifier, selectedDiversifier)) {
+                continue;
+              }
+              selectedDiversifier = diversifier;
+            }
+            controlSamCommands.add(controlSamCommand);
+          }
+        }
+        processCommands(
+            controlSamCommands, context.getControlSamReader(), ChannelControl.KEEP_OPEN);
+      }
+    } finally {
+      for (Command command : commands) {
+        command.getControlSamCommands().clear();
+      }
+    }
+    for (Command command : commands) {
+      command.finalizeRequestWithControlSamResults();
+    }
+    commands.clear();
+  }
+
+  /**
+   * Requests, on the provided executor, the execution of all commands provided by the SAM inserted
+   * in the supplied card reader and finalizes any commands that require it.
+   *
+   * @param commands A non-null list of {@link Command}, which must no longer be modified.
+   * @param channelControl The channel control.
+   * @param executor The executor.
+   * @return A future completed when the commands have been processed.
+   * @since 1.1.0
+   */
+  static CompletableFuture<Void> processCommandsAsync(
+      final List<? extends Command> commands,
+      final ProxyReaderApi samReader,
+      final ChannelControl channelControl,
+      Executor executor) {
+    return CompletableFuture.runAsync(
+        new Runnable() {
+          @Override
+          public void run() {
+            processCommands(commands, samReader, channelControl);
+          }
+        },
+        executor);
+  }
+
+  /**
+   * Requests, on the provided executor, the execution of all commands provided by the SAM inserted
+   * in the supplied card reader without finalizing it.
+   *
+   * @param commands A non-null list of {@link Command}, which must no longer be modified.
+   * @param channelControl The channel control.
+   * @param executor The executor.
+   * @return A future completed when the commands have been processed.
+   * @since 1.1.0
+   */
+  static CompletableFuture<Void> processCommandsAlreadyFinalizedAsync(
+      final List<? extends Command> commands,
+      final ProxyReaderApi samReader,
+      final ChannelControl channelControl,
+      Executor executor) {
+    return CompletableFuture.runAsync(
+        new Runnable() {
+          @Override
+          public void run() {
+            processCommandsAlreadyFinalized(commands, samReader, channelControl);
+          }
+        },
+        executor);
+  }
+
   /**
    * Requests the execution of all commands provided by the SAM inserted in the supplied card reader
    * without finalizing it.
@@ -89,8 +232,20 @@ private static void executeCommands(
     List<ApduRequestSpi> apduRequests = getApduRequests(commands);
     // Wrap the list of C-APDUs into a card request
     CardRequestSpi cardRequest = new DtoAdapters.CardRequestAdapter(apduRequests, true);
-    // Transmit the commands to the card
-    CardResponseApi cardResponse = transmitCardRequest(cardRequest, samReader, channelControl);
+    LegacySamAdapter sam = commands.get(0).getContext().getTargetSam();
+    // Transmit the commands to the card, the SAM being possibly shared as control SAM
+    CardResponseApi cardResponse;
+    synchronized (sam.getExchangeLock()) {
+      try {
+        cardResponse = transmitCardRequest(cardRequest, samReader, channelControl);
+      } catch (ReaderCommunicationException | CardCommunicationException e) {
+        // The state of the SAM is unknown, a challenge obtained or a diversifier selected before
+        // can no longer be used
+        sam.invalidateChallenge();
+        sam.invalidateSelectedDiversifier();
+        throw e;
+      }
+    }
     // Retrieve the list of R-APDUs
     List<ApduResponseApi> apduResponses = cardResponse.getApduResponses();
     // If there are more responses than requests, then we are unable to fill the card image. In this
@@ -120,6 +275,12 @@ private static void executeCommands(
             e);
       }
     }
+    // A challenge obtained or a diversifier selected by this request is lost since the channel is
+    // closed
+    if (channelControl == ChannelControl.CLOSE_AFTER) {
+      sam.invalidateChallenge();
+      sam.invalidateSelectedDiversifier();
+    }
     // Finally, if no error has occurred and there are fewer responses than requests, then we
     // throw a desynchronized exception.
     if (apduResponses.size() < commands.size()) {
@@ -139,11 +300,12 @@ private static void executeCommands(
    * @since 0.3.0
    */
   private static List<ApduRequestSpi> getApduRequests(List<? extends Command> commands) {
-    List<ApduRequestSpi> apduRequests = new ArrayList<>();
-    if (commands != null) {
-      for (Command command : commands) {
-        apduRequests.add(command.getApduRequest());
-      }
+    if (commands == null) {
+      return new ArrayList<>(0);
+    }
+    List<ApduRequestSpi> apduRequests = new ArrayList<>(commands.size());
+    for (Command command : commands) {
+      apduRequests.add(command.getApduRequest());
     }
     return apduRequests;
   }
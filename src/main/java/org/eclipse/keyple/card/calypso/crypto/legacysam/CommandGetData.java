@@ -15,7 +15,6 @@
 import static org.eclipse.keyple.card.calypso.crypto.legacysam.DtoAdapters.CommandContextDto;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.keyple.core.util.ApduUtil;
 import org.eclipse.keypop.calypso.crypto.legacysam.GetDataTag;
@@ -28,15 +27,15 @@
  */
 final class CommandGetData extends Command {
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(0x6700, new StatusProperties("Incorrect Le", IllegalParameterException.class));
     m.put(
         0x6A88,
         new StatusProperties("Data referenced by P1-P2 not available", DataAccessException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final LegacySamConstants.TagInfo tagInfo;
@@ -116,7 +115,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CommandException {
    * @since 0.6.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
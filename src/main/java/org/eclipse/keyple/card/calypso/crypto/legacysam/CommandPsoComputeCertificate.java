@@ -16,7 +16,6 @@
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.keyple.core.util.ApduUtil;
 import org.eclipse.keypop.calypso.crypto.legacysam.transaction.LegacyCardCertificateComputationData;
@@ -29,10 +28,10 @@
  */
 final class CommandPsoComputeCertificate extends Command {
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(0x6700, new StatusProperties("Incorrect Lc", IllegalParameterException.class));
     m.put(
         0x6900,
@@ -50,7 +49,7 @@ final class CommandPsoComputeCertificate extends Command {
         new StatusProperties(
             "Unknown incoming data object (incorrect tag)", DataAccessException.class));
     m.put(0x6B00, new StatusProperties("Incorrect P1 or P2", IllegalParameterException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final LegacyCardCertificateComputationDataAdapter data;
@@ -137,7 +136,7 @@ private byte[] generateCardPublicKeyData(LegacyCardCertificateComputationDataAda
    * @since 0.1.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 
@@ -14,7 +14,6 @@
 import static org.eclipse.keyple.card.calypso.crypto.legacysam.DtoAdapters.*;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.keyple.core.util.ApduUtil;
 import org.eclipse.keyple.core.util.ByteArrayUtil;
@@ -28,10 +27,10 @@
  */
 final class CommandPsoComputeSignature extends Command {
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(0x6700, new StatusProperties("Incorrect Lc", IllegalParameterException.class));
     m.put(
         0x6900,
@@ -48,7 +47,7 @@ final class CommandPsoComputeSignature extends Command {
         0x6A83,
         new StatusProperties("Record not found: signing key not found", DataAccessException.class));
     m.put(0x6B00, new StatusProperties("Incorrect P1 or P2", IllegalParameterException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final TraceableSignatureComputationDataAdapter data;
@@ -118,7 +117,7 @@ final class CommandPsoComputeSignature extends Command {
    * @since 0.1.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 
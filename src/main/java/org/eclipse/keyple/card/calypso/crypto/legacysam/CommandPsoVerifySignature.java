@@ -13,7 +13,6 @@
 
 import static org.eclipse.keyple.card.calypso.crypto.legacysam.DtoAdapters.*;
 
-import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.keyple.core.util.ApduUtil;
 import org.eclipse.keyple.core.util.ByteArrayUtil;
@@ -28,10 +27,10 @@
  */
 final class CommandPsoVerifySignature extends Command {
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(0x6700, new StatusProperties("Incorrect Lc", IllegalParameterException.class));
     m.put(
         0x6982,
@@ -40,7 +39,7 @@ final class CommandPsoVerifySignature extends Command {
     m.put(
         0x6985,
         new StatusProperties("Preconditions not satisfied", AccessForbiddenException.class));
-    m.put(0x6988, new StatusProperties("Incorrect signature", SecurityDataException.class));
+    m.put(0x6988, new StatusProperties("Incorrect signature", SecurityDataException.class, true));
     m.put(
         0x6A80,
         new StatusProperties(
@@ -49,7 +48,7 @@ final class CommandPsoVerifySignature extends Command {
         0x6A83,
         new StatusProperties("Record not found: signing key not found", DataAccessException.class));
     m.put(0x6B00, new StatusProperties("Incorrect P1 or P2", IllegalParameterException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final TraceableSignatureVerificationDataAdapter data;
@@ -123,7 +122,7 @@ final class CommandPsoVerifySignature extends Command {
    * @since 0.1.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 
@@ -154,12 +153,10 @@ boolean isControlSamRequiredToFinalizeRequest() {
    */
   @Override
   void parseResponse(ApduResponseApi apduResponse) throws CommandException {
-    try {
-      setResponseAndCheckStatus(apduResponse);
-      data.setSignatureValid(true);
-    } catch (SecurityDataException e) {
-      data.setSignatureValid(false);
-      throw new InvalidSignatureException("Invalid signature", e);
+    boolean isSignatureValid = setResponseAndCheckResult(apduResponse);
+    data.setSignatureValid(isSignatureValid);
+    if (!isSignatureValid) {
+      throw new InvalidSignatureException("Invalid signature");
     }
   }
 }
@@ -28,18 +28,18 @@ final class CommandReadCeilings extends Command {
 
   private final int ceilingFileRecordNumber;
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
   private static final int SW_DATA_NOT_SIGNED_WARNING = 0x6200;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(
         0x6900,
         new StatusProperties(
             "An event counter cannot be incremented", CounterOverflowException.class));
     m.put(0x6A00, new StatusProperties("Incorrect P1 or P2", IllegalParameterException.class));
     m.put(0x6200, new StatusProperties("Correct execution with warning: data not signed"));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   /**
@@ -71,7 +71,7 @@ cla, getCommandRef().getInstructionByte(), p1, p2, null, (byte) 0x00))
    * @since 0.1.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 
@@ -13,7 +13,6 @@
 
 import static org.eclipse.keyple.card.calypso.crypto.legacysam.DtoAdapters.*;
 
-import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.keyple.core.util.ApduUtil;
 import org.eclipse.keyple.core.util.ByteArrayUtil;
@@ -27,18 +26,18 @@
 final class CommandReadCounter extends Command {
 
   private final int counterFileRecordNumber;
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
   private static final int SW_DATA_NOT_SIGNED_WARNING = 0x6200;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(
         0x6900,
         new StatusProperties(
             "An event counter cannot be incremented", CounterOverflowException.class));
     m.put(0x6A00, new StatusProperties("Incorrect P2", IllegalParameterException.class));
     m.put(0x6200, new StatusProperties("Correct execution with warning: data not signed"));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   /**
@@ -78,7 +77,7 @@ int getCounterFileRecordNumber() {
    * @since 0.1.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 
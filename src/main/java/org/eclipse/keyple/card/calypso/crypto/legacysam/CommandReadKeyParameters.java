@@ -14,7 +14,6 @@
 import static org.eclipse.keyple.card.calypso.crypto.legacysam.DtoAdapters.*;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.keyple.core.util.ApduUtil;
 import org.eclipse.keypop.calypso.crypto.legacysam.SystemKeyType;
@@ -26,12 +25,12 @@
  * @since 0.3.0
  */
 final class CommandReadKeyParameters extends Command {
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
   private static final int SW_KEY_NOT_FOUND = 0x6A83;
   private static final int SW_DATA_NOT_SIGNED_WARNING = 0x6200;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(0x6700, new StatusProperties("Incorrect Lc", IllegalParameterException.class));
     m.put(
         0x6900,
@@ -42,12 +41,14 @@ final class CommandReadKeyParameters extends Command {
         0x6A83,
         new StatusProperties("Record not found: key to read not found", DataAccessException.class));
     m.put(0x6200, new StatusProperties("Correct execution with warning: data not signed"));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private SystemKeyType systemKeyType;
   private Short kifKvc;
   private int recordNumber;
+  private KeyParameterAdapter keyParameter;
+  private boolean isTargetSamUpdated = true;
 
   /**
    * Constructor
@@ -146,7 +147,7 @@ final class CommandReadKeyParameters extends Command {
    * @since 0.3.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 
@@ -160,6 +161,28 @@ void finalizeRequest() {
     /* nothing to do */
   }
 
+  /**
+   * Returns the key parameters read.
+   *
+   * @return Null if the command has not been processed or if the key was not found.
+   * @since 1.1.0
+   */
+  KeyParameterAdapter getKeyParameter() {
+    return keyParameter;
+  }
+
+  /**
+   * Leaves the data of the target SAM unchanged when the response is parsed, the key parameters
+   * read being only available through {@link #getKeyParameter()}.
+   *
+   * @return The current instance.
+   * @since 1.1.0
+   */
+  CommandReadKeyParameters disableTargetSamUpdate() {
+    isTargetSamUpdated = false;
+    return this;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -184,6 +207,10 @@ void parseResponse(ApduResponseApi apduResponse) throws CommandException {
     }
     KeyParameterAdapter keyParameterAdapter =
         new KeyParameterAdapter(Arrays.copyOfRange(apduResponse.getApdu(), 8, 21));
+    keyParameter = keyParameterAdapter;
+    if (!isTargetSamUpdated) {
+      return;
+    }
     LegacySamAdapter legacySamAdapter = getContext().getTargetSam();
     if (systemKeyType != null) {
       legacySamAdapter.setSystemKeyParameter(systemKeyType, keyParameterAdapter);
@@ -25,20 +25,23 @@
  */
 final class CommandReadParameters extends Command {
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
   private static final int SW_DATA_NOT_SIGNED_WARNING = 0x6200;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(
         0x6900,
         new StatusProperties(
             "An event counter cannot be incremented", CounterOverflowException.class));
     m.put(0x6A00, new StatusProperties("Incorrect P1 or P2", IllegalParameterException.class));
     m.put(0x6200, new StatusProperties("Correct execution with warning: data not signed"));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
+  private SamParametersAdapter samParameters;
+  private boolean isTargetSamUpdated = true;
+
   /**
    * Constructor
    *
@@ -66,7 +69,7 @@ cla, getCommandRef().getInstructionByte(), p1, p2, null, (byte) 0x00))
    * @since 0.9.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 
@@ -80,6 +83,28 @@ void finalizeRequest() {
     /* nothing to do */
   }
 
+  /**
+   * Returns the SAM parameters read.
+   *
+   * @return Null if the command has not been processed.
+   * @since 1.1.0
+   */
+  SamParametersAdapter getSamParameters() {
+    return samParameters;
+  }
+
+  /**
+   * Leaves the data of the target SAM unchanged when the response is parsed, the SAM parameters
+   * read being only available through {@link #getSamParameters()}.
+   *
+   * @return The current instance.
+   * @since 1.1.0
+   */
+  CommandReadParameters disableTargetSamUpdate() {
+    isTargetSamUpdated = false;
+    return this;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -100,6 +125,9 @@ void parseResponse(ApduResponseApi apduResponse) throws CommandException {
     setResponseAndCheckStatus(apduResponse);
     byte[] keyParameter = new byte[SAM_PARAMETERS_LENGTH];
     System.arraycopy(apduResponse.getApdu(), 8, keyParameter, 0, SAM_PARAMETERS_LENGTH);
-    getContext().getTargetSam().setSamParameters(new SamParametersAdapter(keyParameter));
+    samParameters = new SamParametersAdapter(keyParameter);
+    if (isTargetSamUpdated) {
+      getContext().getTargetSam().setSamParameters(samParameters);
+    }
   }
 }
@@ -13,7 +13,6 @@
 
 import static org.eclipse.keyple.card.calypso.crypto.legacysam.DtoAdapters.ApduRequestAdapter;
 
-import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.keyple.core.util.ApduUtil;
 import org.eclipse.keypop.card.ApduResponseApi;
@@ -28,10 +27,10 @@
  * @since 0.3.0
  */
 final class CommandSamDataCipher extends Command {
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(0x6700, new StatusProperties("Incorrect Lc", IllegalParameterException.class));
     m.put(
         0x6900,
@@ -51,7 +50,7 @@ final class CommandSamDataCipher extends Command {
         0x6A83,
         new StatusProperties(
             "Record not found: ciphering key not found", DataAccessException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final byte[] cipheredData = new byte[48];
@@ -104,7 +103,7 @@ final class CommandSamDataCipher extends Command {
    * @since 0.3.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 
@@ -13,7 +13,6 @@
 
 import static org.eclipse.keyple.card.calypso.crypto.legacysam.DtoAdapters.*;
 
-import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.keyple.core.util.ApduUtil;
 import org.eclipse.keypop.card.ApduResponseApi;
@@ -25,16 +24,18 @@
  */
 final class CommandSelectDiversifier extends Command {
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
+
+  private final byte[] diversifier;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(0x6700, new StatusProperties("Incorrect Lc", IllegalParameterException.class));
     m.put(
         0x6985,
         new StatusProperties(
             "Preconditions not satisfied: the SAM is locked", AccessForbiddenException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   /**
@@ -48,6 +49,8 @@ final class CommandSelectDiversifier extends Command {
 
     super(CommandRef.SELECT_DIVERSIFIER, 0, context);
 
+    this.diversifier = diversifier;
+
     // Format the diversifier on 4 or 8 bytes if needed.
     if (diversifier.length != 4 && diversifier.length != 8) {
       int newLength = diversifier.length < 4 ? 4 : 8;
@@ -67,6 +70,16 @@ final class CommandSelectDiversifier extends Command {
                 null)));
   }
 
+  /**
+   * Gets the key diversifier to select.
+   *
+   * @return A not null array.
+   * @since 1.1.0
+   */
+  byte[] getDiversifier() {
+    return diversifier;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -95,6 +108,7 @@ boolean isControlSamRequiredToFinalizeRequest() {
   @Override
   void parseResponse(ApduResponseApi apduResponse) throws CommandException {
     setResponseAndCheckStatus(apduResponse);
+    getContext().getTargetSam().setSelectedDiversifier(diversifier);
   }
 
   /**
@@ -103,7 +117,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CommandException {
    * @since 0.1.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
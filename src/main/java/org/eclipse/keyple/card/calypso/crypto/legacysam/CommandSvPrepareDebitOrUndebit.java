@@ -12,7 +12,6 @@
 package org.eclipse.keyple.card.calypso.crypto.legacysam;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.keyple.core.util.ApduUtil;
 import org.eclipse.keypop.calypso.crypto.symmetric.SvCommandSecurityDataApi;
@@ -25,10 +24,10 @@
  */
 final class CommandSvPrepareDebitOrUndebit extends Command {
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(0x6700, new StatusProperties("Incorrect Lc", IllegalParameterException.class));
     m.put(
         0x6985,
@@ -40,7 +39,7 @@ final class CommandSvPrepareDebitOrUndebit extends Command {
         0x6A83,
         new StatusProperties(
             "Record not found: ciphering key not found", DataAccessException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final SvCommandSecurityDataApi data;
@@ -125,7 +124,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CommandException {
    * @since 2.0.1
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
@@ -34,10 +34,11 @@ final class CommandWriteCeilings extends Command {
   private final transient Map<Integer, CounterIncrementAccess> // NOSONAR
       counterNumberToManualCounterIncrementAuthorizedMap = new HashMap<>();
   private final transient int counterFileRecordNumber; // NOSONAR
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private transient CommandSamDataCipher commandSamDataCipher; // NOSONAR
+  private static final StatusTable STATUS_TABLE;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(0x6700, new StatusProperties("Incorrect Lc", IllegalParameterException.class));
     m.put(
         0x6985,
@@ -68,7 +69,7 @@ final class CommandWriteCeilings extends Command {
         0x6A83,
         new StatusProperties(
             "Record not found: deciphering key not found", DataAccessException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   /**
@@ -200,7 +201,7 @@ int getCounterFileRecordNumber() {
    * @since 0.1.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 
@@ -211,6 +212,30 @@ Map<Integer, StatusProperties> getStatusTable() {
    */
   @Override
   void finalizeRequest() {
+    prepareControlSamCommands();
+    processControlSamCommand();
+    finalizeRequestWithControlSamResults();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>In static mode, the challenge is computed from the target SAM context.
+   *
+   * @since 1.1.0
+   */
+  @Override
+  boolean isTargetSamChallengeRequiredToFinalizeRequest() {
+    return targetSamContext == null;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  void prepareControlSamCommands() {
     CommandContextDto controlSamContext =
         new CommandContextDto(getContext().getControlSam(), null, null);
     // add commands
@@ -228,7 +253,7 @@ void finalizeRequest() {
     if (counterFileRecordNumber != -1) {
       computePlainData();
     }
-    CommandSamDataCipher commandSamDataCipher =
+    commandSamDataCipher =
         new CommandSamDataCipher(
             controlSamContext,
             counterFileRecordNumber,
@@ -237,7 +262,15 @@ void finalizeRequest() {
                 : CommandSamDataCipher.DataType.CEILINGS_FILE_RECORD,
             plainData);
     addControlSamCommand(commandSamDataCipher);
-    processControlSamCommand();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  void finalizeRequestWithControlSamResults() {
     final byte cla = (byte) 0x80;
     final byte inst = CommandRef.WRITE_CEILINGS.getInstructionByte();
     byte p1 =
@@ -300,5 +333,6 @@ boolean isControlSamRequiredToFinalizeRequest() {
   @Override
   void parseResponse(ApduResponseApi apduResponse) throws CommandException {
     setResponseAndCheckStatus(apduResponse);
+    getContext().getTargetSam().invalidateCounterCeilings();
   }
 }
@@ -14,7 +14,6 @@
 import static org.eclipse.keyple.card.calypso.crypto.legacysam.DtoAdapters.*;
 import static org.eclipse.keyple.card.calypso.crypto.legacysam.LegacySamConstants.RECORD_CHOSEN_BY_THE_SAM;
 
-import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.keyple.core.util.ApduUtil;
 import org.eclipse.keypop.calypso.crypto.legacysam.SystemKeyType;
@@ -27,10 +26,10 @@
  */
 final class CommandWriteKey extends Command {
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(0x6700, new StatusProperties("Incorrect Lc", IllegalParameterException.class));
     m.put(
         0x6900,
@@ -91,7 +90,7 @@ final class CommandWriteKey extends Command {
                 + "- Plain data and CAAD Transfer Control data present (Lc=50h).\n"
                 + "- Not a work key and CAAD Transfer Control data present (Lc=50h).",
             IncorrectInputDataException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final byte targetKeyReference;
@@ -104,6 +103,7 @@ final class CommandWriteKey extends Command {
   private byte cipheringKeyKvc;
   private byte[] writeKeyCommandData; // either ciphered or plain data block
   private byte[] arbitraryDiversifier;
+  private transient CommandSamGenerateKey commandSamGenerateKey; // NOSONAR
 
   /**
    * Constructor
@@ -246,7 +246,18 @@ public CommandWriteKey(CommandContextDto context, byte[] plainLockDataBlock) {
    */
   @Override
   void finalizeRequest() {
-    byte p1;
+    prepareControlSamCommands();
+    processControlSamCommand();
+    finalizeRequestWithControlSamResults();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  void prepareControlSamCommands() {
     if (writeKeyCommandData == null) {
       cipheringKeyKvc =
           getContext().getTargetSam().getSystemKeyParameter(cipheringKeyType).getKvc();
@@ -258,7 +269,7 @@ void finalizeRequest() {
       addControlSamCommand(new CommandSelectDiversifier(controlSamContext, diversifier));
       addControlSamCommand(
           new CommandGiveRandom(controlSamContext, getContext().getTargetSam().popChallenge()));
-      CommandSamGenerateKey commandSamGenerateKey =
+      commandSamGenerateKey =
           new CommandSamGenerateKey(
               controlSamContext,
               targetKeyReference,
@@ -269,8 +280,20 @@ void finalizeRequest() {
               isTransferredObjectDiversified,
               arbitraryDiversifier);
       addControlSamCommand(commandSamGenerateKey);
-      processControlSamCommand();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  void finalizeRequestWithControlSamResults() {
+    byte p1;
+    if (commandSamGenerateKey != null) {
       writeKeyCommandData = commandSamGenerateKey.getCipheredData();
+      commandSamGenerateKey = null;
       p1 = 0x00; // ciphered data mode
     } else {
       p1 = (byte) (0x80); // plain data mode
@@ -301,6 +324,12 @@ boolean isControlSamRequiredToFinalizeRequest() {
   @Override
   void parseResponse(ApduResponseApi apduResponse) throws CommandException {
     setResponseAndCheckStatus(apduResponse);
+    // The key parameters read before are no longer reliable
+    if (targetKeyReference == LegacySamConstants.TARGET_IS_SYSTEM_KEY_FILE) {
+      getContext().getTargetSam().invalidateSystemKeyParameters();
+    } else if (targetKeyReference != LegacySamConstants.TARGET_IS_LOCK_FILE) {
+      getContext().getTargetSam().invalidateWorkKeyParameters();
+    }
   }
 
   /**
@@ -309,7 +338,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CommandException {
    * @since 0.9.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 
@@ -14,7 +14,6 @@
 import static org.eclipse.keyple.card.calypso.crypto.legacysam.DtoAdapters.*;
 import static org.eclipse.keyple.card.calypso.crypto.legacysam.DtoAdapters.CommandContextDto;
 
-import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.keyple.core.util.ApduUtil;
 import org.eclipse.keypop.calypso.crypto.legacysam.SystemKeyType;
@@ -27,10 +26,10 @@
  */
 final class CommandWriteSamParameters extends Command {
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
-    Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
+    Map<Integer, StatusProperties> m = Command.STATUS_TABLE.toMap();
     m.put(0x6700, new StatusProperties("Incorrect Lc", IllegalParameterException.class));
     m.put(
         0x6985,
@@ -56,10 +55,11 @@ final class CommandWriteSamParameters extends Command {
         0x6A83,
         new StatusProperties(
             "Record not found: deciphering key not found", DataAccessException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final transient byte[] plainData = new byte[30]; // NOSONAR
+  private transient CommandSamDataCipher commandSamDataCipher; // NOSONAR
 
   /**
    * Constructor
@@ -80,7 +80,7 @@ final class CommandWriteSamParameters extends Command {
    * @since 0.9.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 
@@ -91,6 +91,18 @@ Map<Integer, StatusProperties> getStatusTable() {
    */
   @Override
   void finalizeRequest() {
+    prepareControlSamCommands();
+    processControlSamCommand();
+    finalizeRequestWithControlSamResults();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  void prepareControlSamCommands() {
     plainData[0] =
         getContext().getTargetSam().getSystemKeyParameter(SystemKeyType.PERSONALIZATION).getKvc();
     CommandContextDto controlSamContext =
@@ -101,11 +113,19 @@ void finalizeRequest() {
             controlSamContext, getContext().getTargetSam().getSerialNumber()));
     addControlSamCommand(
         new CommandGiveRandom(controlSamContext, getContext().getTargetSam().popChallenge()));
-    CommandSamDataCipher commandSamDataCipher =
+    commandSamDataCipher =
         new CommandSamDataCipher(
             controlSamContext, 0, CommandSamDataCipher.DataType.PARAMETERS_RECORD, plainData);
     addControlSamCommand(commandSamDataCipher);
-    processControlSamCommand();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  void finalizeRequestWithControlSamResults() {
     final byte cla = getContext().getTargetSam().getClassByte();
     final byte inst = CommandRef.WRITE_PARAMETERS.getInstructionByte();
     final byte p1 = LegacySamConstants.DYNAMIC_MODE_CIPHERING;
@@ -133,5 +153,6 @@ boolean isControlSamRequiredToFinalizeRequest() {
   @Override
   void parseResponse(ApduResponseApi apduResponse) throws CommandException {
     setResponseAndCheckStatus(apduResponse);
+    getContext().getTargetSam().invalidateSamParameters();
   }
 }
@@ -15,6 +15,9 @@
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.eclipse.keyple.core.util.Assert;
 import org.eclipse.keypop.card.*;
 import org.eclipse.keypop.reader.ChannelControl;
 
@@ -114,6 +117,50 @@ final void processTargetSamCommandsAlreadyFinalized(ChannelControl channelContro
     }
   }
 
+  /**
+   * Executes on the provided executor all previously added commands for the target SAM. If a
+   * command needs to be finalized, especially with the help of a control SAM, then it will be.
+   *
+   * <p>The added commands are handed over to the returned future and the list of added commands is
+   * cleared immediately.
+   *
+   * @param channelControl The channel control.
+   * @param executor The executor.
+   * @return A future completed when the commands have been processed.
+   * @throws IllegalArgumentException If channelControl or executor is null.
+   * @since 1.1.0
+   */
+  final CompletableFuture<Void> processTargetSamCommandsAsync(
+      ChannelControl channelControl, Executor executor) {
+    Assert.getInstance().notNull(channelControl, "channelControl").notNull(executor, "executor");
+    List<Command> commands = new ArrayList<>(targetSamCommands);
+    targetSamCommands.clear();
+    return CommandExecutor.processCommandsAsync(
+        commands, targetSamReader, channelControl, executor);
+  }
+
+  /**
+   * Executes on the provided executor all previously added commands for the target SAM when they
+   * are already finalized (in an asynchronous operation for example).
+   *
+   * <p>The added commands are handed over to the returned future and the list of added commands is
+   * cleared immediately.
+   *
+   * @param channelControl The channel control.
+   * @param executor The executor.
+   * @return A future completed when the commands have been processed.
+   * @throws IllegalArgumentException If channelControl or executor is null.
+   * @since 1.1.0
+   */
+  final CompletableFuture<Void> processTargetSamCommandsAlreadyFinalizedAsync(
+      ChannelControl channelControl, Executor executor) {
+    Assert.getInstance().notNull(channelControl, "channelControl").notNull(executor, "executor");
+    List<Command> commands = new ArrayList<>(targetSamCommands);
+    targetSamCommands.clear();
+    return CommandExecutor.processCommandsAlreadyFinalizedAsync(
+        commands, targetSamReader, channelControl, executor);
+  }
+
   /**
    * Executes all provided commands for the target SAM. If a command needs to be finalized,
    * especially with the help of a control SAM, then it will be.
@@ -36,4 +36,59 @@ public interface ContextSetting {
    * @since 0.4.0
    */
   ContextSetting setContactReaderPayloadCapacity(int payloadCapacity);
+
+  /**
+   * Enables the prefetch of the challenge of the next secure session.
+   *
+   * <p>When enabled, a "Get Challenge" command is appended to the SAM request transmitted to check
+   * the card session MAC, so that the next secure session can start without an additional SAM
+   * exchange. The prefetched challenge is discarded as soon as any other command is processed by
+   * the SAM, in which case a new challenge is requested at the start of the next session.
+   *
+   * <p>The prefetch is disabled by default.
+   *
+   * @return The current instance.
+   * @since 1.1.0
+   */
+  ContextSetting enableSessionChallengePrefetch();
+
+  /**
+   * Enables the reuse of the card transaction manager.
+   *
+   * <p>When enabled, the symmetric crypto card transaction manager factory creates a single card
+   * transaction manager per thread and re-arms it for each new card transaction requested by this
+   * thread (new card key diversifier, extended mode and audit data) instead of creating a new one,
+   * which reduces the memory allocations of each transaction.
+   *
+   * <p>The previous card transaction manager of a thread must therefore no longer be used once a
+   * new one has been requested from the factory by the same thread. The card transactions
+   * requested by different threads never share a card transaction manager.
+   *
+   * <p>The reuse is disabled by default.
+   *
+   * @return The current instance.
+   * @since 1.1.0
+   */
+  ContextSetting enableCardTransactionManagerReuse();
+
+  /**
+   * Defines the sink of the APDUs exchanged with the SAM during the card transactions.
+   *
+   * <p>By default, these APDUs are added to the transaction audit data list provided by the card
+   * library, which grows with the length of the transaction. Once a sink is defined, the APDUs are
+   * only recorded by this sink (e.g. {@link TransactionAuditSinks#ringBuffer(int)} to bound the
+   * memory used, {@link TransactionAuditSinks#disabled()} to record nothing).
+   *
+   * <p>Unless the sink is {@link TransactionAuditSinks#disabled()}, the APDUs of each card
+   * transaction are also retained until the end of the card transaction, so that the audit data
+   * included in the messages of the exceptions are made of the APDUs of the failed card transaction
+   * only, whatever the sink retains. The messages of the exceptions contain no audit data when the
+   * sink is disabled.
+   *
+   * @param transactionAuditSink The sink to use.
+   * @return The current instance.
+   * @throws IllegalArgumentException If transactionAuditSink is null.
+   * @since 1.1.0
+   */
+  ContextSetting setTransactionAuditSink(TransactionAuditSink transactionAuditSink);
 }
@@ -21,6 +21,9 @@
 final class ContextSettingAdapter implements ContextSetting {
 
   private Integer contactReaderPayloadCapacity;
+  private boolean isSessionChallengePrefetchEnabled;
+  private boolean isCardTransactionManagerReuseEnabled;
+  private TransactionAuditSink transactionAuditSink;
 
   /**
    * {@inheritDoc}
@@ -43,4 +46,69 @@ public ContextSetting setContactReaderPayloadCapacity(int payloadCapacity) {
   Integer getContactReaderPayloadCapacity() {
     return contactReaderPayloadCapacity;
   }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  public ContextSetting enableSessionChallengePrefetch() {
+    isSessionChallengePrefetchEnabled = true;
+    return this;
+  }
+
+  /**
+   * Indicates whether the challenge of the next secure session must be prefetched.
+   *
+   * @return True if the prefetch is enabled.
+   * @since 1.1.0
+   */
+  boolean isSessionChallengePrefetchEnabled() {
+    return isSessionChallengePrefetchEnabled;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  public ContextSetting enableCardTransactionManagerReuse() {
+    isCardTransactionManagerReuseEnabled = true;
+    return this;
+  }
+
+  /**
+   * Indicates whether the card transaction manager must be reused by the successive card
+   * transactions.
+   *
+   * @return True if the reuse is enabled.
+   * @since 1.1.0
+   */
+  boolean isCardTransactionManagerReuseEnabled() {
+    return isCardTransactionManagerReuseEnabled;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  public ContextSetting setTransactionAuditSink(TransactionAuditSink transactionAuditSink) {
+    Assert.getInstance().notNull(transactionAuditSink, "transactionAuditSink");
+    this.transactionAuditSink = transactionAuditSink;
+    return this;
+  }
+
+  /**
+   * Returns the sink of the transaction audit data.
+   *
+   * @return null if no sink has been defined.
+   * @since 1.1.0
+   */
+  TransactionAuditSink getTransactionAuditSink() {
+    return transactionAuditSink;
+  }
 }
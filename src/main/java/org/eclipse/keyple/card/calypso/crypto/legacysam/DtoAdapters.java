@@ -16,6 +16,7 @@
 import org.eclipse.keyple.core.util.Assert;
 import org.eclipse.keyple.core.util.HexUtil;
 import org.eclipse.keyple.core.util.json.JsonUtil;
+import org.eclipse.keypop.calypso.crypto.legacysam.CounterIncrementAccess;
 import org.eclipse.keypop.calypso.crypto.legacysam.SystemKeyType;
 import org.eclipse.keypop.calypso.crypto.legacysam.spi.LegacySamRevocationServiceSpi;
 import org.eclipse.keypop.calypso.crypto.legacysam.transaction.*;
@@ -481,10 +482,26 @@ boolean isBusyMode() {
   static final class ApduRequestAdapter implements ApduRequestSpi {
 
     private static final int DEFAULT_SUCCESSFUL_CODE = 0x9000;
+    private static final int SW_DATA_NOT_SIGNED_WARNING = 0x6200;
+    private static final int SW_NOT_LOCKED = 0x6985;
+    private static final int SW_KEY_NOT_FOUND = 0x6A83;
+    // Canonical immutable instances of the successful status words sets used by the commands,
+    // shared by all the APDUs.
+    private static final Set<Integer> DEFAULT_SUCCESSFUL_STATUS_WORDS =
+        Collections.singleton(DEFAULT_SUCCESSFUL_CODE);
+    private static final Set<Integer> SW_9000_6200 =
+        createStatusWords(DEFAULT_SUCCESSFUL_CODE, SW_DATA_NOT_SIGNED_WARNING);
+    private static final Set<Integer> SW_9000_6985 =
+        createStatusWords(DEFAULT_SUCCESSFUL_CODE, SW_NOT_LOCKED);
+    private static final Set<Integer> SW_9000_6A83 =
+        createStatusWords(DEFAULT_SUCCESSFUL_CODE, SW_KEY_NOT_FOUND);
+    private static final Set<Integer> SW_9000_6200_6A83 =
+        createStatusWords(DEFAULT_SUCCESSFUL_CODE, SW_DATA_NOT_SIGNED_WARNING, SW_KEY_NOT_FOUND);
 
     private final byte[] apdu;
-    private final Set<Integer> successfulStatusWords;
+    private Set<Integer> successfulStatusWords;
     private String info;
+    private String subInfo;
 
     /**
      * Builds an APDU request from a raw byte buffer.
@@ -496,8 +513,7 @@ static final class ApduRequestAdapter implements ApduRequestSpi {
      */
     ApduRequestAdapter(byte[] apdu) {
       this.apdu = apdu;
-      successfulStatusWords = new HashSet<>();
-      successfulStatusWords.add(DEFAULT_SUCCESSFUL_CODE);
+      successfulStatusWords = DEFAULT_SUCCESSFUL_STATUS_WORDS;
     }
 
     /**
@@ -505,15 +521,58 @@ static final class ApduRequestAdapter implements ApduRequestSpi {
      *
      * <p>Note: initially, the list contains the standard successful status word {@code 9000h}.
      *
+     * <p>The sets of status words are immutable, and the sets used by the commands of the library
+     * are static instances shared between all the APDUs.
+     *
      * @param successfulStatusWord A positive int &le; {@code FFFFh}.
      * @return The object instance.
      * @since 0.1.0
      */
     ApduRequestAdapter addSuccessfulStatusWord(int successfulStatusWord) {
-      successfulStatusWords.add(successfulStatusWord);
+      if (!successfulStatusWords.contains(successfulStatusWord)) {
+        successfulStatusWords = getStatusWords(successfulStatusWords, successfulStatusWord);
+      }
       return this;
     }
 
+    /**
+     * Returns the set made of the provided set and the provided status word.
+     *
+     * @param statusWords The current set (one of the canonical sets for the library commands).
+     * @param statusWord The status word to add, not contained in the current set.
+     * @return A not null immutable set, canonical for the combinations used by the commands.
+     */
+    private static Set<Integer> getStatusWords(Set<Integer> statusWords, int statusWord) {
+      if (statusWords == DEFAULT_SUCCESSFUL_STATUS_WORDS) {
+        switch (statusWord) {
+          case SW_DATA_NOT_SIGNED_WARNING:
+            return SW_9000_6200;
+          case SW_NOT_LOCKED:
+            return SW_9000_6985;
+          case SW_KEY_NOT_FOUND:
+            return SW_9000_6A83;
+          default:
+        }
+      } else if ((statusWords == SW_9000_6200 && statusWord == SW_KEY_NOT_FOUND)
+          || (statusWords == SW_9000_6A83 && statusWord == SW_DATA_NOT_SIGNED_WARNING)) {
+        return SW_9000_6200_6A83;
+      }
+      // Combination not used by the commands of the library
+      Integer[] values = statusWords.toArray(new Integer[statusWords.size() + 1]);
+      values[values.length - 1] = statusWord;
+      return createStatusWords(values);
+    }
+
+    /**
+     * Creates an immutable set of status words.
+     *
+     * @param statusWords The status words.
+     * @return A not null immutable set.
+     */
+    private static Set<Integer> createStatusWords(Integer... statusWords) {
+      return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(statusWords)));
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -536,6 +595,22 @@ public Set<Integer> getSuccessfulStatusWords() {
      */
     ApduRequestAdapter setInfo(String info) {
       this.info = info;
+      subInfo = null;
+      return this;
+    }
+
+    /**
+     * Appends a string to the name of the APDU request.
+     *
+     * <p>The complete name ({@code info - subInfo}) is only built on the first call to {@link
+     * #getInfo()}.
+     *
+     * @param subInfo The string to append (free text).
+     * @return The object instance.
+     * @since 1.1.0
+     */
+    ApduRequestAdapter addSubInfo(String subInfo) {
+      this.subInfo = this.subInfo == null ? subInfo : this.subInfo + " - " + subInfo;
       return this;
     }
 
@@ -546,6 +621,10 @@ ApduRequestAdapter setInfo(String info) {
      */
     @Override
     public String getInfo() {
+      if (subInfo != null) {
+        info = info + " - " + subInfo;
+        subInfo = null;
+      }
       return info;
     }
 
@@ -573,7 +652,7 @@ public String toString() {
           + ", successfulStatusWords="
           + JsonUtil.toJson(successfulStatusWords)
           + ", info='"
-          + info
+          + getInfo()
           + '\''
           + '}';
     }
@@ -784,6 +863,219 @@ Map<Integer, Integer> getCounterNumberToCounterValueMap() {
     }
   }
 
+  /**
+   * This POJO contains the snapshot of the data read from a SAM, used to restore them without
+   * reading them again when the SAM is selected again.
+   *
+   * <p>The data known to have been modified in the SAM since they were read are listed as stale.
+   *
+   * @since 1.1.0
+   */
+  static final class SamSnapshotDto {
+
+    static final int VERSION = 1;
+
+    private final int version;
+    private final String powerOnData;
+    private final byte[] serialNumber;
+    private byte[] samParameters;
+    private boolean isSamParametersStale;
+    private final Map<SystemKeyType, byte[]> systemKeyParameters =
+        //  enummap is not suitable for the gson serializer
+        new HashMap<>(4); // NOSONAR
+    private final Map<Integer, byte[]> workKeyParametersByRecordNumber = new HashMap<>();
+    private final Map<Short, byte[]> workKeyParametersByKifKvc = new HashMap<>();
+    private final Set<Integer> counterNumbers = new HashSet<>();
+    private final Map<Integer, Integer> counterCeilings = new HashMap<>();
+    private final Map<Integer, CounterIncrementAccess> counterIncrementConfiguration =
+        new HashMap<>();
+    private byte[] caCertificate;
+    private final Set<SystemKeyType> staleSystemKeyTypes = new HashSet<>(4); // NOSONAR
+    private final Set<Integer> staleWorkKeyRecordNumbers = new HashSet<>();
+    private final Set<Short> staleWorkKeyKifKvcs = new HashSet<>();
+    private final Set<Integer> staleCounterCeilingRecordNumbers = new HashSet<>(3);
+
+    /**
+     * Constructs a new instance of the current version for the SAM identified by its ATR and
+     * serial number.
+     *
+     * @param powerOnData The ATR of the SAM.
+     * @param serialNumber The serial number of the SAM.
+     * @since 1.1.0
+     */
+    SamSnapshotDto(String powerOnData, byte[] serialNumber) {
+      this.version = VERSION;
+      this.powerOnData = powerOnData;
+      this.serialNumber = serialNumber;
+    }
+
+    /**
+     * Indicates whether the snapshot has the current version and all its collections, which may
+     * not be the case of a snapshot parsed from an altered JSON string.
+     *
+     * @return True if the snapshot can be restored.
+     * @since 1.1.0
+     */
+    boolean isComplete() {
+      return version == VERSION
+          && powerOnData != null
+          && serialNumber != null
+          && systemKeyParameters != null
+          && workKeyParametersByRecordNumber != null
+          && workKeyParametersByKifKvc != null
+          && counterNumbers != null
+          && counterCeilings != null
+          && counterIncrementConfiguration != null
+          && staleSystemKeyTypes != null
+          && staleWorkKeyRecordNumbers != null
+          && staleWorkKeyKifKvcs != null
+          && staleCounterCeilingRecordNumbers != null;
+    }
+
+    /**
+     * @return The ATR of the SAM.
+     * @since 1.1.0
+     */
+    String getPowerOnData() {
+      return powerOnData;
+    }
+
+    /**
+     * @return The serial number of the SAM.
+     * @since 1.1.0
+     */
+    byte[] getSerialNumber() {
+      return serialNumber;
+    }
+
+    /**
+     * @return The SAM parameters, null if they were not read.
+     * @since 1.1.0
+     */
+    byte[] getSamParameters() {
+      return samParameters;
+    }
+
+    /**
+     * Sets the SAM parameters.
+     *
+     * @param samParameters The SAM parameters, null if they were not read.
+     * @param isStale True if the SAM parameters were modified since they were read.
+     * @since 1.1.0
+     */
+    void setSamParameters(byte[] samParameters, boolean isStale) {
+      this.samParameters = samParameters;
+      this.isSamParametersStale = isStale;
+    }
+
+    /**
+     * @return True if the SAM parameters were modified since they were read.
+     * @since 1.1.0
+     */
+    boolean isSamParametersStale() {
+      return isSamParametersStale;
+    }
+
+    /**
+     * @return The raw system key parameters by system key type.
+     * @since 1.1.0
+     */
+    Map<SystemKeyType, byte[]> getSystemKeyParameters() {
+      return systemKeyParameters;
+    }
+
+    /**
+     * @return The raw work key parameters by record number.
+     * @since 1.1.0
+     */
+    Map<Integer, byte[]> getWorkKeyParametersByRecordNumber() {
+      return workKeyParametersByRecordNumber;
+    }
+
+    /**
+     * @return The raw work key parameters by KIF/KVC.
+     * @since 1.1.0
+     */
+    Map<Short, byte[]> getWorkKeyParametersByKifKvc() {
+      return workKeyParametersByKifKvc;
+    }
+
+    /**
+     * @return The numbers of the counters read from the SAM, without their values which are
+     *     incremented by the SAM operations.
+     * @since 1.1.0
+     */
+    Set<Integer> getCounterNumbers() {
+      return counterNumbers;
+    }
+
+    /**
+     * @return The counter ceilings by counter number.
+     * @since 1.1.0
+     */
+    Map<Integer, Integer> getCounterCeilings() {
+      return counterCeilings;
+    }
+
+    /**
+     * @return The counter increment configurations by counter number.
+     * @since 1.1.0
+     */
+    Map<Integer, CounterIncrementAccess> getCounterIncrementConfiguration() {
+      return counterIncrementConfiguration;
+    }
+
+    /**
+     * @return The CA certificate, null if it was not read.
+     * @since 1.1.0
+     */
+    byte[] getCaCertificate() {
+      return caCertificate;
+    }
+
+    /**
+     * Sets the CA certificate.
+     *
+     * @param caCertificate The CA certificate, null if it was not read.
+     * @since 1.1.0
+     */
+    void setCaCertificate(byte[] caCertificate) {
+      this.caCertificate = caCertificate;
+    }
+
+    /**
+     * @return The types of the system keys modified since their parameters were read.
+     * @since 1.1.0
+     */
+    Set<SystemKeyType> getStaleSystemKeyTypes() {
+      return staleSystemKeyTypes;
+    }
+
+    /**
+     * @return The record numbers of the work keys possibly modified since they were read.
+     * @since 1.1.0
+     */
+    Set<Integer> getStaleWorkKeyRecordNumbers() {
+      return staleWorkKeyRecordNumbers;
+    }
+
+    /**
+     * @return The KIF/KVC of the work keys possibly modified since they were read.
+     * @since 1.1.0
+     */
+    Set<Short> getStaleWorkKeyKifKvcs() {
+      return staleWorkKeyKifKvcs;
+    }
+
+    /**
+     * @return The numbers of the ceiling file records modified since they were read.
+     * @since 1.1.0
+     */
+    Set<Integer> getStaleCounterCeilingRecordNumbers() {
+      return staleCounterCeilingRecordNumbers;
+    }
+  }
+
   /**
    * This POJO contains the command context for a SAM transaction and its related SAM commands.
    *
@@ -15,7 +15,11 @@
 import static org.eclipse.keyple.card.calypso.crypto.legacysam.LegacySamConstants.MAX_KEY_RECORD_NUMBER;
 import static org.eclipse.keyple.card.calypso.crypto.legacysam.LegacySamConstants.MIN_KEY_RECORD_NUMBER;
 
+import com.google.gson.JsonParseException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import org.eclipse.keyple.core.util.Assert;
 import org.eclipse.keyple.core.util.ByteArrayUtil;
 import org.eclipse.keyple.core.util.HexUtil;
@@ -35,7 +39,9 @@
  * @since 0.1.0
  */
 final class FreeTransactionManagerAdapter extends CommonTransactionManagerAdapter
-    implements FreeTransactionManager {
+    implements FreeTransactionManager,
+        AsyncCommandProcessing<FreeTransactionManager>,
+        TargetSamSnapshotManagement<FreeTransactionManager> {
   private static final String MSG_INPUT_OUTPUT_DATA = "input/output data";
   private static final String MSG_SIGNATURE_SIZE = "signature size";
   private static final String MSG_KEY_DIVERSIFIER_SIZE_IS_IN_RANGE_1_8 =
@@ -45,6 +51,7 @@ final class FreeTransactionManagerAdapter extends CommonTransactionManagerAdapte
   private final byte[] samKeyDiversifier;
 
   /* Dynamic fields */
+  // Diversifier of a prepared "Select Diversifier" not yet processed by the SAM.
   private byte[] currentKeyDiversifier;
 
   /**
@@ -555,7 +562,183 @@ public FreeTransactionManagerAdapter processCommands() {
    */
   @Override
   public FreeTransactionManagerAdapter processCommands(ChannelControl channelControl) {
-    processTargetSamCommands(channelControl);
+    try {
+      processTargetSamCommands(channelControl);
+    } finally {
+      // From now on, the selected diversifier is tracked by the SAM
+      currentKeyDiversifier = null;
+    }
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  public CompletableFuture<FreeTransactionManager> processCommandsAsync(
+      ChannelControl channelControl, Executor executor) {
+    CompletableFuture<Void> future = processTargetSamCommandsAsync(channelControl, executor);
+    // From now on, the selected diversifier is tracked by the SAM
+    currentKeyDiversifier = null;
+    return future.thenApply(
+        new Function<Void, FreeTransactionManager>() {
+          @Override
+          public FreeTransactionManager apply(Void unused) {
+            return FreeTransactionManagerAdapter.this;
+          }
+        });
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  public String exportTargetSamSnapshot() {
+    return JsonUtil.toJson(getContext().getTargetSam().exportSnapshot());
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  public boolean importTargetSamSnapshot(String snapshot) {
+    Assert.getInstance().notEmpty(snapshot, "snapshot");
+    SamSnapshotDto samSnapshot;
+    try {
+      samSnapshot = JsonUtil.getParser().fromJson(snapshot, SamSnapshotDto.class);
+    } catch (JsonParseException e) {
+      return false;
+    }
+    LegacySamAdapter targetSam = getContext().getTargetSam();
+    return samSnapshot != null
+        && targetSam.isSnapshotCompatible(samSnapshot)
+        && isSnapshotConfirmedByTargetSam(samSnapshot)
+        && targetSam.importSnapshot(samSnapshot);
+  }
+
+  /**
+   * Reads again from the target SAM one of the records of the snapshot which is not stale and
+   * checks that it is unchanged.
+   *
+   * <p>The record read is not stored in the target SAM data. The snapshot is not confirmed if it
+   * does not contain any such record.
+   *
+   * @param samSnapshot The snapshot.
+   * @return True if the record read is identical to the one of the snapshot.
+   * @since 1.1.0
+   */
+  private boolean isSnapshotConfirmedByTargetSam(SamSnapshotDto samSnapshot) {
+    Command command = null;
+    byte[] expectedRawData = null;
+    for (Map.Entry<SystemKeyType, byte[]> entry :
+        samSnapshot.getSystemKeyParameters().entrySet()) {
+      if (!samSnapshot.getStaleSystemKeyTypes().contains(entry.getKey())) {
+        command =
+            new CommandReadKeyParameters(getContext(), entry.getKey()).disableTargetSamUpdate();
+        expectedRawData = entry.getValue();
+        break;
+      }
+    }
+    if (command == null) {
+      for (Map.Entry<Integer, byte[]> entry :
+          samSnapshot.getWorkKeyParametersByRecordNumber().entrySet()) {
+        if (!samSnapshot.getStaleWorkKeyRecordNumbers().contains(entry.getKey())) {
+          command =
+              new CommandReadKeyParameters(getContext(), entry.getKey().intValue())
+                  .disableTargetSamUpdate();
+          expectedRawData = entry.getValue();
+          break;
+        }
+      }
+    }
+    if (command == null) {
+      for (Map.Entry<Short, byte[]> entry : samSnapshot.getWorkKeyParametersByKifKvc().entrySet()) {
+        if (!samSnapshot.getStaleWorkKeyKifKvcs().contains(entry.getKey())) {
+          short kifKvc = entry.getKey();
+          command =
+              new CommandReadKeyParameters(getContext(), (byte) (kifKvc >> 8), (byte) kifKvc)
+                  .disableTargetSamUpdate();
+          expectedRawData = entry.getValue();
+          break;
+        }
+      }
+    }
+    if (command == null
+        && samSnapshot.getSamParameters() != null
+        && !samSnapshot.isSamParametersStale()) {
+      command = new CommandReadParameters(getContext()).disableTargetSamUpdate();
+      expectedRawData = samSnapshot.getSamParameters();
+    }
+    if (command == null) {
+      return false;
+    }
+    try {
+      processTargetSamCommands(Collections.singletonList(command));
+    } catch (InvalidCardResponseException e) {
+      return false;
+    }
+    return Arrays.equals(getRawDataRead(command), expectedRawData);
+  }
+
+  /**
+   * Returns the raw data of the record read by a "Read Key Parameters" or "Read Parameters"
+   * command.
+   *
+   * @param command The processed command.
+   * @return Null if the record has not been read.
+   * @since 1.1.0
+   */
+  private static byte[] getRawDataRead(Command command) {
+    if (command instanceof CommandReadKeyParameters) {
+      KeyParameterAdapter keyParameter = ((CommandReadKeyParameters) command).getKeyParameter();
+      return keyParameter != null ? keyParameter.getRawData() : null;
+    }
+    SamParametersAdapter samParameters = ((CommandReadParameters) command).getSamParameters();
+    return samParameters != null ? samParameters.getRawData() : null;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  public FreeTransactionManager prepareRefreshTargetSamSnapshot() {
+    LegacySamAdapter targetSam = getContext().getTargetSam();
+    if (targetSam.isSamParametersStale()) {
+      addTargetSamCommand(new CommandReadParameters(getContext()));
+    }
+    for (SystemKeyType systemKeyType : targetSam.getStaleSystemKeyTypes()) {
+      addTargetSamCommand(new CommandReadKeyParameters(getContext(), systemKeyType));
+    }
+    for (Integer recordNumber : targetSam.getStaleWorkKeyRecordNumbers()) {
+      addTargetSamCommand(new CommandReadKeyParameters(getContext(), recordNumber));
+    }
+    for (Short kifKvc : targetSam.getStaleWorkKeyKifKvcs()) {
+      addTargetSamCommand(
+          new CommandReadKeyParameters(getContext(), (byte) (kifKvc >> 8), kifKvc.byteValue()));
+    }
+    // The counters are incremented by the SAM operations, they are always read again, as well as
+    // the counters restored from a snapshot without value
+    Set<Integer> counterNumbers = new HashSet<>(targetSam.getCounters().keySet());
+    counterNumbers.addAll(targetSam.getUnknownCounterNumbers());
+    Set<Integer> counterFileRecordNumbers = new TreeSet<>();
+    for (Integer counterNumber : counterNumbers) {
+      counterFileRecordNumbers.add(LegacySamConstants.COUNTER_TO_RECORD_LOOKUP[counterNumber]);
+    }
+    for (Integer counterFileRecordNumber : counterFileRecordNumbers) {
+      addTargetSamCommand(new CommandReadCounter(getContext(), counterFileRecordNumber));
+    }
+    for (Integer ceilingFileRecordNumber :
+        new TreeSet<>(targetSam.getStaleCounterCeilingRecordNumbers())) {
+      addTargetSamCommand(new CommandReadCeilings(getContext(), ceilingFileRecordNumber));
+    }
     return this;
   }
 
@@ -568,7 +751,7 @@ public FreeTransactionManagerAdapter processCommands(ChannelControl channelContr
    */
   private void prepareSelectDiversifierIfNeeded(byte[] specificKeyDiversifier) {
     if (specificKeyDiversifier != null) {
-      if (!Arrays.equals(specificKeyDiversifier, currentKeyDiversifier)) {
+      if (!Arrays.equals(specificKeyDiversifier, getCurrentKeyDiversifier())) {
         currentKeyDiversifier = specificKeyDiversifier;
         prepareSelectDiversifier();
       }
@@ -584,12 +767,25 @@ private void prepareSelectDiversifierIfNeeded(byte[] specificKeyDiversifier) {
    * @since 0.1.0
    */
   private void prepareSelectDiversifierIfNeeded() {
-    if (!Arrays.equals(currentKeyDiversifier, samKeyDiversifier)) {
+    if (!Arrays.equals(getCurrentKeyDiversifier(), samKeyDiversifier)) {
       currentKeyDiversifier = samKeyDiversifier;
       prepareSelectDiversifier();
     }
   }
 
+  /**
+   * Returns the key diversifier of the pending "Select Diversifier" command if any, otherwise the
+   * one already selected in the SAM, possibly by a previous transaction.
+   *
+   * @return Null if unknown.
+   * @since 1.1.0
+   */
+  private byte[] getCurrentKeyDiversifier() {
+    return currentKeyDiversifier != null
+        ? currentKeyDiversifier
+        : getContext().getTargetSam().getSelectedDiversifier();
+  }
+
   /** Prepares a "SelectDiversifier" command using the current key diversifier. */
   private void prepareSelectDiversifier() {
     addTargetSamCommand(new CommandSelectDiversifier(getContext(), currentKeyDiversifier));
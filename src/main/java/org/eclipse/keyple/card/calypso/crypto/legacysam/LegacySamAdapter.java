@@ -11,9 +11,9 @@
  ************************************************************************************** */
 package org.eclipse.keyple.card.calypso.crypto.legacysam;
 
+import static org.eclipse.keyple.card.calypso.crypto.legacysam.DtoAdapters.SamSnapshotDto;
+
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import org.eclipse.keyple.core.util.HexUtil;
 import org.eclipse.keyple.core.util.json.JsonUtil;
 import org.eclipse.keypop.calypso.crypto.legacysam.CounterIncrementAccess;
@@ -34,6 +34,7 @@
 final class LegacySamAdapter implements LegacySam, SmartCardSpi {
 
   private static final Logger logger = LoggerFactory.getLogger(LegacySamAdapter.class);
+  private static final int ATR_HISTORICAL_BYTES_LENGTH = 10;
 
   private String powerOnData;
   private ProductType samProductType;
@@ -54,8 +55,17 @@ final class LegacySamAdapter implements LegacySam, SmartCardSpi {
       new HashMap<>();
   private final Map<Short, KeyParameterAdapter> workKeyParameterByKifKvcMap = new HashMap<>();
   private byte[] challenge;
+  private byte[] selectedDiversifier;
+  private final transient Object exchangeLock = new Object();
   private byte[] caCertificate;
   private SamParametersAdapter samParameters;
+  private transient boolean isSamParametersStale;
+  private final transient Set<SystemKeyType> staleSystemKeyTypes =
+      EnumSet.noneOf(SystemKeyType.class);
+  private final transient Set<Integer> staleWorkKeyRecordNumbers = new HashSet<>();
+  private final transient Set<Short> staleWorkKeyKifKvcs = new HashSet<>();
+  private final transient Set<Integer> staleCounterCeilingRecordNumbers = new HashSet<>(3);
+  private final transient Set<Integer> unknownCounterNumbers = new HashSet<>();
 
   /**
    * Constructor
@@ -101,12 +111,8 @@ void parseSelectionResponse(CardSelectionResponseApi cardSelectionResponse) {
 
     /* extract the historical bytes from T3 to T12 */
     // CL-SAM-ATR.1
-    String extractRegex = "3B(.{6}|.{10})805A(.{20})829000";
-    Pattern pattern = Pattern.compile(extractRegex); // NOSONAR: hex strings here, regex is safe
-    // to use
-    Matcher matcher = pattern.matcher(powerOnData);
-    if (matcher.find(0)) {
-      byte[] atrSubElements = HexUtil.toByteArray(matcher.group(2));
+    byte[] atrSubElements = extractAtrSubElements(powerOnData);
+    if (atrSubElements != null) {
       platform = atrSubElements[0];
       applicationType = atrSubElements[1];
       applicationSubType = atrSubElements[2];
@@ -163,6 +169,64 @@ void parseSelectionResponse(CardSelectionResponseApi cardSelectionResponse) {
     classByte = computeClassByte(samProductType);
   }
 
+  /**
+   * Extracts the 10 historical bytes T3 to T12 from the ATR of a legacy SAM.
+   *
+   * <p>The ATR is parsed at byte level: the first position where a TS byte {@code 3Bh}, followed by
+   * 3 or 5 interface bytes, introduces the {@code 805Ah} header, the 10 historical bytes and the
+   * {@code 829000h} trailer is retained, as the former {@code 3B(.{6}|.{10})805A(.{20})829000}
+   * regular expression did.
+   *
+   * @param powerOnData The ATR as a hex string.
+   * @return Null if the ATR is not a valid hex string or does not have the expected structure.
+   * @since 1.1.0
+   */
+  static byte[] extractAtrSubElements(String powerOnData) {
+    byte[] atr = toByteArrayOrNull(powerOnData);
+    if (atr == null) {
+      return null;
+    }
+    for (int ts = 0; ts < atr.length; ts++) {
+      if (atr[ts] != (byte) 0x3B) {
+        continue;
+      }
+      for (int interfaceBytesLength = 3; interfaceBytesLength <= 5; interfaceBytesLength += 2) {
+        int header = ts + 1 + interfaceBytesLength;
+        if (header + ATR_HISTORICAL_BYTES_LENGTH + 5 <= atr.length
+            && atr[header] == (byte) 0x80
+            && atr[header + 1] == (byte) 0x5A
+            && atr[header + 12] == (byte) 0x82
+            && atr[header + 13] == (byte) 0x90
+            && atr[header + 14] == (byte) 0x00) {
+          return Arrays.copyOfRange(atr, header + 2, header + 2 + ATR_HISTORICAL_BYTES_LENGTH);
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Converts a hex string to a byte array without throwing on malformed input.
+   *
+   * @param hex The hex string.
+   * @return Null if the string has an odd length or contains a non hex digit.
+   */
+  private static byte[] toByteArrayOrNull(String hex) {
+    if ((hex.length() & 1) != 0) {
+      return null;
+    }
+    byte[] bytes = new byte[hex.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      int high = Character.digit(hex.charAt(2 * i), 16);
+      int low = Character.digit(hex.charAt(2 * i + 1), 16);
+      if (high < 0 || low < 0) {
+        return null;
+      }
+      bytes[i] = (byte) ((high << 4) | low);
+    }
+    return bytes;
+  }
+
   private static byte computeClassByte(ProductType productType) {
     return productType == ProductType.SAM_S1DX ? (byte) 0x94 : (byte) 0x80;
   }
@@ -306,6 +370,7 @@ public byte getSoftwareRevision() {
    */
   void putCounterValue(int counterNumber, int value) {
     counters.put(counterNumber, value);
+    unknownCounterNumbers.remove(counterNumber);
   }
 
   /**
@@ -317,6 +382,8 @@ void putCounterValue(int counterNumber, int value) {
    */
   void putCounterCeilingValue(int counterNumber, int value) {
     counterCeilings.put(counterNumber, value);
+    staleCounterCeilingRecordNumbers.remove(
+        LegacySamConstants.COUNTER_TO_RECORD_LOOKUP[counterNumber]);
   }
 
   /**
@@ -409,6 +476,7 @@ public SamParameters getSamParameters() {
    */
   void setSamParameters(SamParametersAdapter samParameters) {
     this.samParameters = samParameters;
+    isSamParametersStale = false;
   }
 
   /**
@@ -420,6 +488,7 @@ void setSamParameters(SamParametersAdapter samParameters) {
    */
   void setSystemKeyParameter(SystemKeyType systemKeyType, KeyParameterAdapter keyParameter) {
     systemKeyParameterMap.put(systemKeyType, keyParameter);
+    staleSystemKeyTypes.remove(systemKeyType);
   }
 
   /**
@@ -441,6 +510,7 @@ public KeyParameter getSystemKeyParameter(SystemKeyType systemKeyType) {
    */
   void setWorkKeyParameter(int recordNumber, KeyParameterAdapter keyParameter) {
     workKeyParameterByRecordNumberMap.put(recordNumber, keyParameter);
+    staleWorkKeyRecordNumbers.remove(recordNumber);
   }
 
   /**
@@ -452,6 +522,7 @@ void setWorkKeyParameter(int recordNumber, KeyParameterAdapter keyParameter) {
    */
   void setWorkKeyParameter(Short kifKvc, KeyParameterAdapter keyParameter) {
     workKeyParameterByKifKvcMap.put(kifKvc, keyParameter);
+    staleWorkKeyKifKvcs.remove(kifKvc);
   }
 
   /**
@@ -506,6 +577,72 @@ byte[] popChallenge() {
     return res;
   }
 
+  /**
+   * Indicates whether a challenge obtained from the SAM is still available.
+   *
+   * @return True if a challenge has been obtained and has been neither consumed nor invalidated.
+   * @since 1.1.0
+   */
+  boolean isChallengeAvailable() {
+    return challenge != null;
+  }
+
+  /**
+   * Discards the current challenge, which can no longer be used to open a secure session (the SAM
+   * has processed another command, its channel has been closed or its state is unknown).
+   *
+   * @since 1.1.0
+   */
+  void invalidateChallenge() {
+    challenge = null;
+  }
+
+  /**
+   * Returns the key diversifier currently selected in the SAM by a successful "Select Diversifier"
+   * command.
+   *
+   * @return Null if no diversifier has been selected or if the selected one is unknown.
+   * @since 1.1.0
+   */
+  byte[] getSelectedDiversifier() {
+    return selectedDiversifier;
+  }
+
+  /**
+   * Sets the key diversifier selected in the SAM by a successful "Select Diversifier" command.
+   *
+   * @param selectedDiversifier The diversifier.
+   * @since 1.1.0
+   */
+  void setSelectedDiversifier(byte[] selectedDiversifier) {
+    this.selectedDiversifier = selectedDiversifier;
+  }
+
+  /**
+   * Forgets the selected key diversifier because the state of the SAM is no longer known (a command
+   * has failed, its channel has been closed or the communication has been lost).
+   *
+   * @since 1.1.0
+   */
+  void invalidateSelectedDiversifier() {
+    selectedDiversifier = null;
+  }
+
+  /**
+   * Returns the lock held during each exchange with the SAM.
+   *
+   * <p>A SAM used as control SAM may be shared by transactions processed concurrently in several
+   * threads. Its card requests are serialized on this private lock, rather than on the SAM itself
+   * which is reachable by the application, and the lock is also held while the selected diversifier
+   * is checked and the control SAM commands are transmitted.
+   *
+   * @return A not null reference.
+   * @since 1.1.0
+   */
+  Object getExchangeLock() {
+    return exchangeLock;
+  }
+
   /**
    * Sets the CA certificate retrieved from the SAM.
    *
@@ -515,4 +652,199 @@ byte[] popChallenge() {
   void setCaCertificate(byte[] caCertificate) {
     this.caCertificate = caCertificate;
   }
+
+  /**
+   * Marks the SAM parameters as modified in the SAM since they were read.
+   *
+   * @since 1.1.0
+   */
+  void invalidateSamParameters() {
+    isSamParametersStale = samParameters != null;
+  }
+
+  /**
+   * Marks the parameters of all the system keys read so far as modified in the SAM.
+   *
+   * @since 1.1.0
+   */
+  void invalidateSystemKeyParameters() {
+    staleSystemKeyTypes.addAll(systemKeyParameterMap.keySet());
+  }
+
+  /**
+   * Marks the parameters of all the work keys read so far as possibly modified in the SAM.
+   *
+   * <p>The record written by a "Write Key" command may be chosen by the SAM, so all of them are
+   * concerned.
+   *
+   * @since 1.1.0
+   */
+  void invalidateWorkKeyParameters() {
+    staleWorkKeyRecordNumbers.addAll(workKeyParameterByRecordNumberMap.keySet());
+    staleWorkKeyKifKvcs.addAll(workKeyParameterByKifKvcMap.keySet());
+  }
+
+  /**
+   * Marks the counter ceilings read so far as modified in the SAM.
+   *
+   * @since 1.1.0
+   */
+  void invalidateCounterCeilings() {
+    for (Integer counterNumber : counterCeilings.keySet()) {
+      staleCounterCeilingRecordNumbers.add(
+          LegacySamConstants.COUNTER_TO_RECORD_LOOKUP[counterNumber]);
+    }
+  }
+
+  /**
+   * @return True if the SAM parameters were modified in the SAM since they were read.
+   * @since 1.1.0
+   */
+  boolean isSamParametersStale() {
+    return isSamParametersStale;
+  }
+
+  /**
+   * @return The types of the system keys modified in the SAM since their parameters were read.
+   * @since 1.1.0
+   */
+  Set<SystemKeyType> getStaleSystemKeyTypes() {
+    return staleSystemKeyTypes;
+  }
+
+  /**
+   * @return The record numbers of the work keys possibly modified since they were read.
+   * @since 1.1.0
+   */
+  Set<Integer> getStaleWorkKeyRecordNumbers() {
+    return staleWorkKeyRecordNumbers;
+  }
+
+  /**
+   * @return The KIF/KVC of the work keys possibly modified since they were read.
+   * @since 1.1.0
+   */
+  Set<Short> getStaleWorkKeyKifKvcs() {
+    return staleWorkKeyKifKvcs;
+  }
+
+  /**
+   * @return The numbers of the ceiling file records modified in the SAM since they were read.
+   * @since 1.1.0
+   */
+  Set<Integer> getStaleCounterCeilingRecordNumbers() {
+    return staleCounterCeilingRecordNumbers;
+  }
+
+  /**
+   * @return The numbers of the counters restored from a snapshot and not read again since, whose
+   *     values are therefore unknown.
+   * @since 1.1.0
+   */
+  Set<Integer> getUnknownCounterNumbers() {
+    return unknownCounterNumbers;
+  }
+
+  /**
+   * Indicates whether a snapshot can be restored into this SAM, i.e. whether it is complete and was
+   * exported from a SAM having the same ATR and serial number, the ATR including the product type
+   * and the software version of the SAM.
+   *
+   * @param snapshot The snapshot.
+   * @return True if the snapshot can be restored.
+   * @since 1.1.0
+   */
+  boolean isSnapshotCompatible(SamSnapshotDto snapshot) {
+    return snapshot.isComplete()
+        && snapshot.getPowerOnData().equals(powerOnData)
+        && Arrays.equals(snapshot.getSerialNumber(), serialNumber);
+  }
+
+  /**
+   * Exports the data read from the SAM so far, including the list of the stale ones.
+   *
+   * @return A not null reference.
+   * @since 1.1.0
+   */
+  SamSnapshotDto exportSnapshot() {
+    SamSnapshotDto snapshot = new SamSnapshotDto(powerOnData, serialNumber);
+    snapshot.setSamParameters(
+        samParameters != null ? samParameters.getRawData() : null, isSamParametersStale);
+    for (Map.Entry<SystemKeyType, KeyParameterAdapter> entry : systemKeyParameterMap.entrySet()) {
+      snapshot.getSystemKeyParameters().put(entry.getKey(), entry.getValue().getRawData());
+    }
+    for (Map.Entry<Integer, KeyParameterAdapter> entry :
+        workKeyParameterByRecordNumberMap.entrySet()) {
+      snapshot
+          .getWorkKeyParametersByRecordNumber()
+          .put(entry.getKey(), entry.getValue().getRawData());
+    }
+    for (Map.Entry<Short, KeyParameterAdapter> entry : workKeyParameterByKifKvcMap.entrySet()) {
+      snapshot.getWorkKeyParametersByKifKvc().put(entry.getKey(), entry.getValue().getRawData());
+    }
+    snapshot.getCounterNumbers().addAll(counters.keySet());
+    snapshot.getCounterNumbers().addAll(unknownCounterNumbers);
+    snapshot.getCounterCeilings().putAll(counterCeilings);
+    snapshot.getCounterIncrementConfiguration().putAll(countersIncrementConfig);
+    snapshot.setCaCertificate(caCertificate);
+    snapshot.getStaleSystemKeyTypes().addAll(staleSystemKeyTypes);
+    snapshot.getStaleWorkKeyRecordNumbers().addAll(staleWorkKeyRecordNumbers);
+    snapshot.getStaleWorkKeyKifKvcs().addAll(staleWorkKeyKifKvcs);
+    snapshot.getStaleCounterCeilingRecordNumbers().addAll(staleCounterCeilingRecordNumbers);
+    return snapshot;
+  }
+
+  /**
+   * Restores the data of a snapshot previously exported from the same SAM, replacing the data read
+   * so far.
+   *
+   * <p>The snapshot is ignored if it is not compatible (see {@link
+   * #isSnapshotCompatible(SamSnapshotDto)}). The counters of the snapshot are restored without
+   * value, as unknown counters to be read again.
+   *
+   * @param snapshot The snapshot.
+   * @return True if the snapshot has been restored.
+   * @since 1.1.0
+   */
+  boolean importSnapshot(SamSnapshotDto snapshot) {
+    if (!isSnapshotCompatible(snapshot)) {
+      return false;
+    }
+    samParameters =
+        snapshot.getSamParameters() != null
+            ? new SamParametersAdapter(snapshot.getSamParameters())
+            : null;
+    isSamParametersStale = snapshot.isSamParametersStale();
+    systemKeyParameterMap.clear();
+    for (Map.Entry<SystemKeyType, byte[]> entry : snapshot.getSystemKeyParameters().entrySet()) {
+      systemKeyParameterMap.put(entry.getKey(), new KeyParameterAdapter(entry.getValue()));
+    }
+    workKeyParameterByRecordNumberMap.clear();
+    for (Map.Entry<Integer, byte[]> entry :
+        snapshot.getWorkKeyParametersByRecordNumber().entrySet()) {
+      workKeyParameterByRecordNumberMap.put(
+          entry.getKey(), new KeyParameterAdapter(entry.getValue()));
+    }
+    workKeyParameterByKifKvcMap.clear();
+    for (Map.Entry<Short, byte[]> entry : snapshot.getWorkKeyParametersByKifKvc().entrySet()) {
+      workKeyParameterByKifKvcMap.put(entry.getKey(), new KeyParameterAdapter(entry.getValue()));
+    }
+    counters.clear();
+    unknownCounterNumbers.clear();
+    unknownCounterNumbers.addAll(snapshot.getCounterNumbers());
+    counterCeilings.clear();
+    counterCeilings.putAll(snapshot.getCounterCeilings());
+    countersIncrementConfig.clear();
+    countersIncrementConfig.putAll(snapshot.getCounterIncrementConfiguration());
+    caCertificate = snapshot.getCaCertificate();
+    staleSystemKeyTypes.clear();
+    staleSystemKeyTypes.addAll(snapshot.getStaleSystemKeyTypes());
+    staleWorkKeyRecordNumbers.clear();
+    staleWorkKeyRecordNumbers.addAll(snapshot.getStaleWorkKeyRecordNumbers());
+    staleWorkKeyKifKvcs.clear();
+    staleWorkKeyKifKvcs.addAll(snapshot.getStaleWorkKeyKifKvcs());
+    staleCounterCeilingRecordNumbers.clear();
+    staleCounterCeilingRecordNumbers.addAll(snapshot.getStaleCounterCeilingRecordNumbers());
+    return true;
+  }
 }
@@ -11,13 +11,26 @@
  ************************************************************************************** */
 package org.eclipse.keyple.card.calypso.crypto.legacysam;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 import org.eclipse.keyple.core.common.CommonApiProperties;
 import org.eclipse.keyple.core.common.KeypleCardExtension;
 import org.eclipse.keyple.core.service.resource.spi.CardResourceProfileExtension;
 import org.eclipse.keyple.core.util.Assert;
 import org.eclipse.keypop.calypso.crypto.legacysam.LegacySamApiFactory;
 import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySamSelectionExtension;
+import org.eclipse.keypop.calypso.crypto.legacysam.transaction.AsyncTransactionExecutorManager;
+import org.eclipse.keypop.calypso.crypto.legacysam.transaction.FreeTransactionManager;
+import org.eclipse.keypop.calypso.crypto.legacysam.transaction.SecureWriteTransactionManager;
 import org.eclipse.keypop.card.CardApiProperties;
+import org.eclipse.keypop.reader.CardReader;
+import org.eclipse.keypop.reader.ChannelControl;
+import org.eclipse.keypop.reader.ReaderApiFactory;
 import org.eclipse.keypop.reader.ReaderApiProperties;
 
 /**
@@ -67,6 +80,20 @@ public LegacySamApiFactory getLegacySamApiFactory() {
     return new LegacySamApiFactoryAdapter(contextSetting);
   }
 
+  /**
+   * Returns a new {@link LoadBalancedSymmetricCryptoCardTransactionManagerFactory}, to which the
+   * SAMs must be added.
+   *
+   * <p>The context setting is taken into account when the factory and its SAMs are added.
+   *
+   * @return A not null reference.
+   * @since 1.1.0
+   */
+  public LoadBalancedSymmetricCryptoCardTransactionManagerFactory
+      createLoadBalancedSymmetricCryptoCardTransactionManagerFactory() {
+    return new LoadBalancedSymmetricCryptoCardTransactionManagerFactoryAdapter(contextSetting);
+  }
+
   /**
    * Returns a {@link CardResourceProfileExtension} to be used with the card resource service.
    *
@@ -93,7 +120,7 @@ public CardResourceProfileExtension createLegacySamResourceProfileExtension(
    * @param powerOnDataRegex A regular expression.
    * @return A not null reference.
    * @throws IllegalArgumentException If no SAM selection is provided.
-   * @throws IllegalArgumentException If the regular expression is null or empty.
+   * @throws IllegalArgumentException If the regular expression is null, empty or invalid.
    * @since 0.2.0
    */
   public CardResourceProfileExtension createLegacySamResourceProfileExtension(
@@ -109,6 +136,352 @@ public CardResourceProfileExtension createLegacySamResourceProfileExtension(
         (LegacySamSelectionExtensionAdapter) legacySamSelectionExtension, powerOnDataRegex);
   }
 
+  /**
+   * Selects concurrently the SAMs inserted in the provided readers, to bring a set of SAMs online
+   * faster than with a selection of each SAM in turn.
+   *
+   * <p>Each SAM is selected as by the {@link CardResourceProfileExtension} returned by {@link
+   * #createLegacySamResourceProfileExtension(LegacySamSelectionExtension)}, with a new selection
+   * extension obtained from the provided supplier. The supplier is called on the calling thread,
+   * once per reader, and each extension it returns defines the unlocking and the data to read
+   * during the selection of a SAM.
+   *
+   * <p>The selections are processed on the provided executor, whose number of threads bounds the
+   * number of concurrent selections, and the method returns once all of them are done. The failure
+   * of a selection does not prevent the other selections and is reported in its result.
+   *
+   * <p>When a selection extension is unlocked with an {@link AsyncDynamicUnlockDataProvider} (see
+   * {@link #setAsyncDynamicUnlockDataProvider(LegacySamSelectionExtension,
+   * AsyncDynamicUnlockDataProvider, int)}), the executor thread is not held while the unlock data
+   * is computed: the unlock data of all the SAMs are requested without waiting for one another, and
+   * the unlocking of each SAM is processed on the executor once its unlock data is available. A SAM
+   * whose unlock data is not provided within the timeout set with the provider is reported with a
+   * {@link java.util.concurrent.TimeoutException} as error of its result.
+   *
+   * @param samReaders The SAM readers.
+   * @param readerApiFactory The reader API factory used to create the selection scenarios.
+   * @param legacySamSelectionExtensionSupplier The supplier of a new selection extension for each
+   *     reader, created by the {@link LegacySamApiFactory} of this library.
+   * @param executor The executor processing the selections.
+   * @return A list of results in the order of the readers.
+   * @throws IllegalArgumentException If an argument is null or if a supplied selection extension is
+   *     null or was not created by this library.
+   * @since 1.1.0
+   */
+  public List<SamWarmUpResult> warmUpSams(
+      List<CardReader> samReaders,
+      ReaderApiFactory readerApiFactory,
+      Supplier<LegacySamSelectionExtension> legacySamSelectionExtensionSupplier,
+      Executor executor) {
+    Assert.getInstance()
+        .notNull(samReaders, "samReaders")
+        .notNull(readerApiFactory, "readerApiFactory")
+        .notNull(legacySamSelectionExtensionSupplier, "legacySamSelectionExtensionSupplier")
+        .notNull(executor, "executor");
+    List<LegacySamSelectionExtensionAdapter> selectionExtensions =
+        new ArrayList<>(samReaders.size());
+    for (CardReader samReader : samReaders) {
+      Assert.getInstance().notNull(samReader, "samReader");
+      LegacySamSelectionExtension legacySamSelectionExtension =
+          legacySamSelectionExtensionSupplier.get();
+      if (!(legacySamSelectionExtension instanceof LegacySamSelectionExtensionAdapter)) {
+        throw new IllegalArgumentException(
+            "Cannot cast 'legacySamSelectionExtension' to LegacySamSelectionExtensionAdapter");
+      }
+      selectionExtensions.add((LegacySamSelectionExtensionAdapter) legacySamSelectionExtension);
+    }
+    return LegacySamWarmUpAdapter.warmUpSams(
+        samReaders, readerApiFactory, selectionExtensions, executor);
+  }
+
+  /**
+   * Sets the asynchronous provider of the unlock data of the SAM to be selected with the provided
+   * selection extension, the SAM reader being provided by the card resource service or by {@link
+   * #warmUpSams(List, ReaderApiFactory, Supplier, Executor)}.
+   *
+   * <p>As with a {@code LegacySamDynamicUnlockDataProviderSpi}, a "Get Challenge" command is
+   * executed during the selection and the "Unlock" command is then transmitted with the other
+   * prepared commands. When the SAM is not selected by {@code warmUpSams}, the selection waits for
+   * the unlock data on the selecting thread.
+   *
+   * <p>The selection fails with a {@link java.util.concurrent.TimeoutException} if the unlock data
+   * is not provided within the provided timeout. With {@code warmUpSams}, this exception is
+   * reported by {@link SamWarmUpResult#getError()}.
+   *
+   * @param legacySamSelectionExtension The selection extension, created by the {@link
+   *     LegacySamApiFactory} of this library.
+   * @param asyncDynamicUnlockDataProvider The provider.
+   * @param unlockDataTimeoutMillis The maximum time to wait for the unlock data, in milliseconds.
+   * @return The selection extension.
+   * @throws IllegalArgumentException If an argument is null, if the timeout is less than 1 or if
+   *     the selection extension was not created by this library.
+   * @throws IllegalStateException If a setting to unlock the SAM has already been set.
+   * @since 1.1.0
+   */
+  public LegacySamSelectionExtension setAsyncDynamicUnlockDataProvider(
+      LegacySamSelectionExtension legacySamSelectionExtension,
+      AsyncDynamicUnlockDataProvider asyncDynamicUnlockDataProvider,
+      int unlockDataTimeoutMillis) {
+    return getAsyncDynamicUnlockSetting(legacySamSelectionExtension)
+        .setAsyncDynamicUnlockDataProvider(
+            asyncDynamicUnlockDataProvider, unlockDataTimeoutMillis);
+  }
+
+  /**
+   * Sets the asynchronous provider of the unlock data of the SAM to be selected with the provided
+   * selection extension, and the reader in which the SAM is inserted.
+   *
+   * @param legacySamSelectionExtension The selection extension, created by the {@link
+   *     LegacySamApiFactory} of this library.
+   * @param asyncDynamicUnlockDataProvider The provider.
+   * @param unlockDataTimeoutMillis The maximum time to wait for the unlock data, in milliseconds.
+   * @param targetSamReader The reader used to communicate with the SAM.
+   * @return The selection extension.
+   * @throws IllegalArgumentException If an argument is null, if the timeout is less than 1 or if
+   *     the selection extension was not created by this library.
+   * @throws IllegalStateException If a setting to unlock the SAM has already been set.
+   * @see #setAsyncDynamicUnlockDataProvider(LegacySamSelectionExtension,
+   *     AsyncDynamicUnlockDataProvider, int)
+   * @since 1.1.0
+   */
+  public LegacySamSelectionExtension setAsyncDynamicUnlockDataProvider(
+      LegacySamSelectionExtension legacySamSelectionExtension,
+      AsyncDynamicUnlockDataProvider asyncDynamicUnlockDataProvider,
+      int unlockDataTimeoutMillis,
+      CardReader targetSamReader) {
+    return getAsyncDynamicUnlockSetting(legacySamSelectionExtension)
+        .setAsyncDynamicUnlockDataProvider(
+            asyncDynamicUnlockDataProvider, unlockDataTimeoutMillis, targetSamReader);
+  }
+
+  private static AsyncDynamicUnlockSetting getAsyncDynamicUnlockSetting(
+      LegacySamSelectionExtension legacySamSelectionExtension) {
+    Assert.getInstance().notNull(legacySamSelectionExtension, "legacySamSelectionExtension");
+    if (!(legacySamSelectionExtension instanceof AsyncDynamicUnlockSetting)) {
+      throw new IllegalArgumentException(
+          "Cannot cast 'legacySamSelectionExtension' to LegacySamSelectionExtensionAdapter");
+    }
+    return (AsyncDynamicUnlockSetting) legacySamSelectionExtension;
+  }
+
+  /**
+   * Processes all the commands prepared with the provided free transaction manager on the provided
+   * executor, without blocking the calling thread.
+   *
+   * <p>The prepared commands are taken over by the returned future when this method is called, so
+   * the processing is the same as the one of {@code processCommands(ChannelControl)}. The exchanges
+   * with the SAM reader remain blocking, but they only hold an executor thread for the duration of
+   * the exchanges, so that a small pool of threads can drive many SAMs.
+   *
+   * <p>The transaction manager and its SAM must not be used until the returned future is
+   * completed.
+   *
+   * @param freeTransactionManager The transaction manager, created by the {@link
+   *     LegacySamApiFactory} of this library.
+   * @param channelControl Policy for managing the physical channel after the SAM commands have been
+   *     processed.
+   * @param executor The executor on which the commands are processed.
+   * @return A future completed with the transaction manager, or completed exceptionally with the
+   *     exception that {@code processCommands(ChannelControl)} would have thrown (wrapped in a
+   *     {@link java.util.concurrent.CompletionException}).
+   * @throws IllegalArgumentException If an argument is null or if the transaction manager was not
+   *     created by this library.
+   * @since 1.1.0
+   */
+  public CompletableFuture<FreeTransactionManager> processCommandsAsync(
+      FreeTransactionManager freeTransactionManager,
+      ChannelControl channelControl,
+      Executor executor) {
+    return getFreeTransactionManagerAdapter(freeTransactionManager)
+        .processCommandsAsync(channelControl, executor);
+  }
+
+  /**
+   * Processes all the commands prepared with the provided secure write transaction manager on the
+   * provided executor, without blocking the calling thread.
+   *
+   * @param secureWriteTransactionManager The transaction manager, created by the {@link
+   *     LegacySamApiFactory} of this library.
+   * @param channelControl Policy for managing the physical channel after the SAM commands have been
+   *     processed.
+   * @param executor The executor on which the commands are processed.
+   * @return A future completed with the transaction manager, or completed exceptionally with the
+   *     exception that {@code processCommands(ChannelControl)} would have thrown (wrapped in a
+   *     {@link java.util.concurrent.CompletionException}).
+   * @throws IllegalArgumentException If an argument is null or if the transaction manager was not
+   *     created by this library.
+   * @see #processCommandsAsync(FreeTransactionManager, ChannelControl, Executor)
+   * @since 1.1.0
+   */
+  public CompletableFuture<SecureWriteTransactionManager> processCommandsAsync(
+      SecureWriteTransactionManager secureWriteTransactionManager,
+      ChannelControl channelControl,
+      Executor executor) {
+    Assert.getInstance().notNull(secureWriteTransactionManager, "secureWriteTransactionManager");
+    if (!(secureWriteTransactionManager instanceof SecureWriteTransactionManagerAdapter)) {
+      throw new IllegalArgumentException(
+          "Cannot cast 'secureWriteTransactionManager' to SecureWriteTransactionManagerAdapter");
+    }
+    return ((SecureWriteTransactionManagerAdapter) secureWriteTransactionManager)
+        .processCommandsAsync(channelControl, executor);
+  }
+
+  /**
+   * Processes all the commands of the provided asynchronous transaction executor manager on the
+   * provided executor, without blocking the calling thread.
+   *
+   * @param asyncTransactionExecutorManager The transaction manager, created by the {@link
+   *     LegacySamApiFactory} of this library.
+   * @param channelControl Policy for managing the physical channel after the SAM commands have been
+   *     processed.
+   * @param executor The executor on which the commands are processed.
+   * @return A future completed with the transaction manager, or completed exceptionally with the
+   *     exception that {@code processCommands(ChannelControl)} would have thrown (wrapped in a
+   *     {@link java.util.concurrent.CompletionException}).
+   * @throws IllegalArgumentException If an argument is null or if the transaction manager was not
+   *     created by this library.
+   * @see #processCommandsAsync(FreeTransactionManager, ChannelControl, Executor)
+   * @since 1.1.0
+   */
+  public CompletableFuture<AsyncTransactionExecutorManager> processCommandsAsync(
+      AsyncTransactionExecutorManager asyncTransactionExecutorManager,
+      ChannelControl channelControl,
+      Executor executor) {
+    Assert.getInstance()
+        .notNull(asyncTransactionExecutorManager, "asyncTransactionExecutorManager");
+    if (!(asyncTransactionExecutorManager instanceof AsyncTransactionExecutorManagerAdapter)) {
+      throw new IllegalArgumentException(
+          "Cannot cast 'asyncTransactionExecutorManager' to "
+              + "AsyncTransactionExecutorManagerAdapter");
+    }
+    return ((AsyncTransactionExecutorManagerAdapter) asyncTransactionExecutorManager)
+        .processCommandsAsync(channelControl, executor);
+  }
+
+  /**
+   * Exports the data read so far from the target SAM of the provided free transaction manager
+   * (SAM parameters, system and work key parameters, counters, ceilings and CA certificate) as a
+   * JSON string, to be saved across the restarts of the application.
+   *
+   * <p>At startup, the snapshot saved for a SAM replaces most of the reads usually done on it:
+   *
+   * <pre>{@code
+   * if (snapshot != null && service.importTargetSamSnapshot(freeTransactionManager, snapshot)) {
+   *   service.prepareRefreshTargetSamSnapshot(freeTransactionManager);
+   * } else {
+   *   freeTransactionManager.prepareReadSamParameters().prepareReadAllCountersStatus(); // etc.
+   * }
+   * freeTransactionManager.processCommands(ChannelControl.KEEP_OPEN);
+   * snapshot = service.exportTargetSamSnapshot(freeTransactionManager); // to be saved
+   * }</pre>
+   *
+   * <p>A snapshot is only imported into the SAM it was exported from, identified by its ATR (which
+   * includes the product type and the software version) and its serial number. The data modified
+   * in the SAM by the commands of this library ("Write Key", "Write Ceilings" and "Write SAM
+   * Parameters") are tracked as stale, including in the snapshots exported afterward, and read
+   * again by the refresh. The modifications made in the SAM by other means are not detected: the
+   * snapshots of a SAM must be discarded when it is personalized again.
+   *
+   * @param freeTransactionManager The transaction manager, created by the {@link
+   *     LegacySamApiFactory} of this library.
+   * @return A not empty string.
+   * @throws IllegalArgumentException If the transaction manager is null or was not created by this
+   *     library.
+   * @since 1.1.0
+   */
+  public String exportTargetSamSnapshot(FreeTransactionManager freeTransactionManager) {
+    return getFreeTransactionManagerAdapter(freeTransactionManager).exportTargetSamSnapshot();
+  }
+
+  /**
+   * Restores the data of the target SAM of the provided free transaction manager from a snapshot
+   * previously exported with {@link #exportTargetSamSnapshot(FreeTransactionManager)}.
+   *
+   * <p>The snapshot is confirmed by reading again immediately one of its records from the SAM (the
+   * parameters of a key, or else the SAM parameters), the commands previously scheduled with the
+   * transaction manager being left pending.
+   *
+   * <p>The data restored replace those read so far. The counters are restored without value: they
+   * are unknown until read again, in particular by {@link
+   * #prepareRefreshTargetSamSnapshot(FreeTransactionManager)}.
+   *
+   * @param freeTransactionManager The transaction manager, created by the {@link
+   *     LegacySamApiFactory} of this library.
+   * @param snapshot The snapshot.
+   * @return false if the snapshot is malformed, has an unsupported format, was exported from
+   *     another SAM, has no record that is not stale to read again or does not match the record
+   *     read again, the data of the target SAM being then left unchanged.
+   * @throws IllegalArgumentException If the transaction manager is null or was not created by this
+   *     library, or if snapshot is null or empty.
+   * @throws org.eclipse.keypop.reader.ReaderCommunicationException If a communication error with
+   *     the SAM reader occurs.
+   * @throws org.eclipse.keypop.reader.CardCommunicationException If a communication error with the
+   *     SAM occurs.
+   * @since 1.1.0
+   */
+  public boolean importTargetSamSnapshot(
+      FreeTransactionManager freeTransactionManager, String snapshot) {
+    return getFreeTransactionManagerAdapter(freeTransactionManager)
+        .importTargetSamSnapshot(snapshot);
+  }
+
+  /**
+   * Schedules with the provided free transaction manager the reading of the target SAM data that
+   * are stale, as well as the reading of the counters known so far, which are incremented by the
+   * SAM operations, including the counters restored without value from a snapshot.
+   *
+   * <p>The data that are not stale are not read again.
+   *
+   * @param freeTransactionManager The transaction manager, created by the {@link
+   *     LegacySamApiFactory} of this library.
+   * @return The transaction manager.
+   * @throws IllegalArgumentException If the transaction manager is null or was not created by this
+   *     library.
+   * @since 1.1.0
+   */
+  public FreeTransactionManager prepareRefreshTargetSamSnapshot(
+      FreeTransactionManager freeTransactionManager) {
+    return getFreeTransactionManagerAdapter(freeTransactionManager)
+        .prepareRefreshTargetSamSnapshot();
+  }
+
+  private static FreeTransactionManagerAdapter getFreeTransactionManagerAdapter(
+      FreeTransactionManager freeTransactionManager) {
+    Assert.getInstance().notNull(freeTransactionManager, "freeTransactionManager");
+    if (!(freeTransactionManager instanceof FreeTransactionManagerAdapter)) {
+      throw new IllegalArgumentException(
+          "Cannot cast 'freeTransactionManager' to FreeTransactionManagerAdapter");
+    }
+    return (FreeTransactionManagerAdapter) freeTransactionManager;
+  }
+
+  /**
+   * Returns the transaction audit data recorded in a segment file of a journal created with {@link
+   * TransactionAuditSinks#mappedJournal(File, int)}.
+   *
+   * <p>Each sequence of successive exchanges with the same SAM has the form of the transaction
+   * audit data included in the messages of the exceptions, the SAM being identified by its serial
+   * number only:
+   *
+   * <pre>{@code
+   * Transaction audit JSON data: {"sam":{"serialNumber":"11223344"},"apdus":["8084000008",
+   * "11223344556677889000"]}
+   * }</pre>
+   *
+   * <p>An incomplete record at the end of the segment (e.g. interrupted by a crash of the process)
+   * is ignored.
+   *
+   * @param segmentFile The segment file.
+   * @return A string, empty if the segment contains no record.
+   * @throws IllegalArgumentException If the file is null or is not a valid segment file.
+   * @throws IOException If the file cannot be read.
+   * @since 1.1.0
+   */
+  public String readTransactionAuditJournalSegment(File segmentFile) throws IOException {
+    Assert.getInstance().notNull(segmentFile, "segmentFile");
+    return TransactionAuditJournalReader.readSegment(segmentFile);
+  }
+
   /**
    * {@inheritDoc}
    *
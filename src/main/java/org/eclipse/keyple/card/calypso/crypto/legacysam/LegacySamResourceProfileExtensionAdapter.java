@@ -11,6 +11,7 @@
  ************************************************************************************** */
 package org.eclipse.keyple.card.calypso.crypto.legacysam;
 
+import java.util.regex.Pattern;
 import org.eclipse.keyple.core.service.resource.spi.CardResourceProfileExtension;
 import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySamSelectionExtension;
 import org.eclipse.keypop.reader.CardReader;
@@ -34,15 +35,22 @@ final class LegacySamResourceProfileExtensionAdapter implements CardResourceProf
 
   private final LegacySamSelectionExtensionAdapter legacySamSelectionExtension;
   private final String powerOnDataRegex;
+  private final Pattern powerOnDataPattern;
 
   /**
+   * The power-on data regular expression is compiled once here, since {@link #matches(SmartCard)}
+   * is called for every SAM of the pool each time the card resource service looks for a resource.
+   *
    * @param samSelectionExtension The {@link LegacySamSelectionExtension}.
+   * @param powerOnDataRegex The power-on data regular expression, null if none.
+   * @throws java.util.regex.PatternSyntaxException If the regular expression is invalid.
    * @since 0.1.0
    */
   LegacySamResourceProfileExtensionAdapter(
       LegacySamSelectionExtensionAdapter samSelectionExtension, String powerOnDataRegex) {
     this.legacySamSelectionExtension = samSelectionExtension;
     this.powerOnDataRegex = powerOnDataRegex;
+    this.powerOnDataPattern = powerOnDataRegex != null ? Pattern.compile(powerOnDataRegex) : null;
   }
 
   /**
@@ -58,6 +66,29 @@ public SmartCard matches(CardReader reader, ReaderApiFactory readerApiFactory) {
       return null;
     }
 
+    CardSelectionManager samCardSelectionManager = prepareSelection(reader, readerApiFactory);
+
+    // Process the SAM selection scenario
+    CardSelectionResult samCardSelectionResult = null;
+    try {
+      samCardSelectionResult = samCardSelectionManager.processCardSelectionScenario(reader);
+    } catch (Exception e) {
+      logger.error("SAM selection failed", e);
+    }
+
+    return samCardSelectionResult != null ? samCardSelectionResult.getActiveSmartCard() : null;
+  }
+
+  /**
+   * Prepares the selection scenario of the SAM inserted in the provided reader.
+   *
+   * @param reader The SAM reader.
+   * @param readerApiFactory The factory of the selection objects.
+   * @return A card selection manager ready to process the scenario.
+   * @since 1.1.0
+   */
+  CardSelectionManager prepareSelection(CardReader reader, ReaderApiFactory readerApiFactory) {
+
     // Init the SAM selector
     BasicCardSelector cardSelector = readerApiFactory.createBasicCardSelector();
     if (powerOnDataRegex != null) {
@@ -72,16 +103,7 @@ public SmartCard matches(CardReader reader, ReaderApiFactory readerApiFactory) {
     // Prepare the SAM selection scenario
     CardSelectionManager samCardSelectionManager = readerApiFactory.createCardSelectionManager();
     samCardSelectionManager.prepareSelection(cardSelector, legacySamSelectionExtension);
-
-    // Process the SAM selection scenario
-    CardSelectionResult samCardSelectionResult = null;
-    try {
-      samCardSelectionResult = samCardSelectionManager.processCardSelectionScenario(reader);
-    } catch (Exception e) {
-      logger.error("SAM selection failed", e);
-    }
-
-    return samCardSelectionResult != null ? samCardSelectionResult.getActiveSmartCard() : null;
+    return samCardSelectionManager;
   }
 
   /**
@@ -94,7 +116,8 @@ public SmartCard matches(SmartCard smartCard) {
     if (!(smartCard instanceof LegacySamAdapter)) {
       return null;
     }
-    if (powerOnDataRegex != null && !smartCard.getPowerOnData().matches(powerOnDataRegex)) {
+    if (powerOnDataPattern != null
+        && !powerOnDataPattern.matcher(smartCard.getPowerOnData()).matches()) {
       return null;
     }
     return smartCard;
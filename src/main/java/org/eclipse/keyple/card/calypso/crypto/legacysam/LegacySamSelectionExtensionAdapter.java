@@ -17,6 +17,11 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.eclipse.keyple.core.util.Assert;
 import org.eclipse.keyple.core.util.HexUtil;
 import org.eclipse.keypop.calypso.crypto.legacysam.GetDataTag;
@@ -31,8 +36,10 @@
 import org.eclipse.keypop.card.spi.CardSelectionExtensionSpi;
 import org.eclipse.keypop.card.spi.CardSelectionRequestSpi;
 import org.eclipse.keypop.card.spi.SmartCardSpi;
+import org.eclipse.keypop.reader.CardCommunicationException;
 import org.eclipse.keypop.reader.CardReader;
 import org.eclipse.keypop.reader.InvalidCardResponseException;
+import org.eclipse.keypop.reader.ReaderCommunicationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,13 +52,17 @@
  * @since 0.1.0
  */
 final class LegacySamSelectionExtensionAdapter
-    implements LegacySamSelectionExtension, CardSelectionExtensionSpi {
+    implements LegacySamSelectionExtension, CardSelectionExtensionSpi, AsyncDynamicUnlockSetting {
 
   private static final Logger logger =
       LoggerFactory.getLogger(LegacySamSelectionExtensionAdapter.class);
   private static final int SW_NOT_LOCKED = 0x6985;
   private static final String MSG_UNLOCK_SETTING_HAS_ALREADY_BEEN_SET =
       "A setting to unlock the SAM has already been set";
+  private static final String MSG_SAM_READER_COMMUNICATION_ERROR =
+      "Failed to communicate with SAM reader while unlocking the SAM.";
+  private static final String MSG_SAM_COMMUNICATION_ERROR =
+      "Failed to communicate with SAM while unlocking the SAM.";
   private final LegacySamAdapter legacySamAdapter;
   private final CommandContextDto context;
   private final List<Command> commands;
@@ -60,6 +71,10 @@
   private UnlockSettingType unlockSettingType;
   private LegacySamStaticUnlockDataProviderSpi staticUnlockDataProvider;
   private LegacySamDynamicUnlockDataProviderSpi dynamicUnlockDataProvider;
+  private AsyncDynamicUnlockDataProvider asyncDynamicUnlockDataProvider;
+  private int unlockDataTimeoutMillis;
+  private boolean isUnlockDeferred;
+  private CompletableFuture<byte[]> pendingUnlockData;
   private byte[] unlockDataBytes;
   private LegacySam.ProductType unlockProductType;
 
@@ -67,7 +82,8 @@ private enum UnlockSettingType {
     UNSET,
     UNLOCK_DATA,
     STATIC_MODE_PROVIDER,
-    DYNAMIC_MODE_PROVIDER
+    DYNAMIC_MODE_PROVIDER,
+    ASYNC_DYNAMIC_MODE_PROVIDER
   }
 
   /**
@@ -104,6 +120,7 @@ public CardSelectionRequestSpi getCardSelectionRequest() {
         }
         break;
       case DYNAMIC_MODE_PROVIDER:
+      case ASYNC_DYNAMIC_MODE_PROVIDER:
         // Do not add command for now when using an Unlock Data provider
         commandGetChallenge = new CommandGetChallenge(context, 8);
         cardSelectionApduRequests.add(commandGetChallenge.getApduRequest());
@@ -127,8 +144,14 @@ public SmartCardSpi parse(CardSelectionResponseApi cardSelectionResponseApi)
       throws ParseException {
     try {
       legacySamAdapter.parseSelectionResponse(cardSelectionResponseApi);
-      CardResponseApi cardResponse = getCardResponse(cardSelectionResponseApi);
-      parseCardResponse(cardResponse);
+      if (isUnlockDeferred && unlockSettingType == UnlockSettingType.ASYNC_DYNAMIC_MODE_PROVIDER) {
+        // The unlocking and the other commands are processed by processDeferredUnlock
+        checkTargetSamReader();
+        pendingUnlockData = requestAsyncUnlockData(cardSelectionResponseApi.getCardResponse());
+      } else {
+        CardResponseApi cardResponse = getCardResponse(cardSelectionResponseApi);
+        parseCardResponse(cardResponse);
+      }
     } catch (Exception e) {
       throw new ParseException("Invalid SAM response", e);
     }
@@ -147,46 +170,127 @@ public SmartCardSpi parse(CardSelectionResponseApi cardSelectionResponseApi)
    * @param cardSelectionResponseApi The response to the initial card selection request.
    * @return The updated card response after handling the unlock command.
    * @throws AbstractApduException if an error occurs while handling the unlock command.
+   * @throws TimeoutException If the asynchronous provider does not provide the unlock data in
+   *     time.
    */
   private CardResponseApi getCardResponse(CardSelectionResponseApi cardSelectionResponseApi)
-      throws AbstractApduException, CommandException {
+      throws AbstractApduException, CommandException, TimeoutException {
 
     CardResponseApi cardResponse = cardSelectionResponseApi.getCardResponse();
 
     if (unlockSettingType == UnlockSettingType.STATIC_MODE_PROVIDER
-        || unlockSettingType == UnlockSettingType.DYNAMIC_MODE_PROVIDER) {
+        || unlockSettingType == UnlockSettingType.DYNAMIC_MODE_PROVIDER
+        || unlockSettingType == UnlockSettingType.ASYNC_DYNAMIC_MODE_PROVIDER) {
 
-      if (targetSamReader == null) {
-        throw new IllegalStateException("'targetSamReader' is not set. Unable to unlock the SAM");
-      }
+      checkTargetSamReader();
 
       byte[] unlockData;
       if (unlockSettingType == UnlockSettingType.STATIC_MODE_PROVIDER) {
         unlockData = staticUnlockDataProvider.getUnlockData(legacySamAdapter.getSerialNumber());
-      } else {
+      } else if (unlockSettingType == UnlockSettingType.DYNAMIC_MODE_PROVIDER) {
         commandGetChallenge.parseResponse(cardResponse.getApduResponses().get(0));
         unlockData =
             dynamicUnlockDataProvider.getUnlockData(
                 legacySamAdapter.getSerialNumber(), legacySamAdapter.popChallenge());
+      } else {
+        unlockData = waitForAsyncUnlockData(requestAsyncUnlockData(cardResponse));
       }
 
-      CommandUnlock unlockCommand =
-          new CommandUnlock(legacySamAdapter.getProductType(), unlockData);
-      unlockCommand.getApduRequest().addSuccessfulStatusWord(SW_NOT_LOCKED);
-      commands.add(0, unlockCommand);
+      cardResponse = transmitUnlockAndCommands(unlockData);
+    }
+    return cardResponse;
+  }
 
-      List<ApduRequestSpi> cardSelectionApduRequests = new ArrayList<>();
-      for (Command command : commands) {
-        cardSelectionApduRequests.add(command.getApduRequest());
-      }
+  /**
+   * Checks that the reader of the SAM to unlock is set.
+   *
+   * @throws IllegalStateException If the reader is not set.
+   */
+  private void checkTargetSamReader() {
+    if (targetSamReader == null) {
+      throw new IllegalStateException("'targetSamReader' is not set. Unable to unlock the SAM");
+    }
+  }
 
-      CardRequestAdapter cardRequest = new CardRequestAdapter(cardSelectionApduRequests, false);
+  /**
+   * Parses the challenge returned by the SAM and requests the unlock data from the asynchronous
+   * provider.
+   *
+   * @param cardResponse The response to the selection card request, containing the challenge.
+   * @return The future provided by the asynchronous provider.
+   * @throws CommandException If the challenge is not returned by the SAM.
+   */
+  private CompletableFuture<byte[]> requestAsyncUnlockData(CardResponseApi cardResponse)
+      throws CommandException {
+    commandGetChallenge.parseResponse(cardResponse.getApduResponses().get(0));
+    CompletableFuture<byte[]> unlockData =
+        asyncDynamicUnlockDataProvider.getUnlockData(
+            legacySamAdapter.getSerialNumber(), legacySamAdapter.popChallenge());
+    if (unlockData == null) {
+      throw new IllegalStateException("The asynchronous unlock data provider returned null");
+    }
+    return unlockData;
+  }
 
-      cardResponse =
-          ((ProxyReaderApi) targetSamReader)
-              .transmitCardRequest(cardRequest, ChannelControl.KEEP_OPEN);
+  /**
+   * Waits for the unlock data requested from the asynchronous provider, at most for the timeout
+   * set with the provider.
+   *
+   * @param unlockData The future provided by the asynchronous provider.
+   * @return The unlock data.
+   * @throws TimeoutException If the unlock data is not provided in time.
+   * @throws CompletionException If the future is completed exceptionally.
+   * @throws IllegalStateException If the current thread is interrupted while waiting.
+   */
+  private byte[] waitForAsyncUnlockData(CompletableFuture<byte[]> unlockData)
+      throws TimeoutException {
+    try {
+      return unlockData.get(unlockDataTimeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      throw createUnlockDataTimeoutException();
+    } catch (ExecutionException e) {
+      throw new CompletionException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the unlock data", e);
     }
-    return cardResponse;
+  }
+
+  /**
+   * Creates the exception reporting that the unlock data has not been provided in time by the
+   * asynchronous provider.
+   *
+   * @return A not null reference.
+   * @since 1.1.0
+   */
+  TimeoutException createUnlockDataTimeoutException() {
+    return new TimeoutException(
+        "The unlock data was not provided within " + unlockDataTimeoutMillis + " ms");
+  }
+
+  /**
+   * Transmits the "Unlock" command followed by the prepared commands to the SAM.
+   *
+   * @param unlockData The unlock data.
+   * @return The response of the SAM.
+   */
+  private CardResponseApi transmitUnlockAndCommands(byte[] unlockData)
+      throws ReaderBrokenCommunicationException, CardBrokenCommunicationException,
+          UnexpectedStatusWordException {
+
+    CommandUnlock unlockCommand = new CommandUnlock(legacySamAdapter.getProductType(), unlockData);
+    unlockCommand.getApduRequest().addSuccessfulStatusWord(SW_NOT_LOCKED);
+    commands.add(0, unlockCommand);
+
+    List<ApduRequestSpi> cardSelectionApduRequests = new ArrayList<>();
+    for (Command command : commands) {
+      cardSelectionApduRequests.add(command.getApduRequest());
+    }
+
+    CardRequestAdapter cardRequest = new CardRequestAdapter(cardSelectionApduRequests, false);
+
+    return ((ProxyReaderApi) targetSamReader)
+        .transmitCardRequest(cardRequest, ChannelControl.KEEP_OPEN);
   }
 
   /**
@@ -354,6 +458,42 @@ public LegacySamSelectionExtension setDynamicUnlockDataProvider(
     return setDynamicUnlockDataProvider(dynamicUnlockDataProvider);
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  public LegacySamSelectionExtension setAsyncDynamicUnlockDataProvider(
+      AsyncDynamicUnlockDataProvider asyncDynamicUnlockDataProvider, int unlockDataTimeoutMillis) {
+    if (unlockSettingType != UnlockSettingType.UNSET) {
+      throw new IllegalStateException(MSG_UNLOCK_SETTING_HAS_ALREADY_BEEN_SET);
+    }
+    Assert.getInstance()
+        .notNull(asyncDynamicUnlockDataProvider, "asyncDynamicUnlockDataProvider")
+        .greaterOrEqual(unlockDataTimeoutMillis, 1, "unlockDataTimeoutMillis");
+    this.asyncDynamicUnlockDataProvider = asyncDynamicUnlockDataProvider;
+    this.unlockDataTimeoutMillis = unlockDataTimeoutMillis;
+    unlockSettingType = UnlockSettingType.ASYNC_DYNAMIC_MODE_PROVIDER;
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  public LegacySamSelectionExtension setAsyncDynamicUnlockDataProvider(
+      AsyncDynamicUnlockDataProvider asyncDynamicUnlockDataProvider,
+      int unlockDataTimeoutMillis,
+      CardReader targetSamReader) {
+    Assert.getInstance().notNull(targetSamReader, "targetSamReader");
+    this.targetSamReader = targetSamReader;
+    return setAsyncDynamicUnlockDataProvider(
+        asyncDynamicUnlockDataProvider, unlockDataTimeoutMillis);
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -480,4 +620,71 @@ LegacySamSelectionExtension setSamReader(CardReader targetSamReader) {
     this.targetSamReader = targetSamReader;
     return this;
   }
+
+  /**
+   * Defers the unlocking of the SAM when an asynchronous unlock data provider is set: the parsing
+   * of the selection response then only requests the unlock data, the "Unlock" command and the
+   * prepared commands being processed by {@link #processDeferredUnlock(byte[])} once the unlock
+   * data is available.
+   *
+   * <p>Has no effect with the other unlock settings.
+   *
+   * @return The current instance.
+   * @since 1.1.0
+   */
+  LegacySamSelectionExtension deferUnlock() {
+    isUnlockDeferred = true;
+    return this;
+  }
+
+  /**
+   * Returns the unlock data requested from the asynchronous provider by a deferred unlocking.
+   *
+   * @return null if the unlocking is not deferred or if the SAM is not selected yet.
+   * @since 1.1.0
+   */
+  CompletableFuture<byte[]> getPendingUnlockData() {
+    return pendingUnlockData;
+  }
+
+  /**
+   * Returns the maximum time to wait for the unlock data requested from the asynchronous provider.
+   *
+   * @return The timeout in milliseconds, 0 if no asynchronous provider is set.
+   * @since 1.1.0
+   */
+  int getUnlockDataTimeoutMillis() {
+    return unlockDataTimeoutMillis;
+  }
+
+  /**
+   * Completes a deferred unlocking: transmits the "Unlock" command followed by the prepared
+   * commands to the SAM and parses the responses.
+   *
+   * @param unlockData The unlock data obtained from {@link #getPendingUnlockData()}.
+   * @return The selected SAM.
+   * @throws IllegalStateException If no unlocking is pending.
+   * @throws ReaderCommunicationException If a communication error with the SAM reader occurs.
+   * @throws CardCommunicationException If a communication error with the SAM occurs.
+   * @throws InvalidCardResponseException If a command fails.
+   * @since 1.1.0
+   */
+  LegacySam processDeferredUnlock(byte[] unlockData) {
+    if (pendingUnlockData == null) {
+      throw new IllegalStateException("No pending unlocking");
+    }
+    pendingUnlockData = null;
+    CardResponseApi cardResponse;
+    try {
+      cardResponse = transmitUnlockAndCommands(unlockData);
+    } catch (ReaderBrokenCommunicationException e) {
+      throw new ReaderCommunicationException(MSG_SAM_READER_COMMUNICATION_ERROR, e);
+    } catch (CardBrokenCommunicationException e) {
+      throw new CardCommunicationException(MSG_SAM_COMMUNICATION_ERROR, e);
+    } catch (UnexpectedStatusWordException e) {
+      cardResponse = e.getCardResponse();
+    }
+    parseCardResponse(cardResponse);
+    return legacySamAdapter;
+  }
 }
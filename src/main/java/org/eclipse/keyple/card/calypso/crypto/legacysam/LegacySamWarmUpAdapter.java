@@ -0,0 +1,328 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySam;
+import org.eclipse.keypop.reader.CardReader;
+import org.eclipse.keypop.reader.ReaderApiFactory;
+import org.eclipse.keypop.reader.selection.CardSelectionResult;
+import org.eclipse.keypop.reader.selection.spi.SmartCard;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Concurrent selection of the SAMs inserted in several readers.
+ *
+ * <p>Each SAM is selected as by {@link LegacySamResourceProfileExtensionAdapter#matches(CardReader,
+ * ReaderApiFactory)}, with its own selection extension since a selection extension holds the
+ * state of the selection in progress.
+ *
+ * <p>When a SAM is unlocked with an {@link AsyncDynamicUnlockDataProvider}, its unlocking is
+ * deferred: the executor thread is released once the unlock data is requested, and the "Unlock"
+ * command and the other commands are transmitted by an executor thread when the unlock data is
+ * available. The unlock data of all the SAMs are thus computed concurrently, whatever the number
+ * of executor threads. The selection fails if the unlock data is not available within the timeout
+ * set with the provider, so that the warm-up always ends.
+ *
+ * @since 1.1.0
+ */
+final class LegacySamWarmUpAdapter {
+
+  private static final Logger logger = LoggerFactory.getLogger(LegacySamWarmUpAdapter.class);
+
+  /** Completed future from which the selections are started on the executor. */
+  private static final CompletableFuture<Void> SELECTION_START =
+      CompletableFuture.completedFuture(null);
+
+  /** Private constructor */
+  private LegacySamWarmUpAdapter() {}
+
+  /**
+   * Selects the SAMs inserted in the provided readers on the provided executor and waits for the
+   * end of all the selections.
+   *
+   * @param samReaders The SAM readers.
+   * @param readerApiFactory The factory of the selection objects.
+   * @param selectionExtensions The selection extension of each reader.
+   * @param executor The executor on which the selections are processed.
+   * @return The results in the order of the readers.
+   * @since 1.1.0
+   */
+  static List<SamWarmUpResult> warmUpSams(
+      List<CardReader> samReaders,
+      final ReaderApiFactory readerApiFactory,
+      List<LegacySamSelectionExtensionAdapter> selectionExtensions,
+      final Executor executor) {
+    List<CompletableFuture<SamWarmUpResult>> futures = new ArrayList<>(samReaders.size());
+    for (int i = 0; i < samReaders.size(); i++) {
+      final CardReader samReader = samReaders.get(i);
+      final LegacySamSelectionExtensionAdapter selectionExtension = selectionExtensions.get(i);
+      futures.add(
+          SELECTION_START.thenComposeAsync(
+              new Function<Void, CompletableFuture<SamWarmUpResult>>() {
+                @Override
+                public CompletableFuture<SamWarmUpResult> apply(Void ignored) {
+                  return selectSam(samReader, readerApiFactory, selectionExtension, executor);
+                }
+              },
+              executor));
+    }
+    List<SamWarmUpResult> results = new ArrayList<>(futures.size());
+    for (CompletableFuture<SamWarmUpResult> future : futures) {
+      results.add(future.join());
+    }
+    return results;
+  }
+
+  /**
+   * Selects the SAM inserted in the provided reader, reporting any failure in the result.
+   *
+   * <p>If the unlocking of the SAM is deferred, the returned future is completed once the unlock
+   * data is provided and the unlocking is processed on the executor.
+   *
+   * @param samReader The SAM reader.
+   * @param readerApiFactory The factory of the selection objects.
+   * @param selectionExtension The selection extension of the reader.
+   * @param executor The executor on which a deferred unlocking is processed.
+   * @return A not null future, never completed exceptionally.
+   */
+  private static CompletableFuture<SamWarmUpResult> selectSam(
+      final CardReader samReader,
+      ReaderApiFactory readerApiFactory,
+      final LegacySamSelectionExtensionAdapter selectionExtension,
+      Executor executor) {
+    final long startTime = System.nanoTime();
+    LegacySam legacySam = null;
+    try {
+      if (samReader.isCardPresent()) {
+        selectionExtension.deferUnlock();
+        CardSelectionResult cardSelectionResult =
+            new LegacySamResourceProfileExtensionAdapter(selectionExtension, null)
+                .prepareSelection(samReader, readerApiFactory)
+                .processCardSelectionScenario(samReader);
+        SmartCard smartCard = cardSelectionResult.getActiveSmartCard();
+        if (smartCard instanceof LegacySam) {
+          legacySam = (LegacySam) smartCard;
+        }
+      }
+    } catch (Exception e) {
+      return CompletableFuture.completedFuture(createResult(samReader, null, e, startTime));
+    }
+    CompletableFuture<byte[]> pendingUnlockData = selectionExtension.getPendingUnlockData();
+    if (legacySam == null || pendingUnlockData == null) {
+      return CompletableFuture.completedFuture(createResult(samReader, legacySam, null, startTime));
+    }
+    return withTimeout(
+            pendingUnlockData,
+            selectionExtension.getUnlockDataTimeoutMillis(),
+            selectionExtension.createUnlockDataTimeoutException())
+        .thenApplyAsync(
+            new Function<byte[], LegacySam>() {
+              @Override
+              public LegacySam apply(byte[] unlockData) {
+                return selectionExtension.processDeferredUnlock(unlockData);
+              }
+            },
+            executor)
+        .handle(
+            new BiFunction<LegacySam, Throwable, SamWarmUpResult>() {
+              @Override
+              public SamWarmUpResult apply(LegacySam unlockedSam, Throwable throwable) {
+                if (throwable == null) {
+                  return createResult(samReader, unlockedSam, null, startTime);
+                }
+                Throwable cause =
+                    throwable instanceof CompletionException && throwable.getCause() != null
+                        ? throwable.getCause()
+                        : throwable;
+                return createResult(
+                    samReader,
+                    null,
+                    cause instanceof Exception ? (Exception) cause : new CompletionException(cause),
+                    startTime);
+              }
+            });
+  }
+
+  /**
+   * Returns a future completed as the provided unlock data, or completed exceptionally with the
+   * provided exception if the unlock data is not available within the timeout.
+   *
+   * @param unlockData The unlock data requested from the asynchronous provider.
+   * @param timeoutMillis The timeout in milliseconds.
+   * @param timeoutException The exception reporting the expiry of the timeout.
+   * @return A not null future.
+   */
+  private static CompletableFuture<byte[]> withTimeout(
+      CompletableFuture<byte[]> unlockData,
+      long timeoutMillis,
+      final Exception timeoutException) {
+    final CompletableFuture<byte[]> result = new CompletableFuture<>();
+    final ScheduledFuture<?> timeout =
+        TimeoutScheduler.INSTANCE.schedule(
+            new Runnable() {
+              @Override
+              public void run() {
+                result.completeExceptionally(timeoutException);
+              }
+            },
+            timeoutMillis,
+            TimeUnit.MILLISECONDS);
+    unlockData.whenComplete(
+        new BiConsumer<byte[], Throwable>() {
+          @Override
+          public void accept(byte[] data, Throwable throwable) {
+            timeout.cancel(false);
+            if (throwable == null) {
+              result.complete(data);
+            } else {
+              result.completeExceptionally(throwable);
+            }
+          }
+        });
+    return result;
+  }
+
+  /**
+   * Creates the result of the selection of a SAM and logs it.
+   *
+   * @param samReader The SAM reader.
+   * @param legacySam The selected SAM, null if none.
+   * @param error The exception raised by the selection, null if none.
+   * @param startTime The value of {@link System#nanoTime()} at the start of the selection.
+   * @return A not null reference.
+   */
+  private static SamWarmUpResult createResult(
+      CardReader samReader, LegacySam legacySam, Exception error, long startTime) {
+    long selectionTimeNanos = System.nanoTime() - startTime;
+    if (error != null) {
+      logger.error(
+          "SAM selection failed [reader={}, duration={} ms]",
+          samReader.getName(),
+          TimeUnit.NANOSECONDS.toMillis(selectionTimeNanos),
+          error);
+    } else if (logger.isDebugEnabled()) {
+      logger.debug(
+          "SAM selection done [reader={}, samFound={}, duration={} ms]",
+          samReader.getName(),
+          legacySam != null,
+          TimeUnit.NANOSECONDS.toMillis(selectionTimeNanos));
+    }
+    return new ResultAdapter(samReader, legacySam, error, selectionTimeNanos);
+  }
+
+  /**
+   * Holder of the scheduler of the unlock data timeouts, created on the first deferred unlocking.
+   */
+  private static final class TimeoutScheduler {
+
+    private static final ScheduledExecutorService INSTANCE = createScheduler();
+
+    /** Private constructor */
+    private TimeoutScheduler() {}
+
+    /**
+     * Creates a scheduler with a single daemon thread, removing the cancelled timeouts at once.
+     *
+     * @return A not null reference.
+     */
+    private static ScheduledExecutorService createScheduler() {
+      ScheduledThreadPoolExecutor scheduler =
+          new ScheduledThreadPoolExecutor(
+              1,
+              new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                  Thread thread = new Thread(runnable, "legacy-sam-unlock-timeout");
+                  thread.setDaemon(true);
+                  return thread;
+                }
+              });
+      scheduler.setRemoveOnCancelPolicy(true);
+      return scheduler;
+    }
+  }
+
+  /**
+   * Adapter of {@link SamWarmUpResult}.
+   *
+   * @since 1.1.0
+   */
+  static final class ResultAdapter implements SamWarmUpResult {
+
+    private final CardReader samReader;
+    private final LegacySam legacySam;
+    private final Exception error;
+    private final long selectionTimeNanos;
+
+    private ResultAdapter(
+        CardReader samReader, LegacySam legacySam, Exception error, long selectionTimeNanos) {
+      this.samReader = samReader;
+      this.legacySam = legacySam;
+      this.error = error;
+      this.selectionTimeNanos = selectionTimeNanos;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public CardReader getSamReader() {
+      return samReader;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public LegacySam getLegacySam() {
+      return legacySam;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public Exception getError() {
+      return error;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public long getSelectionTimeNanos() {
+      return selectionTimeNanos;
+    }
+  }
+}
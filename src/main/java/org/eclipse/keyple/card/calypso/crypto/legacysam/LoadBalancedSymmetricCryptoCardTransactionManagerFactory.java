@@ -0,0 +1,113 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import java.util.List;
+import org.eclipse.keypop.calypso.card.transaction.spi.SymmetricCryptoCardTransactionManagerFactory;
+import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySam;
+import org.eclipse.keypop.reader.CardReader;
+
+/**
+ * {@link SymmetricCryptoCardTransactionManagerFactory} spreading the card transactions over several
+ * legacy SAMs.
+ *
+ * <p>Each new card transaction is bound to the healthy SAM having the fewest card transactions in
+ * progress (the SAM having been assigned the fewest card transactions so far in case of equality),
+ * a SAM whose last card request failed for a communication reason being only used when no SAM is
+ * healthy.
+ *
+ * <p>A SAM processes one secure session at a time, so each SAM is used by one card transaction at a
+ * time. A card transaction holds its SAM from the start of its secure session until the session is
+ * closed (the card session MAC has been checked) or aborted (a SAM exchange failed). Outside a
+ * secure session, it only holds its SAM while its SAM commands are processed. When the SAM is held
+ * by another card transaction, the card transaction waits for its release. A card transaction is in
+ * progress while it holds its SAM or waits for it.
+ *
+ * <p>With {@link #enableCardAffinity(int)}, the card transactions of the same card are bound to the
+ * SAM of its previous card transaction, so that the card key diversifier may still be selected in
+ * the SAM.
+ *
+ * <p>The SAMs may be of different product types: the extended mode is reported as supported if at
+ * least one SAM supports it, the card transactions using it being then only bound to these SAMs,
+ * and the maximum card APDU length reported is the lowest one of all SAMs.
+ *
+ * <p>A secure session abandoned without any SAM exchange failure (e.g. after a card communication
+ * failure) keeps its SAM held until the card transaction opens a new secure session or until a new
+ * card transaction of the same card is bound to this SAM, the abandoned card transaction being then
+ * no longer able to use the SAM. A card transaction waiting for a SAM longer than the timeout set
+ * by {@link #setSamAcquisitionTimeout(int)} fails. The reuse of the card transaction manager
+ * enabled by {@link ContextSetting#enableCardTransactionManagerReuse()} does not apply to this
+ * factory.
+ *
+ * @since 1.1.0
+ */
+public interface LoadBalancedSymmetricCryptoCardTransactionManagerFactory
+    extends SymmetricCryptoCardTransactionManagerFactory {
+
+  /**
+   * Adds a SAM to which the card transactions can be bound.
+   *
+   * <p>The SAM must no longer be used directly once added.
+   *
+   * @param samReader The reader through which the SAM communicates.
+   * @param sam The SAM, selected by the card selection process.
+   * @return The current instance.
+   * @throws IllegalArgumentException If an argument is null or not provided by Keyple.
+   * @since 1.1.0
+   */
+  LoadBalancedSymmetricCryptoCardTransactionManagerFactory addSam(
+      CardReader samReader, LegacySam sam);
+
+  /**
+   * Enables the routing of the card transactions of the same card (same card key diversifier) to
+   * the same SAM.
+   *
+   * <p>A card transaction is bound to the SAM of the previous card transaction of the card as long
+   * as this SAM is healthy (its last card request did not fail for a communication reason) and has
+   * no more card transactions in progress than the least busy SAM. Otherwise, it is bound to the
+   * least busy SAM, which becomes the SAM of the card. The "Select Diversifier" command is then
+   * saved when the card key diversifier is still selected in the SAM, e.g. for a reload followed
+   * by a validation of the same card. The diversifier selected in the SAM is only checked once the
+   * card transaction holds the SAM, so that the card transactions of other cards bound to the same
+   * SAM cannot change it in the meantime.
+   *
+   * @param maxCards The maximum number of cards whose SAM is remembered, the least recently used
+   *     ones being forgotten first.
+   * @return The current instance.
+   * @throws IllegalArgumentException If maxCards is not positive.
+   * @since 1.1.0
+   */
+  LoadBalancedSymmetricCryptoCardTransactionManagerFactory enableCardAffinity(int maxCards);
+
+  /**
+   * Sets the maximum time a card transaction waits for its SAM while another card transaction holds
+   * it.
+   *
+   * <p>When the SAM is not released in time, the card transaction fails with an {@link
+   * IllegalStateException}. The default timeout is 10 seconds.
+   *
+   * @param timeoutMillis The timeout, in milliseconds.
+   * @return The current instance.
+   * @throws IllegalArgumentException If timeoutMillis is not positive.
+   * @since 1.1.0
+   */
+  LoadBalancedSymmetricCryptoCardTransactionManagerFactory setSamAcquisitionTimeout(
+      int timeoutMillis);
+
+  /**
+   * Returns the utilization of each SAM, in the order in which they were added.
+   *
+   * @return A not null list.
+   * @since 1.1.0
+   */
+  List<SamUtilization> getSamUtilizations();
+}
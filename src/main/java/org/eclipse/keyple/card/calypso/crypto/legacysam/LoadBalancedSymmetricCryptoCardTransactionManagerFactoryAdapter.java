@@ -0,0 +1,558 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.keyple.core.util.Assert;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySam;
+import org.eclipse.keypop.calypso.crypto.symmetric.spi.SymmetricCryptoCardTransactionManagerFactorySpi;
+import org.eclipse.keypop.calypso.crypto.symmetric.spi.SymmetricCryptoCardTransactionManagerSpi;
+import org.eclipse.keypop.card.CardBrokenCommunicationException;
+import org.eclipse.keypop.card.CardResponseApi;
+import org.eclipse.keypop.card.ChannelControl;
+import org.eclipse.keypop.card.ProxyReaderApi;
+import org.eclipse.keypop.card.ReaderBrokenCommunicationException;
+import org.eclipse.keypop.card.UnexpectedStatusWordException;
+import org.eclipse.keypop.card.spi.CardRequestSpi;
+import org.eclipse.keypop.reader.CardReader;
+
+/**
+ * Adapter of {@link LoadBalancedSymmetricCryptoCardTransactionManagerFactory}.
+ *
+ * @since 1.1.0
+ */
+final class LoadBalancedSymmetricCryptoCardTransactionManagerFactoryAdapter
+    implements LoadBalancedSymmetricCryptoCardTransactionManagerFactory,
+        SymmetricCryptoCardTransactionManagerFactorySpi {
+
+  private static final String MSG_CANNOT_CAST_SAM_READER_TO_PROXY_READER_API =
+      "Cannot cast 'samReader' to ProxyReaderApi: ";
+  private static final String MSG_CANNOT_CAST_SAM_TO_LEGACY_SAM_ADAPTER =
+      "Cannot cast 'sam' to LegacySamAdapter: ";
+  private static final int DEFAULT_SAM_ACQUISITION_TIMEOUT_MILLIS = 10000;
+
+  private final ContextSettingAdapter contextSetting;
+  private final boolean isSessionChallengePrefetchEnabled;
+  private final TransactionAuditSink transactionAuditSink;
+  private final List<SamSlot> samSlots = new CopyOnWriteArrayList<>();
+  private Map<String, SamSlot> cardSamSlots; // NOSONAR accessed under lock
+  private volatile int samAcquisitionTimeoutMillis = DEFAULT_SAM_ACQUISITION_TIMEOUT_MILLIS;
+
+  /**
+   * Constructor
+   *
+   * @param contextSetting The context setting.
+   * @since 1.1.0
+   */
+  LoadBalancedSymmetricCryptoCardTransactionManagerFactoryAdapter(
+      ContextSettingAdapter contextSetting) {
+    this.contextSetting = contextSetting;
+    this.isSessionChallengePrefetchEnabled = contextSetting.isSessionChallengePrefetchEnabled();
+    this.transactionAuditSink = contextSetting.getTransactionAuditSink();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  public LoadBalancedSymmetricCryptoCardTransactionManagerFactory addSam(
+      CardReader samReader, LegacySam sam) {
+    Assert.getInstance().notNull(samReader, "samReader").notNull(sam, "sam");
+    if (!(samReader instanceof ProxyReaderApi)) {
+      throw new IllegalArgumentException(
+          MSG_CANNOT_CAST_SAM_READER_TO_PROXY_READER_API + samReader.getClass().getName());
+    }
+    if (!(sam instanceof LegacySamAdapter)) {
+      throw new IllegalArgumentException(
+          MSG_CANNOT_CAST_SAM_TO_LEGACY_SAM_ADAPTER + sam.getClass().getName());
+    }
+    samSlots.add(new SamSlot((ProxyReaderApi) samReader, (LegacySamAdapter) sam, contextSetting));
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  public synchronized LoadBalancedSymmetricCryptoCardTransactionManagerFactory
+      enableCardAffinity(final int maxCards) {
+    Assert.getInstance().greaterOrEqual(maxCards, 1, "maxCards");
+    cardSamSlots =
+        new LinkedHashMap<String, SamSlot>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, SamSlot> eldest) {
+            return size() > maxCards;
+          }
+        };
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  public LoadBalancedSymmetricCryptoCardTransactionManagerFactory setSamAcquisitionTimeout(
+      int timeoutMillis) {
+    Assert.getInstance().greaterOrEqual(timeoutMillis, 1, "timeoutMillis");
+    samAcquisitionTimeoutMillis = timeoutMillis;
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  public List<SamUtilization> getSamUtilizations() {
+    return new ArrayList<SamUtilization>(samSlots);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>True if at least one SAM supports the extended mode.
+   *
+   * @since 1.1.0
+   */
+  @Override
+  public boolean isExtendedModeSupported() {
+    for (SamSlot samSlot : samSlots) {
+      if (samSlot.isExtendedModeSupported) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The lowest value of all SAMs, a card transaction being possibly bound to any of them.
+   *
+   * @throws IllegalStateException If no SAM has been added.
+   * @since 1.1.0
+   */
+  @Override
+  public int getMaxCardApduLengthSupported() {
+    if (samSlots.isEmpty()) {
+      throw new IllegalStateException("No SAM has been added");
+    }
+    int maxCardApduLengthSupported = Integer.MAX_VALUE;
+    for (SamSlot samSlot : samSlots) {
+      maxCardApduLengthSupported =
+          Math.min(maxCardApduLengthSupported, samSlot.maxCardApduLengthSupported);
+    }
+    return maxCardApduLengthSupported;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Nothing is done: the SAM of a card transaction is only chosen when the card transaction is
+   * created, the challenge being then requested when the secure session is opened.
+   *
+   * @since 1.1.0
+   */
+  @Override
+  public void preInitTerminalSessionContext() {
+    /* nothing to do */
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The card transaction is bound to the SAM of the card if the card affinity is enabled and
+   * this SAM is available, otherwise to the healthy SAM having the fewest card transactions in
+   * progress. The SAM is only acquired when the card transaction first uses it.
+   *
+   * <p>If the chosen SAM is still held by a previous card transaction of the same card, this card
+   * transaction is considered abandoned and the SAM is released.
+   *
+   * @throws IllegalStateException If no SAM has been added or if the extended mode is requested
+   *     and not supported by any SAM.
+   * @since 1.1.0
+   */
+  @Override
+  public SymmetricCryptoCardTransactionManagerSpi createCardTransactionManager(
+      byte[] cardKeyDiversifier, boolean useExtendedMode, List<byte[]> transactionAuditData) {
+    Lease lease = bindCardTransaction(cardKeyDiversifier, useExtendedMode);
+    SymmetricCryptoCardTransactionManagerAdapter manager =
+        new SymmetricCryptoCardTransactionManagerAdapter(
+            lease,
+            lease.samSlot.sam,
+            cardKeyDiversifier,
+            useExtendedMode,
+            lease.samSlot.maxCardApduLengthSupported,
+            isSessionChallengePrefetchEnabled,
+            transactionAuditSink,
+            transactionAuditData);
+    manager.setSamLease(lease);
+    return manager;
+  }
+
+  /**
+   * Chooses the SAM of a new card transaction.
+   *
+   * @param cardKeyDiversifier The card key diversifier.
+   * @param useExtendedMode True if the SAM must support the extended mode.
+   * @return A not null reference.
+   */
+  private synchronized Lease bindCardTransaction(
+      byte[] cardKeyDiversifier, boolean useExtendedMode) {
+    if (samSlots.isEmpty()) {
+      throw new IllegalStateException("No SAM has been added");
+    }
+    SamSlot bestSamSlot = null;
+    int bestTransactionsInProgressCount = 0;
+    for (SamSlot samSlot : samSlots) {
+      if (useExtendedMode && !samSlot.isExtendedModeSupported) {
+        continue;
+      }
+      int transactionsInProgressCount = samSlot.getTransactionsInProgressCount();
+      if (bestSamSlot == null
+          || isLessBusy(
+              samSlot, transactionsInProgressCount, bestSamSlot, bestTransactionsInProgressCount)) {
+        bestSamSlot = samSlot;
+        bestTransactionsInProgressCount = transactionsInProgressCount;
+      }
+    }
+    if (bestSamSlot == null) {
+      throw new IllegalStateException("The extended mode is not supported by the crypto service");
+    }
+    String cardKey = cardKeyDiversifier != null ? HexUtil.toHex(cardKeyDiversifier) : null;
+    if (cardSamSlots != null && cardKey != null) {
+      SamSlot cardSamSlot = cardSamSlots.get(cardKey);
+      // The SAM of the card is kept while it is as available as the least busy SAM
+      if (cardSamSlot != null
+          && (!useExtendedMode || cardSamSlot.isExtendedModeSupported)
+          && (cardSamSlot.isHealthy || !bestSamSlot.isHealthy)
+          && cardSamSlot.getTransactionsInProgressCount() <= bestTransactionsInProgressCount) {
+        bestSamSlot = cardSamSlot;
+      } else {
+        cardSamSlots.put(cardKey, bestSamSlot);
+      }
+    }
+    if (cardKey != null) {
+      // The card transaction of the same card still holding the SAM has been abandoned
+      bestSamSlot.revoke(cardKey);
+    }
+    bestSamSlot.transactionCount.incrementAndGet();
+    return new Lease(bestSamSlot, cardKey, samAcquisitionTimeoutMillis);
+  }
+
+  /**
+   * Indicates whether a SAM is less busy than another one: a healthy SAM is less busy than an
+   * unhealthy one, then the SAM having the fewest card transactions in progress, then the SAM
+   * having been assigned the fewest card transactions.
+   *
+   * @param samSlot The SAM.
+   * @param transactionsInProgressCount The number of card transactions in progress of the SAM.
+   * @param otherSamSlot The other SAM.
+   * @param otherTransactionsInProgressCount The number of card transactions in progress of the
+   *     other SAM.
+   * @return true if the SAM is less busy than the other SAM.
+   */
+  private static boolean isLessBusy(
+      SamSlot samSlot,
+      int transactionsInProgressCount,
+      SamSlot otherSamSlot,
+      int otherTransactionsInProgressCount) {
+    if (samSlot.isHealthy != otherSamSlot.isHealthy) {
+      return samSlot.isHealthy;
+    }
+    if (transactionsInProgressCount != otherTransactionsInProgressCount) {
+      return transactionsInProgressCount < otherTransactionsInProgressCount;
+    }
+    return samSlot.transactionCount.get() < otherSamSlot.transactionCount.get();
+  }
+
+  /**
+   * A SAM and its utilization counters.
+   *
+   * <p>The SAM is used by one card transaction at a time: a card transaction holds it from its
+   * acquisition until its release, the other card transactions bound to the SAM waiting meanwhile.
+   */
+  private static final class SamSlot implements SamUtilization {
+
+    private final ProxyReaderApi samReader;
+    private final LegacySamAdapter sam;
+    private final boolean isExtendedModeSupported;
+    private final int maxCardApduLengthSupported;
+    private final long creationTimeNanos = System.nanoTime();
+    private final AtomicLong transactionCount = new AtomicLong();
+    private final AtomicLong cardRequestCount = new AtomicLong();
+    private final AtomicLong busyTimeNanos = new AtomicLong();
+    private volatile boolean isHealthy = true;
+    private Lease owner; // NOSONAR accessed under lock
+    private int waitingLeaseCount; // NOSONAR accessed under lock
+
+    private SamSlot(
+        ProxyReaderApi samReader, LegacySamAdapter sam, ContextSettingAdapter contextSetting) {
+      this.samReader = samReader;
+      this.sam = sam;
+      this.isExtendedModeSupported =
+          sam.getProductType() == LegacySam.ProductType.SAM_C1
+              || sam.getProductType() == LegacySam.ProductType.HSM_C1;
+      this.maxCardApduLengthSupported =
+          contextSetting.getContactReaderPayloadCapacity() != null
+              ? Math.min(
+                  sam.getMaxDigestDataLength(), contextSetting.getContactReaderPayloadCapacity())
+              : sam.getMaxDigestDataLength();
+    }
+
+    /**
+     * Waits until the SAM is not held by any card transaction, then makes it held by the provided
+     * one.
+     *
+     * @param lease The card transaction.
+     * @throws IllegalStateException If the SAM has been released to a new card transaction of the
+     *     same card, if the SAM is not available within the acquisition timeout or if the current
+     *     thread is interrupted while waiting.
+     */
+    private synchronized void acquire(Lease lease) {
+      if (owner == lease) {
+        return;
+      }
+      if (lease.isRevoked) {
+        throw new IllegalStateException(
+            "The SAM has been released to a new card transaction of the same card");
+      }
+      waitingLeaseCount++;
+      try {
+        long deadlineNanos =
+            System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lease.acquisitionTimeoutMillis);
+        while (owner != null) {
+          long remainingNanos = deadlineNanos - System.nanoTime();
+          if (remainingNanos <= 0) {
+            throw new IllegalStateException(
+                "The SAM has not been released by another card transaction within "
+                    + lease.acquisitionTimeoutMillis
+                    + " ms");
+          }
+          TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for the SAM", e);
+      } finally {
+        waitingLeaseCount--;
+      }
+      owner = lease;
+    }
+
+    /**
+     * Makes the SAM available if it is held by the provided card transaction.
+     *
+     * @param lease The card transaction.
+     */
+    private synchronized void release(Lease lease) {
+      if (owner == lease) {
+        owner = null;
+        notifyAll();
+      }
+    }
+
+    /**
+     * Makes the SAM available if it is held by a card transaction of the provided card, this card
+     * transaction being no longer allowed to acquire it.
+     *
+     * @param cardKey The card key diversifier of the card, in hexadecimal.
+     */
+    private synchronized void revoke(String cardKey) {
+      if (owner != null && cardKey.equals(owner.cardKey)) {
+        owner.isRevoked = true;
+        owner = null;
+        notifyAll();
+      }
+    }
+
+    /**
+     * Transmits a card request to the SAM, accounting for the time spent.
+     *
+     * @param cardRequest The card request.
+     * @param channelControl The channel control.
+     * @return The card response.
+     */
+    private CardResponseApi transmitCardRequest(
+        CardRequestSpi cardRequest, ChannelControl channelControl)
+        throws ReaderBrokenCommunicationException, CardBrokenCommunicationException,
+            UnexpectedStatusWordException {
+      long startTimeNanos = System.nanoTime();
+      try {
+        CardResponseApi cardResponse = samReader.transmitCardRequest(cardRequest, channelControl);
+        isHealthy = true;
+        return cardResponse;
+      } catch (ReaderBrokenCommunicationException | CardBrokenCommunicationException e) {
+        isHealthy = false;
+        throw e;
+      } catch (UnexpectedStatusWordException e) {
+        isHealthy = true;
+        throw e;
+      } finally {
+        cardRequestCount.incrementAndGet();
+        busyTimeNanos.addAndGet(System.nanoTime() - startTimeNanos);
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public LegacySam getSam() {
+      return sam;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public boolean isHealthy() {
+      return isHealthy;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public synchronized int getTransactionsInProgressCount() {
+      return (owner != null ? 1 : 0) + waitingLeaseCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public long getTransactionCount() {
+      return transactionCount.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public long getCardRequestCount() {
+      return cardRequestCount.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public long getBusyTimeNanos() {
+      return busyTimeNanos.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public double getUtilization() {
+      long elapsedTimeNanos = System.nanoTime() - creationTimeNanos;
+      if (elapsedTimeNanos <= 0) {
+        return 0;
+      }
+      return Math.min(1.0, (double) busyTimeNanos.get() / elapsedTimeNanos);
+    }
+  }
+
+  /**
+   * The binding of a card transaction to a SAM, through which the card transaction communicates
+   * with the SAM.
+   */
+  private static final class Lease implements ProxyReaderApi, SamLease {
+
+    private final SamSlot samSlot;
+    private final String cardKey;
+    private final int acquisitionTimeoutMillis;
+    private boolean isRevoked; // NOSONAR accessed under the lock of the SAM slot
+
+    private Lease(SamSlot samSlot, String cardKey, int acquisitionTimeoutMillis) {
+      this.samSlot = samSlot;
+      this.cardKey = cardKey;
+      this.acquisitionTimeoutMillis = acquisitionTimeoutMillis;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public void acquire() {
+      samSlot.acquire(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public void release() {
+      samSlot.release(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The SAM is acquired first if the card transaction does not hold it.
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public CardResponseApi transmitCardRequest(
+        CardRequestSpi cardRequest, ChannelControl channelControl)
+        throws ReaderBrokenCommunicationException, CardBrokenCommunicationException,
+            UnexpectedStatusWordException {
+      samSlot.acquire(this);
+      return samSlot.transmitCardRequest(cardRequest, channelControl);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public void releaseChannel() throws ReaderBrokenCommunicationException {
+      samSlot.samReader.releaseChannel();
+    }
+  }
+}
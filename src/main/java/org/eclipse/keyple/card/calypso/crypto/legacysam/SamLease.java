@@ -0,0 +1,45 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+/**
+ * Exclusive use of a SAM shared by several card transactions.
+ *
+ * <p>Implemented by the bindings of the card transactions to the SAMs of a {@link
+ * LoadBalancedSymmetricCryptoCardTransactionManagerFactory}: the SAM is used by one card
+ * transaction at a time, the other card transactions bound to it waiting for its release.
+ *
+ * @since 1.1.0
+ */
+interface SamLease {
+
+  /**
+   * Waits until the SAM is available, then reserves it for the card transaction.
+   *
+   * <p>Nothing is done if the SAM is already reserved for the card transaction.
+   *
+   * @throws IllegalStateException If the SAM has been released to a new card transaction of the
+   *     same card, if the SAM is not available within the acquisition timeout or if the current
+   *     thread is interrupted while waiting.
+   * @since 1.1.0
+   */
+  void acquire();
+
+  /**
+   * Makes the SAM available to the other card transactions.
+   *
+   * <p>Nothing is done if the SAM is not reserved for the card transaction.
+   *
+   * @since 1.1.0
+   */
+  void release();
+}
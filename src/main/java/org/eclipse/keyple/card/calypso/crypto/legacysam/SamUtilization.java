@@ -0,0 +1,83 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySam;
+
+/**
+ * Live utilization figures of a SAM managed by a {@link
+ * LoadBalancedSymmetricCryptoCardTransactionManagerFactory}.
+ *
+ * <p>The figures are read at the time of the call and cover the period since the SAM was added.
+ *
+ * @since 1.1.0
+ */
+public interface SamUtilization {
+
+  /**
+   * Returns the SAM.
+   *
+   * @return A not null reference.
+   * @since 1.1.0
+   */
+  LegacySam getSam();
+
+  /**
+   * Indicates whether the SAM is healthy, i.e. whether its last card request did not fail for a
+   * communication reason.
+   *
+   * @return true if the SAM is healthy.
+   * @since 1.1.0
+   */
+  boolean isHealthy();
+
+  /**
+   * Returns the number of card transactions bound to the SAM and currently in progress, i.e.
+   * holding the SAM or waiting for it.
+   *
+   * @return A positive or zero value.
+   * @since 1.1.0
+   */
+  int getTransactionsInProgressCount();
+
+  /**
+   * Returns the number of card transactions bound to the SAM.
+   *
+   * @return A positive or zero value.
+   * @since 1.1.0
+   */
+  long getTransactionCount();
+
+  /**
+   * Returns the number of card requests transmitted to the SAM.
+   *
+   * @return A positive or zero value.
+   * @since 1.1.0
+   */
+  long getCardRequestCount();
+
+  /**
+   * Returns the cumulative time spent transmitting card requests to the SAM.
+   *
+   * @return A positive or zero value, in nanoseconds.
+   * @since 1.1.0
+   */
+  long getBusyTimeNanos();
+
+  /**
+   * Returns the fraction of the time the SAM spent processing card requests.
+   *
+   * @return A value in range [0..1].
+   * @since 1.1.0
+   */
+  double getUtilization();
+}
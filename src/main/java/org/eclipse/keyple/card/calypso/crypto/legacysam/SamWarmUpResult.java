@@ -0,0 +1,61 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySam;
+import org.eclipse.keypop.reader.CardReader;
+
+/**
+ * Result of the selection of the SAM inserted in a reader by {@link
+ * LegacySamExtensionService#warmUpSams(java.util.List, org.eclipse.keypop.reader.ReaderApiFactory,
+ * java.util.function.Supplier, java.util.concurrent.Executor)}.
+ *
+ * @since 1.1.0
+ */
+public interface SamWarmUpResult {
+
+  /**
+   * Returns the SAM reader.
+   *
+   * @return A not null reference.
+   * @since 1.1.0
+   */
+  CardReader getSamReader();
+
+  /**
+   * Returns the selected SAM, including the data read during its selection.
+   *
+   * @return null if no SAM is inserted, if the SAM did not match the selection or if the selection
+   *     failed.
+   * @since 1.1.0
+   */
+  LegacySam getLegacySam();
+
+  /**
+   * Returns the exception raised by the selection.
+   *
+   * @return null if the selection did not fail.
+   * @since 1.1.0
+   */
+  Exception getError();
+
+  /**
+   * Returns the time spent selecting the SAM, including its unlocking and the data reads, from the
+   * start of the selection on an executor thread.
+   *
+   * <p>With an {@link AsyncDynamicUnlockDataProvider}, it includes the wait for the unlock data.
+   *
+   * @return A positive or zero value, in nanoseconds.
+   * @since 1.1.0
+   */
+  long getSelectionTimeNanos();
+}
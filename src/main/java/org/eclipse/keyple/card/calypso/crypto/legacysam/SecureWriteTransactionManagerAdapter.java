@@ -11,6 +11,9 @@
  ************************************************************************************** */
 package org.eclipse.keyple.card.calypso.crypto.legacysam;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import org.eclipse.keyple.core.util.Assert;
 import org.eclipse.keypop.calypso.crypto.legacysam.CounterIncrementAccess;
 import org.eclipse.keypop.calypso.crypto.legacysam.SystemKeyType;
@@ -30,7 +33,8 @@
  * @since 0.9.0
  */
 final class SecureWriteTransactionManagerAdapter extends CommonTransactionManagerAdapter
-    implements SecureWriteTransactionManager {
+    implements SecureWriteTransactionManager,
+        AsyncCommandProcessing<SecureWriteTransactionManager> {
 
   /**
    * Constructor
@@ -337,4 +341,22 @@ public SecureWriteTransactionManager processCommands(ChannelControl channelContr
     processTargetSamCommands(channelControl);
     return this;
   }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.1.0
+   */
+  @Override
+  public CompletableFuture<SecureWriteTransactionManager> processCommandsAsync(
+      ChannelControl channelControl, Executor executor) {
+    return processTargetSamCommandsAsync(channelControl, executor)
+        .thenApply(
+            new Function<Void, SecureWriteTransactionManager>() {
+              @Override
+              public SecureWriteTransactionManager apply(Void unused) {
+                return SecureWriteTransactionManagerAdapter.this;
+              }
+            });
+  }
 }
@@ -45,21 +45,31 @@
   private static final String MSG_SIGNATURE_SIZE = "signature size";
   private static final String MSG_KEY_DIVERSIFIER_SIZE_IS_IN_RANGE_1_8 =
       "key diversifier size is in range [1..8]";
+  private static final int CARD_APDU_RECORDS_INITIAL_SIZE = 1024;
 
   /* Final fields */
   private final ProxyReaderApi samReader;
   private final LegacySamAdapter sam;
-  private final byte[] cardKeyDiversifier;
-  private final boolean isExtendedModeRequired;
+  private final DtoAdapters.CommandContextDto context;
   private final int maxCardApduLengthSupported;
-  private final List<byte[]> transactionAuditData;
+  private final boolean isSessionChallengePrefetchEnabled;
   private final List<Command> samCommands = new ArrayList<>();
+  private final DigestManager sessionDigestManager = new DigestManager();
+  private final TransactionAuditSinkAdapters.CardTransactionSink transactionAuditSink;
 
   /* Dynamic fields */
+  private byte[] cardKeyDiversifier;
+  private boolean isExtendedModeRequired;
+  // Card APDUs waiting to be digested, stored as [length][apdu] records. Reused between sessions.
+  private byte[] cardApduRecords = new byte[CARD_APDU_RECORDS_INITIAL_SIZE];
+  // Diversifier of a prepared "Select Diversifier" not yet processed by the SAM.
   private byte[] currentKeyDiversifier;
   private DigestManager digestManager;
   private boolean isEncryptionActive;
   private boolean isSelectDiversifierNeededOnDigestInit;
+  private int sessionDigestApduCount;
+  private boolean isSecureSessionOpen;
+  private SamLease samLease;
 
   /**
    * Creates an instance of {@link CardTransactionLegacySamExtension}.
@@ -70,6 +80,11 @@
    * @param useExtendedMode True if the extended mode should be used.
    * @param maxCardApduLengthSupported The maximum length, in bytes, that a single APDU command sent
    *     to the SAM can contain.
+   * @param isSessionChallengePrefetchEnabled True if the challenge of the next session must be
+   *     requested along with the card session MAC verification.
+   * @param transactionAuditSink The sink of the transaction audit data defined by the context
+   *     setting, null to add the APDUs to the transaction audit data list.
+   * @param transactionAuditData The list where the transaction audit data must be stored.
    * @since 2.0.0
    */
   SymmetricCryptoCardTransactionManagerAdapter(
@@ -78,13 +93,19 @@
       byte[] cardKeyDiversifier,
       boolean useExtendedMode,
       int maxCardApduLengthSupported,
+      boolean isSessionChallengePrefetchEnabled,
+      TransactionAuditSink transactionAuditSink,
       List<byte[]> transactionAuditData) {
     this.samReader = samReader;
     this.sam = sam;
+    context = new DtoAdapters.CommandContextDto(sam, null, null);
     this.cardKeyDiversifier = cardKeyDiversifier;
     isExtendedModeRequired = useExtendedMode;
     this.maxCardApduLengthSupported = maxCardApduLengthSupported;
-    this.transactionAuditData = transactionAuditData;
+    this.isSessionChallengePrefetchEnabled = isSessionChallengePrefetchEnabled;
+    this.transactionAuditSink =
+        new TransactionAuditSinkAdapters.CardTransactionSink(
+            transactionAuditSink, transactionAuditData);
   }
 
   /**
@@ -94,7 +115,61 @@
    * @since 0.3.0
    */
   private DtoAdapters.CommandContextDto getContext() {
-    return new DtoAdapters.CommandContextDto(sam, null, null);
+    return context;
+  }
+
+  /**
+   * Re-arms the manager for a new card transaction, as if it had just been created with the
+   * provided parameters.
+   *
+   * <p>The pending commands and the state of the previous transaction are discarded, the internal
+   * buffers are kept.
+   *
+   * @param cardKeyDiversifier The diversifier to use for card related computations.
+   * @param useExtendedMode True if the extended mode should be used.
+   * @param transactionAuditData The list where the transaction audit data must be stored.
+   * @return The current instance.
+   * @since 1.1.0
+   */
+  SymmetricCryptoCardTransactionManagerAdapter reset(
+      byte[] cardKeyDiversifier, boolean useExtendedMode, List<byte[]> transactionAuditData) {
+    this.cardKeyDiversifier = cardKeyDiversifier;
+    isExtendedModeRequired = useExtendedMode;
+    transactionAuditSink.reset(transactionAuditData);
+    samCommands.clear();
+    currentKeyDiversifier = null;
+    digestManager = null;
+    isEncryptionActive = false;
+    isSelectDiversifierNeededOnDigestInit = false;
+    sessionDigestApduCount = 0;
+    isSecureSessionOpen = false;
+    return this;
+  }
+
+  /**
+   * Sets the lease through which the SAM, shared with other card transactions, is used.
+   *
+   * <p>The SAM is acquired when a secure session is started and released when it is closed (the
+   * card session MAC has been checked, whatever the result) or aborted (a SAM exchange or the
+   * digest of a card APDU failed). Outside a secure session, it is released once the SAM commands
+   * have been processed.
+   *
+   * @param samLease The lease, null if the SAM is dedicated to the card transaction.
+   * @since 1.1.0
+   */
+  void setSamLease(SamLease samLease) {
+    this.samLease = samLease;
+  }
+
+  /**
+   * Returns the number of digest SAM APDUs ("Digest Init", "Digest Update", "Digest Update
+   * Multiple" and "Digest Close") prepared for the current or last secure session.
+   *
+   * @return 0 if no secure session has been started.
+   * @since 1.1.0
+   */
+  int getSessionDigestApduCount() {
+    return sessionDigestApduCount;
   }
 
   /**
@@ -105,6 +180,10 @@ private DtoAdapters.CommandContextDto getContext() {
   @Override
   public byte[] initTerminalSecureSessionContext()
       throws SymmetricCryptoIOException, SymmetricCryptoException {
+    if (samLease != null) {
+      samLease.acquire();
+    }
+    isSecureSessionOpen = true;
     if (isSelectDiversifierNeeded(cardKeyDiversifier)) {
       isSelectDiversifierNeededOnDigestInit = true;
     }
@@ -121,12 +200,23 @@ public byte[] initTerminalSecureSessionContext()
   }
 
   /**
+   * The current key diversifier is the one of the pending "Select Diversifier" command if any,
+   * otherwise the one already selected in the SAM, possibly by a previous transaction.
+   *
+   * <p>A SAM shared with other card transactions is acquired first, so that the diversifier
+   * selected in the SAM cannot change before the prepared commands are processed.
+   *
    * @param keyDiversifier The key diversifier to use.
    * @return true if the current key diversifier has changed and therefore a "Select Diversifier"
    *     command is needed.
    */
   private boolean isSelectDiversifierNeeded(byte[] keyDiversifier) {
-    if (!Arrays.equals(currentKeyDiversifier, keyDiversifier)) {
+    if (samLease != null) {
+      samLease.acquire();
+    }
+    byte[] selectedKeyDiversifier =
+        currentKeyDiversifier != null ? currentKeyDiversifier : sam.getSelectedDiversifier();
+    if (!Arrays.equals(selectedKeyDiversifier, keyDiversifier)) {
       currentKeyDiversifier = keyDiversifier;
       return true;
     }
@@ -140,7 +230,8 @@ private boolean isSelectDiversifierNeeded(byte[] keyDiversifier) {
    */
   @Override
   public void initTerminalSessionMac(byte[] openSecureSessionDataOut, byte kif, byte kvc) {
-    digestManager = new DigestManager(openSecureSessionDataOut, kif, kvc);
+    digestManager = sessionDigestManager.init(openSecureSessionDataOut, kif, kvc);
+    sessionDigestApduCount = 0;
   }
 
   /**
@@ -164,11 +255,69 @@ public byte[] updateTerminalSessionMac(byte[] cardApdu)
       return samCommand.getProcessedData();
     } else {
       // Plain mode.
-      digestManager.updateSession(cardApdu);
+      try {
+        digestManager.updateSession(cardApdu);
+      } catch (RuntimeException e) {
+        abortSecureSession();
+        throw e;
+      }
+      return null; // NOSONAR
+    }
+  }
+
+  /**
+   * Updates the session MAC with several card APDUs exchanged consecutively.
+   *
+   * <p>In encrypted mode, all the APDUs are ciphered/deciphered by a single SAM card request
+   * instead of one request per APDU. Typically, the response of a card command and the next card
+   * command can be processed together.
+   *
+   * @param cardApdus The card APDUs, in the order of the exchanges with the card.
+   * @return The list of ciphered/deciphered APDUs in encrypted mode, null otherwise.
+   * @throws SymmetricCryptoIOException If there is an I/O error with the SAM.
+   * @throws SymmetricCryptoException If there is an error processing the SAM commands.
+   * @since 1.1.0
+   */
+  List<byte[]> updateTerminalSessionMac(List<byte[]> cardApdus)
+      throws SymmetricCryptoIOException, SymmetricCryptoException {
+    if (isEncryptionActive) {
+      // Encrypted mode.
+      digestManager.prepareCommands();
+      List<CommandDigestUpdate> samCommandsForEncryption = new ArrayList<>(cardApdus.size());
+      for (byte[] cardApdu : cardApdus) {
+        samCommandsForEncryption.add(digestManager.prepareCommandForEncryption(cardApdu));
+      }
+      processCommands();
+      List<byte[]> processedData = new ArrayList<>(samCommandsForEncryption.size());
+      for (CommandDigestUpdate samCommand : samCommandsForEncryption) {
+        processedData.add(samCommand.getProcessedData());
+      }
+      return processedData;
+    } else {
+      // Plain mode.
+      try {
+        for (byte[] cardApdu : cardApdus) {
+          digestManager.updateSession(cardApdu);
+        }
+      } catch (RuntimeException e) {
+        abortSecureSession();
+        throw e;
+      }
       return null; // NOSONAR
     }
   }
 
+  /**
+   * Aborts the secure session, if any, making a SAM shared with other card transactions available
+   * to them.
+   */
+  private void abortSecureSession() {
+    isSecureSessionOpen = false;
+    if (samLease != null) {
+      samLease.release();
+    }
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -233,13 +382,17 @@ public void deactivateEncryption() {
   @Override
   public boolean isCardSessionMacValid(byte[] cardSessionMac)
       throws SymmetricCryptoIOException, SymmetricCryptoException {
-    samCommands.add(new CommandDigestAuthenticate(getContext(), cardSessionMac));
-    try {
-      processCommands();
-      return true;
-    } catch (InvalidCardMacException e) {
-      return false;
+    CommandDigestAuthenticate cmdSamDigestAuthenticate =
+        new CommandDigestAuthenticate(getContext(), cardSessionMac);
+    samCommands.add(cmdSamDigestAuthenticate);
+    if (isSessionChallengePrefetchEnabled) {
+      // The challenge of the next session is obtained within the same SAM exchange. It will not be
+      // processed if the card session MAC is invalid.
+      samCommands.add(new CommandGetChallenge(getContext(), 8));
     }
+    isSecureSessionOpen = false;
+    processCommands();
+    return !cmdSamDigestAuthenticate.isNegativeResult();
   }
 
   /**
@@ -267,13 +420,10 @@ public void computeSvCommandSecurityData(SvCommandSecurityDataApi svCommandSecur
   @Override
   public boolean isCardSvMacValid(byte[] cardSvMac)
       throws SymmetricCryptoIOException, SymmetricCryptoException {
-    samCommands.add(new CommandSvCheck(getContext(), cardSvMac));
-    try {
-      processCommands();
-      return true;
-    } catch (InvalidCardMacException e) {
-      return false;
-    }
+    CommandSvCheck cmdSamSvCheck = new CommandSvCheck(getContext(), cardSvMac);
+    samCommands.add(cmdSamSvCheck);
+    processCommands();
+    return !cmdSamSvCheck.isNegativeResult();
   }
 
   /** Prepares a "Give Random" SAM command. */
@@ -387,7 +537,7 @@ private void processCommands() throws SymmetricCryptoException, SymmetricCryptoI
       // Transmit the commands to the SAM
       CardResponseApi cardResponse =
           CardTransactionUtil.transmitCardRequest(
-              cardRequest, samReader, sam, transactionAuditData);
+              cardRequest, samReader, sam, transactionAuditSink);
 
       // Retrieve the list of R-APDUs
       List<ApduResponseApi> apduResponses =
@@ -408,7 +558,7 @@ private void processCommands() throws SymmetricCryptoException, SymmetricCryptoI
                     + MSG_SAM_NB_RESPONSES
                     + apduResponses.size()
                     + CardTransactionUtil.getTransactionAuditDataAsString(
-                        transactionAuditData, sam)));
+                        transactionAuditSink, sam)));
       }
 
       // We go through all the responses (and not the requests) because there may be fewer in the
@@ -419,14 +569,10 @@ private void processCommands() throws SymmetricCryptoException, SymmetricCryptoI
           samCommands.get(i).parseResponse(apduResponses.get(i));
         } catch (CommandException e) {
           CommandRef commandRef = samCommands.get(i).getCommandRef();
-          if (commandRef == CommandRef.DIGEST_AUTHENTICATE && e instanceof SecurityDataException) {
-            throw new InvalidCardMacException("Invalid card signature");
-          } else if ((commandRef == CommandRef.PSO_VERIFY_SIGNATURE
+          if ((commandRef == CommandRef.PSO_VERIFY_SIGNATURE
                   || commandRef == CommandRef.DATA_CIPHER)
               && e instanceof SecurityDataException) {
             throw new InvalidSignatureException("Invalid signature", e);
-          } else if (commandRef == CommandRef.SV_CHECK && e instanceof SecurityDataException) {
-            throw new InvalidCardMacException("Invalid SV card signature");
           }
           String sw =
               samCommands.get(i).getApduResponse() != null
@@ -445,9 +591,14 @@ private void processCommands() throws SymmetricCryptoException, SymmetricCryptoI
                       + ", SW: "
                       + sw
                       + CardTransactionUtil.getTransactionAuditDataAsString(
-                          transactionAuditData, sam),
+                          transactionAuditSink, sam),
                   e));
         }
+        if (samCommands.get(i).isNegativeResult()) {
+          // Expected negative result (e.g. incorrect card MAC): the SAM stops processing the
+          // request, the following commands are ignored.
+          return;
+        }
       }
 
       // Finally, if no error has occurred and there are fewer responses than requests, then we
@@ -464,11 +615,23 @@ private void processCommands() throws SymmetricCryptoException, SymmetricCryptoI
                     + MSG_SAM_NB_RESPONSES
                     + apduResponses.size()
                     + CardTransactionUtil.getTransactionAuditDataAsString(
-                        transactionAuditData, sam)));
+                        transactionAuditSink, sam)));
       }
+    } catch (SymmetricCryptoException | SymmetricCryptoIOException | RuntimeException e) {
+      // The secure session, if any, is aborted
+      isSecureSessionOpen = false;
+      throw e;
     } finally {
       // Reset the list of commands.
       samCommands.clear();
+      if (!isSecureSessionOpen && samLease != null) {
+        samLease.release();
+      }
+      // From now on, the selected diversifier is tracked by the SAM, unless its selection is
+      // postponed to the "Digest Init".
+      if (!isSelectDiversifierNeededOnDigestInit) {
+        currentKeyDiversifier = null;
+      }
     }
   }
 
@@ -693,46 +856,59 @@ public CardTransactionLegacySamExtension prepareVerifySignature(
     return this;
   }
 
-  /** The manager of the digest session. */
+  /** The manager of the digest session, reused by the successive sessions of the manager. */
   private final class DigestManager {
 
-    private final byte[] openSecureSessionDataOut;
-    private final byte sessionKif;
-    private final byte sessionKvc;
-    private final List<byte[]> cardApdus = new ArrayList<>();
+    private byte[] openSecureSessionDataOut;
+    private byte sessionKif;
+    private byte sessionKvc;
+    private int cardApduRecordsLength;
     private boolean isDigestInitDone;
-    boolean isRequest = true;
+    boolean isRequest;
 
     /**
-     * Creates a new digest manager.
+     * Initializes the digest manager for a new session.
      *
      * @param openSecureSessionDataOut The data out of the "Open Secure Session" card command.
      * @param kif The KIF to use.
      * @param kvc The KVC to use.
+     * @return The current instance.
      */
-    private DigestManager(byte[] openSecureSessionDataOut, byte kif, byte kvc) {
+    private DigestManager init(byte[] openSecureSessionDataOut, byte kif, byte kvc) {
       this.openSecureSessionDataOut = openSecureSessionDataOut;
       sessionKif = kif;
       sessionKvc = kvc;
+      cardApduRecordsLength = 0;
+      isDigestInitDone = false;
+      isRequest = true;
+      return this;
     }
 
     /**
      * Add one or more exchanged card APDUs to the buffer.
      *
      * @param cardApdu The APDU.
+     * @throws IllegalArgumentException If the APDU to digest is longer than 255 bytes, the length
+     *     of a record being stored on one byte.
      */
     private void updateSession(byte[] cardApdu) {
       // If the request is of case4 type, LE must be excluded from the digest computation. In this
-      // case, we remove here the last byte of the command buffer.
+      // case, we ignore here the last byte of the command buffer.
       // CL-C4-MAC.1
-      if (isRequest) {
-        cardApdus.add(
-            ApduUtil.isCase4(cardApdu)
-                ? Arrays.copyOfRange(cardApdu, 0, cardApdu.length - 1)
-                : cardApdu);
-      } else {
-        cardApdus.add(cardApdu);
+      int length =
+          isRequest && ApduUtil.isCase4(cardApdu) ? cardApdu.length - 1 : cardApdu.length;
+      if (length > 255) {
+        throw new IllegalArgumentException(
+            "Card APDU too long to be digested. Expected 0-255 bytes, got " + length);
+      }
+      int recordsLength = cardApduRecordsLength + 1 + length;
+      if (recordsLength > cardApduRecords.length) {
+        cardApduRecords =
+            Arrays.copyOf(cardApduRecords, Math.max(recordsLength, 2 * cardApduRecords.length));
       }
+      cardApduRecords[cardApduRecordsLength] = (byte) length;
+      System.arraycopy(cardApdu, 0, cardApduRecords, cardApduRecordsLength + 1, length);
+      cardApduRecordsLength = recordsLength;
       isRequest = !isRequest;
     }
 
@@ -742,11 +918,15 @@ private void updateSession(byte[] cardApdu) {
      * @param cardApdu The card APDU.
      */
     private CommandDigestUpdate prepareCommandForEncryption(byte[] cardApdu) {
+      // The buffer has been flushed by prepareCommands, it will contain only this APDU.
       updateSession(cardApdu);
       // Prepare the "Digest Update" commands and flush the buffer.
       CommandDigestUpdate command =
-          new CommandDigestUpdate(getContext(), true, cardApdus.remove(0));
+          new CommandDigestUpdate(
+              getContext(), true, cardApduRecords, 1, cardApduRecordsLength - 1);
+      cardApduRecordsLength = 0;
       samCommands.add(command);
+      sessionDigestApduCount++;
       return command;
     }
 
@@ -758,7 +938,7 @@ private void prepareCommands() {
       }
       // Prepare the "Digest Update" commands and flush the buffer.
       prepareDigestUpdate();
-      cardApdus.clear();
+      cardApduRecordsLength = 0;
     }
 
     /** Prepares all pending digest commands. */
@@ -773,6 +953,7 @@ private void prepareDigestInit() {
       int index = 0;
       if (isSelectDiversifierNeededOnDigestInit) {
         samCommands.add(index++, new CommandSelectDiversifier(getContext(), cardKeyDiversifier));
+        isSelectDiversifierNeededOnDigestInit = false;
       }
       // CL-SAM-DINIT.1
       samCommands.add(
@@ -784,62 +965,90 @@ private void prepareDigestInit() {
               sessionKif,
               sessionKvc,
               openSecureSessionDataOut));
+      sessionDigestApduCount++;
       isDigestInitDone = true;
     }
 
     /** Prepares the "Digest Update" SAM command. */
     private void prepareDigestUpdate() {
-      if (cardApdus.isEmpty()) {
+      if (cardApduRecordsLength == 0) {
         return;
       }
       // CL-SAM-DUPDATE.1
       // CL-SAM-DMULTI.2
       if (sam.getProductType() == LegacySam.ProductType.SAM_C1
           || sam.getProductType() == LegacySam.ProductType.SAM_S1E1) {
-        // Digest Update Multiple
-        byte[] buffer = new byte[255];
-        int i = 0;
-        for (byte[] cardApdu : cardApdus) {
-          if (i + cardApdu.length + 1 > maxCardApduLengthSupported) {
+        // Digest Update Multiple: the records are already in the [length][apdu] format expected by
+        // the SAM, consecutive records are sent as slices of the buffer.
+        // The digest depends on the order of the card APDUs, so the records can only be split into
+        // consecutive groups. Filling each group as much as possible before starting the next one
+        // therefore gives the minimum number of SAM APDUs.
+        int start = 0;
+        int offset = 0;
+        while (offset < cardApduRecordsLength) {
+          int length = cardApduRecords[offset] & 0xFF;
+          if (offset - start + length + 1 > maxCardApduLengthSupported) {
             // Add command and reset buffer
-            if (i != 0) {
-              samCommands.add(
-                  new CommandDigestUpdateMultiple(getContext(), Arrays.copyOf(buffer, i)));
-            }
-            i = 0;
+            prepareDigestUpdateMultiple(start, offset);
+            start = offset;
           }
-          if (cardApdu.length != maxCardApduLengthSupported) {
-            // Add [length][apdu] to current buffer
-            buffer[i++] = (byte) cardApdu.length;
-            System.arraycopy(cardApdu, 0, buffer, i, cardApdu.length);
-            i += cardApdu.length;
-          } else {
+          if (length == maxCardApduLengthSupported) {
             // Create a Digest Update (simple) when the command fills entirely the SAM buffer
-            samCommands.add(new CommandDigestUpdate(getContext(), false, cardApdu));
+            prepareSimpleDigestUpdate(offset);
+            start = offset + 1 + length;
           }
+          offset += 1 + length;
         }
-        if (i != 0) {
-          // Add command
-          samCommands.add(new CommandDigestUpdateMultiple(getContext(), Arrays.copyOf(buffer, i)));
-        }
+        // Add command
+        prepareDigestUpdateMultiple(start, offset);
       } else {
         // Digest Update (simple)
-        for (byte[] cardApdu : cardApdus) {
-          samCommands.add(new CommandDigestUpdate(getContext(), false, cardApdu));
+        int offset = 0;
+        while (offset < cardApduRecordsLength) {
+          prepareSimpleDigestUpdate(offset);
+          offset += 1 + (cardApduRecords[offset] & 0xFF);
         }
       }
     }
 
+    /**
+     * Prepares a "Digest Update Multiple" SAM command for the records in the provided range of the
+     * buffer, or a "Digest Update" if the range contains only one record (one byte less to
+     * transmit).
+     *
+     * @param start The offset of the first record.
+     * @param end The offset following the last record.
+     */
+    private void prepareDigestUpdateMultiple(int start, int end) {
+      if (start == end) {
+        return;
+      }
+      if (start + 1 + (cardApduRecords[start] & 0xFF) == end) {
+        prepareSimpleDigestUpdate(start);
+        return;
+      }
+      samCommands.add(
+          new CommandDigestUpdateMultiple(getContext(), cardApduRecords, start, end - start));
+      sessionDigestApduCount++;
+    }
+
+    /**
+     * Prepares a "Digest Update" SAM command for the record at the provided offset of the buffer.
+     *
+     * @param offset The offset of the record.
+     */
+    private void prepareSimpleDigestUpdate(int offset) {
+      samCommands.add(
+          new CommandDigestUpdate(
+              getContext(), false, cardApduRecords, offset + 1, cardApduRecords[offset] & 0xFF));
+      sessionDigestApduCount++;
+    }
+
     /** Prepares the "Digest Close" SAM command. */
     private void prepareDigestClose() {
       // CL-SAM-DCLOSE.1
       samCommands.add(new CommandDigestClose(getContext(), isExtendedModeRequired ? 8 : 4));
-    }
-  }
-
-  private static final class InvalidCardMacException extends RuntimeException {
-    private InvalidCardMacException(String message) {
-      super(message);
+      sessionDigestApduCount++;
     }
   }
 }
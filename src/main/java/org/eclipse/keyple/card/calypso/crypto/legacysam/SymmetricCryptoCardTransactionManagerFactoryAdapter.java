@@ -41,6 +41,12 @@
   private final LegacySamAdapter sam;
   private final boolean isExtendedModeSupported;
   private final int maxCardApduLengthSupported;
+  private final boolean isSessionChallengePrefetchEnabled;
+  private final boolean isCardTransactionManagerReuseEnabled;
+  private final TransactionAuditSink transactionAuditSink;
+  // Reused card transaction manager of each thread
+  private final ThreadLocal<SymmetricCryptoCardTransactionManagerAdapter> cardTransactionManagers =
+      new ThreadLocal<>();
 
   SymmetricCryptoCardTransactionManagerFactoryAdapter(
       ProxyReaderApi samReader, LegacySamAdapter sam, ContextSettingAdapter contextSetting) {
@@ -54,6 +60,10 @@
             ? Math.min(
                 sam.getMaxDigestDataLength(), contextSetting.getContactReaderPayloadCapacity())
             : sam.getMaxDigestDataLength();
+    this.isSessionChallengePrefetchEnabled = contextSetting.isSessionChallengePrefetchEnabled();
+    this.isCardTransactionManagerReuseEnabled =
+        contextSetting.isCardTransactionManagerReuseEnabled();
+    this.transactionAuditSink = contextSetting.getTransactionAuditSink();
   }
 
   /**
@@ -84,6 +94,11 @@ public int getMaxCardApduLengthSupported() {
   @Override
   public void preInitTerminalSessionContext()
       throws SymmetricCryptoException, SymmetricCryptoIOException {
+    if (sam.isChallengeAvailable()) {
+      // The challenge obtained previously (e.g. prefetched at the end of the last session) is still
+      // valid: the SAM only honours its last challenge, requesting another one is useless.
+      return;
+    }
     processCommand(new CommandGetChallenge(new DtoAdapters.CommandContextDto(sam, null, null), 8));
   }
 
@@ -98,18 +113,33 @@ public SymmetricCryptoCardTransactionManagerSpi createCardTransactionManager(
     if (useExtendedMode && !isExtendedModeSupported) {
       throw new IllegalStateException("The extended mode is not supported by the crypto service");
     }
-    return new SymmetricCryptoCardTransactionManagerAdapter(
-        samReader,
-        sam,
-        cardKeyDiversifier,
-        useExtendedMode,
-        maxCardApduLengthSupported,
-        transactionAuditData);
+    SymmetricCryptoCardTransactionManagerAdapter cardTransactionManager =
+        cardTransactionManagers.get();
+    if (cardTransactionManager != null) {
+      return cardTransactionManager.reset(
+          cardKeyDiversifier, useExtendedMode, transactionAuditData);
+    }
+    SymmetricCryptoCardTransactionManagerAdapter manager =
+        new SymmetricCryptoCardTransactionManagerAdapter(
+            samReader,
+            sam,
+            cardKeyDiversifier,
+            useExtendedMode,
+            maxCardApduLengthSupported,
+            isSessionChallengePrefetchEnabled,
+            transactionAuditSink,
+            transactionAuditData);
+    if (isCardTransactionManagerReuseEnabled) {
+      cardTransactionManagers.set(manager);
+    }
+    return manager;
   }
 
   private void processCommand(Command command)
       throws SymmetricCryptoException, SymmetricCryptoIOException {
-    List<byte[]> transactionAuditData = new ArrayList<>();
+    TransactionAuditSinkAdapters.CardTransactionSink commandAuditSink =
+        new TransactionAuditSinkAdapters.CardTransactionSink(
+            transactionAuditSink, new ArrayList<byte[]>());
     try {
       // Get the list of C-APDU to transmit
       List<ApduRequestSpi> apduRequests =
@@ -121,7 +151,7 @@ private void processCommand(Command command)
       // Transmit the commands to the SAM
       CardResponseApi cardResponse =
           CardTransactionUtil.transmitCardRequest(
-              cardRequest, samReader, sam, transactionAuditData);
+              cardRequest, samReader, sam, commandAuditSink);
 
       ApduResponseApi apduResponse =
           cardResponse.getApduResponses().get(0); // Assuming only one response.
@@ -146,7 +176,7 @@ private void processCommand(Command command)
               + commandRef
               + ", SW: "
               + sw
-              + CardTransactionUtil.getTransactionAuditDataAsString(transactionAuditData, sam);
+              + CardTransactionUtil.getTransactionAuditDataAsString(commandAuditSink, sam);
 
       throw new SymmetricCryptoException(
           errorMessage, new InvalidCardResponseException(detailedErrorMessage, e));
@@ -0,0 +1,76 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+/**
+ * Persistence of the data read from the target SAM (SAM parameters, system and work key
+ * parameters, counters, ceilings and CA certificate) across the restarts of the application.
+ *
+ * <p>Implemented by the free transaction manager, and exposed by {@link
+ * LegacySamExtensionService}.
+ *
+ * <p>A snapshot is only imported into the SAM it was exported from, identified by its ATR (which
+ * includes the product type and the software version) and its serial number. The data modified in
+ * the SAM by the commands of this library ("Write Key", "Write Ceilings" and "Write SAM
+ * Parameters") are tracked as stale, including in the snapshots exported afterward, and read again
+ * by the refresh. The modifications made in the SAM by other means are not detected: the snapshots
+ * of a SAM must be discarded when it is personalized again.
+ *
+ * @param <T> The type of the transaction manager.
+ * @since 1.1.0
+ */
+interface TargetSamSnapshotManagement<T> {
+
+  /**
+   * Exports the data read so far from the target SAM as a JSON string.
+   *
+   * @return A not empty string.
+   * @since 1.1.0
+   */
+  String exportTargetSamSnapshot();
+
+  /**
+   * Restores the data of the target SAM from a snapshot previously exported with {@link
+   * #exportTargetSamSnapshot()}.
+   *
+   * <p>The snapshot is confirmed by reading again immediately one of its records from the SAM (the
+   * parameters of a key, or else the SAM parameters), the previously scheduled commands being left
+   * pending.
+   *
+   * <p>The data restored replace those read so far. The counters are restored without value: they
+   * are unknown until read again, in particular by {@link #prepareRefreshTargetSamSnapshot()}.
+   *
+   * @param snapshot The snapshot.
+   * @return false if the snapshot is malformed, has an unsupported format, was exported from
+   *     another SAM, has no record that is not stale to read again or does not match the record
+   *     read again, the data of the target SAM being then left unchanged.
+   * @throws IllegalArgumentException If snapshot is null or empty.
+   * @throws org.eclipse.keypop.reader.ReaderCommunicationException If a communication error with
+   *     the SAM reader occurs.
+   * @throws org.eclipse.keypop.reader.CardCommunicationException If a communication error with the
+   *     SAM occurs.
+   * @since 1.1.0
+   */
+  boolean importTargetSamSnapshot(String snapshot);
+
+  /**
+   * Schedules the reading of the target SAM data that are stale, as well as the reading of the
+   * counters known so far, which are incremented by the SAM operations, including the counters
+   * restored without value from a snapshot.
+   *
+   * <p>The data that are not stale are not read again.
+   *
+   * @return The current instance.
+   * @since 1.1.0
+   */
+  T prepareRefreshTargetSamSnapshot();
+}
@@ -0,0 +1,48 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * {@link TransactionAuditSink} appending the APDUs to a journal of memory-mapped segment files,
+ * provided by {@link TransactionAuditSinks#mappedJournal(File, int)}.
+ *
+ * <p>The records written in the mapped memory survive a crash of the process, but are only
+ * guaranteed to be on the storage device once the segment has been forced, which is done when a
+ * segment is full, by {@link #flush()} and by {@link #close()}.
+ *
+ * @since 1.1.0
+ */
+public interface TransactionAuditJournal extends TransactionAuditSink, Closeable {
+
+  /**
+   * Forces the records written so far in the current segment to the storage device.
+   *
+   * <p>Nothing is done if no segment has been created yet or if the journal is closed.
+   *
+   * @since 1.1.0
+   */
+  void flush();
+
+  /**
+   * Forces the records of the current segment to the storage device and closes the journal.
+   *
+   * <p>Any further APDU exchange recorded in the journal is then rejected with an {@link
+   * IllegalStateException}. Nothing is done if the journal is already closed.
+   *
+   * @since 1.1.0
+   */
+  @Override
+  void close();
+}
@@ -0,0 +1,103 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.eclipse.keyple.core.util.HexUtil;
+
+/**
+ * Reader of the segment files of the transaction audit journal created with {@link
+ * TransactionAuditSinks#mappedJournal(File, int)}.
+ *
+ * @since 1.1.0
+ */
+final class TransactionAuditJournalReader {
+
+  /** Private constructor */
+  private TransactionAuditJournalReader() {}
+
+  /**
+   * Returns the transaction audit data recorded in a segment file.
+   *
+   * <p>Each sequence of successive exchanges with the same SAM is rendered by {@link
+   * CardTransactionUtil#getTransactionAuditDataAsString(List, String)}, the SAM being identified
+   * by its serial number only. An incomplete record at the end of the segment (e.g. interrupted by
+   * a crash of the process) is ignored.
+   *
+   * @param segmentFile The segment file.
+   * @return A string, empty if the segment contains no record.
+   * @throws IOException If the file cannot be read.
+   * @throws IllegalArgumentException If the file is not a valid segment file.
+   * @since 1.1.0
+   */
+  static String readSegment(File segmentFile) throws IOException {
+    StringBuilder result = new StringBuilder();
+    ByteBuffer segment = map(segmentFile);
+    List<byte[]> apdus = new ArrayList<>();
+    byte[] currentSerialNumber = null;
+    while (segment.remaining() >= 4) {
+      int recordLength = segment.getInt();
+      if (recordLength == 0) {
+        break;
+      }
+      if (recordLength < 0 || recordLength > segment.remaining()) {
+        throw new IllegalArgumentException(
+            "Invalid record length " + recordLength + " at position " + (segment.position() - 4));
+      }
+      segment.getLong(); // timestamp
+      byte[] serialNumber = readBytes(segment, segment.get() & 0xFF);
+      byte[] apduRequest = readBytes(segment, segment.getShort() & 0xFFFF);
+      byte[] apduResponse = readBytes(segment, segment.getShort() & 0xFFFF);
+      if (currentSerialNumber != null && !Arrays.equals(serialNumber, currentSerialNumber)) {
+        appendTransactionAuditData(result, apdus, currentSerialNumber);
+        apdus.clear();
+      }
+      currentSerialNumber = serialNumber;
+      apdus.add(apduRequest);
+      apdus.add(apduResponse);
+    }
+    if (currentSerialNumber != null) {
+      appendTransactionAuditData(result, apdus, currentSerialNumber);
+    }
+    return result.toString();
+  }
+
+  private static ByteBuffer map(File segmentFile) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(segmentFile, "r");
+    try {
+      FileChannel channel = randomAccessFile.getChannel();
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+
+  private static byte[] readBytes(ByteBuffer segment, int length) {
+    byte[] bytes = new byte[length];
+    segment.get(bytes);
+    return bytes;
+  }
+
+  private static void appendTransactionAuditData(
+      StringBuilder result, List<byte[]> apdus, byte[] serialNumber) {
+    result.append(
+        CardTransactionUtil.getTransactionAuditDataAsString(
+            apdus, "{\"serialNumber\":\"" + HexUtil.toHex(serialNumber) + "\"}"));
+  }
+}
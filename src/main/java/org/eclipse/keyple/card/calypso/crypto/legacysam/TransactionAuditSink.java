@@ -0,0 +1,55 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import java.util.List;
+
+/**
+ * Destination of the APDUs exchanged with the SAM during the card transactions, kept for audit
+ * purposes.
+ *
+ * <p>By default, the APDUs are added to the transaction audit data list provided by the card
+ * library when the card transaction manager is created. A sink defined with {@link
+ * ContextSetting#setTransactionAuditSink(TransactionAuditSink)} replaces this list for all the card
+ * transactions. Predefined sinks are provided by {@link TransactionAuditSinks}.
+ *
+ * <p>A sink may be shared by several card transactions processed in parallel, its implementation
+ * must therefore be thread safe.
+ *
+ * @since 1.1.0
+ */
+public interface TransactionAuditSink {
+
+  /**
+   * Records an APDU command sent to a SAM and its response.
+   *
+   * <p>The provided arrays must not be modified.
+   *
+   * @param samSerialNumber The serial number of the SAM, null if unknown.
+   * @param apduRequest The APDU command.
+   * @param apduResponse The APDU response.
+   * @since 1.1.0
+   */
+  void addApduExchange(byte[] samSerialNumber, byte[] apduRequest, byte[] apduResponse);
+
+  /**
+   * Returns the APDUs currently retained by the sink, alternately commands and responses, from the
+   * oldest to the most recent.
+   *
+   * <p>The audit data of the exceptions are not built from these APDUs, which may come from
+   * several card transactions and SAMs, but from the APDUs of the failed card transaction only.
+   *
+   * @return A not null list, empty if the sink does not retain the APDUs.
+   * @since 1.1.0
+   */
+  List<byte[]> getApdus();
+}
@@ -0,0 +1,443 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Contains the implementations of {@link TransactionAuditSink}.
+ *
+ * @since 1.1.0
+ */
+final class TransactionAuditSinkAdapters {
+
+  /** Private constructor */
+  private TransactionAuditSinkAdapters() {}
+
+  /**
+   * Sink of the APDUs exchanged with the SAM by a single card transaction.
+   *
+   * <p>Without a sink defined by the context setting, the APDUs are added to the transaction audit
+   * data list provided by the card library. Otherwise, they are recorded by the sink of the context
+   * setting, possibly shared with other card transactions, and also retained until the end of the
+   * card transaction, unless this sink is disabled, so that the audit data of the exceptions only
+   * contain the APDUs of the card transaction.
+   *
+   * <p>The sink can be re-armed for a new card transaction when the card transaction manager is
+   * reused.
+   *
+   * @since 1.1.0
+   */
+  static final class CardTransactionSink implements TransactionAuditSink {
+
+    private final TransactionAuditSink contextSink;
+    private final List<byte[]> transactionApdus;
+    private List<byte[]> transactionAuditData;
+
+    /**
+     * Constructor
+     *
+     * @param contextSink The sink defined by the context setting, null if none.
+     * @param transactionAuditData The transaction audit data list, where the APDUs are added if no
+     *     sink is defined by the context setting.
+     * @since 1.1.0
+     */
+    CardTransactionSink(TransactionAuditSink contextSink, List<byte[]> transactionAuditData) {
+      this.contextSink = contextSink;
+      transactionApdus =
+          contextSink != null && contextSink != DisabledSink.INSTANCE
+              ? new ArrayList<byte[]>()
+              : null;
+      this.transactionAuditData = transactionAuditData;
+    }
+
+    /**
+     * Re-arms the sink for a new card transaction.
+     *
+     * @param transactionAuditData The transaction audit data list of the new card transaction.
+     * @since 1.1.0
+     */
+    void reset(List<byte[]> transactionAuditData) {
+      this.transactionAuditData = transactionAuditData;
+      if (transactionApdus != null) {
+        transactionApdus.clear();
+      }
+    }
+
+    /**
+     * Indicates whether the APDUs are ignored, the sink defined by the context setting being the
+     * disabled one.
+     *
+     * @return True if the APDUs are ignored.
+     * @since 1.1.0
+     */
+    boolean isDisabled() {
+      return contextSink == DisabledSink.INSTANCE;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public void addApduExchange(
+        byte[] samSerialNumber, byte[] apduRequest, byte[] apduResponse) {
+      if (contextSink == null) {
+        transactionAuditData.add(apduRequest);
+        transactionAuditData.add(apduResponse);
+        return;
+      }
+      contextSink.addApduExchange(samSerialNumber, apduRequest, apduResponse);
+      if (transactionApdus != null) {
+        transactionApdus.add(apduRequest);
+        transactionApdus.add(apduResponse);
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Only the APDUs of the current card transaction are returned.
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public List<byte[]> getApdus() {
+      if (contextSink == null) {
+        return Collections.unmodifiableList(transactionAuditData);
+      }
+      return transactionApdus != null
+          ? Collections.unmodifiableList(transactionApdus)
+          : Collections.<byte[]>emptyList();
+    }
+  }
+
+  /**
+   * Sink ignoring all the APDUs.
+   *
+   * @since 1.1.0
+   */
+  static final class DisabledSink implements TransactionAuditSink {
+
+    static final DisabledSink INSTANCE = new DisabledSink();
+
+    private DisabledSink() {}
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public void addApduExchange(
+        byte[] samSerialNumber, byte[] apduRequest, byte[] apduResponse) {
+      // Nothing to do.
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public List<byte[]> getApdus() {
+      return Collections.emptyList();
+    }
+  }
+
+  /**
+   * Sink retaining the APDUs of the last exchanges in a fixed size circular array.
+   *
+   * @since 1.1.0
+   */
+  static final class RingBufferSink implements TransactionAuditSink {
+
+    private final byte[][] apdus;
+    private int next;
+    private int size;
+
+    /**
+     * Constructor
+     *
+     * @param maxApduExchanges The maximum number of APDU command/response pairs retained.
+     * @since 1.1.0
+     */
+    RingBufferSink(int maxApduExchanges) {
+      apdus = new byte[2 * maxApduExchanges][];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public synchronized void addApduExchange(
+        byte[] samSerialNumber, byte[] apduRequest, byte[] apduResponse) {
+      apdus[next] = apduRequest;
+      apdus[next + 1] = apduResponse;
+      next = (next + 2) % apdus.length;
+      if (size < apdus.length) {
+        size += 2;
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public synchronized List<byte[]> getApdus() {
+      List<byte[]> result = new ArrayList<>(size);
+      int oldest = size < apdus.length ? 0 : next;
+      for (int i = 0; i < size; i++) {
+        result.add(apdus[(oldest + i) % apdus.length]);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Sink appending the APDUs as {@code [length][apdu]} records to a binary stream.
+   *
+   * @since 1.1.0
+   */
+  static final class BinaryLogSink implements TransactionAuditSink {
+
+    private final OutputStream outputStream;
+
+    /**
+     * Constructor
+     *
+     * @param outputStream The stream where the records are written.
+     * @since 1.1.0
+     */
+    BinaryLogSink(OutputStream outputStream) {
+      this.outputStream = outputStream;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException If the stream cannot be written.
+     * @since 1.1.0
+     */
+    @Override
+    public synchronized void addApduExchange(
+        byte[] samSerialNumber, byte[] apduRequest, byte[] apduResponse) {
+      try {
+        writeRecord(apduRequest);
+        writeRecord(apduResponse);
+      } catch (IOException e) {
+        throw new IllegalStateException("Failed to write the transaction audit log", e);
+      }
+    }
+
+    private void writeRecord(byte[] apdu) throws IOException {
+      outputStream.write(apdu.length >>> 8);
+      outputStream.write(apdu.length);
+      outputStream.write(apdu);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public List<byte[]> getApdus() {
+      return Collections.emptyList();
+    }
+  }
+
+  /**
+   * Sink appending the APDUs to a journal made of fixed size memory-mapped segment files.
+   *
+   * <p>Each segment is a file named {@code sam-audit-<index>.jnl} containing a sequence of records
+   * (big endian):
+   *
+   * <ul>
+   *   <li>the length of the rest of the record (4 bytes), 0 marking the end of the segment data,
+   *   <li>the timestamp of the exchange in milliseconds since the epoch (8 bytes),
+   *   <li>the length (1 byte) and the bytes of the SAM serial number,
+   *   <li>the length (2 bytes) and the bytes of the APDU command,
+   *   <li>the length (2 bytes) and the bytes of the APDU response.
+   * </ul>
+   *
+   * <p>The length of a record is written after its content, so that a record interrupted by a
+   * crash of the process is ignored by {@link TransactionAuditJournalReader}. A new journal always
+   * starts a new segment after the existing ones, which are never modified.
+   *
+   * @since 1.1.0
+   */
+  static final class MappedJournalSink implements TransactionAuditJournal {
+
+    static final String SEGMENT_FILE_PREFIX = "sam-audit-";
+    static final String SEGMENT_FILE_SUFFIX = ".jnl";
+    static final int MIN_SEGMENT_SIZE = 4096;
+
+    private final File directory;
+    private final int segmentSize;
+    private int segmentIndex;
+    private MappedByteBuffer segment;
+    private boolean isClosed;
+
+    /**
+     * Constructor
+     *
+     * @param directory The directory of the segment files.
+     * @param segmentSize The size of a segment file in bytes.
+     * @since 1.1.0
+     */
+    MappedJournalSink(File directory, int segmentSize) {
+      this.directory = directory;
+      this.segmentSize = segmentSize;
+      File[] files = directory.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          segmentIndex = Math.max(segmentIndex, getSegmentIndex(file.getName()));
+        }
+      }
+    }
+
+    /**
+     * Returns the index of a segment file.
+     *
+     * @param fileName The name of the file.
+     * @return 0 if the file is not a segment file.
+     */
+    private static int getSegmentIndex(String fileName) {
+      if (!fileName.startsWith(SEGMENT_FILE_PREFIX) || !fileName.endsWith(SEGMENT_FILE_SUFFIX)) {
+        return 0;
+      }
+      try {
+        return Integer.parseInt(
+            fileName.substring(
+                SEGMENT_FILE_PREFIX.length(), fileName.length() - SEGMENT_FILE_SUFFIX.length()));
+      } catch (NumberFormatException e) {
+        return 0;
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>A null SAM serial number is recorded as an empty one.
+     *
+     * @throws IllegalArgumentException If the record does not fit in a segment.
+     * @throws IllegalStateException If the journal is closed or cannot be written.
+     * @since 1.1.0
+     */
+    @Override
+    public synchronized void addApduExchange(
+        byte[] samSerialNumber, byte[] apduRequest, byte[] apduResponse) {
+      if (isClosed) {
+        throw new IllegalStateException("The transaction audit journal is closed");
+      }
+      if (samSerialNumber == null) {
+        samSerialNumber = new byte[0];
+      }
+      int recordLength =
+          8 + 1 + samSerialNumber.length + 2 + apduRequest.length + 2 + apduResponse.length;
+      // Keep room for the record length and for the end marker.
+      if (recordLength + 8 > segmentSize) {
+        throw new IllegalArgumentException(
+            "APDU exchange too long for the transaction audit journal. Record length: "
+                + recordLength
+                + ", segment size: "
+                + segmentSize);
+      }
+      try {
+        if (segment == null || segment.remaining() < recordLength + 8) {
+          openNextSegment();
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException(
+            "Failed to create the transaction audit journal segment", e);
+      }
+      int position = segment.position();
+      segment.position(position + 4);
+      segment.putLong(System.currentTimeMillis());
+      segment.put((byte) samSerialNumber.length);
+      segment.put(samSerialNumber);
+      segment.putShort((short) apduRequest.length);
+      segment.put(apduRequest);
+      segment.putShort((short) apduResponse.length);
+      segment.put(apduResponse);
+      segment.putInt(position, recordLength);
+    }
+
+    private void openNextSegment() throws IOException {
+      if (segment != null) {
+        segment.force();
+      }
+      segmentIndex++;
+      File file =
+          new File(
+              directory,
+              SEGMENT_FILE_PREFIX
+                  + String.format(Locale.ROOT, "%08d", segmentIndex)
+                  + SEGMENT_FILE_SUFFIX);
+      RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+      try {
+        segment = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+      } finally {
+        randomAccessFile.close();
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public synchronized void flush() {
+      if (segment != null) {
+        segment.force();
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public synchronized void close() {
+      flush();
+      segment = null;
+      isClosed = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public List<byte[]> getApdus() {
+      return Collections.emptyList();
+    }
+  }
+}
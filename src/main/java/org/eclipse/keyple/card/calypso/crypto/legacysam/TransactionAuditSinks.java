@@ -0,0 +1,114 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import java.io.File;
+import java.io.OutputStream;
+import org.eclipse.keyple.core.util.Assert;
+
+/**
+ * Factory of predefined {@link TransactionAuditSink}.
+ *
+ * @since 1.1.0
+ */
+public final class TransactionAuditSinks {
+
+  /** Private constructor */
+  private TransactionAuditSinks() {}
+
+  /**
+   * Returns a sink ignoring all the APDUs.
+   *
+   * <p>No APDU is retained, not even for the duration of a card transaction, and the messages of
+   * the exceptions then contain no audit data.
+   *
+   * @return A not null reference.
+   * @since 1.1.0
+   */
+  public static TransactionAuditSink disabled() {
+    return TransactionAuditSinkAdapters.DisabledSink.INSTANCE;
+  }
+
+  /**
+   * Returns a sink retaining only the APDUs of the last exchanges.
+   *
+   * <p>The memory used is bounded whatever the length of the card transactions: once {@code
+   * maxApduExchanges} exchanges are retained, each new exchange replaces the oldest one.
+   *
+   * @param maxApduExchanges The maximum number of APDU command/response pairs retained.
+   * @return A not null reference.
+   * @throws IllegalArgumentException If maxApduExchanges is not positive.
+   * @since 1.1.0
+   */
+  public static TransactionAuditSink ringBuffer(int maxApduExchanges) {
+    Assert.getInstance().greaterOrEqual(maxApduExchanges, 1, "maxApduExchanges");
+    return new TransactionAuditSinkAdapters.RingBufferSink(maxApduExchanges);
+  }
+
+  /**
+   * Returns a sink appending all the APDUs to a binary log.
+   *
+   * <p>Each APDU is written as a record made of its length on 2 bytes (big endian) followed by its
+   * bytes, the command record being followed by the response record. No APDU is retained in memory.
+   *
+   * <p>The stream is neither flushed nor closed by the sink. A failure to write the stream is
+   * reported as an {@link IllegalStateException} by the SAM operation being processed.
+   *
+   * @param outputStream The stream where the records are written.
+   * @return A not null reference.
+   * @throws IllegalArgumentException If outputStream is null.
+   * @since 1.1.0
+   */
+  public static TransactionAuditSink binaryLog(OutputStream outputStream) {
+    Assert.getInstance().notNull(outputStream, "outputStream");
+    return new TransactionAuditSinkAdapters.BinaryLogSink(outputStream);
+  }
+
+  /**
+   * Returns a sink appending all the APDUs to a journal of memory-mapped segment files.
+   *
+   * <p>Each APDU exchange is written as a record tagged with the SAM serial number and the
+   * timestamp of the exchange directly into the mapped memory of the current segment, without
+   * copying the APDUs on the heap. When a segment is full, it is forced to the storage device and a
+   * new segment file of {@code segmentSize} bytes is created in {@code directory}. The existing
+   * segment files are never modified. No APDU is retained in memory.
+   *
+   * <p>The segments can be read with {@link
+   * LegacySamExtensionService#readTransactionAuditJournalSegment(File)}.
+   *
+   * <p>The records of the current segment are forced to the storage device by {@link
+   * TransactionAuditJournal#flush()}, to be called periodically by the application if needed, and
+   * by {@link TransactionAuditJournal#close()}, to be called when the journal is no longer used.
+   *
+   * <p>A failure to create a segment is reported as an {@link IllegalStateException} by the SAM
+   * operation being processed, as well as the use of a closed journal. An APDU exchange too long to
+   * fit in a segment is reported as an {@link IllegalArgumentException}.
+   *
+   * @param directory The existing writable directory where the segment files are created.
+   * @param segmentSize The size of each segment file in bytes, at least 4096.
+   * @return A not null reference.
+   * @throws IllegalArgumentException If directory is null, is not a directory or is not writable,
+   *     or if segmentSize is lower than 4096.
+   * @since 1.1.0
+   */
+  public static TransactionAuditJournal mappedJournal(File directory, int segmentSize) {
+    Assert.getInstance()
+        .notNull(directory, "directory")
+        .isTrue(directory.isDirectory(), "directory is a directory")
+        .isTrue(directory.canWrite(), "directory is writable")
+        .greaterOrEqual(
+            segmentSize,
+            TransactionAuditSinkAdapters.MappedJournalSink.MIN_SEGMENT_SIZE,
+            "segmentSize");
+    return new TransactionAuditSinkAdapters.MappedJournalSink(directory, segmentSize);
+  }
+}
@@ -18,17 +18,21 @@
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.eclipse.keyple.core.util.HexUtil;
 import org.eclipse.keyple.core.util.json.JsonUtil;
 import org.eclipse.keypop.calypso.crypto.legacysam.CounterIncrementAccess;
 import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySam;
 import org.eclipse.keypop.calypso.crypto.legacysam.transaction.AsyncTransactionCreatorManager;
+import org.eclipse.keypop.calypso.crypto.legacysam.transaction.AsyncTransactionExecutorManager;
 import org.eclipse.keypop.calypso.crypto.legacysam.transaction.SecuritySetting;
 import org.eclipse.keypop.card.*;
 import org.eclipse.keypop.card.spi.ApduRequestSpi;
@@ -233,27 +237,22 @@ public void prepareWriteCounterConfiguration_whenCeilingValueIsOutOfRangeHigh_sh
   @Test
   public void exportCommands_whenSingleWriteArePrepared_shouldProduceJsonCommandList()
       throws Exception {
-    CardRequestSpi cardRequestCipherData0 =
+    // The control SAM commands of both ceilings are transmitted in a single card request
+    CardRequestSpi cardRequestCipherData =
         createCardRequest(
-            C_SELECT_DIVERSIFIER, C_GIVE_RANDOM_COUNTER_RELOADING_0, C_SAM_DATA_CIPHER_CEILING_0);
-    CardResponseApi cardResponseCipherData0 =
-        createCardResponse(R_9000, R_9000, R_SAM_DATA_CIPHER_CEILING_0);
-
-    when(samReader.transmitCardRequest(
-            argThat(new CardRequestMatcher(cardRequestCipherData0)),
-            any(org.eclipse.keypop.card.ChannelControl.class)))
-        .thenReturn(cardResponseCipherData0);
-
-    CardRequestSpi cardRequestCipherData3 =
-        createCardRequest(
-            C_SELECT_DIVERSIFIER, C_GIVE_RANDOM_COUNTER_RELOADING_1, C_SAM_DATA_CIPHER_CEILING_3);
-    CardResponseApi cardResponseCipherData3 =
-        createCardResponse(R_9000, R_9000, R_SAM_DATA_CIPHER_CEILING_3);
+            C_SELECT_DIVERSIFIER,
+            C_GIVE_RANDOM_COUNTER_RELOADING_0,
+            C_SAM_DATA_CIPHER_CEILING_0,
+            C_GIVE_RANDOM_COUNTER_RELOADING_1,
+            C_SAM_DATA_CIPHER_CEILING_3);
+    CardResponseApi cardResponseCipherData =
+        createCardResponse(
+            R_9000, R_9000, R_SAM_DATA_CIPHER_CEILING_0, R_9000, R_SAM_DATA_CIPHER_CEILING_3);
 
     when(samReader.transmitCardRequest(
-            argThat(new CardRequestMatcher(cardRequestCipherData3)),
+            argThat(new CardRequestMatcher(cardRequestCipherData)),
             any(org.eclipse.keypop.card.ChannelControl.class)))
-        .thenReturn(cardResponseCipherData3);
+        .thenReturn(cardResponseCipherData);
 
     samTransactionManager.prepareWriteCounterCeiling(0, 100);
     samTransactionManager.prepareWriteCounterCeiling(3, 300);
@@ -290,44 +289,30 @@ public void exportCommands_whenSingleWriteArePrepared_shouldProduceJsonCommandLi
   @Test
   public void exportCommands_whenRecordWriteArePrepared_shouldProduceJsonCommandList()
       throws Exception {
-    CardRequestSpi cardRequestCipherDataRec1 =
+    // The control SAM commands of the three records are transmitted in a single card request
+    CardRequestSpi cardRequestCipherData =
         createCardRequest(
             C_SELECT_DIVERSIFIER,
             C_GIVE_RANDOM_COUNTER_RELOADING_0,
-            C_SAM_DATA_CIPHER_CEILING_RECORD_1);
-    CardResponseApi cardResponseCipherDataRec1 =
-        createCardResponse(R_9000, R_9000, R_SAM_DATA_CIPHER_RECORD_1);
-
-    when(samReader.transmitCardRequest(
-            argThat(new CardRequestMatcher(cardRequestCipherDataRec1)),
-            any(org.eclipse.keypop.card.ChannelControl.class)))
-        .thenReturn(cardResponseCipherDataRec1);
-
-    CardRequestSpi cardRequestCipherDataRec2 =
-        createCardRequest(
-            C_SELECT_DIVERSIFIER,
+            C_SAM_DATA_CIPHER_CEILING_RECORD_1,
             C_GIVE_RANDOM_COUNTER_RELOADING_1,
-            C_SAM_DATA_CIPHER_CEILING_RECORD_2);
-    CardResponseApi cardResponseCipherDataRec2 =
-        createCardResponse(R_9000, R_9000, R_SAM_DATA_CIPHER_RECORD_2);
-
-    when(samReader.transmitCardRequest(
-            argThat(new CardRequestMatcher(cardRequestCipherDataRec2)),
-            any(org.eclipse.keypop.card.ChannelControl.class)))
-        .thenReturn(cardResponseCipherDataRec2);
-
-    CardRequestSpi cardRequestCipherDataRec3 =
-        createCardRequest(
-            C_SELECT_DIVERSIFIER,
+            C_SAM_DATA_CIPHER_CEILING_RECORD_2,
             C_GIVE_RANDOM_COUNTER_RELOADING_2,
             C_SAM_DATA_CIPHER_CEILING_RECORD_3);
-    CardResponseApi cardResponseCipherDataRec3 =
-        createCardResponse(R_9000, R_9000, R_SAM_DATA_CIPHER_RECORD_3);
+    CardResponseApi cardResponseCipherData =
+        createCardResponse(
+            R_9000,
+            R_9000,
+            R_SAM_DATA_CIPHER_RECORD_1,
+            R_9000,
+            R_SAM_DATA_CIPHER_RECORD_2,
+            R_9000,
+            R_SAM_DATA_CIPHER_RECORD_3);
 
     when(samReader.transmitCardRequest(
-            argThat(new CardRequestMatcher(cardRequestCipherDataRec3)),
+            argThat(new CardRequestMatcher(cardRequestCipherData)),
             any(org.eclipse.keypop.card.ChannelControl.class)))
-        .thenReturn(cardResponseCipherDataRec3);
+        .thenReturn(cardResponseCipherData);
 
     for (int i = 0; i < 27; i++) {
       samTransactionManager.prepareWriteCounterConfiguration(
@@ -371,4 +356,59 @@ public void exportCommands_whenRecordWriteArePrepared_shouldProduceJsonCommandLi
       }
     }
   }
+
+  @Test
+  public void processCommandsAsync_whenExecutorManager_shouldProcessExportedCommandsOnExecutor()
+      throws Exception {
+    CardRequestSpi cardRequestCipherData =
+        createCardRequest(
+            C_SELECT_DIVERSIFIER,
+            C_GIVE_RANDOM_COUNTER_RELOADING_0,
+            C_SAM_DATA_CIPHER_CEILING_0,
+            C_GIVE_RANDOM_COUNTER_RELOADING_1,
+            C_SAM_DATA_CIPHER_CEILING_3);
+    CardResponseApi cardResponseCipherData =
+        createCardResponse(
+            R_9000, R_9000, R_SAM_DATA_CIPHER_CEILING_0, R_9000, R_SAM_DATA_CIPHER_CEILING_3);
+    CardRequestSpi cardRequestWriteCeilings =
+        createCardRequest(C_STATIC_WRITE_CEILING_0, C_STATIC_WRITE_CEILING_3);
+    CardResponseApi cardResponseWriteCeilings = createCardResponse(R_9000, R_9000);
+
+    when(samReader.transmitCardRequest(
+            argThat(new CardRequestMatcher(cardRequestCipherData)),
+            any(org.eclipse.keypop.card.ChannelControl.class)))
+        .thenReturn(cardResponseCipherData);
+    when(samReader.transmitCardRequest(
+            argThat(new CardRequestMatcher(cardRequestWriteCeilings)),
+            any(org.eclipse.keypop.card.ChannelControl.class)))
+        .thenReturn(cardResponseWriteCeilings);
+
+    samTransactionManager.prepareWriteCounterCeiling(0, 100);
+    samTransactionManager.prepareWriteCounterCeiling(3, 300);
+    String commandsJson = samTransactionManager.exportCommands();
+
+    CardSelectionResponseApi targetSamCardSelectionResponse = mock(CardSelectionResponseApi.class);
+    when(targetSamCardSelectionResponse.getPowerOnData()).thenReturn(SAM_C1_POWER_ON_DATA);
+    AsyncTransactionExecutorManager executorManager =
+        LegacySamExtensionService.getInstance()
+            .getLegacySamApiFactory()
+            .createAsyncTransactionExecutorManager(
+                samReader, new LegacySamAdapter(targetSamCardSelectionResponse), commandsJson);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      assertThat(
+              LegacySamExtensionService.getInstance()
+                  .processCommandsAsync(executorManager, ChannelControl.KEEP_OPEN, executor)
+                  .get())
+          .isSameAs(executorManager);
+    } finally {
+      executor.shutdown();
+    }
+
+    verify(samReader)
+        .transmitCardRequest(
+            argThat(new CardRequestMatcher(cardRequestWriteCeilings)),
+            any(org.eclipse.keypop.card.ChannelControl.class));
+  }
 }
@@ -2103,8 +2103,10 @@ public void processCommands_whenError_shouldClearCommandList() throws Exception
         createCardRequest(C_SELECT_DIVERSIFIER, C_PSO_COMPUTE_SIGNATURE_DEFAULT);
     CardResponseApi cardResponse1 = createCardResponse(R_9000, R_INCORRECT_SIGNATURE);
 
-    CardRequestSpi cardRequest2 = createCardRequest(C_PSO_COMPUTE_SIGNATURE_DEFAULT);
-    CardResponseApi cardResponse2 = createCardResponse(R_PSO_COMPUTE_SIGNATURE_DEFAULT);
+    // The diversifier is selected again since the state of the SAM is not known after an error
+    CardRequestSpi cardRequest2 =
+        createCardRequest(C_SELECT_DIVERSIFIER, C_PSO_COMPUTE_SIGNATURE_DEFAULT);
+    CardResponseApi cardResponse2 = createCardResponse(R_9000, R_PSO_COMPUTE_SIGNATURE_DEFAULT);
 
     when(samReader.transmitCardRequest(
             argThat(new CardRequestMatcher(cardRequest1)),
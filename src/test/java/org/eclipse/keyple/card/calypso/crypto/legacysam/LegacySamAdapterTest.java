@@ -0,0 +1,80 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySam;
+import org.junit.Test;
+
+public class LegacySamAdapterTest {
+
+  private static final String HISTORICAL_BYTES = "4880C120501711223344";
+
+  private static LegacySamAdapter createLegacySam(String powerOnData) {
+    return new LegacySamAdapter(new TestDtoAdapters.CardSelectionResponseAdapter(powerOnData));
+  }
+
+  @Test
+  public void extractAtrSubElements_whenThreeInterfaceBytes_shouldReturnHistoricalBytes() {
+    assertThat(
+            LegacySamAdapter.extractAtrSubElements("3B3F9600805A" + HISTORICAL_BYTES + "829000"))
+        .isEqualTo(HexUtil.toByteArray(HISTORICAL_BYTES));
+  }
+
+  @Test
+  public void extractAtrSubElements_whenFiveInterfaceBytes_shouldReturnHistoricalBytes() {
+    assertThat(
+            LegacySamAdapter.extractAtrSubElements(
+                "3BDF18008131805A" + HISTORICAL_BYTES + "829000"))
+        .isEqualTo(HexUtil.toByteArray(HISTORICAL_BYTES));
+  }
+
+  @Test
+  public void extractAtrSubElements_whenFirstTsDoesNotMatch_shouldFindTheNextOne() {
+    assertThat(
+            LegacySamAdapter.extractAtrSubElements(
+                "3B003B3F9600805A" + HISTORICAL_BYTES + "829000"))
+        .isEqualTo(HexUtil.toByteArray(HISTORICAL_BYTES));
+  }
+
+  @Test
+  public void extractAtrSubElements_whenTrailerIsMissing_shouldReturnNull() {
+    assertThat(
+            LegacySamAdapter.extractAtrSubElements("3B3F9600805A" + HISTORICAL_BYTES + "8290"))
+        .isNull();
+  }
+
+  @Test
+  public void extractAtrSubElements_whenNotHex_shouldReturnNull() {
+    assertThat(LegacySamAdapter.extractAtrSubElements("3B3F9")).isNull();
+    assertThat(LegacySamAdapter.extractAtrSubElements("3B3F9G")).isNull();
+  }
+
+  @Test
+  public void parseSelectionResponse_shouldDecodeHistoricalBytes() {
+    LegacySamAdapter sam = createLegacySam("3B3F9600805A" + HISTORICAL_BYTES + "829000");
+    assertThat(sam.getProductType()).isEqualTo(LegacySam.ProductType.SAM_C1);
+    assertThat(sam.getSerialNumber()).isEqualTo(HexUtil.toByteArray("11223344"));
+    assertThat(sam.getPlatform()).isEqualTo((byte) 0x48);
+    assertThat(sam.getSoftwareIssuer()).isEqualTo((byte) 0x20);
+    assertThat(sam.getSoftwareRevision()).isEqualTo((byte) 0x17);
+  }
+
+  @Test
+  public void parseSelectionResponse_whenAtrDoesNotMatch_shouldReturnUnknownSam() {
+    LegacySamAdapter sam = createLegacySam("3B3F9600");
+    assertThat(sam.getProductType()).isEqualTo(LegacySam.ProductType.UNKNOWN);
+    assertThat(sam.getSerialNumber()).isEqualTo(new byte[4]);
+  }
+}
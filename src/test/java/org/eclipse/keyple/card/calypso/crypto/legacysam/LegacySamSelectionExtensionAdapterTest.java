@@ -12,10 +12,13 @@
 package org.eclipse.keyple.card.calypso.crypto.legacysam;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySam.*;
 import static org.mockito.Mockito.*;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 import org.eclipse.keyple.core.util.HexUtil;
 import org.eclipse.keypop.calypso.crypto.legacysam.SystemKeyType;
 import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySam;
@@ -48,6 +51,7 @@ public final class LegacySamSelectionExtensionAdapterTest {
       "1122334455667788" + "112233445566778899AABBCCDD" + "112233445566778899AABB";
   private static final String RESP_READ_SYSTEM_KEY_PARAMETERS =
       RESP_READ_SYSTEM_KEY_PARAMETERS_DATA_OUT + SW_9000;
+  private static final int UNLOCK_DATA_TIMEOUT_MILLIS = 1000;
   private LegacySamSelectionExtensionAdapter samSelectionExtension;
   private LegacySamStaticUnlockDataProviderSpi staticUnlockDataProvider;
   private LegacySamDynamicUnlockDataProviderSpi dynamicUnlockDataProvider;
@@ -488,4 +492,128 @@ public void parse_whenUnlockDynamicModeIsSetAndSamReaderIsNotSetLately_shouldThr
             argThat(new CardRequestMatcher(cardRequest)), any(ChannelControl.class));
     verifyNoMoreInteractions(dynamicUnlockDataProvider, samReader);
   }
+
+  @Test(expected = IllegalStateException.class)
+  public void setAsyncDynamicUnlockDataProvider_whenUnlockModeIsAlreadySet_shouldThrowISE() {
+    samSelectionExtension.setDynamicUnlockDataProvider(dynamicUnlockDataProvider);
+    samSelectionExtension.setAsyncDynamicUnlockDataProvider(
+        mock(AsyncDynamicUnlockDataProvider.class), UNLOCK_DATA_TIMEOUT_MILLIS);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void setAsyncDynamicUnlockDataProvider_whenTimeoutIsZero_shouldThrowIAE() {
+    samSelectionExtension.setAsyncDynamicUnlockDataProvider(
+        mock(AsyncDynamicUnlockDataProvider.class), 0);
+  }
+
+  @Test
+  public void parse_whenAsyncUnlockDataIsNotProvidedInTime_shouldThrowParseException()
+      throws Exception {
+    CardSelectionResponseApi cardSelectionResponseApi = mock(CardSelectionResponseApi.class);
+    when(cardSelectionResponseApi.getPowerOnData()).thenReturn(SAM_ATR);
+    when(cardSelectionResponseApi.getCardResponse())
+        .thenReturn(createCardResponse(RESP_GET_CHALLENGE));
+    AsyncDynamicUnlockDataProvider asyncDynamicUnlockDataProvider =
+        mock(AsyncDynamicUnlockDataProvider.class);
+    when(asyncDynamicUnlockDataProvider.getUnlockData(
+            HexUtil.toByteArray(SAM_SERIAL_NUMBER), HexUtil.toByteArray(SAM_CHALLENGE)))
+        .thenReturn(new CompletableFuture<byte[]>());
+    samSelectionExtension.setAsyncDynamicUnlockDataProvider(
+        asyncDynamicUnlockDataProvider, 10, samReader);
+    samSelectionExtension.getCardSelectionRequest();
+
+    assertThatThrownBy(() -> samSelectionExtension.parse(cardSelectionResponseApi))
+        .isInstanceOf(ParseException.class)
+        .hasCauseInstanceOf(TimeoutException.class);
+    verifyNoInteractions(samReader);
+  }
+
+  @Test
+  public void
+      parse_whenUnlockAsyncDynamicModeIsSet_shouldWaitForProviderAndTransmitAllCommands()
+          throws Exception {
+
+    // first selection response
+    CardSelectionResponseApi cardSelectionResponseApi = mock(CardSelectionResponseApi.class);
+    when(cardSelectionResponseApi.getPowerOnData()).thenReturn(SAM_ATR);
+    when(cardSelectionResponseApi.getCardResponse())
+        .thenReturn(createCardResponse(RESP_GET_CHALLENGE));
+
+    // 2nd request/response
+    CardRequestSpi cardRequest =
+        createCardRequest(CMD_UNLOCK_DYNAMIC, CMD_READ_SYSTEM_KEY_PARAMETERS);
+    CardResponseApi cardResponse = createCardResponse(SW_9000, RESP_READ_SYSTEM_KEY_PARAMETERS);
+
+    when(samReader.transmitCardRequest(
+            argThat(new CardRequestMatcher(cardRequest)), any(ChannelControl.class)))
+        .thenReturn(cardResponse);
+
+    AsyncDynamicUnlockDataProvider asyncDynamicUnlockDataProvider =
+        mock(AsyncDynamicUnlockDataProvider.class);
+    when(asyncDynamicUnlockDataProvider.getUnlockData(
+            HexUtil.toByteArray(SAM_SERIAL_NUMBER), HexUtil.toByteArray(SAM_CHALLENGE)))
+        .thenReturn(CompletableFuture.completedFuture(HexUtil.toByteArray(UNLOCK_DATA_DYNAMIC)));
+
+    samSelectionExtension.prepareReadSystemKeyParameters(SystemKeyType.PERSONALIZATION);
+    samSelectionExtension.setAsyncDynamicUnlockDataProvider(
+        asyncDynamicUnlockDataProvider, UNLOCK_DATA_TIMEOUT_MILLIS, samReader);
+    samSelectionExtension.getCardSelectionRequest();
+    samSelectionExtension.parse(cardSelectionResponseApi);
+
+    InOrder inOrder = inOrder(asyncDynamicUnlockDataProvider, samReader);
+    inOrder
+        .verify(asyncDynamicUnlockDataProvider)
+        .getUnlockData(HexUtil.toByteArray(SAM_SERIAL_NUMBER), HexUtil.toByteArray(SAM_CHALLENGE));
+    inOrder
+        .verify(samReader)
+        .transmitCardRequest(
+            argThat(new CardRequestMatcher(cardRequest)), any(ChannelControl.class));
+    verifyNoMoreInteractions(asyncDynamicUnlockDataProvider, samReader);
+  }
+
+  @Test
+  public void parse_whenUnlockIsDeferred_shouldOnlyRequestUnlockDataUntilItIsProcessed()
+      throws Exception {
+
+    // first selection response
+    CardSelectionResponseApi cardSelectionResponseApi = mock(CardSelectionResponseApi.class);
+    when(cardSelectionResponseApi.getPowerOnData()).thenReturn(SAM_ATR);
+    when(cardSelectionResponseApi.getCardResponse())
+        .thenReturn(createCardResponse(RESP_GET_CHALLENGE));
+
+    // 2nd request/response
+    CardRequestSpi cardRequest =
+        createCardRequest(CMD_UNLOCK_DYNAMIC, CMD_READ_SYSTEM_KEY_PARAMETERS);
+    CardResponseApi cardResponse = createCardResponse(SW_9000, RESP_READ_SYSTEM_KEY_PARAMETERS);
+
+    when(samReader.transmitCardRequest(
+            argThat(new CardRequestMatcher(cardRequest)), any(ChannelControl.class)))
+        .thenReturn(cardResponse);
+
+    CompletableFuture<byte[]> unlockData = new CompletableFuture<>();
+    AsyncDynamicUnlockDataProvider asyncDynamicUnlockDataProvider =
+        mock(AsyncDynamicUnlockDataProvider.class);
+    when(asyncDynamicUnlockDataProvider.getUnlockData(
+            HexUtil.toByteArray(SAM_SERIAL_NUMBER), HexUtil.toByteArray(SAM_CHALLENGE)))
+        .thenReturn(unlockData);
+
+    samSelectionExtension.prepareReadSystemKeyParameters(SystemKeyType.PERSONALIZATION);
+    samSelectionExtension.setAsyncDynamicUnlockDataProvider(
+        asyncDynamicUnlockDataProvider, UNLOCK_DATA_TIMEOUT_MILLIS, samReader);
+    samSelectionExtension.deferUnlock();
+    samSelectionExtension.getCardSelectionRequest();
+    samSelectionExtension.parse(cardSelectionResponseApi);
+
+    assertThat(samSelectionExtension.getPendingUnlockData()).isSameAs(unlockData);
+    verifyNoInteractions(samReader);
+
+    LegacySam legacySam =
+        samSelectionExtension.processDeferredUnlock(HexUtil.toByteArray(UNLOCK_DATA_DYNAMIC));
+
+    assertThat(samSelectionExtension.getPendingUnlockData()).isNull();
+    assertThat(legacySam.getSystemKeyParameter(SystemKeyType.PERSONALIZATION)).isNotNull();
+    verify(samReader)
+        .transmitCardRequest(
+            argThat(new CardRequestMatcher(cardRequest)), any(ChannelControl.class));
+  }
 }
@@ -0,0 +1,1148 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import java.io.ByteArrayOutputStream;
+import java.security.GeneralSecurityException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.crypto.legacysam.SystemKeyType;
+import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySam;
+import org.eclipse.keypop.card.*;
+import org.eclipse.keypop.card.spi.ApduRequestSpi;
+import org.eclipse.keypop.card.spi.CardRequestSpi;
+import org.eclipse.keypop.reader.CardReader;
+
+/**
+ * In-process software emulation of a Calypso legacy SAM, usable as the SAM reader of any
+ * transaction manager of the library.
+ *
+ * <p>The simulator implements the commands used by the library for secure sessions (Get
+ * Challenge, Select Diversifier, Digest Init/Update/Update Multiple/Close/Authenticate/Internal
+ * Authenticate), Stored Value (SV Prepare Load/Debit/Undebit, SV Check), signatures (Data Cipher,
+ * PSO Compute/Verify Signature), counters (Read Event Counter, Read Ceilings), key management (Read
+ * Key Parameters, Give Random, SAM Generate Key, Write Key) and Unlock. It enforces the class byte
+ * and the maximum digest length of the emulated product type, the lock state and the session
+ * sequencing rules (a Digest Init must directly follow the Get Challenge, only a Select Diversifier
+ * may be inserted between them).
+ *
+ * <p>All cryptographic operations use real DES (2-key TDES) or AES primitives from the JCE, with
+ * ISO/IEC 9797-1 padding method 2 and CBC-MAC. The key derivation and MAC input formatting are
+ * specific to the simulator and are not the Calypso ones: the values are self-consistent, so that
+ * the card side of a transaction can be emulated by the helper methods {@link
+ * #computeCardSessionMac(int)} and {@link #computeCardSvMac()}.
+ *
+ * <p>A configurable latency can be injected per card request and per APDU in order to emulate a
+ * physical or remote reader. Card requests are serialized, as on a real SAM.
+ */
+final class LegacySamSimulator implements CardReader, ProxyReaderApi {
+
+  /** Algorithm of a simulated key. */
+  enum KeyAlgorithm {
+    TDES((byte) 0x40, 8, "DESede"),
+    AES((byte) 0x90, 16, "AES");
+
+    private final byte code;
+    private final int blockSize;
+    private final String jceName;
+
+    KeyAlgorithm(byte code, int blockSize, String jceName) {
+      this.code = code;
+      this.blockSize = blockSize;
+      this.jceName = jceName;
+    }
+  }
+
+  private static final int SW_SUCCESS = 0x9000;
+  private static final int SW_INCORRECT_LENGTH = 0x6700;
+  private static final int SW_PRECONDITIONS_NOT_SATISFIED = 0x6985;
+  private static final int SW_INCORRECT_SIGNATURE = 0x6988;
+  private static final int SW_INCORRECT_DATA = 0x6A80;
+  private static final int SW_RECORD_NOT_FOUND = 0x6A83;
+  private static final int SW_INCORRECT_P1_P2 = 0x6B00;
+  private static final int SW_INSTRUCTION_UNKNOWN = 0x6D00;
+  private static final int SW_CLASS_NOT_SUPPORTED = 0x6E00;
+
+  private static final byte TERMINAL_MAC_TAG = 'T';
+  private static final byte CARD_MAC_TAG = 'C';
+  private static final byte INTERNAL_AUTHENTICATE_TAG = 'I';
+  private static final int COUNTER_RECORD_SIZE = 48;
+  private static final int KEY_PARAMETERS_RECORD_SIZE = 32;
+  private static final int NB_COUNTERS = 27;
+
+  private final String name;
+  private final LegacySam.ProductType productType;
+  private final byte[] serialNumber;
+  private final byte classByte;
+  private final int maxDigestDataLength;
+  private final Random random;
+
+  private final List<SimulatedKey> keys = new ArrayList<>();
+  private final int[] counters = new int[NB_COUNTERS];
+  private final int[] ceilings = new int[NB_COUNTERS];
+
+  private final AtomicLong cardRequestCount = new AtomicLong();
+  private final AtomicLong apduCount = new AtomicLong();
+  private volatile long cardRequestLatencyNanos;
+  private volatile long apduLatencyNanos;
+
+  private byte[] unlockData;
+  private byte[] lockKey;
+  private boolean isLocked;
+  private byte[] challenge;
+  private boolean isChallengeValidForSession;
+  private byte[] givenRandom;
+  private byte[] diversifier;
+  private DigestSession digestSession;
+  private SvOperation pendingSvOperation;
+  private int transactionNumber;
+  private int traceabilityCounter;
+
+  /**
+   * Creates a simulator of the provided product type, with random challenges.
+   *
+   * @param productType The emulated product type (SAM_C1, HSM_C1, SAM_S1E1 or SAM_S1DX).
+   * @param serialNumberHex The 4-byte serial number as a hex string.
+   */
+  LegacySamSimulator(LegacySam.ProductType productType, String serialNumberHex) {
+    this(productType, serialNumberHex, new Random());
+  }
+
+  /**
+   * Creates a simulator of the provided product type.
+   *
+   * @param productType The emulated product type (SAM_C1, HSM_C1, SAM_S1E1 or SAM_S1DX).
+   * @param serialNumberHex The 4-byte serial number as a hex string.
+   * @param random The source of the challenges (seed it to get reproducible exchanges).
+   */
+  LegacySamSimulator(LegacySam.ProductType productType, String serialNumberHex, Random random) {
+    this.productType = productType;
+    this.serialNumber = HexUtil.toByteArray(serialNumberHex);
+    this.random = random;
+    name = "SAM_SIMULATOR_" + productType.name() + "_" + serialNumberHex;
+    switch (productType) {
+      case SAM_C1:
+      case HSM_C1:
+        classByte = (byte) 0x80;
+        maxDigestDataLength = 255;
+        break;
+      case SAM_S1E1:
+        classByte = (byte) 0x80;
+        maxDigestDataLength = 240;
+        break;
+      case SAM_S1DX:
+        classByte = (byte) 0x94;
+        maxDigestDataLength = 70;
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported product type: " + productType);
+    }
+  }
+
+  /**
+   * Returns the ATR of the emulated SAM, as expected by the legacy SAM selection.
+   *
+   * @return A hex string.
+   */
+  String getPowerOnData() {
+    String applicationSubType;
+    String softwareIssuer;
+    switch (productType) {
+      case HSM_C1:
+        applicationSubType = "C1";
+        softwareIssuer = "08";
+        break;
+      case SAM_S1E1:
+        applicationSubType = "E1";
+        softwareIssuer = "20";
+        break;
+      case SAM_S1DX:
+        applicationSubType = "D1";
+        softwareIssuer = "20";
+        break;
+      default:
+        applicationSubType = "C1";
+        softwareIssuer = "20";
+        break;
+    }
+    return "3B3F9600805A4880"
+        + applicationSubType
+        + softwareIssuer
+        + "5017"
+        + HexUtil.toHex(serialNumber)
+        + "829000";
+  }
+
+  /**
+   * Creates the {@link LegacySamAdapter} that a selection of this SAM would produce.
+   *
+   * @return A new instance.
+   */
+  LegacySamAdapter createLegacySam() {
+    return new LegacySamAdapter(new TestDtoAdapters.CardSelectionResponseAdapter(getPowerOnData()));
+  }
+
+  /**
+   * Adds a key to the simulated key files.
+   *
+   * @param kif The KIF.
+   * @param kvc The KVC.
+   * @param algorithm The algorithm.
+   * @param value The 16-byte key value.
+   * @return The current instance.
+   */
+  LegacySamSimulator putKey(byte kif, byte kvc, KeyAlgorithm algorithm, byte[] value) {
+    return putKey(kif, kvc, algorithm, value, new byte[LegacySamConstants.KEY_PARAMETERS_LENGTH]);
+  }
+
+  /**
+   * Adds a key to the simulated key files.
+   *
+   * @param kif The KIF.
+   * @param kvc The KVC.
+   * @param algorithm The algorithm.
+   * @param value The 16-byte key value.
+   * @param parameters The 10 key parameters.
+   * @return The current instance.
+   */
+  synchronized LegacySamSimulator putKey(
+      byte kif, byte kvc, KeyAlgorithm algorithm, byte[] value, byte[] parameters) {
+    if (value.length != 16) {
+      throw new IllegalArgumentException("Key value must be 16 bytes long");
+    }
+    SimulatedKey existing = findKey(kif, kvc);
+    if (existing != null) {
+      keys.remove(existing);
+    }
+    keys.add(new SimulatedKey(kif, kvc, algorithm, value.clone(), parameters.clone()));
+    return this;
+  }
+
+  /**
+   * Adds a system key to the simulated key files.
+   *
+   * @param systemKeyType The system key type.
+   * @param kvc The KVC.
+   * @param value The 16-byte key value.
+   * @return The current instance.
+   */
+  LegacySamSimulator putSystemKey(SystemKeyType systemKeyType, byte kvc, byte[] value) {
+    return putKey(
+        LegacySamConstants.SYSTEM_KEY_TYPE_KIF_MAP.get(systemKeyType),
+        kvc,
+        KeyAlgorithm.TDES,
+        value);
+  }
+
+  /**
+   * Returns the value of a key, or null if the key is not present.
+   *
+   * @param kif The KIF.
+   * @param kvc The KVC.
+   * @return Null if the key is not found.
+   */
+  synchronized byte[] getKeyValue(byte kif, byte kvc) {
+    SimulatedKey key = findKey(kif, kvc);
+    return key != null ? key.value.clone() : null;
+  }
+
+  /**
+   * Sets the value of a counter and of its ceiling.
+   *
+   * @param counterNumber The counter number (0 to 26).
+   * @param value The counter value.
+   * @param ceiling The ceiling value.
+   * @return The current instance.
+   */
+  synchronized LegacySamSimulator setCounter(int counterNumber, int value, int ceiling) {
+    counters[counterNumber] = value;
+    ceilings[counterNumber] = ceiling;
+    return this;
+  }
+
+  /**
+   * Locks the SAM with the provided static unlock data.
+   *
+   * @param unlockData The 8 or 16-byte unlock data, or null to remove the lock.
+   * @return The current instance.
+   */
+  synchronized LegacySamSimulator setUnlockData(byte[] unlockData) {
+    this.unlockData = unlockData != null ? unlockData.clone() : null;
+    lockKey = null;
+    isLocked = unlockData != null;
+    return this;
+  }
+
+  /**
+   * Locks the SAM in dynamic mode: the SAM then accepts the "Get Challenge" command and expects the
+   * unlock data returned by {@link #computeDynamicUnlockData(byte[], byte[])} for its last
+   * challenge.
+   *
+   * @param lockKey The 16-byte lock key, or null to remove the lock.
+   * @return The current instance.
+   */
+  synchronized LegacySamSimulator setLockKey(byte[] lockKey) {
+    this.lockKey = lockKey != null ? lockKey.clone() : null;
+    unlockData = null;
+    isLocked = lockKey != null;
+    return this;
+  }
+
+  /**
+   * Sets the latency added to each transmitted card request (one reader round trip).
+   *
+   * @param latency The latency.
+   * @param unit The time unit.
+   * @return The current instance.
+   */
+  LegacySamSimulator setCardRequestLatency(long latency, TimeUnit unit) {
+    cardRequestLatencyNanos = unit.toNanos(latency);
+    return this;
+  }
+
+  /**
+   * Sets the latency added to each processed APDU (SAM processing time).
+   *
+   * @param latency The latency.
+   * @param unit The time unit.
+   * @return The current instance.
+   */
+  LegacySamSimulator setApduLatency(long latency, TimeUnit unit) {
+    apduLatencyNanos = unit.toNanos(latency);
+    return this;
+  }
+
+  /**
+   * @return The number of card requests (reader round trips) received so far.
+   */
+  long getCardRequestCount() {
+    return cardRequestCount.get();
+  }
+
+  /**
+   * @return The number of APDUs processed so far.
+   */
+  long getApduCount() {
+    return apduCount.get();
+  }
+
+  /** Resets the card request and APDU counts. */
+  void resetStatistics() {
+    cardRequestCount.set(0);
+    apduCount.set(0);
+  }
+
+  /**
+   * Computes the MAC that a card sharing the current session key would return, to be checked by a
+   * Digest Authenticate.
+   *
+   * @param length The MAC length (4 or 8).
+   * @return The card session MAC.
+   * @throws IllegalStateException If no session is closed and waiting for authentication.
+   */
+  synchronized byte[] computeCardSessionMac(int length) {
+    if (digestSession == null || !digestSession.isClosed) {
+      throw new IllegalStateException("No closed digest session");
+    }
+    return digestSession.computeMac(CARD_MAC_TAG, length);
+  }
+
+  /**
+   * Computes the SV MAC that a card would return for the pending SV operation, to be checked by a
+   * SV Check.
+   *
+   * @return A 3 or 6-byte MAC depending on the SV mode.
+   * @throws IllegalStateException If no SV operation is pending.
+   */
+  synchronized byte[] computeCardSvMac() {
+    if (pendingSvOperation == null) {
+      throw new IllegalStateException("No pending SV operation");
+    }
+    return pendingSvOperation.computeCardMac();
+  }
+
+  /**
+   * Computes the unlock data expected by a SAM locked in dynamic mode.
+   *
+   * @param lockKey The 16-byte lock key.
+   * @param challenge The 8-byte challenge returned by the SAM.
+   * @return An 8-byte array.
+   */
+  static byte[] computeDynamicUnlockData(byte[] lockKey, byte[] challenge) {
+    return mac(KeyAlgorithm.TDES, lockKey, challenge);
+  }
+
+  /**
+   * Diversifies a key with the provided diversifier, the way the simulator does for the
+   * diversified operations.
+   *
+   * @param algorithm The algorithm.
+   * @param key The 16-byte key.
+   * @param diversifier The diversifier.
+   * @return A 16-byte key.
+   */
+  static byte[] diversifyKey(KeyAlgorithm algorithm, byte[] key, byte[] diversifier) {
+    return deriveKey(algorithm, key, diversifier);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Returns a unique name built from the product type and the serial number.
+   */
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Always false, a SAM is a contact card.
+   */
+  @Override
+  public boolean isContactless() {
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Always true.
+   */
+  @Override
+  public boolean isCardPresent() {
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Processes the APDUs in sequence and, if requested, stops at the first unexpected status
+   * word, as the Keyple reader layer does.
+   */
+  @Override
+  public synchronized CardResponseApi transmitCardRequest(
+      CardRequestSpi cardRequest, ChannelControl channelControl)
+      throws UnexpectedStatusWordException {
+    cardRequestCount.incrementAndGet();
+    pause(cardRequestLatencyNanos);
+    List<ApduResponseApi> apduResponses = new ArrayList<>();
+    for (ApduRequestSpi apduRequest : cardRequest.getApduRequests()) {
+      apduCount.incrementAndGet();
+      pause(apduLatencyNanos);
+      ApduResponseApi apduResponse =
+          new TestDtoAdapters.ApduResponseAdapter(processApdu(apduRequest.getApdu()));
+      apduResponses.add(apduResponse);
+      if (cardRequest.stopOnUnsuccessfulStatusWord()
+          && !apduRequest.getSuccessfulStatusWords().contains(apduResponse.getStatusWord())) {
+        throw new UnexpectedStatusWordException(
+            new TestDtoAdapters.CardResponseAdapter(apduResponses, true),
+            cardRequest.getApduRequests().size() == apduResponses.size(),
+            "Unexpected status word: " + HexUtil.toHex(apduResponse.getStatusWord()));
+      }
+    }
+    return new TestDtoAdapters.CardResponseAdapter(apduResponses, true);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Resets the volatile state of the SAM (challenge, diversifier, sessions).
+   */
+  @Override
+  public synchronized void releaseChannel() {
+    challenge = null;
+    isChallengeValidForSession = false;
+    givenRandom = null;
+    diversifier = null;
+    digestSession = null;
+    pendingSvOperation = null;
+  }
+
+  private static void pause(long nanos) {
+    if (nanos > 0) {
+      LockSupport.parkNanos(nanos);
+    }
+  }
+
+  /**
+   * Processes one C-APDU.
+   *
+   * @param apdu The C-APDU.
+   * @return The R-APDU (data and status word).
+   */
+  private byte[] processApdu(byte[] apdu) {
+    if (apdu.length < 4) {
+      return sw(SW_INCORRECT_LENGTH);
+    }
+    if (apdu[0] != classByte) {
+      return sw(SW_CLASS_NOT_SUPPORTED);
+    }
+    byte ins = apdu[1];
+    byte p1 = apdu[2];
+    byte p2 = apdu[3];
+    byte[] dataIn = getDataIn(apdu);
+    int le = getLe(apdu);
+    // A SAM locked in dynamic mode provides the challenge from which its unlock data is computed
+    if (isLocked
+        && ins != CommandRef.UNLOCK.getInstructionByte()
+        && (lockKey == null || ins != CommandRef.GET_CHALLENGE.getInstructionByte())) {
+      return sw(SW_PRECONDITIONS_NOT_SATISFIED);
+    }
+    // Only a Select Diversifier may be inserted between the Get Challenge and the Digest Init.
+    if (ins != CommandRef.GET_CHALLENGE.getInstructionByte()
+        && ins != CommandRef.SELECT_DIVERSIFIER.getInstructionByte()
+        && ins != CommandRef.DIGEST_INIT.getInstructionByte()) {
+      isChallengeValidForSession = false;
+    }
+    try {
+      switch (ins) {
+        case (byte) 0x84:
+          return getChallenge(le);
+        case (byte) 0x14:
+          return selectDiversifier(dataIn);
+        case (byte) 0x86:
+          return giveRandom(dataIn);
+        case (byte) 0x20:
+          return unlock(dataIn);
+        case (byte) 0x8A:
+          return digestInit(p1, dataIn);
+        case (byte) 0x8C:
+          return p1 == (byte) 0x80 ? digestUpdateMultiple(dataIn) : digestUpdate(p2, dataIn);
+        case (byte) 0x8E:
+          return digestClose(le);
+        case (byte) 0x82:
+          return digestAuthenticate(dataIn);
+        case (byte) 0x88:
+          return digestInternalAuthenticate();
+        case (byte) 0x54:
+        case (byte) 0x56:
+        case (byte) 0x5C:
+          return svPrepare(dataIn);
+        case (byte) 0x58:
+          return svCheck(dataIn);
+        case (byte) 0x1C:
+          return dataCipher(p1, dataIn);
+        case (byte) 0x2A:
+          return performSecurityOperation(p1, p2, dataIn);
+        case (byte) 0xBE:
+          return readCounterOrCeilings(p2);
+        case (byte) 0xBC:
+          return readKeyParameters(p2, dataIn);
+        case (byte) 0x16:
+          return samGenerateKey(p1, p2, dataIn);
+        case (byte) 0x1A:
+          return writeKey(p1, p2, dataIn);
+        default:
+          return sw(SW_INSTRUCTION_UNKNOWN);
+      }
+    } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+      return sw(SW_INCORRECT_DATA);
+    }
+  }
+
+  private byte[] getChallenge(int le) {
+    if (le != 4 && le != 8) {
+      return sw(SW_INCORRECT_LENGTH);
+    }
+    challenge = new byte[8];
+    random.nextBytes(challenge);
+    isChallengeValidForSession = true;
+    return response(Arrays.copyOf(challenge, le));
+  }
+
+  private byte[] selectDiversifier(byte[] dataIn) {
+    if (dataIn.length != 4 && dataIn.length != 8) {
+      return sw(SW_INCORRECT_LENGTH);
+    }
+    diversifier = dataIn;
+    return sw(SW_SUCCESS);
+  }
+
+  private byte[] giveRandom(byte[] dataIn) {
+    if (dataIn.length != 8) {
+      return sw(SW_INCORRECT_LENGTH);
+    }
+    givenRandom = dataIn;
+    return sw(SW_SUCCESS);
+  }
+
+  private byte[] unlock(byte[] dataIn) {
+    if (!isLocked) {
+      return sw(SW_PRECONDITIONS_NOT_SATISFIED);
+    }
+    byte[] expectedUnlockData =
+        lockKey == null
+            ? unlockData
+            : challenge != null ? computeDynamicUnlockData(lockKey, challenge) : null;
+    if (!Arrays.equals(dataIn, expectedUnlockData)) {
+      return sw(SW_INCORRECT_SIGNATURE);
+    }
+    isLocked = false;
+    return sw(SW_SUCCESS);
+  }
+
+  private byte[] digestInit(byte p1, byte[] dataIn) {
+    if (dataIn.length < 3) {
+      return sw(SW_INCORRECT_LENGTH);
+    }
+    if (!isChallengeValidForSession) {
+      // no Get Challenge or another command has been inserted since
+      return sw(SW_PRECONDITIONS_NOT_SATISFIED);
+    }
+    isChallengeValidForSession = false;
+    SimulatedKey key = findKey(dataIn[0], dataIn[1]);
+    if (key == null) {
+      return sw(SW_RECORD_NOT_FOUND);
+    }
+    byte[] cardData = Arrays.copyOfRange(dataIn, 2, dataIn.length);
+    byte[] sessionKey = deriveKey(key.algorithm, diversify(key), concat(challenge, cardData));
+    digestSession = new DigestSession(key.algorithm, sessionKey, (p1 & 0x02) != 0);
+    digestSession.append(cardData);
+    return sw(SW_SUCCESS);
+  }
+
+  private byte[] digestUpdate(byte p2, byte[] dataIn) {
+    if (digestSession == null || digestSession.isClosed) {
+      return sw(SW_PRECONDITIONS_NOT_SATISFIED);
+    }
+    if (dataIn.length > maxDigestDataLength) {
+      return sw(SW_INCORRECT_LENGTH);
+    }
+    if (p2 == (byte) 0x80) {
+      return response(digestSession.processEncrypted(dataIn));
+    }
+    digestSession.append(dataIn);
+    return sw(SW_SUCCESS);
+  }
+
+  private byte[] digestUpdateMultiple(byte[] dataIn) {
+    if (productType == LegacySam.ProductType.SAM_S1DX) {
+      return sw(SW_INCORRECT_P1_P2);
+    }
+    if (digestSession == null || digestSession.isClosed) {
+      return sw(SW_PRECONDITIONS_NOT_SATISFIED);
+    }
+    if (dataIn.length > maxDigestDataLength) {
+      return sw(SW_INCORRECT_LENGTH);
+    }
+    int i = 0;
+    while (i < dataIn.length) {
+      int length = dataIn[i++] & 0xFF;
+      if (length == 0 || i + length > dataIn.length) {
+        return sw(SW_INCORRECT_DATA);
+      }
+      digestSession.append(Arrays.copyOfRange(dataIn, i, i + length));
+      i += length;
+    }
+    return sw(SW_SUCCESS);
+  }
+
+  private byte[] digestClose(int le) {
+    if (digestSession == null || digestSession.isClosed) {
+      return sw(SW_PRECONDITIONS_NOT_SATISFIED);
+    }
+    int expectedLength = digestSession.isExtendedMode ? 8 : 4;
+    if (le != expectedLength) {
+      return sw(SW_INCORRECT_LENGTH);
+    }
+    digestSession.isClosed = true;
+    return response(digestSession.computeMac(TERMINAL_MAC_TAG, le));
+  }
+
+  private byte[] digestAuthenticate(byte[] dataIn) {
+    if (digestSession == null || !digestSession.isClosed) {
+      return sw(SW_PRECONDITIONS_NOT_SATISFIED);
+    }
+    byte[] expected = digestSession.computeMac(CARD_MAC_TAG, dataIn.length);
+    digestSession = null;
+    return sw(Arrays.equals(expected, dataIn) ? SW_SUCCESS : SW_INCORRECT_SIGNATURE);
+  }
+
+  private byte[] digestInternalAuthenticate() {
+    if (digestSession == null || digestSession.isClosed) {
+      return sw(SW_PRECONDITIONS_NOT_SATISFIED);
+    }
+    return response(digestSession.computeMac(INTERNAL_AUTHENTICATE_TAG, 8));
+  }
+
+  private byte[] svPrepare(byte[] dataIn) {
+    byte[] key;
+    KeyAlgorithm algorithm;
+    if (digestSession != null && !digestSession.isClosed) {
+      key = digestSession.sessionKey;
+      algorithm = digestSession.algorithm;
+    } else {
+      SimulatedKey reloadingKey = findSystemKey(SystemKeyType.RELOADING);
+      if (reloadingKey == null) {
+        return sw(SW_RECORD_NOT_FOUND);
+      }
+      key = diversify(reloadingKey);
+      algorithm = reloadingKey.algorithm;
+    }
+    // SV Get header: CLA INS P1 P2, P1 bit 0 set for the extended mode.
+    boolean isExtendedMode = (dataIn[2] & 0x01) != 0;
+    byte[] terminalChallenge = new byte[3];
+    random.nextBytes(terminalChallenge);
+    transactionNumber++;
+    byte[] transactionNumberBytes = {
+      (byte) (transactionNumber >> 16), (byte) (transactionNumber >> 8), (byte) transactionNumber
+    };
+    pendingSvOperation =
+        new SvOperation(
+            algorithm,
+            key,
+            concat(dataIn, terminalChallenge, transactionNumberBytes),
+            isExtendedMode);
+    byte[] terminalMac =
+        Arrays.copyOf(
+            mac(algorithm, key, concat(pendingSvOperation.data, new byte[] {TERMINAL_MAC_TAG})),
+            isExtendedMode ? 10 : 5);
+    return response(concat(terminalChallenge, transactionNumberBytes, terminalMac));
+  }
+
+  private byte[] svCheck(byte[] dataIn) {
+    if (pendingSvOperation == null) {
+      return sw(SW_PRECONDITIONS_NOT_SATISFIED);
+    }
+    SvOperation svOperation = pendingSvOperation;
+    pendingSvOperation = null;
+    if (dataIn.length == 0) {
+      // abort
+      return sw(SW_SUCCESS);
+    }
+    return sw(
+        Arrays.equals(svOperation.computeCardMac(), dataIn) ? SW_SUCCESS : SW_INCORRECT_SIGNATURE);
+  }
+
+  private byte[] dataCipher(byte p1, byte[] dataIn) {
+    if (p1 != 0x40) {
+      // only the signature mode is emulated
+      return sw(SW_INCORRECT_P1_P2);
+    }
+    if (dataIn.length < 10 || (dataIn.length - 2) % 8 != 0) {
+      return sw(SW_INCORRECT_LENGTH);
+    }
+    SimulatedKey key = findKey(dataIn[0], dataIn[1]);
+    if (key == null) {
+      return sw(SW_RECORD_NOT_FOUND);
+    }
+    byte[] data = Arrays.copyOfRange(dataIn, 2, dataIn.length);
+    return response(Arrays.copyOf(mac(key.algorithm, diversify(key), data), 8));
+  }
+
+  private byte[] performSecurityOperation(byte p1, byte p2, byte[] dataIn) {
+    boolean isComputation;
+    if (p1 == (byte) 0x9E && p2 == (byte) 0x9A) {
+      isComputation = true;
+    } else if (p1 == (byte) 0x00 && p2 == (byte) 0xA8) {
+      isComputation = false;
+    } else {
+      return sw(SW_INCORRECT_P1_P2);
+    }
+    SimulatedKey key = findKey(dataIn[1], dataIn[2]);
+    if (key == null) {
+      return sw(SW_RECORD_NOT_FOUND);
+    }
+    int opMode = dataIn[3] & 0xFF;
+    int signatureSize = opMode & 0x0F;
+    int traceabilityMode = (opMode >> 4) & 0x06;
+    int messageOffset = traceabilityMode != 0 ? 6 : 4;
+    int messageEnd = isComputation ? dataIn.length : dataIn.length - signatureSize;
+    byte[] message = Arrays.copyOfRange(dataIn, messageOffset, messageEnd);
+    if (!isComputation) {
+      byte[] expected = Arrays.copyOf(mac(key.algorithm, diversify(key), message), signatureSize);
+      byte[] signature = Arrays.copyOfRange(dataIn, messageEnd, dataIn.length);
+      return sw(Arrays.equals(expected, signature) ? SW_SUCCESS : SW_INCORRECT_SIGNATURE);
+    }
+    if (traceabilityMode != 0) {
+      int bitOffset = ((dataIn[4] & 0xFF) << 8) | (dataIn[5] & 0xFF);
+      boolean isTruncated = traceabilityMode == 0x04;
+      byte[] serial = isTruncated ? Arrays.copyOfRange(serialNumber, 1, 4) : serialNumber.clone();
+      traceabilityCounter++;
+      byte[] counter = {
+        (byte) (traceabilityCounter >> 16),
+        (byte) (traceabilityCounter >> 8),
+        (byte) traceabilityCounter
+      };
+      writeBits(message, bitOffset, concat(serial, counter));
+    }
+    byte[] signature = Arrays.copyOf(mac(key.algorithm, diversify(key), message), signatureSize);
+    return response(traceabilityMode != 0 ? concat(message, signature) : signature);
+  }
+
+  private byte[] readCounterOrCeilings(byte p2) {
+    int[] values;
+    int recordIndex;
+    if (p2 >= (byte) 0xE1 && p2 <= (byte) 0xE3) {
+      values = counters;
+      recordIndex = p2 - (byte) 0xE1;
+    } else if (p2 >= (byte) 0xB1 && p2 <= (byte) 0xB3) {
+      values = ceilings;
+      recordIndex = p2 - (byte) 0xB1;
+    } else {
+      return sw(SW_INCORRECT_P1_P2);
+    }
+    byte[] record = new byte[COUNTER_RECORD_SIZE];
+    for (int i = 0; i < 9; i++) {
+      int value = values[recordIndex * 9 + i];
+      record[8 + 3 * i] = (byte) (value >> 16);
+      record[8 + 3 * i + 1] = (byte) (value >> 8);
+      record[8 + 3 * i + 2] = (byte) value;
+    }
+    return response(record);
+  }
+
+  private byte[] readKeyParameters(byte p2, byte[] dataIn) {
+    SimulatedKey key = null;
+    if (p2 == (byte) 0xC1) {
+      key = findSystemKey(SystemKeyType.PERSONALIZATION);
+    } else if (p2 == (byte) 0xC2) {
+      key = findSystemKey(SystemKeyType.KEY_MANAGEMENT);
+    } else if (p2 == (byte) 0xC3) {
+      key = findSystemKey(SystemKeyType.RELOADING);
+    } else if (p2 == (byte) 0xC4) {
+      key = findSystemKey(SystemKeyType.AUTHENTICATION);
+    } else if (p2 == (byte) 0xF0) {
+      key = findKey(dataIn[0], dataIn[1]);
+    } else if (p2 >= 1 && p2 <= 126 && p2 <= keys.size()) {
+      key = keys.get(p2 - 1);
+    }
+    if (key == null) {
+      return sw(SW_RECORD_NOT_FOUND);
+    }
+    byte[] record = new byte[KEY_PARAMETERS_RECORD_SIZE];
+    record[8] = key.kif;
+    record[9] = key.kvc;
+    record[10] = key.algorithm.code;
+    System.arraycopy(key.parameters, 0, record, 11, LegacySamConstants.KEY_PARAMETERS_LENGTH);
+    return response(record);
+  }
+
+  /**
+   * Ciphers a key (or a lock) for a target SAM, to be written with Write Key.
+   *
+   * <p>The 48-byte cryptogram is the CBC encryption of [target reference][KIF][KVC][ALG][10
+   * parameters][16-byte value][padding] with a transport key derived from the ciphering key, the
+   * selected diversifier (the target SAM serial number) and the target SAM challenge given by Give
+   * Random.
+   */
+  private byte[] samGenerateKey(byte p1, byte p2, byte[] dataIn) {
+    if (givenRandom == null || diversifier == null) {
+      return sw(SW_PRECONDITIONS_NOT_SATISFIED);
+    }
+    byte cipheringKvc = dataIn[0];
+    byte p2Kif =
+        p2 == LegacySamConstants.TARGET_IS_SYSTEM_KEY_FILE
+                || p2 == LegacySamConstants.TARGET_IS_LOCK_FILE
+            ? LegacySamConstants.SYSTEM_KEY_TYPE_KIF_MAP.get(SystemKeyType.PERSONALIZATION)
+            : LegacySamConstants.SYSTEM_KEY_TYPE_KIF_MAP.get(SystemKeyType.KEY_MANAGEMENT);
+    SimulatedKey cipheringKey = findKey(p2Kif, cipheringKvc);
+    SimulatedKey sourceKey = findKey(dataIn[1], dataIn[2]);
+    if (cipheringKey == null || sourceKey == null) {
+      return sw(SW_RECORD_NOT_FOUND);
+    }
+    byte[] value = sourceKey.value;
+    if (p1 == 0x01) {
+      byte[] keyDiversifier =
+          dataIn.length >= 21 ? Arrays.copyOfRange(dataIn, 13, 21) : diversifier;
+      value = deriveKey(sourceKey.algorithm, value, keyDiversifier);
+    }
+    byte[] plain = new byte[LegacySamConstants.KEY_DATA_BLOCK_SIZE];
+    plain[0] = p2;
+    plain[1] = sourceKey.kif;
+    plain[2] = sourceKey.kvc;
+    plain[3] = sourceKey.algorithm.code;
+    System.arraycopy(dataIn, 3, plain, 4, LegacySamConstants.KEY_PARAMETERS_LENGTH);
+    System.arraycopy(value, 0, plain, 14, 16);
+    byte[] targetCipheringKey = deriveKey(cipheringKey.algorithm, cipheringKey.value, diversifier);
+    byte[] transportKey = deriveKey(cipheringKey.algorithm, targetCipheringKey, givenRandom);
+    givenRandom = null;
+    return response(cbcEncrypt(cipheringKey.algorithm, transportKey, plain));
+  }
+
+  private byte[] writeKey(byte p1, byte p2, byte[] dataIn) {
+    if (dataIn.length != LegacySamConstants.KEY_DATA_BLOCK_SIZE) {
+      return sw(SW_INCORRECT_LENGTH);
+    }
+    if (p1 != 0x00) {
+      // plain data mode (lock file): accepted without being interpreted
+      return sw(SW_SUCCESS);
+    }
+    if (challenge == null) {
+      return sw(SW_PRECONDITIONS_NOT_SATISFIED);
+    }
+    byte cipheringKif =
+        p2 == LegacySamConstants.TARGET_IS_SYSTEM_KEY_FILE
+                || p2 == LegacySamConstants.TARGET_IS_LOCK_FILE
+            ? LegacySamConstants.SYSTEM_KEY_TYPE_KIF_MAP.get(SystemKeyType.PERSONALIZATION)
+            : LegacySamConstants.SYSTEM_KEY_TYPE_KIF_MAP.get(SystemKeyType.KEY_MANAGEMENT);
+    SimulatedKey cipheringKey = findKeyByKif(cipheringKif);
+    if (cipheringKey == null) {
+      return sw(SW_RECORD_NOT_FOUND);
+    }
+    byte[] transportKey = deriveKey(cipheringKey.algorithm, cipheringKey.value, challenge);
+    challenge = null;
+    byte[] plain = cbcDecrypt(cipheringKey.algorithm, transportKey, dataIn);
+    if (plain[0] != p2) {
+      return sw(SW_INCORRECT_SIGNATURE);
+    }
+    KeyAlgorithm algorithm =
+        plain[3] == KeyAlgorithm.AES.code ? KeyAlgorithm.AES : KeyAlgorithm.TDES;
+    putKey(
+        plain[1],
+        plain[2],
+        algorithm,
+        Arrays.copyOfRange(plain, 14, 30),
+        Arrays.copyOfRange(plain, 4, 14));
+    return sw(SW_SUCCESS);
+  }
+
+  private SimulatedKey findKey(byte kif, byte kvc) {
+    for (SimulatedKey key : keys) {
+      if (key.kif == kif && key.kvc == kvc) {
+        return key;
+      }
+    }
+    return null;
+  }
+
+  private SimulatedKey findKeyByKif(byte kif) {
+    for (SimulatedKey key : keys) {
+      if (key.kif == kif) {
+        return key;
+      }
+    }
+    return null;
+  }
+
+  private SimulatedKey findSystemKey(SystemKeyType systemKeyType) {
+    return findKeyByKif(LegacySamConstants.SYSTEM_KEY_TYPE_KIF_MAP.get(systemKeyType));
+  }
+
+  /** Returns the key value diversified with the selected diversifier, if any. */
+  private byte[] diversify(SimulatedKey key) {
+    return diversifier != null ? deriveKey(key.algorithm, key.value, diversifier) : key.value;
+  }
+
+  private static byte[] getDataIn(byte[] apdu) {
+    if (apdu.length <= 5) {
+      return new byte[0];
+    }
+    int lc = apdu[4] & 0xFF;
+    return Arrays.copyOfRange(apdu, 5, 5 + lc);
+  }
+
+  private static int getLe(byte[] apdu) {
+    if (apdu.length == 5) {
+      return apdu[4] & 0xFF;
+    }
+    if (apdu.length > 5 && apdu.length == 6 + (apdu[4] & 0xFF)) {
+      return apdu[apdu.length - 1] & 0xFF;
+    }
+    return 0;
+  }
+
+  private static byte[] sw(int statusWord) {
+    return new byte[] {(byte) (statusWord >> 8), (byte) statusWord};
+  }
+
+  private static byte[] response(byte[] dataOut) {
+    byte[] apdu = Arrays.copyOf(dataOut, dataOut.length + 2);
+    apdu[dataOut.length] = (byte) 0x90;
+    apdu[dataOut.length + 1] = 0x00;
+    return apdu;
+  }
+
+  private static byte[] concat(byte[]... arrays) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (byte[] array : arrays) {
+      out.write(array, 0, array.length);
+    }
+    return out.toByteArray();
+  }
+
+  /** Writes bytes into a byte array at an arbitrary bit offset. */
+  private static void writeBits(byte[] target, int bitOffset, byte[] bytes) {
+    for (int i = 0; i < bytes.length * 8; i++) {
+      int bit = (bytes[i / 8] >> (7 - (i % 8))) & 1;
+      int position = bitOffset + i;
+      int mask = 1 << (7 - (position % 8));
+      if (bit != 0) {
+        target[position / 8] |= (byte) mask;
+      } else {
+        target[position / 8] &= (byte) ~mask;
+      }
+    }
+  }
+
+  private static Cipher getCipher(KeyAlgorithm algorithm, byte[] key, String mode, int opMode) {
+    try {
+      byte[] jceKey = key;
+      if (algorithm == KeyAlgorithm.TDES) {
+        // 2-key TDES: K1 K2 K1
+        jceKey = Arrays.copyOf(key, 24);
+        System.arraycopy(key, 0, jceKey, 16, 8);
+      }
+      Cipher cipher = Cipher.getInstance(algorithm.jceName + "/" + mode + "/NoPadding");
+      if ("CBC".equals(mode)) {
+        cipher.init(
+            opMode,
+            new SecretKeySpec(jceKey, algorithm.jceName),
+            new javax.crypto.spec.IvParameterSpec(new byte[algorithm.blockSize]));
+      } else {
+        cipher.init(opMode, new SecretKeySpec(jceKey, algorithm.jceName));
+      }
+      return cipher;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Cryptographic provider error", e);
+    }
+  }
+
+  private static byte[] cbcEncrypt(KeyAlgorithm algorithm, byte[] key, byte[] data) {
+    try {
+      return getCipher(algorithm, key, "CBC", Cipher.ENCRYPT_MODE).doFinal(data);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Cryptographic provider error", e);
+    }
+  }
+
+  private static byte[] cbcDecrypt(KeyAlgorithm algorithm, byte[] key, byte[] data) {
+    try {
+      return getCipher(algorithm, key, "CBC", Cipher.DECRYPT_MODE).doFinal(data);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Cryptographic provider error", e);
+    }
+  }
+
+  /** CBC-MAC with ISO/IEC 9797-1 padding method 2, returns one block. */
+  private static byte[] mac(KeyAlgorithm algorithm, byte[] key, byte[] data) {
+    int blockSize = algorithm.blockSize;
+    int paddedLength = (data.length / blockSize + 1) * blockSize;
+    byte[] padded = Arrays.copyOf(data, paddedLength);
+    padded[data.length] = (byte) 0x80;
+    byte[] cryptogram = cbcEncrypt(algorithm, key, padded);
+    return Arrays.copyOfRange(cryptogram, paddedLength - blockSize, paddedLength);
+  }
+
+  /** Derives a 16-byte key from a key and some input material. */
+  private static byte[] deriveKey(KeyAlgorithm algorithm, byte[] key, byte[] material) {
+    byte[] left = mac(algorithm, key, concat(new byte[] {0x01}, material));
+    if (left.length >= 16) {
+      return Arrays.copyOf(left, 16);
+    }
+    byte[] right = mac(algorithm, key, concat(new byte[] {0x02}, material));
+    return concat(left, right);
+  }
+
+  /** A key of the simulated key files. */
+  private static final class SimulatedKey {
+    private final byte kif;
+    private final byte kvc;
+    private final KeyAlgorithm algorithm;
+    private final byte[] value;
+    private final byte[] parameters;
+
+    private SimulatedKey(
+        byte kif, byte kvc, KeyAlgorithm algorithm, byte[] value, byte[] parameters) {
+      this.kif = kif;
+      this.kvc = kvc;
+      this.algorithm = algorithm;
+      this.value = value;
+      this.parameters = parameters;
+    }
+  }
+
+  /** The state of a secure session digest. */
+  private static final class DigestSession {
+    private final KeyAlgorithm algorithm;
+    private final byte[] sessionKey;
+    private final boolean isExtendedMode;
+    private final ByteArrayOutputStream digestData = new ByteArrayOutputStream();
+    private boolean isClosed;
+    private boolean isRequest = true;
+    private int keyStreamCounter;
+
+    private DigestSession(KeyAlgorithm algorithm, byte[] sessionKey, boolean isExtendedMode) {
+      this.algorithm = algorithm;
+      this.sessionKey = sessionKey;
+      this.isExtendedMode = isExtendedMode;
+    }
+
+    private void append(byte[] data) {
+      digestData.write(data, 0, data.length);
+    }
+
+    /**
+     * Ciphers an outgoing card command or deciphers an incoming card response (XOR with a key
+     * stream), the plain value being added to the digest.
+     */
+    private byte[] processEncrypted(byte[] data) {
+      byte[] keyStream = new byte[data.length];
+      int i = 0;
+      while (i < keyStream.length) {
+        byte[] block =
+            mac(
+                algorithm,
+                sessionKey,
+                new byte[] {
+                  (byte) (keyStreamCounter >> 24),
+                  (byte) (keyStreamCounter >> 16),
+                  (byte) (keyStreamCounter >> 8),
+                  (byte) keyStreamCounter
+                });
+        keyStreamCounter++;
+        int n = Math.min(block.length, keyStream.length - i);
+        System.arraycopy(block, 0, keyStream, i, n);
+        i += n;
+      }
+      byte[] processed = new byte[data.length];
+      for (int j = 0; j < data.length; j++) {
+        processed[j] = (byte) (data[j] ^ keyStream[j]);
+      }
+      append(isRequest ? data : processed);
+      isRequest = !isRequest;
+      return processed;
+    }
+
+    private byte[] computeMac(byte tag, int length) {
+      return Arrays.copyOf(
+          mac(algorithm, sessionKey, concat(digestData.toByteArray(), new byte[] {tag})), length);
+    }
+  }
+
+  /** A pending SV operation, waiting for the SV Check. */
+  private static final class SvOperation {
+    private final KeyAlgorithm algorithm;
+    private final byte[] key;
+    private final byte[] data;
+    private final boolean isExtendedMode;
+
+    private SvOperation(KeyAlgorithm algorithm, byte[] key, byte[] data, boolean isExtendedMode) {
+      this.algorithm = algorithm;
+      this.key = key;
+      this.data = data;
+      this.isExtendedMode = isExtendedMode;
+    }
+
+    private byte[] computeCardMac() {
+      return Arrays.copyOf(
+          mac(algorithm, key, concat(data, new byte[] {CARD_MAC_TAG})), isExtendedMode ? 6 : 3);
+    }
+  }
+}
@@ -0,0 +1,528 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.crypto.legacysam.SystemKeyType;
+import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySam;
+import org.eclipse.keypop.calypso.crypto.legacysam.transaction.FreeTransactionManager;
+import org.eclipse.keypop.calypso.crypto.legacysam.transaction.SecureWriteTransactionManager;
+import org.eclipse.keypop.calypso.crypto.symmetric.spi.SymmetricCryptoCardTransactionManagerSpi;
+import org.eclipse.keypop.card.CardResponseApi;
+import org.eclipse.keypop.reader.ChannelControl;
+import org.eclipse.keypop.reader.InvalidCardResponseException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LegacySamSimulatorTest {
+
+  private static final String SAM_SERIAL_NUMBER = "11223344";
+  private static final byte KIF = (byte) 0x30;
+  private static final byte KVC = (byte) 0x79;
+  private static final byte[] KEY_VALUE =
+      HexUtil.toByteArray("00112233445566778899AABBCCDDEEFF");
+  private static final byte[] CARD_DIVERSIFIER = HexUtil.toByteArray("0000000012345678");
+  private static final byte[] OPEN_SESSION_DATA_OUT =
+      HexUtil.toByteArray("030490980030791D01112233445566778899AABBCCDD");
+  private static final byte[] READ_RECORD_COMMAND = HexUtil.toByteArray("00B2014400");
+  private static final byte[] READ_RECORD_RESPONSE =
+      HexUtil.toByteArray("00112233445566778899AABBCCDDEEFF00112233445566778899AABBCCDD9000");
+
+  private LegacySamSimulator simulator;
+  private SymmetricCryptoCardTransactionManagerFactoryAdapter factory;
+
+  @Before
+  public void setUp() {
+    simulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, SAM_SERIAL_NUMBER, new Random(0))
+            .putKey(KIF, KVC, LegacySamSimulator.KeyAlgorithm.TDES, KEY_VALUE);
+    factory =
+        new SymmetricCryptoCardTransactionManagerFactoryAdapter(
+            simulator, simulator.createLegacySam(), new ContextSettingAdapter());
+  }
+
+  private SymmetricCryptoCardTransactionManagerSpi openSession(boolean isExtendedMode)
+      throws Exception {
+    SymmetricCryptoCardTransactionManagerSpi manager =
+        factory.createCardTransactionManager(
+            CARD_DIVERSIFIER, isExtendedMode, new ArrayList<byte[]>());
+    manager.initTerminalSecureSessionContext();
+    manager.initTerminalSessionMac(OPEN_SESSION_DATA_OUT, KIF, KVC);
+    manager.updateTerminalSessionMac(READ_RECORD_COMMAND);
+    manager.updateTerminalSessionMac(READ_RECORD_RESPONSE);
+    return manager;
+  }
+
+  @Test
+  public void createLegacySam_shouldMatchProductTypeAndSerialNumber() {
+    for (LegacySam.ProductType productType :
+        new LegacySam.ProductType[] {
+          LegacySam.ProductType.SAM_C1,
+          LegacySam.ProductType.HSM_C1,
+          LegacySam.ProductType.SAM_S1E1,
+          LegacySam.ProductType.SAM_S1DX
+        }) {
+      LegacySamAdapter sam =
+          new LegacySamSimulator(productType, SAM_SERIAL_NUMBER).createLegacySam();
+      assertThat(sam.getProductType()).isEqualTo(productType);
+      assertThat(sam.getSerialNumber()).isEqualTo(HexUtil.toByteArray(SAM_SERIAL_NUMBER));
+    }
+  }
+
+  @Test
+  public void secureSession_whenCardMacIsCorrect_shouldBeValid() throws Exception {
+    SymmetricCryptoCardTransactionManagerSpi manager = openSession(false);
+    byte[] terminalMac = manager.finalizeTerminalSessionMac();
+    assertThat(terminalMac).hasSize(4);
+    assertThat(manager.isCardSessionMacValid(simulator.computeCardSessionMac(4))).isTrue();
+  }
+
+  @Test
+  public void secureSession_whenExtendedModeAndCardMacIsCorrect_shouldBeValid() throws Exception {
+    SymmetricCryptoCardTransactionManagerSpi manager = openSession(true);
+    byte[] terminalMac = manager.finalizeTerminalSessionMac();
+    assertThat(terminalMac).hasSize(8);
+    assertThat(manager.isCardSessionMacValid(simulator.computeCardSessionMac(8))).isTrue();
+  }
+
+  @Test
+  public void secureSession_whenCardMacIsIncorrect_shouldBeInvalid() throws Exception {
+    SymmetricCryptoCardTransactionManagerSpi manager = openSession(false);
+    manager.finalizeTerminalSessionMac();
+    assertThat(manager.isCardSessionMacValid(new byte[4])).isFalse();
+  }
+
+  @Test
+  public void secureSession_shouldCountExchanges() throws Exception {
+    SymmetricCryptoCardTransactionManagerSpi manager = openSession(false);
+    manager.finalizeTerminalSessionMac();
+    manager.isCardSessionMacValid(simulator.computeCardSessionMac(4));
+    // Get Challenge / Select Diversifier + Digest Init + Digest Update Multiple + Digest Close /
+    // Digest Authenticate
+    assertThat(simulator.getCardRequestCount()).isEqualTo(3);
+    assertThat(simulator.getApduCount()).isEqualTo(6);
+  }
+
+  @Test
+  public void transferWorkKey_shouldWriteKeyInTargetSam() throws Exception {
+    byte[] keyManagementKey = HexUtil.toByteArray("0F0E0D0C0B0A09080706050403020100");
+    byte[] targetDiversifier = HexUtil.toByteArray("0000000055667788");
+    LegacySamSimulator controlSimulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, SAM_SERIAL_NUMBER)
+            .putSystemKey(SystemKeyType.KEY_MANAGEMENT, (byte) 0x01, keyManagementKey)
+            .putKey(KIF, KVC, LegacySamSimulator.KeyAlgorithm.TDES, KEY_VALUE);
+    LegacySamSimulator targetSimulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, "55667788")
+            .putSystemKey(
+                SystemKeyType.KEY_MANAGEMENT,
+                (byte) 0x01,
+                LegacySamSimulator.diversifyKey(
+                    LegacySamSimulator.KeyAlgorithm.TDES, keyManagementKey, targetDiversifier));
+    SecureWriteTransactionManagerAdapter manager =
+        new SecureWriteTransactionManagerAdapter(
+            targetSimulator,
+            targetSimulator.createLegacySam(),
+            controlSimulator,
+            controlSimulator.createLegacySam());
+
+    manager.prepareTransferWorkKey(KIF, KVC, new byte[10], 0);
+    manager.processCommands();
+
+    assertThat(targetSimulator.getKeyValue(KIF, KVC)).isEqualTo(KEY_VALUE);
+  }
+
+  @Test
+  public void transferWorkKeys_shouldSelectControlSamDiversifierOnce() throws Exception {
+    byte[] keyManagementKey = HexUtil.toByteArray("0F0E0D0C0B0A09080706050403020100");
+    LegacySamSimulator controlSimulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, SAM_SERIAL_NUMBER)
+            .putSystemKey(SystemKeyType.KEY_MANAGEMENT, (byte) 0x01, keyManagementKey);
+    for (int i = 0; i < 3; i++) {
+      controlSimulator.putKey(
+          (byte) (KIF + i), KVC, LegacySamSimulator.KeyAlgorithm.TDES, KEY_VALUE);
+    }
+    LegacySamSimulator targetSimulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, "55667788")
+            .putSystemKey(
+                SystemKeyType.KEY_MANAGEMENT,
+                (byte) 0x01,
+                LegacySamSimulator.diversifyKey(
+                    LegacySamSimulator.KeyAlgorithm.TDES,
+                    keyManagementKey,
+                    HexUtil.toByteArray("0000000055667788")));
+    SecureWriteTransactionManagerAdapter manager =
+        new SecureWriteTransactionManagerAdapter(
+            targetSimulator,
+            targetSimulator.createLegacySam(),
+            controlSimulator,
+            controlSimulator.createLegacySam());
+
+    for (int i = 0; i < 3; i++) {
+      manager.prepareTransferWorkKey((byte) (KIF + i), KVC, new byte[10], i);
+    }
+    manager.processCommands();
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(targetSimulator.getKeyValue((byte) (KIF + i), KVC)).isEqualTo(KEY_VALUE);
+    }
+    // Control SAM: Select Diversifier + 3 x (Give Random + SAM Generate Key) in 3 requests
+    assertThat(controlSimulator.getCardRequestCount()).isEqualTo(3);
+    assertThat(controlSimulator.getApduCount()).isEqualTo(7);
+    // Target SAM: Get Challenge, 2 x (Write Key + Get Challenge), Write Key
+    assertThat(targetSimulator.getCardRequestCount()).isEqualTo(4);
+  }
+
+  @Test
+  public void processCommandsAsync_shouldProcessCommandsOnExecutor() throws Exception {
+    byte[] keyManagementKey = HexUtil.toByteArray("0F0E0D0C0B0A09080706050403020100");
+    LegacySamSimulator controlSimulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, SAM_SERIAL_NUMBER)
+            .putSystemKey(SystemKeyType.KEY_MANAGEMENT, (byte) 0x01, keyManagementKey)
+            .putKey(KIF, KVC, LegacySamSimulator.KeyAlgorithm.TDES, KEY_VALUE);
+    LegacySamSimulator targetSimulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, "55667788")
+            .putSystemKey(
+                SystemKeyType.KEY_MANAGEMENT,
+                (byte) 0x01,
+                LegacySamSimulator.diversifyKey(
+                    LegacySamSimulator.KeyAlgorithm.TDES,
+                    keyManagementKey,
+                    HexUtil.toByteArray("0000000055667788")));
+    SecureWriteTransactionManagerAdapter manager =
+        new SecureWriteTransactionManagerAdapter(
+            targetSimulator,
+            targetSimulator.createLegacySam(),
+            controlSimulator,
+            controlSimulator.createLegacySam());
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      manager.prepareTransferWorkKey(KIF, KVC, new byte[10], 0);
+      assertThat(
+              LegacySamExtensionService.getInstance()
+                  .processCommandsAsync(
+                      (SecureWriteTransactionManager) manager, ChannelControl.KEEP_OPEN, executor)
+                  .get())
+          .isSameAs(manager);
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(targetSimulator.getKeyValue(KIF, KVC)).isEqualTo(KEY_VALUE);
+  }
+
+  @Test
+  public void processCommandsAsync_whenFreeTransactionManager_shouldProcessCommandsOnExecutor()
+      throws Exception {
+    LegacySamAdapter sam = simulator.createLegacySam();
+    FreeTransactionManagerAdapter manager = new FreeTransactionManagerAdapter(simulator, sam);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      manager.prepareReadAllCountersStatus();
+      assertThat(
+              LegacySamExtensionService.getInstance()
+                  .processCommandsAsync(
+                      (FreeTransactionManager) manager, ChannelControl.KEEP_OPEN, executor)
+                  .get())
+          .isSameAs(manager);
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(sam.getCounters()).hasSize(27);
+  }
+
+  @Test
+  public void processCommandsAsync_whenSamFails_shouldCompleteExceptionally() throws Exception {
+    simulator.setUnlockData(KEY_VALUE);
+    LegacySamAdapter sam = simulator.createLegacySam();
+    FreeTransactionManagerAdapter manager = new FreeTransactionManagerAdapter(simulator, sam);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      manager.prepareReadAllCountersStatus();
+      CompletableFuture<FreeTransactionManager> future =
+          LegacySamExtensionService.getInstance()
+              .processCommandsAsync(
+                  (FreeTransactionManager) manager, ChannelControl.KEEP_OPEN, executor);
+      assertThatThrownBy(future::get)
+          .isInstanceOf(ExecutionException.class)
+          .hasCauseInstanceOf(InvalidCardResponseException.class);
+      assertThat(future.isCompletedExceptionally()).isTrue();
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(sam.getCounters()).isEmpty();
+  }
+
+  @Test
+  public void processCommands_whenControlSamIsSharedAcrossThreads_shouldWriteKeysInAllTargetSams()
+      throws Exception {
+    byte[] keyManagementKey = HexUtil.toByteArray("0F0E0D0C0B0A09080706050403020100");
+    final LegacySamSimulator controlSimulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, SAM_SERIAL_NUMBER)
+            .putSystemKey(SystemKeyType.KEY_MANAGEMENT, (byte) 0x01, keyManagementKey);
+    for (int i = 0; i < 3; i++) {
+      controlSimulator.putKey(
+          (byte) (KIF + i), KVC, LegacySamSimulator.KeyAlgorithm.TDES, KEY_VALUE);
+    }
+    LegacySamAdapter controlSam = controlSimulator.createLegacySam();
+    ExecutorService targetSamExecutor = Executors.newFixedThreadPool(2);
+    List<LegacySamSimulator> targetSimulators = new ArrayList<>();
+    List<Future<SecureWriteTransactionManager>> futures = new ArrayList<>();
+    try {
+      for (String serialNumber : new String[] {"55667788", "99AABBCC"}) {
+        LegacySamSimulator targetSimulator =
+            new LegacySamSimulator(LegacySam.ProductType.SAM_C1, serialNumber)
+                .putSystemKey(
+                    SystemKeyType.KEY_MANAGEMENT,
+                    (byte) 0x01,
+                    LegacySamSimulator.diversifyKey(
+                        LegacySamSimulator.KeyAlgorithm.TDES,
+                        keyManagementKey,
+                        HexUtil.toByteArray("00000000" + serialNumber)));
+        targetSimulators.add(targetSimulator);
+        final SecureWriteTransactionManagerAdapter manager =
+            new SecureWriteTransactionManagerAdapter(
+                targetSimulator,
+                targetSimulator.createLegacySam(),
+                controlSimulator,
+                controlSam);
+        for (int i = 0; i < 3; i++) {
+          manager.prepareTransferWorkKey((byte) (KIF + i), KVC, new byte[10], i);
+        }
+        futures.add(
+            targetSamExecutor.submit(
+                new Callable<SecureWriteTransactionManager>() {
+                  @Override
+                  public SecureWriteTransactionManager call() {
+                    return manager.processCommands(ChannelControl.KEEP_OPEN);
+                  }
+                }));
+      }
+      for (Future<SecureWriteTransactionManager> future : futures) {
+        future.get();
+      }
+    } finally {
+      targetSamExecutor.shutdown();
+    }
+
+    for (LegacySamSimulator targetSimulator : targetSimulators) {
+      for (int i = 0; i < 3; i++) {
+        assertThat(targetSimulator.getKeyValue((byte) (KIF + i), KVC)).isEqualTo(KEY_VALUE);
+      }
+    }
+  }
+
+  @Test
+  public void processCommands_whenControlSamIsLockedByApplication_shouldNotWait()
+      throws Exception {
+    byte[] keyManagementKey = HexUtil.toByteArray("0F0E0D0C0B0A09080706050403020100");
+    LegacySamSimulator controlSimulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, SAM_SERIAL_NUMBER)
+            .putSystemKey(SystemKeyType.KEY_MANAGEMENT, (byte) 0x01, keyManagementKey)
+            .putKey(KIF, KVC, LegacySamSimulator.KeyAlgorithm.TDES, KEY_VALUE);
+    LegacySamAdapter controlSam = controlSimulator.createLegacySam();
+    LegacySamSimulator targetSimulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, "55667788")
+            .putSystemKey(
+                SystemKeyType.KEY_MANAGEMENT,
+                (byte) 0x01,
+                LegacySamSimulator.diversifyKey(
+                    LegacySamSimulator.KeyAlgorithm.TDES,
+                    keyManagementKey,
+                    HexUtil.toByteArray("0000000055667788")));
+    final SecureWriteTransactionManagerAdapter manager =
+        new SecureWriteTransactionManagerAdapter(
+            targetSimulator, targetSimulator.createLegacySam(), controlSimulator, controlSam);
+    manager.prepareTransferWorkKey(KIF, KVC, new byte[10], 0);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      synchronized (controlSam) {
+        Future<SecureWriteTransactionManager> future =
+            executor.submit(
+                new Callable<SecureWriteTransactionManager>() {
+                  @Override
+                  public SecureWriteTransactionManager call() {
+                    return manager.processCommands(ChannelControl.KEEP_OPEN);
+                  }
+                });
+        future.get(10, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(targetSimulator.getKeyValue(KIF, KVC)).isEqualTo(KEY_VALUE);
+  }
+
+  @Test
+  public void importTargetSamSnapshot_whenSameSam_shouldOnlyReadCountersAgain() throws Exception {
+    simulator.putSystemKey(SystemKeyType.RELOADING, (byte) 0x01, KEY_VALUE);
+    LegacySamAdapter sam = simulator.createLegacySam();
+    FreeTransactionManagerAdapter manager = new FreeTransactionManagerAdapter(simulator, sam);
+    manager.prepareReadSystemKeyParameters(SystemKeyType.RELOADING);
+    manager.prepareReadAllCountersStatus();
+    manager.processCommands(ChannelControl.KEEP_OPEN);
+    String snapshot = manager.exportTargetSamSnapshot();
+
+    LegacySamAdapter restartedSam = simulator.createLegacySam();
+    FreeTransactionManagerAdapter restartedManager =
+        new FreeTransactionManagerAdapter(simulator, restartedSam);
+    long apduCount = simulator.getApduCount();
+    assertThat(restartedManager.importTargetSamSnapshot(snapshot)).isTrue();
+    assertThat(simulator.getApduCount() - apduCount).isEqualTo(1);
+    assertThat(restartedSam.getCounters()).isEmpty();
+    apduCount = simulator.getApduCount();
+    restartedManager.prepareRefreshTargetSamSnapshot();
+    restartedManager.processCommands(ChannelControl.KEEP_OPEN);
+
+    assertThat(simulator.getApduCount() - apduCount).isEqualTo(3);
+    assertThat(restartedSam.getSystemKeyParameter(SystemKeyType.RELOADING).getRawData())
+        .isEqualTo(sam.getSystemKeyParameter(SystemKeyType.RELOADING).getRawData());
+    assertThat(restartedSam.getCounterCeilings()).isEqualTo(sam.getCounterCeilings());
+    assertThat(restartedSam.getCounters()).hasSize(27);
+  }
+
+  @Test
+  public void importTargetSamSnapshot_whenOtherSam_shouldReturnFalse() {
+    String snapshot =
+        new FreeTransactionManagerAdapter(simulator, simulator.createLegacySam())
+            .exportTargetSamSnapshot();
+    LegacySamSimulator otherSimulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, "55667788");
+    FreeTransactionManagerAdapter otherManager =
+        new FreeTransactionManagerAdapter(otherSimulator, otherSimulator.createLegacySam());
+
+    assertThat(otherManager.importTargetSamSnapshot(snapshot)).isFalse();
+    assertThat(otherManager.importTargetSamSnapshot("{")).isFalse();
+  }
+
+  @Test
+  public void importTargetSamSnapshot_whenKeyParametersDiffer_shouldReturnFalse() {
+    simulator.putSystemKey(SystemKeyType.RELOADING, (byte) 0x01, KEY_VALUE);
+    FreeTransactionManagerAdapter manager =
+        new FreeTransactionManagerAdapter(simulator, simulator.createLegacySam());
+    manager.prepareReadSystemKeyParameters(SystemKeyType.RELOADING);
+    manager.prepareReadAllCountersStatus();
+    manager.processCommands(ChannelControl.KEEP_OPEN);
+    String snapshot = manager.exportTargetSamSnapshot();
+    LegacySamSimulator personalizedSimulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, SAM_SERIAL_NUMBER)
+            .putSystemKey(SystemKeyType.RELOADING, (byte) 0x02, KEY_VALUE);
+    LegacySamAdapter personalizedSam = personalizedSimulator.createLegacySam();
+    FreeTransactionManagerAdapter personalizedManager =
+        new FreeTransactionManagerAdapter(personalizedSimulator, personalizedSam);
+
+    assertThat(personalizedManager.importTargetSamSnapshot(snapshot)).isFalse();
+    assertThat(personalizedSam.getCounterCeilings()).isEmpty();
+    assertThat(personalizedSam.getSystemKeyParameter(SystemKeyType.RELOADING)).isNull();
+  }
+
+  @Test
+  public void importTargetSamSnapshot_whenNoRecordCanBeReadAgain_shouldReturnFalse() {
+    FreeTransactionManagerAdapter manager =
+        new FreeTransactionManagerAdapter(simulator, simulator.createLegacySam());
+    manager.prepareReadAllCountersStatus();
+    manager.processCommands(ChannelControl.KEEP_OPEN);
+    String snapshot = manager.exportTargetSamSnapshot();
+    LegacySamAdapter restartedSam = simulator.createLegacySam();
+    FreeTransactionManagerAdapter restartedManager =
+        new FreeTransactionManagerAdapter(simulator, restartedSam);
+
+    assertThat(restartedManager.importTargetSamSnapshot(snapshot)).isFalse();
+    assertThat(restartedSam.getCounterCeilings()).isEmpty();
+  }
+
+  @Test
+  public void prepareRefreshTargetSamSnapshot_whenKeyWritten_shouldReadKeyParametersAgain()
+      throws Exception {
+    byte[] keyManagementKey = HexUtil.toByteArray("0F0E0D0C0B0A09080706050403020100");
+    byte[] targetDiversifier = HexUtil.toByteArray("0000000055667788");
+    LegacySamSimulator controlSimulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, SAM_SERIAL_NUMBER)
+            .putSystemKey(SystemKeyType.KEY_MANAGEMENT, (byte) 0x01, keyManagementKey)
+            .putKey(KIF, KVC, LegacySamSimulator.KeyAlgorithm.TDES, KEY_VALUE);
+    LegacySamSimulator targetSimulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, "55667788")
+            .putSystemKey(
+                SystemKeyType.KEY_MANAGEMENT,
+                (byte) 0x01,
+                LegacySamSimulator.diversifyKey(
+                    LegacySamSimulator.KeyAlgorithm.TDES, keyManagementKey, targetDiversifier));
+    LegacySamAdapter targetSam = targetSimulator.createLegacySam();
+    FreeTransactionManagerAdapter manager =
+        new FreeTransactionManagerAdapter(targetSimulator, targetSam);
+    manager.prepareReadSystemKeyParameters(SystemKeyType.KEY_MANAGEMENT);
+    manager.prepareReadWorkKeyParameters(1);
+    manager.processCommands(ChannelControl.KEEP_OPEN);
+    SecureWriteTransactionManagerAdapter secureWriteManager =
+        new SecureWriteTransactionManagerAdapter(
+            targetSimulator, targetSam, controlSimulator, controlSimulator.createLegacySam());
+    secureWriteManager.prepareTransferWorkKey(KIF, KVC, new byte[10], 0);
+    secureWriteManager.processCommands(ChannelControl.KEEP_OPEN);
+    String snapshot = manager.exportTargetSamSnapshot();
+
+    LegacySamAdapter restartedSam = targetSimulator.createLegacySam();
+    FreeTransactionManagerAdapter restartedManager =
+        new FreeTransactionManagerAdapter(targetSimulator, restartedSam);
+    assertThat(restartedManager.importTargetSamSnapshot(snapshot)).isTrue();
+    assertThat(restartedSam.getStaleWorkKeyRecordNumbers()).containsExactly(1);
+    long apduCount = targetSimulator.getApduCount();
+    restartedManager.prepareRefreshTargetSamSnapshot();
+    restartedManager.processCommands(ChannelControl.KEEP_OPEN);
+
+    assertThat(targetSimulator.getApduCount() - apduCount).isEqualTo(1);
+    assertThat(restartedSam.getStaleWorkKeyRecordNumbers()).isEmpty();
+  }
+
+  @Test
+  public void secureSession_whenSamIsLocked_shouldFail() throws Exception {
+    simulator.setUnlockData(new byte[8]);
+    SymmetricCryptoCardTransactionManagerSpi manager =
+        factory.createCardTransactionManager(CARD_DIVERSIFIER, false, new ArrayList<byte[]>());
+    assertThatThrownBy(manager::initTerminalSecureSessionContext).isInstanceOf(Exception.class);
+  }
+
+  @Test
+  public void select_whenSamIsLocked_shouldUnlockTheSamAndParseTheResponses() throws Exception {
+    simulator.setUnlockData(KEY_VALUE);
+    LegacySamSelectionExtensionAdapter extension = new LegacySamSelectionExtensionAdapter();
+    extension.setUnlockData(HexUtil.toHex(KEY_VALUE));
+    extension.prepareReadAllCountersStatus();
+    CardResponseApi cardResponse =
+        simulator.transmitCardRequest(
+            extension.getCardSelectionRequest().getCardRequest(),
+            org.eclipse.keypop.card.ChannelControl.KEEP_OPEN);
+
+    LegacySam sam =
+        (LegacySam)
+            extension.parse(
+                new TestDtoAdapters.CardSelectionResponseAdapter(
+                    simulator.getPowerOnData(), cardResponse));
+
+    assertThat(sam.getCounters()).hasSize(27);
+    SymmetricCryptoCardTransactionManagerSpi manager = openSession(false);
+    manager.finalizeTerminalSessionMac();
+    assertThat(manager.isCardSessionMacValid(simulator.computeCardSessionMac(4))).isTrue();
+  }
+}
@@ -0,0 +1,278 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySam;
+import org.eclipse.keypop.card.CardResponseApi;
+import org.eclipse.keypop.card.CardSelectionResponseApi;
+import org.eclipse.keypop.card.ChannelControl;
+import org.eclipse.keypop.card.spi.CardSelectionExtensionSpi;
+import org.eclipse.keypop.reader.CardReader;
+import org.eclipse.keypop.reader.ReaderApiFactory;
+import org.eclipse.keypop.reader.selection.BasicCardSelector;
+import org.eclipse.keypop.reader.selection.CardSelectionManager;
+import org.eclipse.keypop.reader.selection.CardSelectionResult;
+import org.eclipse.keypop.reader.selection.CardSelector;
+import org.eclipse.keypop.reader.selection.spi.CardSelectionExtension;
+import org.eclipse.keypop.reader.selection.spi.SmartCard;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LegacySamWarmUpAdapterTest {
+
+  private static final String SAM_C1_POWER_ON_DATA = "3B3F9600805A4880C120501711223344829000";
+
+  private LegacySamExtensionService service;
+  private ReaderApiFactory readerApiFactory;
+  private CardSelectionManager cardSelectionManager;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    service = LegacySamExtensionService.getInstance();
+    readerApiFactory = mock(ReaderApiFactory.class);
+    cardSelectionManager = mock(CardSelectionManager.class);
+    when(readerApiFactory.createBasicCardSelector()).thenReturn(mock(BasicCardSelector.class));
+    when(readerApiFactory.createCardSelectionManager()).thenReturn(cardSelectionManager);
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private static CardReader mockReader(String name, boolean isCardPresent) {
+    CardReader reader = mock(CardReader.class);
+    when(reader.getName()).thenReturn(name);
+    when(reader.isCardPresent()).thenReturn(isCardPresent);
+    return reader;
+  }
+
+  private static CardSelectionResult mockSelectionResult() {
+    CardSelectionResult cardSelectionResult = mock(CardSelectionResult.class);
+    when(cardSelectionResult.getActiveSmartCard())
+        .thenReturn(
+            new LegacySamAdapter(
+                new TestDtoAdapters.CardSelectionResponseAdapter(SAM_C1_POWER_ON_DATA)));
+    return cardSelectionResult;
+  }
+
+  private List<SamWarmUpResult> warmUpSams(List<CardReader> samReaders) {
+    return service.warmUpSams(
+        samReaders,
+        readerApiFactory,
+        service.getLegacySamApiFactory()::createLegacySamSelectionExtension,
+        executor);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void warmUpSams_whenExecutorIsNull_shouldThrowIAE() {
+    service.warmUpSams(
+        Arrays.asList(mockReader("R1", true)),
+        readerApiFactory,
+        service.getLegacySamApiFactory()::createLegacySamSelectionExtension,
+        null);
+  }
+
+  @Test
+  public void warmUpSams_shouldReturnOneResultPerReaderInReaderOrder() {
+    CardReader reader1 = mockReader("R1", true);
+    CardReader reader2 = mockReader("R2", false);
+    CardReader reader3 = mockReader("R3", true);
+    CardSelectionResult cardSelectionResult = mockSelectionResult();
+    when(cardSelectionManager.processCardSelectionScenario(reader1))
+        .thenReturn(cardSelectionResult);
+    when(cardSelectionManager.processCardSelectionScenario(reader3))
+        .thenThrow(new IllegalStateException("reader failure"));
+
+    List<SamWarmUpResult> results = warmUpSams(Arrays.asList(reader1, reader2, reader3));
+
+    assertThat(results).hasSize(3);
+    assertThat(results.get(0).getSamReader()).isSameAs(reader1);
+    assertThat(results.get(0).getLegacySam())
+        .isSameAs(cardSelectionResult.getActiveSmartCard());
+    assertThat(results.get(0).getError()).isNull();
+    assertThat(results.get(1).getSamReader()).isSameAs(reader2);
+    assertThat(results.get(1).getLegacySam()).isNull();
+    assertThat(results.get(1).getError()).isNull();
+    assertThat(results.get(2).getSamReader()).isSameAs(reader3);
+    assertThat(results.get(2).getLegacySam()).isNull();
+    assertThat(results.get(2).getError())
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("reader failure");
+    for (SamWarmUpResult result : results) {
+      assertThat(result.getSelectionTimeNanos()).isNotNegative();
+    }
+    verify(cardSelectionManager, never()).processCardSelectionScenario(reader2);
+  }
+
+  @Test
+  public void warmUpSams_shouldSelectTheSamsConcurrently() {
+    final CyclicBarrier barrier = new CyclicBarrier(4);
+    final CardSelectionResult cardSelectionResult = mockSelectionResult();
+    when(cardSelectionManager.processCardSelectionScenario(any(CardReader.class)))
+        .thenAnswer(
+            invocation -> {
+              // Each selection completes only when the 4 selections are in progress together
+              barrier.await(5, TimeUnit.SECONDS);
+              return cardSelectionResult;
+            });
+
+    List<SamWarmUpResult> results =
+        warmUpSams(
+            Arrays.asList(
+                mockReader("R1", true),
+                mockReader("R2", true),
+                mockReader("R3", true),
+                mockReader("R4", true)));
+
+    for (SamWarmUpResult result : results) {
+      assertThat(result.getError()).isNull();
+      assertThat(result.getLegacySam()).isNotNull();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void warmUpSams_whenAsyncDynamicUnlock_shouldRequestAllUnlockDataWithoutWaiting() {
+    final int nbSams = 4;
+    final byte[] lockKey = HexUtil.toByteArray("00112233445566778899AABBCCDDEEFF");
+    final List<CompletableFuture<byte[]>> pendingUnlockData = new ArrayList<>();
+    final List<byte[]> unlockData = new ArrayList<>();
+    final AsyncDynamicUnlockDataProvider asyncDynamicUnlockDataProvider =
+        (samSerialNumber, samChallenge) -> {
+          CompletableFuture<byte[]> future = new CompletableFuture<>();
+          synchronized (pendingUnlockData) {
+            pendingUnlockData.add(future);
+            unlockData.add(LegacySamSimulator.computeDynamicUnlockData(lockKey, samChallenge));
+            // The key server only answers once all the SAMs are waiting for their unlock data
+            if (pendingUnlockData.size() == nbSams) {
+              for (int i = 0; i < nbSams; i++) {
+                pendingUnlockData.get(i).complete(unlockData.get(i));
+              }
+            }
+          }
+          return future;
+        };
+    List<CardReader> samReaders = new ArrayList<>();
+    for (int i = 0; i < nbSams; i++) {
+      samReaders.add(
+          new LegacySamSimulator(LegacySam.ProductType.SAM_C1, "1122334" + i).setLockKey(lockKey));
+    }
+    when(readerApiFactory.createCardSelectionManager())
+        .thenAnswer(invocation -> createSimulatedCardSelectionManager());
+    ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor();
+
+    List<SamWarmUpResult> results;
+    try {
+      results =
+          service.warmUpSams(
+              samReaders,
+              readerApiFactory,
+              () ->
+                  service
+                      .setAsyncDynamicUnlockDataProvider(
+                          service.getLegacySamApiFactory().createLegacySamSelectionExtension(),
+                          asyncDynamicUnlockDataProvider,
+                          10000)
+                      .prepareReadAllCountersStatus(),
+              singleThreadExecutor);
+    } finally {
+      singleThreadExecutor.shutdownNow();
+    }
+
+    assertThat(pendingUnlockData).hasSize(nbSams);
+    for (SamWarmUpResult result : results) {
+      assertThat(result.getError()).isNull();
+      assertThat(result.getLegacySam().getCounters()).isNotEmpty();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void warmUpSams_whenAsyncUnlockDataIsNotProvidedInTime_shouldReportTimeout() {
+    List<CardReader> samReaders = new ArrayList<>();
+    samReaders.add(
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, "11223344")
+            .setLockKey(HexUtil.toByteArray("00112233445566778899AABBCCDDEEFF")));
+    when(readerApiFactory.createCardSelectionManager())
+        .thenAnswer(invocation -> createSimulatedCardSelectionManager());
+    ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor();
+
+    List<SamWarmUpResult> results;
+    try {
+      results =
+          service.warmUpSams(
+              samReaders,
+              readerApiFactory,
+              () ->
+                  service.setAsyncDynamicUnlockDataProvider(
+                      service.getLegacySamApiFactory().createLegacySamSelectionExtension(),
+                      (samSerialNumber, samChallenge) -> new CompletableFuture<>(),
+                      50),
+              singleThreadExecutor);
+    } finally {
+      singleThreadExecutor.shutdownNow();
+    }
+
+    assertThat(results.get(0).getLegacySam()).isNull();
+    assertThat(results.get(0).getError()).isInstanceOf(TimeoutException.class);
+  }
+
+  /**
+   * Creates a card selection manager processing the selection scenario with a {@link
+   * LegacySamSimulator}, as the reader layer does.
+   */
+  private static CardSelectionManager createSimulatedCardSelectionManager() {
+    final CardSelectionExtensionSpi[] cardSelectionExtension = new CardSelectionExtensionSpi[1];
+    CardSelectionManager cardSelectionManager = mock(CardSelectionManager.class);
+    when(cardSelectionManager.prepareSelection(
+            any(CardSelector.class), any(CardSelectionExtension.class)))
+        .thenAnswer(
+            invocation -> {
+              cardSelectionExtension[0] = invocation.getArgument(1);
+              return 0;
+            });
+    when(cardSelectionManager.processCardSelectionScenario(any(CardReader.class)))
+        .thenAnswer(
+            invocation -> {
+              LegacySamSimulator sam = invocation.getArgument(0);
+              CardResponseApi cardResponse =
+                  sam.transmitCardRequest(
+                      cardSelectionExtension[0].getCardSelectionRequest().getCardRequest(),
+                      ChannelControl.KEEP_OPEN);
+              CardSelectionResponseApi cardSelectionResponse =
+                  mock(CardSelectionResponseApi.class);
+              when(cardSelectionResponse.getPowerOnData()).thenReturn(sam.getPowerOnData());
+              when(cardSelectionResponse.getCardResponse()).thenReturn(cardResponse);
+              SmartCard smartCard =
+                  (SmartCard) cardSelectionExtension[0].parse(cardSelectionResponse);
+              CardSelectionResult cardSelectionResult = mock(CardSelectionResult.class);
+              when(cardSelectionResult.getActiveSmartCard()).thenReturn(smartCard);
+              return cardSelectionResult;
+            });
+    return cardSelectionManager;
+  }
+}
@@ -0,0 +1,336 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySam;
+import org.eclipse.keypop.calypso.crypto.symmetric.SymmetricCryptoException;
+import org.eclipse.keypop.calypso.crypto.symmetric.spi.SymmetricCryptoCardTransactionManagerSpi;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LoadBalancedSymmetricCryptoCardTransactionManagerFactoryAdapterTest {
+
+  private static final byte KIF = (byte) 0x30;
+  private static final byte KVC = (byte) 0x79;
+  private static final byte[] CARD_DIVERSIFIER = HexUtil.toByteArray("0000000012345678");
+  private static final byte[] OPEN_SESSION_DATA_OUT =
+      HexUtil.toByteArray("030490980030791D01112233445566778899AABBCCDD");
+
+  private LegacySamSimulator simulatorC1;
+  private LegacySamSimulator simulatorS1E1;
+  private LoadBalancedSymmetricCryptoCardTransactionManagerFactoryAdapter factory;
+
+  @Before
+  public void setUp() {
+    simulatorC1 =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, "11223344")
+            .putKey(KIF, KVC, LegacySamSimulator.KeyAlgorithm.TDES, new byte[16]);
+    simulatorS1E1 =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_S1E1, "55667788")
+            .putKey(KIF, KVC, LegacySamSimulator.KeyAlgorithm.TDES, new byte[16]);
+    factory =
+        new LoadBalancedSymmetricCryptoCardTransactionManagerFactoryAdapter(
+            new ContextSettingAdapter());
+    factory.addSam(simulatorC1, simulatorC1.createLegacySam());
+    factory.addSam(simulatorS1E1, simulatorS1E1.createLegacySam());
+  }
+
+  private SymmetricCryptoCardTransactionManagerSpi createCardTransactionManager(
+      boolean useExtendedMode) {
+    return factory.createCardTransactionManager(
+        CARD_DIVERSIFIER, useExtendedMode, new ArrayList<byte[]>());
+  }
+
+  private static void openSession(SymmetricCryptoCardTransactionManagerSpi manager)
+      throws Exception {
+    manager.initTerminalSecureSessionContext();
+    manager.initTerminalSessionMac(OPEN_SESSION_DATA_OUT, KIF, KVC);
+  }
+
+  private static void closeSession(
+      SymmetricCryptoCardTransactionManagerSpi manager, LegacySamSimulator simulator)
+      throws Exception {
+    manager.finalizeTerminalSessionMac();
+    assertThat(manager.isCardSessionMacValid(simulator.computeCardSessionMac(4))).isTrue();
+  }
+
+  private List<Integer> getTransactionsInProgressCounts() {
+    List<Integer> counts = new ArrayList<>();
+    for (SamUtilization samUtilization : factory.getSamUtilizations()) {
+      counts.add(samUtilization.getTransactionsInProgressCount());
+    }
+    return counts;
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void createCardTransactionManager_whenNoSam_shouldThrowISE() {
+    new LoadBalancedSymmetricCryptoCardTransactionManagerFactoryAdapter(new ContextSettingAdapter())
+        .createCardTransactionManager(CARD_DIVERSIFIER, false, new ArrayList<byte[]>());
+  }
+
+  @Test
+  public void isExtendedModeSupported_whenOneSamSupportsIt_shouldReturnTrue() {
+    assertThat(factory.isExtendedModeSupported()).isTrue();
+  }
+
+  @Test
+  public void getMaxCardApduLengthSupported_shouldReturnTheLowestValue() {
+    assertThat(factory.getMaxCardApduLengthSupported()).isEqualTo(240);
+  }
+
+  @Test
+  public void createCardTransactionManager_shouldBindToTheSamHavingFewestTransactionsInProgress()
+      throws Exception {
+    SymmetricCryptoCardTransactionManagerSpi manager1 = createCardTransactionManager(false);
+    openSession(manager1);
+    SymmetricCryptoCardTransactionManagerSpi manager2 = createCardTransactionManager(false);
+    openSession(manager2);
+    assertThat(getTransactionsInProgressCounts()).containsExactly(1, 1);
+
+    closeSession(manager1, simulatorC1);
+    assertThat(getTransactionsInProgressCounts()).containsExactly(0, 1);
+
+    SymmetricCryptoCardTransactionManagerSpi manager3 = createCardTransactionManager(false);
+    openSession(manager3);
+    assertThat(getTransactionsInProgressCounts()).containsExactly(1, 1);
+
+    closeSession(manager3, simulatorC1);
+    closeSession(manager2, simulatorS1E1);
+    assertThat(getTransactionsInProgressCounts()).containsExactly(0, 0);
+    assertThat(factory.getSamUtilizations().get(0).getTransactionCount()).isEqualTo(2);
+    assertThat(factory.getSamUtilizations().get(1).getTransactionCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void createCardTransactionManager_whenSessionIsAborted_shouldReleaseTheSam()
+      throws Exception {
+    SymmetricCryptoCardTransactionManagerSpi manager = createCardTransactionManager(false);
+    manager.initTerminalSecureSessionContext();
+    // Unknown key: the "Digest Init" fails
+    manager.initTerminalSessionMac(OPEN_SESSION_DATA_OUT, (byte) 0x21, KVC);
+    assertThat(getTransactionsInProgressCounts()).containsExactly(1, 0);
+
+    assertThatThrownBy(manager::finalizeTerminalSessionMac)
+        .isInstanceOf(SymmetricCryptoException.class);
+    assertThat(getTransactionsInProgressCounts()).containsExactly(0, 0);
+  }
+
+  @Test
+  public void createCardTransactionManager_whenSessionIsAbandoned_shouldReleaseTheSamToTheCard()
+      throws Exception {
+    LegacySamSimulator simulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, "99AABBCC")
+            .putKey(KIF, KVC, LegacySamSimulator.KeyAlgorithm.TDES, new byte[16]);
+    LoadBalancedSymmetricCryptoCardTransactionManagerFactoryAdapter singleSamFactory =
+        new LoadBalancedSymmetricCryptoCardTransactionManagerFactoryAdapter(
+            new ContextSettingAdapter());
+    singleSamFactory.addSam(simulator, simulator.createLegacySam());
+    SymmetricCryptoCardTransactionManagerSpi abandonedManager =
+        singleSamFactory.createCardTransactionManager(
+            CARD_DIVERSIFIER, false, new ArrayList<byte[]>());
+    openSession(abandonedManager);
+
+    // New transaction of the same card, e.g. after a card communication failure
+    SymmetricCryptoCardTransactionManagerSpi manager =
+        singleSamFactory.createCardTransactionManager(
+            CARD_DIVERSIFIER, false, new ArrayList<byte[]>());
+    openSession(manager);
+    closeSession(manager, simulator);
+
+    assertThatThrownBy(abandonedManager::finalizeTerminalSessionMac)
+        .isInstanceOf(IllegalStateException.class);
+    assertThat(singleSamFactory.getSamUtilizations().get(0).getTransactionsInProgressCount())
+        .isZero();
+  }
+
+  @Test
+  public void createCardTransactionManager_whenSamIsNotReleasedInTime_shouldThrowISE()
+      throws Exception {
+    factory.setSamAcquisitionTimeout(100);
+    openSession(createCardTransactionManager(false));
+    openSession(createCardTransactionManager(false));
+    SymmetricCryptoCardTransactionManagerSpi manager =
+        factory.createCardTransactionManager(
+            HexUtil.toByteArray("0000000087654321"), false, new ArrayList<byte[]>());
+
+    assertThatThrownBy(manager::initTerminalSecureSessionContext)
+        .isInstanceOf(IllegalStateException.class);
+    assertThat(getTransactionsInProgressCounts()).containsExactly(1, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void setSamAcquisitionTimeout_whenTimeoutIsZero_shouldThrowIAE() {
+    factory.setSamAcquisitionTimeout(0);
+  }
+
+  @Test
+  public void createCardTransactionManager_whenSessionsAreConcurrent_shouldHoldTheSamExclusively()
+      throws Exception {
+    final LegacySamSimulator simulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, "99AABBCC")
+            .putKey(KIF, KVC, LegacySamSimulator.KeyAlgorithm.TDES, new byte[16]);
+    final LoadBalancedSymmetricCryptoCardTransactionManagerFactoryAdapter singleSamFactory =
+        new LoadBalancedSymmetricCryptoCardTransactionManagerFactoryAdapter(
+            new ContextSettingAdapter());
+    singleSamFactory.addSam(simulator, simulator.createLegacySam());
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<Void>> futures = new ArrayList<>();
+    try {
+      for (int i = 0; i < 4; i++) {
+        final byte[] cardKeyDiversifier = HexUtil.toByteArray("000000001234567" + i);
+        futures.add(
+            executor.submit(
+                new Callable<Void>() {
+                  @Override
+                  public Void call() throws Exception {
+                    for (int j = 0; j < 5; j++) {
+                      SymmetricCryptoCardTransactionManagerSpi manager =
+                          singleSamFactory.createCardTransactionManager(
+                              cardKeyDiversifier, false, new ArrayList<byte[]>());
+                      openSession(manager);
+                      closeSession(manager, simulator);
+                    }
+                    return null;
+                  }
+                }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    SamUtilization samUtilization = singleSamFactory.getSamUtilizations().get(0);
+    assertThat(samUtilization.getTransactionCount()).isEqualTo(20);
+    assertThat(samUtilization.getTransactionsInProgressCount()).isZero();
+  }
+
+  @Test
+  public void createCardTransactionManager_whenExtendedMode_shouldBindToExtendedModeSams()
+      throws Exception {
+    for (int i = 0; i < 3; i++) {
+      SymmetricCryptoCardTransactionManagerSpi manager = createCardTransactionManager(true);
+      openSession(manager);
+      closeSession(manager, simulatorC1);
+    }
+    assertThat(factory.getSamUtilizations().get(0).getTransactionCount()).isEqualTo(3);
+    assertThat(factory.getSamUtilizations().get(1).getTransactionCount()).isZero();
+  }
+
+  @Test
+  public void getSamUtilizations_shouldReportCardRequests() throws Exception {
+    SymmetricCryptoCardTransactionManagerSpi manager = createCardTransactionManager(false);
+    openSession(manager);
+    closeSession(manager, simulatorC1);
+
+    SamUtilization samUtilization = factory.getSamUtilizations().get(0);
+    assertThat(samUtilization.getSam().getProductType()).isEqualTo(LegacySam.ProductType.SAM_C1);
+    assertThat(samUtilization.getCardRequestCount()).isEqualTo(simulatorC1.getCardRequestCount());
+    assertThat(samUtilization.getBusyTimeNanos()).isPositive();
+    assertThat(samUtilization.getUtilization()).isBetween(0.0, 1.0);
+    assertThat(factory.getSamUtilizations().get(1).getCardRequestCount()).isZero();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void enableCardAffinity_whenMaxCardsIsZero_shouldThrowIAE() {
+    factory.enableCardAffinity(0);
+  }
+
+  @Test
+  public void createCardTransactionManager_whenCardAffinity_shouldBindToTheSamOfTheCard()
+      throws Exception {
+    factory.enableCardAffinity(10);
+    SymmetricCryptoCardTransactionManagerSpi manager = createCardTransactionManager(false);
+    openSession(manager);
+    closeSession(manager, simulatorC1);
+    long apduCount = simulatorC1.getApduCount();
+
+    manager = createCardTransactionManager(false);
+    openSession(manager);
+    closeSession(manager, simulatorC1);
+
+    assertThat(factory.getSamUtilizations().get(0).getTransactionCount()).isEqualTo(2);
+    assertThat(factory.getSamUtilizations().get(1).getTransactionCount()).isZero();
+    // The diversifier is still selected: no "Select Diversifier" for the second session
+    assertThat(simulatorC1.getApduCount() - apduCount).isEqualTo(apduCount - 1);
+  }
+
+  @Test
+  public void createCardTransactionManager_whenSamOfTheCardIsBusy_shouldBindToTheLeastBusySam()
+      throws Exception {
+    factory.enableCardAffinity(10);
+    openSession(createCardTransactionManager(false));
+    openSession(createCardTransactionManager(false));
+    assertThat(getTransactionsInProgressCounts()).containsExactly(1, 1);
+  }
+
+  @Test
+  public void createCardTransactionManager_whenCardsShareTheSam_shouldSelectTheDiversifierOfEach()
+      throws Exception {
+    final byte[] otherCardDiversifier = HexUtil.toByteArray("0000000087654321");
+    LegacySamSimulator simulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, "99AABBCC")
+            .putKey(KIF, KVC, LegacySamSimulator.KeyAlgorithm.TDES, new byte[16]);
+    final LoadBalancedSymmetricCryptoCardTransactionManagerFactoryAdapter singleSamFactory =
+        new LoadBalancedSymmetricCryptoCardTransactionManagerFactoryAdapter(
+            new ContextSettingAdapter());
+    singleSamFactory.addSam(simulator, simulator.createLegacySam()).enableCardAffinity(10);
+    Callable<byte[]> otherCardSignatureComputation =
+        new Callable<byte[]>() {
+          @Override
+          public byte[] call() throws Exception {
+            SymmetricCryptoCardTransactionManagerAdapter manager =
+                (SymmetricCryptoCardTransactionManagerAdapter)
+                    singleSamFactory.createCardTransactionManager(
+                        otherCardDiversifier, false, new ArrayList<byte[]>());
+            DtoAdapters.BasicSignatureComputationDataAdapter data =
+                new DtoAdapters.BasicSignatureComputationDataAdapter();
+            data.setData(new byte[8], KIF, KVC).setSignatureSize(8);
+            manager.prepareComputeSignature(data);
+            manager.synchronize();
+            return data.getSignature();
+          }
+        };
+    // The diversifier of the other card is selected in the SAM
+    byte[] expectedSignature = otherCardSignatureComputation.call();
+
+    // The other card computes a signature while the session of the card holds the SAM
+    SymmetricCryptoCardTransactionManagerSpi manager =
+        singleSamFactory.createCardTransactionManager(
+            CARD_DIVERSIFIER, false, new ArrayList<byte[]>());
+    openSession(manager);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<byte[]> future = executor.submit(otherCardSignatureComputation);
+      Thread.sleep(200);
+      assertThat(future.isDone()).isFalse();
+      assertThat(singleSamFactory.getSamUtilizations().get(0).getTransactionsInProgressCount())
+          .isEqualTo(2);
+
+      closeSession(manager, simulator);
+      // The diversifier of the other card is selected again after the session of the card
+      assertThat(future.get()).isEqualTo(expectedSignature);
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,330 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.crypto.legacysam.sam.LegacySam;
+import org.eclipse.keypop.calypso.crypto.symmetric.spi.SymmetricCryptoCardTransactionManagerSpi;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SymmetricCryptoCardTransactionManagerAdapterTest {
+
+  private static final byte KIF = (byte) 0x30;
+  private static final byte KVC = (byte) 0x79;
+  private static final byte[] CARD_KEY_DIVERSIFIER = HexUtil.toByteArray("0000000012345678");
+  private static final byte[] OPEN_SECURE_SESSION_DATA_OUT =
+      HexUtil.toByteArray("030490980030791D01112233445566778899AABBCCDD");
+  private static final byte[] CARD_COMMAND = HexUtil.toByteArray("00B2014400");
+  private static final byte[] CARD_RESPONSE =
+      HexUtil.toByteArray("00112233445566778899AABBCCDDEEFF00112233445566778899AABBCCDD9000");
+
+  private LegacySamSimulator simulator;
+  private LegacySamAdapter sam;
+  private ContextSettingAdapter contextSetting;
+
+  @Before
+  public void setUp() {
+    simulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, "11223344", new Random(0))
+            .putKey(KIF, KVC, LegacySamSimulator.KeyAlgorithm.TDES, new byte[16]);
+    sam = simulator.createLegacySam();
+    contextSetting = new ContextSettingAdapter();
+  }
+
+  private boolean runSession(SymmetricCryptoCardTransactionManagerFactoryAdapter factory)
+      throws Exception {
+    SymmetricCryptoCardTransactionManagerSpi manager =
+        factory.createCardTransactionManager(CARD_KEY_DIVERSIFIER, false, new ArrayList<byte[]>());
+    manager.initTerminalSecureSessionContext();
+    manager.initTerminalSessionMac(OPEN_SECURE_SESSION_DATA_OUT, KIF, KVC);
+    manager.updateTerminalSessionMac(CARD_COMMAND);
+    manager.updateTerminalSessionMac(CARD_RESPONSE);
+    manager.finalizeTerminalSessionMac();
+    return manager.isCardSessionMacValid(simulator.computeCardSessionMac(4));
+  }
+
+  @Test
+  public void isCardSessionMacValid_whenChallengePrefetchDisabled_shouldNotPrefetch()
+      throws Exception {
+    SymmetricCryptoCardTransactionManagerFactoryAdapter factory =
+        new SymmetricCryptoCardTransactionManagerFactoryAdapter(simulator, sam, contextSetting);
+    assertThat(runSession(factory)).isTrue();
+    assertThat(runSession(factory)).isTrue();
+    assertThat(simulator.getCardRequestCount()).isEqualTo(6);
+  }
+
+  @Test
+  public void isCardSessionMacValid_whenChallengePrefetchEnabled_shouldSaveOneExchange()
+      throws Exception {
+    contextSetting.enableSessionChallengePrefetch();
+    SymmetricCryptoCardTransactionManagerFactoryAdapter factory =
+        new SymmetricCryptoCardTransactionManagerFactoryAdapter(simulator, sam, contextSetting);
+    assertThat(runSession(factory)).isTrue();
+    assertThat(runSession(factory)).isTrue();
+    assertThat(simulator.getCardRequestCount()).isEqualTo(5);
+  }
+
+  @Test
+  public void initTerminalSecureSessionContext_whenPrefetchedChallengeIsStale_shouldRequestNewOne()
+      throws Exception {
+    contextSetting.enableSessionChallengePrefetch();
+    SymmetricCryptoCardTransactionManagerFactoryAdapter factory =
+        new SymmetricCryptoCardTransactionManagerFactoryAdapter(simulator, sam, contextSetting);
+    assertThat(runSession(factory)).isTrue();
+    FreeTransactionManagerAdapter freeTransactionManager =
+        new FreeTransactionManagerAdapter(simulator, sam);
+    freeTransactionManager.prepareReadWorkKeyParameters(KIF, KVC);
+    freeTransactionManager.processCommands();
+    simulator.resetStatistics();
+    assertThat(runSession(factory)).isTrue();
+    assertThat(simulator.getCardRequestCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void preInitTerminalSessionContext_whenChallengeAvailable_shouldNotRequestAnotherOne()
+      throws Exception {
+    SymmetricCryptoCardTransactionManagerFactoryAdapter factory =
+        new SymmetricCryptoCardTransactionManagerFactoryAdapter(simulator, sam, contextSetting);
+    factory.preInitTerminalSessionContext();
+    factory.preInitTerminalSessionContext();
+    assertThat(simulator.getCardRequestCount()).isEqualTo(1);
+    assertThat(runSession(factory)).isTrue();
+    assertThat(simulator.getCardRequestCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void finalizeTerminalSessionMac_whenManyCardApdus_shouldComputeTheSameDigestAsTheCard()
+      throws Exception {
+    for (LegacySam.ProductType productType :
+        new LegacySam.ProductType[] {
+          LegacySam.ProductType.SAM_C1,
+          LegacySam.ProductType.SAM_S1E1,
+          LegacySam.ProductType.SAM_S1DX
+        }) {
+      simulator =
+          new LegacySamSimulator(productType, "11223344")
+              .putKey(KIF, KVC, LegacySamSimulator.KeyAlgorithm.TDES, new byte[16]);
+      SymmetricCryptoCardTransactionManagerFactoryAdapter factory =
+          new SymmetricCryptoCardTransactionManagerFactoryAdapter(
+              simulator, simulator.createLegacySam(), contextSetting);
+      // responses filling entirely or almost entirely the SAM buffer
+      byte[] fullCardResponse = new byte[factory.getMaxCardApduLengthSupported()];
+      byte[] longCardResponse = new byte[factory.getMaxCardApduLengthSupported() - 10];
+      SymmetricCryptoCardTransactionManagerSpi manager =
+          factory.createCardTransactionManager(
+              CARD_KEY_DIVERSIFIER, false, new ArrayList<byte[]>());
+      manager.initTerminalSecureSessionContext();
+      manager.initTerminalSessionMac(OPEN_SECURE_SESSION_DATA_OUT, KIF, KVC);
+      for (int i = 0; i < 20; i++) {
+        manager.updateTerminalSessionMac(CARD_COMMAND);
+        if (i % 5 == 0) {
+          manager.updateTerminalSessionMac(fullCardResponse);
+        } else if (i % 7 == 0) {
+          manager.updateTerminalSessionMac(longCardResponse);
+        } else {
+          manager.updateTerminalSessionMac(CARD_RESPONSE);
+        }
+      }
+      manager.finalizeTerminalSessionMac();
+      assertThat(manager.isCardSessionMacValid(simulator.computeCardSessionMac(4))).isTrue();
+    }
+  }
+
+  @Test
+  public void getSessionDigestApduCount_shouldCountTheDigestCommandsOfTheSession()
+      throws Exception {
+    SymmetricCryptoCardTransactionManagerFactoryAdapter factory =
+        new SymmetricCryptoCardTransactionManagerFactoryAdapter(simulator, sam, contextSetting);
+    byte[] fullCardResponse = new byte[factory.getMaxCardApduLengthSupported()];
+    SymmetricCryptoCardTransactionManagerAdapter manager =
+        (SymmetricCryptoCardTransactionManagerAdapter)
+            factory.createCardTransactionManager(
+                CARD_KEY_DIVERSIFIER, false, new ArrayList<byte[]>());
+    manager.initTerminalSecureSessionContext();
+    manager.initTerminalSessionMac(OPEN_SECURE_SESSION_DATA_OUT, KIF, KVC);
+    for (int i = 0; i < 3; i++) {
+      manager.updateTerminalSessionMac(CARD_COMMAND);
+      manager.updateTerminalSessionMac(CARD_RESPONSE);
+    }
+    manager.updateTerminalSessionMac(CARD_COMMAND);
+    manager.updateTerminalSessionMac(fullCardResponse);
+    manager.finalizeTerminalSessionMac();
+    assertThat(manager.isCardSessionMacValid(simulator.computeCardSessionMac(4))).isTrue();
+    // Digest Init + Digest Update Multiple (7 first APDUs) + Digest Update (full response) +
+    // Digest Close
+    assertThat(manager.getSessionDigestApduCount()).isEqualTo(4);
+  }
+
+  @Test
+  public void updateTerminalSessionMac_whenCardApduIsLongerThan255Bytes_shouldThrowIAE()
+      throws Exception {
+    SymmetricCryptoCardTransactionManagerSpi manager =
+        new SymmetricCryptoCardTransactionManagerFactoryAdapter(simulator, sam, contextSetting)
+            .createCardTransactionManager(CARD_KEY_DIVERSIFIER, false, new ArrayList<byte[]>());
+    manager.initTerminalSecureSessionContext();
+    manager.initTerminalSessionMac(OPEN_SECURE_SESSION_DATA_OUT, KIF, KVC);
+    manager.updateTerminalSessionMac(CARD_COMMAND);
+
+    assertThatThrownBy(() -> manager.updateTerminalSessionMac(new byte[256]))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private List<byte[]> runEncryptedSession(LegacySamSimulator simulator, boolean isBatch)
+      throws Exception {
+    SymmetricCryptoCardTransactionManagerAdapter manager =
+        (SymmetricCryptoCardTransactionManagerAdapter)
+            new SymmetricCryptoCardTransactionManagerFactoryAdapter(
+                    simulator, simulator.createLegacySam(), contextSetting)
+                .createCardTransactionManager(
+                    CARD_KEY_DIVERSIFIER, false, new ArrayList<byte[]>());
+    manager.initTerminalSecureSessionContext();
+    manager.initTerminalSessionMac(OPEN_SECURE_SESSION_DATA_OUT, KIF, KVC);
+    manager.activateEncryption();
+    List<byte[]> processedData = new ArrayList<>();
+    if (isBatch) {
+      processedData.addAll(manager.updateTerminalSessionMac(Arrays.asList(CARD_COMMAND)));
+      processedData.addAll(
+          manager.updateTerminalSessionMac(Arrays.asList(CARD_RESPONSE, CARD_COMMAND)));
+      processedData.addAll(manager.updateTerminalSessionMac(Arrays.asList(CARD_RESPONSE)));
+    } else {
+      processedData.add(manager.updateTerminalSessionMac(CARD_COMMAND));
+      processedData.add(manager.updateTerminalSessionMac(CARD_RESPONSE));
+      processedData.add(manager.updateTerminalSessionMac(CARD_COMMAND));
+      processedData.add(manager.updateTerminalSessionMac(CARD_RESPONSE));
+    }
+    manager.deactivateEncryption();
+    manager.finalizeTerminalSessionMac();
+    assertThat(manager.isCardSessionMacValid(simulator.computeCardSessionMac(4))).isTrue();
+    return processedData;
+  }
+
+  @Test
+  public void updateTerminalSessionMac_whenBatchInEncryptedMode_shouldUseOneSamRequestPerBatch()
+      throws Exception {
+    LegacySamSimulator otherSimulator =
+        new LegacySamSimulator(LegacySam.ProductType.SAM_C1, "11223344", new Random(0))
+            .putKey(KIF, KVC, LegacySamSimulator.KeyAlgorithm.TDES, new byte[16]);
+    List<byte[]> expectedProcessedData = runEncryptedSession(simulator, false);
+    List<byte[]> processedData = runEncryptedSession(otherSimulator, true);
+    assertThat(processedData).hasSize(4);
+    for (int i = 0; i < processedData.size(); i++) {
+      assertThat(processedData.get(i)).isEqualTo(expectedProcessedData.get(i));
+    }
+    assertThat(otherSimulator.getCardRequestCount())
+        .isEqualTo(simulator.getCardRequestCount() - 1);
+  }
+
+  @Test
+  public void initTerminalSecureSessionContext_whenDiversifierSelected_shouldNotReselectIt()
+      throws Exception {
+    SymmetricCryptoCardTransactionManagerFactoryAdapter factory =
+        new SymmetricCryptoCardTransactionManagerFactoryAdapter(simulator, sam, contextSetting);
+    assertThat(runSession(factory)).isTrue();
+    // Get Challenge / Select Diversifier + Digest Init + Digest Update Multiple + Digest Close /
+    // Digest Authenticate
+    assertThat(simulator.getApduCount()).isEqualTo(6);
+    assertThat(sam.getSelectedDiversifier()).isEqualTo(CARD_KEY_DIVERSIFIER);
+    simulator.resetStatistics();
+    assertThat(runSession(factory)).isTrue();
+    assertThat(simulator.getApduCount()).isEqualTo(5);
+  }
+
+  @Test
+  public void initTerminalSecureSessionContext_whenPreviousSessionFailed_shouldSelectDiversifier()
+      throws Exception {
+    SymmetricCryptoCardTransactionManagerFactoryAdapter factory =
+        new SymmetricCryptoCardTransactionManagerFactoryAdapter(simulator, sam, contextSetting);
+    SymmetricCryptoCardTransactionManagerSpi manager =
+        factory.createCardTransactionManager(CARD_KEY_DIVERSIFIER, false, new ArrayList<byte[]>());
+    manager.initTerminalSecureSessionContext();
+    manager.initTerminalSessionMac(OPEN_SECURE_SESSION_DATA_OUT, KIF, KVC);
+    manager.finalizeTerminalSessionMac();
+    assertThat(manager.isCardSessionMacValid(new byte[4])).isFalse();
+    assertThat(sam.getSelectedDiversifier()).isNull();
+    simulator.resetStatistics();
+    assertThat(runSession(factory)).isTrue();
+    assertThat(simulator.getApduCount()).isEqualTo(6);
+  }
+
+  @Test
+  public void createCardTransactionManager_whenReuseEnabled_shouldReArmTheSameManager()
+      throws Exception {
+    contextSetting.enableCardTransactionManagerReuse();
+    SymmetricCryptoCardTransactionManagerFactoryAdapter factory =
+        new SymmetricCryptoCardTransactionManagerFactoryAdapter(simulator, sam, contextSetting);
+    // Session interrupted before its end
+    SymmetricCryptoCardTransactionManagerSpi manager =
+        factory.createCardTransactionManager(CARD_KEY_DIVERSIFIER, false, new ArrayList<byte[]>());
+    manager.initTerminalSecureSessionContext();
+    manager.initTerminalSessionMac(OPEN_SECURE_SESSION_DATA_OUT, KIF, KVC);
+    manager.updateTerminalSessionMac(CARD_COMMAND);
+    assertThat(
+            factory.createCardTransactionManager(
+                CARD_KEY_DIVERSIFIER, false, new ArrayList<byte[]>()))
+        .isSameAs(manager);
+    assertThat(runSession(factory)).isTrue();
+    assertThat(runSession(factory)).isTrue();
+  }
+
+  @Test
+  public void createCardTransactionManager_whenReuseEnabledInOtherThread_shouldNotShareTheManager()
+      throws Exception {
+    contextSetting.enableCardTransactionManagerReuse();
+    final SymmetricCryptoCardTransactionManagerFactoryAdapter factory =
+        new SymmetricCryptoCardTransactionManagerFactoryAdapter(simulator, sam, contextSetting);
+    SymmetricCryptoCardTransactionManagerSpi manager =
+        factory.createCardTransactionManager(CARD_KEY_DIVERSIFIER, false, new ArrayList<byte[]>());
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      SymmetricCryptoCardTransactionManagerSpi otherThreadManager =
+          executor
+              .submit(
+                  () ->
+                      factory.createCardTransactionManager(
+                          CARD_KEY_DIVERSIFIER, false, new ArrayList<byte[]>()))
+              .get();
+      assertThat(otherThreadManager).isNotSameAs(manager);
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(
+            factory.createCardTransactionManager(
+                CARD_KEY_DIVERSIFIER, false, new ArrayList<byte[]>()))
+        .isSameAs(manager);
+  }
+
+  @Test
+  public void isCardSessionMacValid_whenMacIsIncorrectAndPrefetchEnabled_shouldReturnFalse()
+      throws Exception {
+    contextSetting.enableSessionChallengePrefetch();
+    SymmetricCryptoCardTransactionManagerFactoryAdapter factory =
+        new SymmetricCryptoCardTransactionManagerFactoryAdapter(simulator, sam, contextSetting);
+    SymmetricCryptoCardTransactionManagerSpi manager =
+        factory.createCardTransactionManager(CARD_KEY_DIVERSIFIER, false, new ArrayList<byte[]>());
+    manager.initTerminalSecureSessionContext();
+    manager.initTerminalSessionMac(OPEN_SECURE_SESSION_DATA_OUT, KIF, KVC);
+    manager.finalizeTerminalSessionMac();
+    assertThat(manager.isCardSessionMacValid(new byte[4])).isFalse();
+    // The SAM has stopped before the "Get Challenge"
+    assertThat(sam.isChallengeAvailable()).isFalse();
+    assertThat(runSession(factory)).isTrue();
+  }
+}
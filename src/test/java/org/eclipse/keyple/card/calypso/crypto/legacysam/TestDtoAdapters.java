@@ -159,11 +159,17 @@ static class CardSelectionResponseAdapter implements CardSelectionResponseApi {
 
     private String powerOnData = null;
     private ApduResponseApi selectApplicationResponse = null;
+    private CardResponseApi cardResponse = null;
 
     CardSelectionResponseAdapter(String powerOnData) {
       this.powerOnData = powerOnData;
     }
 
+    CardSelectionResponseAdapter(String powerOnData, CardResponseApi cardResponse) {
+      this.powerOnData = powerOnData;
+      this.cardResponse = cardResponse;
+    }
+
     CardSelectionResponseAdapter(ApduResponseApi selectApplicationResponse) {
       this.selectApplicationResponse = selectApplicationResponse;
     }
@@ -185,7 +191,7 @@ public boolean hasMatched() {
 
     @Override
     public CardResponseApi getCardResponse() {
-      throw new UnsupportedOperationException("hasMatched");
+      return cardResponse;
     }
 
     @Override
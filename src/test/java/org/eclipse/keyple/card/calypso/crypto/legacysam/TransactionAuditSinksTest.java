@@ -0,0 +1,260 @@
+/* **************************************************************************************
+ * Copyright (c) 2026 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso.crypto.legacysam;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TransactionAuditSinksTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static final byte[] SAM_SERIAL_NUMBER = HexUtil.toByteArray("11223344");
+  private static final byte[] APDU_1 = HexUtil.toByteArray("0084000008");
+  private static final byte[] APDU_2 = HexUtil.toByteArray("11223344556677889000");
+  private static final byte[] APDU_3 = HexUtil.toByteArray("8014000004");
+  private static final byte[] APDU_4 = HexUtil.toByteArray("9000");
+
+  @Test
+  public void cardTransaction_whenNoContextSink_shouldAddApdusToListAndReturnUnmodifiableView() {
+    List<byte[]> transactionAuditData = new ArrayList<>();
+    TransactionAuditSink sink =
+        new TransactionAuditSinkAdapters.CardTransactionSink(null, transactionAuditData);
+    List<byte[]> apdus = sink.getApdus();
+    sink.addApduExchange(SAM_SERIAL_NUMBER, APDU_1, APDU_2);
+    assertThat(transactionAuditData).containsExactly(APDU_1, APDU_2);
+    assertThat(apdus).containsExactly(APDU_1, APDU_2);
+    assertThatThrownBy(() -> apdus.add(APDU_3)).isInstanceOf(UnsupportedOperationException.class);
+  }
+
+  @Test
+  public void cardTransaction_whenContextSinkIsShared_shouldOnlyReturnApdusOfItsTransaction() {
+    TransactionAuditSink ringBuffer = TransactionAuditSinks.ringBuffer(10);
+    List<byte[]> transactionAuditData = new ArrayList<>();
+    TransactionAuditSinkAdapters.CardTransactionSink sink1 =
+        new TransactionAuditSinkAdapters.CardTransactionSink(ringBuffer, transactionAuditData);
+    TransactionAuditSinkAdapters.CardTransactionSink sink2 =
+        new TransactionAuditSinkAdapters.CardTransactionSink(ringBuffer, new ArrayList<byte[]>());
+    sink1.addApduExchange(SAM_SERIAL_NUMBER, APDU_1, APDU_2);
+    sink2.addApduExchange(HexUtil.toByteArray("55667788"), APDU_3, APDU_4);
+    assertThat(ringBuffer.getApdus()).containsExactly(APDU_1, APDU_2, APDU_3, APDU_4);
+    assertThat(sink1.getApdus()).containsExactly(APDU_1, APDU_2);
+    assertThat(sink2.getApdus()).containsExactly(APDU_3, APDU_4);
+    assertThat(transactionAuditData).isEmpty();
+    assertThat(sink1.isDisabled()).isFalse();
+  }
+
+  @Test
+  public void cardTransaction_whenReset_shouldForgetApdusOfPreviousTransaction() {
+    TransactionAuditSinkAdapters.CardTransactionSink sink =
+        new TransactionAuditSinkAdapters.CardTransactionSink(
+            TransactionAuditSinks.ringBuffer(10), new ArrayList<byte[]>());
+    sink.addApduExchange(SAM_SERIAL_NUMBER, APDU_1, APDU_2);
+    sink.reset(new ArrayList<byte[]>());
+    sink.addApduExchange(SAM_SERIAL_NUMBER, APDU_3, APDU_4);
+    assertThat(sink.getApdus()).containsExactly(APDU_3, APDU_4);
+  }
+
+  @Test
+  public void cardTransaction_whenContextSinkIsDisabled_shouldRetainNothing() {
+    List<byte[]> transactionAuditData = new ArrayList<>();
+    TransactionAuditSinkAdapters.CardTransactionSink sink =
+        new TransactionAuditSinkAdapters.CardTransactionSink(
+            TransactionAuditSinks.disabled(), transactionAuditData);
+    sink.addApduExchange(SAM_SERIAL_NUMBER, APDU_1, APDU_2);
+    assertThat(sink.isDisabled()).isTrue();
+    assertThat(sink.getApdus()).isEmpty();
+    assertThat(transactionAuditData).isEmpty();
+  }
+
+  @Test
+  public void cardTransaction_whenContextSinkIsMappedJournal_shouldRetainApdusOfItsTransaction() {
+    TransactionAuditSinkAdapters.CardTransactionSink sink =
+        new TransactionAuditSinkAdapters.CardTransactionSink(
+            TransactionAuditSinks.mappedJournal(temporaryFolder.getRoot(), 4096),
+            new ArrayList<byte[]>());
+    sink.addApduExchange(SAM_SERIAL_NUMBER, APDU_1, APDU_2);
+    assertThat(sink.getApdus()).containsExactly(APDU_1, APDU_2);
+  }
+
+  @Test
+  public void disabled_shouldRetainNothing() {
+    TransactionAuditSink sink = TransactionAuditSinks.disabled();
+    sink.addApduExchange(SAM_SERIAL_NUMBER, APDU_1, APDU_2);
+    assertThat(sink.getApdus()).isEmpty();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void ringBuffer_whenMaxApduExchangesIsZero_shouldThrowIAE() {
+    TransactionAuditSinks.ringBuffer(0);
+  }
+
+  @Test
+  public void ringBuffer_whenNotFull_shouldRetainAllApdus() {
+    TransactionAuditSink sink = TransactionAuditSinks.ringBuffer(2);
+    sink.addApduExchange(SAM_SERIAL_NUMBER, APDU_1, APDU_2);
+    assertThat(sink.getApdus()).containsExactly(APDU_1, APDU_2);
+  }
+
+  @Test
+  public void ringBuffer_whenFull_shouldRetainLastExchangesInOrder() {
+    TransactionAuditSink sink = TransactionAuditSinks.ringBuffer(2);
+    sink.addApduExchange(SAM_SERIAL_NUMBER, APDU_1, APDU_2);
+    sink.addApduExchange(SAM_SERIAL_NUMBER, APDU_3, APDU_4);
+    sink.addApduExchange(SAM_SERIAL_NUMBER, APDU_2, APDU_1);
+    assertThat(sink.getApdus()).containsExactly(APDU_3, APDU_4, APDU_2, APDU_1);
+  }
+
+  @Test
+  public void binaryLog_shouldWriteLengthPrefixedRecords() {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    TransactionAuditSink sink = TransactionAuditSinks.binaryLog(outputStream);
+    sink.addApduExchange(SAM_SERIAL_NUMBER, APDU_3, APDU_4);
+    assertThat(HexUtil.toHex(outputStream.toByteArray())).isEqualTo("0005801400000400029000");
+    assertThat(sink.getApdus()).isEmpty();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void binaryLog_whenStreamFails_shouldThrowISE() {
+    TransactionAuditSink sink =
+        TransactionAuditSinks.binaryLog(
+            new OutputStream() {
+              @Override
+              public void write(int b) throws IOException {
+                throw new IOException("Disk full");
+              }
+            });
+    sink.addApduExchange(SAM_SERIAL_NUMBER, APDU_3, APDU_4);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void mappedJournal_whenSegmentSizeIsTooSmall_shouldThrowIAE() {
+    TransactionAuditSinks.mappedJournal(temporaryFolder.getRoot(), 1024);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void mappedJournal_whenDirectoryIsAFile_shouldThrowIAE() throws IOException {
+    TransactionAuditSinks.mappedJournal(temporaryFolder.newFile(), 4096);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void mappedJournal_whenDirectoryIsNotWritable_shouldThrowIAE() throws IOException {
+    File directory = temporaryFolder.newFolder();
+    assumeTrue(directory.setWritable(false) && !directory.canWrite());
+    TransactionAuditSinks.mappedJournal(directory, 4096);
+  }
+
+  @Test
+  public void mappedJournal_whenRecordDoesNotFitInSegment_shouldThrowIAEAndWriteNothing()
+      throws IOException {
+    TransactionAuditSink sink =
+        TransactionAuditSinks.mappedJournal(temporaryFolder.getRoot(), 4096);
+    assertThatThrownBy(() -> sink.addApduExchange(SAM_SERIAL_NUMBER, new byte[4096], APDU_2))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(temporaryFolder.getRoot().list()).isEmpty();
+  }
+
+  @Test
+  public void mappedJournal_whenSamSerialNumberIsNull_shouldRecordAnEmptySerialNumber()
+      throws IOException {
+    TransactionAuditSink sink =
+        TransactionAuditSinks.mappedJournal(temporaryFolder.getRoot(), 4096);
+    sink.addApduExchange(null, APDU_1, APDU_2);
+    assertThat(
+            TransactionAuditJournalReader.readSegment(
+                new File(temporaryFolder.getRoot(), "sam-audit-00000001.jnl")))
+        .isEqualTo(
+            "\nTransaction audit JSON data: {\"sam\":{\"serialNumber\":\"\"},"
+                + "\"apdus\":[\"0084000008\",\"11223344556677889000\"]}");
+  }
+
+  @Test
+  public void mappedJournal_whenFlushedBeforeAnyRecord_shouldDoNothing() {
+    TransactionAuditJournal journal =
+        TransactionAuditSinks.mappedJournal(temporaryFolder.getRoot(), 4096);
+    journal.flush();
+    assertThat(temporaryFolder.getRoot().list()).isEmpty();
+  }
+
+  @Test
+  public void mappedJournal_whenClosed_shouldKeepRecordsAndRejectNewOnes() throws IOException {
+    TransactionAuditJournal journal =
+        TransactionAuditSinks.mappedJournal(temporaryFolder.getRoot(), 4096);
+    journal.addApduExchange(SAM_SERIAL_NUMBER, APDU_1, APDU_2);
+    journal.flush();
+    journal.close();
+    journal.close();
+    assertThatThrownBy(() -> journal.addApduExchange(SAM_SERIAL_NUMBER, APDU_3, APDU_4))
+        .isInstanceOf(IllegalStateException.class);
+    assertThat(
+            TransactionAuditJournalReader.readSegment(
+                new File(temporaryFolder.getRoot(), "sam-audit-00000001.jnl")))
+        .contains("\"apdus\":[\"0084000008\",\"11223344556677889000\"]");
+  }
+
+  @Test
+  public void mappedJournal_shouldBeReadableAsTransactionAuditData() throws IOException {
+    byte[] otherSamSerialNumber = HexUtil.toByteArray("55667788");
+    TransactionAuditSink sink =
+        TransactionAuditSinks.mappedJournal(temporaryFolder.getRoot(), 4096);
+    sink.addApduExchange(SAM_SERIAL_NUMBER, APDU_1, APDU_2);
+    sink.addApduExchange(SAM_SERIAL_NUMBER, APDU_3, APDU_4);
+    sink.addApduExchange(otherSamSerialNumber, APDU_3, APDU_4);
+
+    File segmentFile = new File(temporaryFolder.getRoot(), "sam-audit-00000001.jnl");
+    assertThat(segmentFile).hasSize(4096);
+    assertThat(
+            LegacySamExtensionService.getInstance().readTransactionAuditJournalSegment(segmentFile))
+        .isEqualTo(
+            "\nTransaction audit JSON data: {\"sam\":{\"serialNumber\":\"11223344\"},"
+                + "\"apdus\":[\"0084000008\",\"11223344556677889000\",\"8014000004\",\"9000\"]}"
+                + "\nTransaction audit JSON data: {\"sam\":{\"serialNumber\":\"55667788\"},"
+                + "\"apdus\":[\"8014000004\",\"9000\"]}");
+  }
+
+  @Test
+  public void mappedJournal_whenSegmentIsEmpty_shouldBeReadAsEmptyString() throws IOException {
+    File segmentFile = temporaryFolder.newFile("sam-audit-00000001.jnl");
+    assertThat(TransactionAuditJournalReader.readSegment(segmentFile)).isEmpty();
+  }
+
+  @Test
+  public void mappedJournal_whenSegmentIsFull_shouldCreateNextSegment() throws IOException {
+    TransactionAuditSink sink =
+        TransactionAuditSinks.mappedJournal(temporaryFolder.getRoot(), 4096);
+    for (int i = 0; i < 200; i++) {
+      sink.addApduExchange(SAM_SERIAL_NUMBER, APDU_1, APDU_2);
+    }
+    // A new journal never writes in the existing segments.
+    TransactionAuditSinks.mappedJournal(temporaryFolder.getRoot(), 4096)
+        .addApduExchange(SAM_SERIAL_NUMBER, APDU_3, APDU_4);
+
+    assertThat(temporaryFolder.getRoot().list())
+        .containsExactlyInAnyOrder(
+            "sam-audit-00000001.jnl", "sam-audit-00000002.jnl", "sam-audit-00000003.jnl");
+    assertThat(
+            TransactionAuditJournalReader.readSegment(
+                new File(temporaryFolder.getRoot(), "sam-audit-00000003.jnl")))
+        .contains("\"apdus\":[\"8014000004\",\"9000\"]");
+  }
+}